@@ -0,0 +1,145 @@
+package engine;
+
+import engine.brep.CircleCurve;
+import engine.brep.Loop;
+import engine.graph.Graph;
+import engine.graph.INode;
+import engine.level.EdgeAdjusterStepper;
+import engine.level.IoCContainer;
+import engine.level.LevelGenerator;
+import engine.level.LevelGeneratorConfiguration;
+import engine.level.RelaxerStepper;
+import engine.level.StepperController;
+import engine.level.TryAllNodesExpandStepper;
+import engine.level.TryAllTemplatesOnOneNodeStepper;
+import engine.level.TryTemplateExpandStepper;
+import game.TemplateStore1;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+// seeded inputs for the benchmarks, everything here is a pure function of its arguments
+// so two runs (or two machines) measure exactly the same work
+public class BenchFixtures
+{
+   // a jittered lattice of num_nodes nodes with random radii, joined along the lattice lines,
+   // so it starts without crossing edges, squeeze < 1 pushes everything together to give a relaxer work to do
+   public static Graph latticeGraph(int num_nodes, long seed, double squeeze)
+   {
+      Random r = new Random(seed);
+
+      Graph g = new Graph();
+
+      int size = (int)Math.ceil(Math.sqrt(num_nodes));
+
+      INode[][] nodes = new INode[size][size];
+
+      for(int n = 0; n < num_nodes; n++)
+      {
+         int i = n / size;
+         int j = n % size;
+
+         INode node = g.addNode("n", "", "", 5 + r.nextDouble() * 15);
+         node.setPos(new XY(i * 30 + r.nextDouble() * 5, j * 30 + r.nextDouble() * 5).multiply(squeeze));
+         nodes[i][j] = node;
+
+         if (i > 0 && r.nextDouble() < 0.7)
+            g.connect(nodes[i - 1][j], node, 30, 50, 3);
+
+         if (j > 0 && r.nextDouble() < 0.7)
+            g.connect(nodes[i][j - 1], node, 30, 50, 3);
+      }
+
+      return g;
+   }
+
+   // the lattice again, but jittered by up to a whole lattice spacing, so neighbouring edges sometimes cross,
+   // giving some crossings to find rather than none (a valid layout) or nearly all (uniformly random edges)
+   public static Graph jumbledGraph(int num_nodes, long seed)
+   {
+      Graph g = latticeGraph(num_nodes, seed, 1.0);
+
+      Random r = new Random(seed);
+
+      for(INode n : g.allGraphNodes())
+      {
+         n.setPos(n.getPos().plus(new XY(r.nextDouble() - 0.5, r.nextDouble() - 0.5).multiply(60)));
+      }
+
+      return g;
+   }
+
+   // overlapping circles, roughly the size and density of the rooms and corridors a generated level unions
+   public static ArrayList<Loop> overlappingCircles(int num_circles, long seed)
+   {
+      Random r = new Random(seed);
+
+      ArrayList<Loop> ret = new ArrayList<>();
+
+      double side = Math.sqrt(num_circles) * 40;
+
+      for(int i = 0; i < num_circles; i++)
+      {
+         XY centre = new XY(r.nextDouble() * side, r.nextDouble() * side);
+
+         ret.add(new Loop(new CircleCurve(centre, 15 + r.nextDouble() * 20)));
+      }
+
+      return ret;
+   }
+
+   // a real level, generated the same way the game does it
+   public static LevelGenerator generateLevel(int seed, int req_size)
+   {
+      IoCContainer ioc_container = new IoCContainer(
+            RelaxerStepper::new,
+            TryAllNodesExpandStepper::new,
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      LevelGenerator gen = new LevelGenerator(ioc_container, req_size,
+            new LevelGeneratorConfiguration(seed), new TemplateStore1());
+
+      StepperController.StatusReport ret;
+
+      do
+      {
+         ret = gen.step();
+      }
+      while(!ret.Complete);
+
+      if (ret.Status != StepperController.Status.StepOutSuccess)
+         throw new IllegalStateException("Level generation failed for seed " + seed + ": " + ret.log());
+
+      return gen;
+   }
+
+   // points inside a generated level, the node centres are all in the middle of rooms
+   public static ArrayList<XY> pointsInLevel(LevelGenerator gen)
+   {
+      ArrayList<XY> ret = new ArrayList<>();
+
+      for(INode n : gen.getGraph().allGraphNodes())
+      {
+         ret.add(n.getPos());
+      }
+
+      return ret;
+   }
+
+   // unit vectors in seeded random directions
+   public static XY[] randomDirections(int count, long seed)
+   {
+      Random r = new Random(seed);
+
+      XY[] ret = new XY[count];
+
+      for(int i = 0; i < count; i++)
+      {
+         ret[i] = XY.makeDirectionVector(r.nextDouble() * Math.PI * 2);
+      }
+
+      return ret;
+   }
+}
@@ -0,0 +1,76 @@
+package engine.brep;
+
+import engine.BenchFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// unions a set of overlapping circles one at a time, as the level generator's union phase does
+//
+// the loops themselves are immutable, so they are built once and a fresh UnionHelper is filled with them per call,
+// the union's Random is re-seeded per call too, so every call does identical work
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnionHelperBenchmark
+{
+   @Param({"10", "50", "200"})
+   public int NumLoops;
+
+   @Setup
+   public void setUp()
+   {
+      m_loops = BenchFixtures.overlappingCircles(NumLoops, 1);
+   }
+
+   @Benchmark
+   public UnionHelper unionAll()
+   {
+      UnionHelper uh = new UnionHelper();
+
+      m_loops.forEach(uh::addBaseLoop);
+
+      Random r = new Random(1);
+
+      //noinspection StatementWithEmptyBody
+      while(!uh.unionOne(r))
+         ;
+
+      return uh;
+   }
+
+   // the same, as a tree of pairs on the common pool (see LevelGeneratorConfiguration.ParallelUnion)
+   @Benchmark
+   public UnionHelper unionAllTree()
+   {
+      UnionHelper uh = new UnionHelper(ForkJoinPool.commonPool());
+
+      m_loops.forEach(uh::addBaseLoop);
+
+      Random r = new Random(1);
+
+      //noinspection StatementWithEmptyBody
+      while(!uh.unionOne(r))
+         ;
+
+      return uh;
+   }
+
+   private ArrayList<Loop> m_loops;
+}
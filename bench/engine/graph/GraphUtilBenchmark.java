@@ -0,0 +1,54 @@
+package engine.graph;
+
+import engine.BenchFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+// crossing-edge detection, on a jumbled graph that has some crossings
+// and on a lattice that has none (which is the common case once a layout is valid)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphUtilBenchmark
+{
+   @Param({"50", "200", "500", "2000"})
+   public int NumNodes;
+
+   @Setup
+   public void setUp()
+   {
+      m_jumbled_edges = BenchFixtures.jumbledGraph(NumNodes, 1).allGraphEdges();
+      m_lattice_edges = BenchFixtures.latticeGraph(NumNodes, 1, 1.0).allGraphEdges();
+   }
+
+   @Benchmark
+   public HashSet<DirectedEdgePair> findCrossingEdgesJumbled()
+   {
+      return GraphUtil.findCrossingEdges(m_jumbled_edges);
+   }
+
+   @Benchmark
+   public HashSet<DirectedEdgePair> findCrossingEdgesLattice()
+   {
+      return GraphUtil.findCrossingEdges(m_lattice_edges);
+   }
+
+   private ArrayList<DirectedEdge> m_jumbled_edges;
+   private ArrayList<DirectedEdge> m_lattice_edges;
+}
@@ -0,0 +1,76 @@
+package engine.level;
+
+import engine.BenchFixtures;
+import engine.XY;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// wall queries against a generated level, probing from the room centres in seeded random directions
+//
+// each call moves on to the next probe, so a run sweeps the whole level rather than re-asking one cached question
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LevelBenchmark
+{
+   @Param({"10", "30"})
+   public int ReqSize;
+
+   @Setup
+   public void setUp()
+   {
+      LevelGenerator gen = BenchFixtures.generateLevel(85, ReqSize);
+
+      m_level = gen.getLevel();
+      m_points = BenchFixtures.pointsInLevel(gen);
+      m_dirs = BenchFixtures.randomDirections(s_num_dirs, 1);
+
+      // far enough to always reach a wall
+      m_probe_length = m_level.getBounds().diagonal().length();
+   }
+
+   @Benchmark
+   public Level.RayCollision nearestWall()
+   {
+      m_probe++;
+
+      XY from = m_points.get(m_probe % m_points.size());
+      XY dir = m_dirs[m_probe % s_num_dirs];
+
+      return m_level.nearestWall(from, dir, m_probe_length);
+   }
+
+   @Benchmark
+   public Collection<Wall> getVisibleWalls()
+   {
+      m_probe++;
+
+      return m_level.getVisibleWalls(m_points.get(m_probe % m_points.size()));
+   }
+
+   private Level m_level;
+   private ArrayList<XY> m_points;
+   private XY[] m_dirs;
+   private double m_probe_length;
+
+   private int m_probe = 0;
+
+   // prime, so the point and direction sequences don't fall into step
+   private static final int s_num_dirs = 997;
+}
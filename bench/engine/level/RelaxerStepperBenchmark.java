@@ -0,0 +1,71 @@
+package engine.level;
+
+import engine.BenchFixtures;
+import engine.graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// one relaxation step on a squeezed lattice
+//
+// each measurement iteration starts again from the same squeezed layout, so iterations compare like with like
+// rather than measuring an ever-more-relaxed graph, the relaxer's own set-up (distances etc.) is done
+// before measuring starts
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelaxerStepperBenchmark
+{
+   @Param({"50", "200", "500", "2000"})
+   public int NumNodes;
+
+   @Param({"RelaxerStepper", "ArrayRelaxerStepper"})
+   public String Relaxer;
+
+   @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+   public void setUp()
+   {
+      Graph g = BenchFixtures.latticeGraph(NumNodes, 1, 0.7);
+
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      m_relaxer = makeFactory(Relaxer).makeRelaxer(null, g, c);
+
+      m_relaxer.step(StepperController.Status.StepIn);
+   }
+
+   private static IoCContainer.IRelaxerFactory makeFactory(String name)
+   {
+      switch (name)
+      {
+         case "RelaxerStepper":
+            return RelaxerStepper::new;
+
+         case "ArrayRelaxerStepper":
+            return ArrayRelaxerStepper::new;
+      }
+
+      throw new IllegalArgumentException("Unknown relaxer: " + name);
+   }
+
+   @Benchmark
+   public StepperController.StatusReportInner step()
+   {
+      return m_relaxer.step(StepperController.Status.Iterate);
+   }
+
+   private IStepper m_relaxer;
+}
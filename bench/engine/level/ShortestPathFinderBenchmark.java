@@ -0,0 +1,46 @@
+package engine.level;
+
+import engine.BenchFixtures;
+import engine.graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// all-pairs path lengths, this is cubic so the sizes stop well short of the relaxer's
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestPathFinderBenchmark
+{
+   @Param({"50", "200", "500"})
+   public int NumNodes;
+
+   @Setup
+   public void setUp()
+   {
+      m_graph = BenchFixtures.latticeGraph(NumNodes, 1, 1.0);
+   }
+
+   @Benchmark
+   public double[][] findPathLengths()
+   {
+      return m_finder.FindPathLengths(m_graph, e -> e.MaxLength);
+   }
+
+   private Graph m_graph;
+
+   private final ShortestPathFinder m_finder = new ShortestPathFinder();
+}
@@ -0,0 +1,69 @@
+package engine.modelling;
+
+import engine.BenchFixtures;
+import engine.XY;
+import engine.XYZ;
+import engine.controllers.IController;
+import engine.level.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// one game-frame of movement for a player-like object wandering a generated level,
+// it keeps accelerating and turning, so it spends much of its time colliding with and sliding along walls
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovableBenchmark
+{
+   // what the player controller does when forwards is held, plus a seeded random walk on the turning
+   private static class WanderController implements IController
+   {
+      @Override
+      public void timeStep(double timeStep, WorldObject controlled, Level level)
+      {
+         Movable m = (Movable)controlled;
+
+         m.addOrientation((m_random.nextDouble() - 0.5) * Math.PI / 16);
+         m.addVelocity(XY.makeDirectionVector(m.getOrientation()).multiply(0.7), 0.7);
+      }
+
+      private final Random m_random = new Random(1);
+   }
+
+   @Setup
+   public void setUp()
+   {
+      m_level = BenchFixtures.generateLevel(85, 10).getLevel();
+
+      m_movable = new Movable(null, new XYZ(), 2, new WanderController(), 2);
+      m_movable.setPos3D(new XYZ(m_level.startPos(), 0));
+
+      m_level.addObject(m_movable);
+   }
+
+   @Benchmark
+   public Movable timeStep()
+   {
+      // the game steps its level by this much per frame
+      m_movable.timeStep(0.1, m_level);
+
+      return m_movable;
+   }
+
+   private Level m_level;
+   private Movable m_movable;
+}
@@ -12,10 +12,10 @@ public class Util
       );
    }
 
-   private static OrderedPair<Double, Double> edgeIntersect(double edge1StartX, double edge1StartY,
-                                                            double edge1EndX, double edge1EndY,
-                                                            double edge2StartX, double edge2StartY,
-                                                            double edge2EndX, double edge2EndY)
+   public static OrderedPair<Double, Double> edgeIntersect(double edge1StartX, double edge1StartY,
+                                                           double edge1EndX, double edge1EndY,
+                                                           double edge2StartX, double edge2StartY,
+                                                           double edge2EndX, double edge2EndY)
    {
 
       double den = (edge2EndX - edge2StartX) * (edge1StartY - edge1EndY) - (edge1StartX - edge1EndX) * (edge2EndY - edge2StartY);
@@ -60,6 +60,60 @@ public class BRepUtil
       return null;
    }
 
+   // the angle the curve sweeps through, as seen from pnt (which must not be on it), clockwise positive
+   //
+   // summed over a closed loop that is 2 PI times the loop's winding number about pnt, so 2 PI inside a
+   // Forwards circle (which runs clockwise) and -2 PI inside a Reverse one
+   public static double sweptAngle(Curve c, XY pnt)
+   {
+      if (!(c instanceof LineCurve) && !(c instanceof CircleCurve))
+         throw new UnsupportedOperationException("Unknown type of curve");
+
+      XY rel_start = c.startPos().minus(pnt);
+      XY rel_end = c.endPos().minus(pnt);
+
+      // the angle through the chord from start to end, never more than PI either way
+      double ret = -Math.atan2(cross(rel_start, rel_end), rel_start.dot(rel_end));
+
+      if (c instanceof LineCurve)
+         return ret;
+
+      CircleCurve cc = (CircleCurve)c;
+
+      // when pnt lies between the arc and its chord, the arc goes right around it the other way from
+      // the chord, so sweeps a whole turn more
+      if (pnt.minus(cc.Position).length() >= cc.Radius)
+         return ret;
+
+      boolean between;
+
+      if (Math.PI * 2 - cc.paramRange() < 1e-12)
+      {
+         // a whole circle, everything inside is between it and its (zero length) chord
+         between = true;
+      }
+      else
+      {
+         XY chord = c.endPos().minus(c.startPos());
+         XY mid = c.computePos((c.StartParam + c.EndParam) / 2);
+
+         // the chord's line cuts the circle in two, the arc is in one part and we need to be in that too
+         between = cross(chord, pnt.minus(c.startPos())) * cross(chord, mid.minus(c.startPos())) > 0;
+      }
+
+      if (between)
+      {
+         ret += cc.Rotation == CircleCurve.RotationDirection.Forwards ? Math.PI * 2 : -Math.PI * 2;
+      }
+
+      return ret;
+   }
+
+   private static double cross(XY a, XY b)
+   {
+      return a.X * b.Y - a.Y * b.X;
+   }
+
    private static OrderedPair<XY, XY> circleCurveIntersect(CircleCurve c1, Curve c2)
    {
       if (c2 instanceof CircleCurve)
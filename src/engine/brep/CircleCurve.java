@@ -134,7 +134,7 @@ public class CircleCurve extends Curve
    }
 
    @Override
-   public Box boundingBox()
+   protected Box computeBoundingBox()
    {
       // use whole circle here as the use I have for the moment doesn't need anything
       // tighter
@@ -26,7 +26,7 @@ public abstract class Curve
 
    public abstract Curve cloneWithChangedParams(double start, double end);
 
-   public abstract Box boundingBox();
+   protected abstract Box computeBoundingBox();
 
    public abstract XY tangent(Double param);
 
@@ -67,14 +67,69 @@ public abstract class Curve
 
    // concrete methods
 
+   // curves are immutable, so these are worked out once, when first asked for, and kept
+   //
+   // (not synchronized, but what we keep is immutable too, so the worst another thread can do is work it out again)
+
+   public Box boundingBox()
+   {
+      Box ret = m_bounding_box;
+
+      if (ret == null)
+      {
+         ret = computeBoundingBox();
+         m_bounding_box = ret;
+      }
+
+      return ret;
+   }
+
    public XY startPos()
    {
-      return computePos(StartParam);
+      XY ret = m_start_pos;
+
+      if (ret == null)
+      {
+         ret = computePos(StartParam);
+         m_start_pos = ret;
+      }
+
+      return ret;
    }
 
    public XY endPos()
    {
-      return computePos(EndParam);
+      XY ret = m_end_pos;
+
+      if (ret == null)
+      {
+         ret = computePos(EndParam);
+         m_end_pos = ret;
+      }
+
+      return ret;
+   }
+
+   // the bounding box's extents, without making anything once it's been worked out
+
+   public double minX()
+   {
+      return boundingBox().Min.X;
+   }
+
+   public double minY()
+   {
+      return boundingBox().Min.Y;
+   }
+
+   public double maxX()
+   {
+      return boundingBox().Max.X;
+   }
+
+   public double maxY()
+   {
+      return boundingBox().Max.Y;
    }
 
    public double paramRange()
@@ -98,4 +153,8 @@ public abstract class Curve
    {
       return Math.min(Math.max(p, StartParam), EndParam);
    }
+
+   private Box m_bounding_box;
+   private XY m_start_pos;
+   private XY m_end_pos;
 }
@@ -0,0 +1,92 @@
+package engine.brep;
+
+import java.util.List;
+
+// curves bucketed on Y, so we can find those which reach a given Y without looking at them all
+//
+// the buckets evenly divide the Y range of all the curves, about one bucket per curve, and each curve is listed in
+// every bucket its Y range (padded) overlaps, so a query only looks through one bucket, which for our levels (lots
+// of short curves) only holds a few, flat arrays as JointIndex
+class CurveYIndex
+{
+   CurveYIndex(List<Curve> curves, double pad)
+   {
+      int n = curves.size();
+
+      double min_y = Double.POSITIVE_INFINITY;
+      double max_y = Double.NEGATIVE_INFINITY;
+
+      for (Curve c : curves)
+      {
+         min_y = Math.min(min_y, c.minY() - pad);
+         max_y = Math.max(max_y, c.maxY() + pad);
+      }
+
+      m_min_y = min_y;
+      m_num_buckets = max_y > min_y ? Math.max(1, n) : 1;
+      m_bucket_height = max_y > min_y ? (max_y - min_y) / m_num_buckets : 1;
+
+      // count, then fill, each bucket's entries
+      m_bucket_starts = new int[m_num_buckets + 1];
+
+      for (Curve c : curves)
+      {
+         for (int b = bucket(c.minY() - pad); b <= bucket(c.maxY() + pad); b++)
+         {
+            m_bucket_starts[b + 1]++;
+         }
+      }
+
+      for (int b = 0; b < m_num_buckets; b++)
+      {
+         m_bucket_starts[b + 1] += m_bucket_starts[b];
+      }
+
+      m_entries = new int[m_bucket_starts[m_num_buckets]];
+      int[] fill = new int[m_num_buckets];
+
+      for (int i = 0; i < n; i++)
+      {
+         Curve c = curves.get(i);
+
+         for (int b = bucket(c.minY() - pad); b <= bucket(c.maxY() + pad); b++)
+         {
+            m_entries[m_bucket_starts[b] + fill[b]++] = i;
+         }
+      }
+   }
+
+   private int bucket(double y)
+   {
+      int b = (int)Math.floor((y - m_min_y) / m_bucket_height);
+
+      return Math.max(0, Math.min(m_num_buckets - 1, b));
+   }
+
+   // the entries to look through for y, from firstEntry up to (not including) endEntry, with curveOf giving the
+   // index of each one's curve, in ascending order
+   //
+   // every curve whose padded Y range contains y is there, but so may be some which only come close
+   int firstEntry(double y)
+   {
+      return m_bucket_starts[bucket(y)];
+   }
+
+   int endEntry(double y)
+   {
+      return m_bucket_starts[bucket(y) + 1];
+   }
+
+   int curveOf(int entry)
+   {
+      return m_entries[entry];
+   }
+
+   private final double m_min_y;
+   private final int m_num_buckets;
+   private final double m_bucket_height;
+
+   // per bucket, where its entries start in m_entries (and one more on the end, where the last one's stop)
+   private final int[] m_bucket_starts;
+   private final int[] m_entries;
+}
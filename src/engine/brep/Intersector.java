@@ -7,6 +7,26 @@ import java.util.stream.Collectors;
 
 class Intersector
 {
+   // how union decides which of the curves, once split where they cross, are inside the result and dropped
+   enum Classification
+   {
+      // fire randomly angled lines through each curve and count crossings along them, lines passing too
+      // close to a joint or grazing a curve are retried, and union gives up (returning null) after 25 tries
+      CuttingLines,
+      // work out the winding number just either side of each curve, which needs no Random and can't fail
+      WindingNumbers
+   }
+
+   Intersector()
+   {
+      this(Classification.CuttingLines);
+   }
+
+   Intersector(Classification classification)
+   {
+      m_classification = classification;
+   }
+
    // only non-private for unit-testing
    static class AnnotatedCurve
    {
@@ -91,9 +111,7 @@ class Intersector
 
       for (ArrayList<Curve> alc1 : working_loops1.values())
       {
-         Box bound = alc1.stream()
-               .map(Curve::boundingBox)
-               .reduce(new Box(), Box::union);
+         Box bound = Loop.bounds(alc1);
 
          bound_map1.put(alc1, bound);
       }
@@ -102,9 +120,7 @@ class Intersector
 
       for (ArrayList<Curve> alc2 : working_loops2.values())
       {
-         Box bound = alc2.stream()
-               .map(Curve::boundingBox)
-               .reduce(new Box(), Box::union);
+         Box bound = Loop.bounds(alc2);
 
          bound_map2.put(alc2, bound);
       }
@@ -187,18 +203,29 @@ class Intersector
 
       open.addAll(forward_annotations_map.values());
 
-      HashSet<XY> curve_joints = all_curves.stream()
-            .map(Curve::startPos)
-            .collect(Collectors.toCollection(HashSet::new));
+      if (m_classification == Classification.WindingNumbers)
+      {
+         ArrayList<ArrayList<Curve>> all_loops = new ArrayList<>(working_loops1.values());
+         all_loops.addAll(working_loops2.values());
+
+         classifyInternalCurves(tol, all_loops, forward_annotations_map, open);
+      }
+      else
+      {
+         JointIndex curve_joints = new JointIndex(all_curves.stream()
+               .map(Curve::startPos)
+               .collect(Collectors.toCollection(HashSet::new)));
 
-      // bounding box allows us to create cutting lines that definitely exceed all loop boundaries
-      Box bounds = all_curves.stream().map(Curve::boundingBox).reduce(new Box(), (b, a) -> a.union(b));
+         // bounding box allows us to create cutting lines that definitely exceed all loop boundaries
+         Box bounds = Loop.bounds(all_curves);
 
-      // but all we need from that is the max length in the box
-      Double diameter = bounds.diagonal().length();
+         // but all we need from that is the max length in the box
+         Double diameter = bounds.diagonal().length();
 
-      if (!extractInternalCurves(tol, random, forward_annotations_map, all_curves, open, curve_joints, diameter))
-         return null;
+         if (!extractInternalCurves(tol, random, forward_annotations_map, all_curves, open, curve_joints,
+               diameter))
+            return null;
+      }
 
       while (open.size() > 0)
       {
@@ -220,7 +247,7 @@ class Intersector
 
    boolean extractInternalCurves(double tol, Random random,
          HashMap<Curve, AnnotatedCurve> forward_annotations_map, HashSet<Curve> all_curves,
-         HashSet<AnnotatedCurve> open, HashSet<XY> curve_joints, Double diameter)
+         HashSet<AnnotatedCurve> open, JointIndex curve_joints, Double diameter)
    {
       for (Curve c : all_curves)
       {
@@ -265,6 +292,143 @@ class Intersector
       return true;
    }
 
+   // the same job as extractInternalCurves, without cutting lines
+   //
+   // each open curve is probed at two points just either side of its mid-point, and the winding number of all
+   // the loops at each (see BRepUtil.sweptAngle) tells us whether it divides outside (0) from inside (1), in
+   // which case it's part of the result, otherwise it is removed from open
+   //
+   // rather than sum the swept angle of every curve, we take the angle of each curve's end about the probe, with
+   // the cut running from the probe in +X (see cutAngle) a curve which keeps clear of the cut sweeps through the
+   // difference of its ends' angles, so taking that off its swept angle leaves nothing, and around a loop the
+   // differences add up to nothing too, so only the curves near the cut need looking at, which the curves indexed
+   // on Y (see CurveYIndex) give us, measuring each from the end of the curve before it, so the loop's
+   // differences still add up to nothing where curves' ends don't quite meet
+   //
+   // curves lying on top of one another (e.g. from two loops sharing an edge) all sit between the two points,
+   // we step across them one at a time and a curve stays if its own step is 0 -> 1 or 1 -> 0, curves taking us
+   // further from that range go first, so an edge shared by loops on its two sides is dropped and one of two
+   // coincident edges facing the same way stays, ties go by loop number so the curves agree between them
+   //
+   // non-private only for unit-tests
+   void classifyInternalCurves(double tol, Collection<ArrayList<Curve>> loops,
+         HashMap<Curve, AnnotatedCurve> forward_annotations_map, HashSet<AnnotatedCurve> open)
+   {
+      ArrayList<Curve> curves = new ArrayList<>();
+      // for each curve, the end of the one before it in its loop, which is where it starts, give or take
+      ArrayList<XY> prev_ends = new ArrayList<>();
+
+      for (ArrayList<Curve> alc : loops)
+      {
+         for (int i = 0; i < alc.size(); i++)
+         {
+            curves.add(alc.get(i));
+            prev_ends.add(alc.get((i + alc.size() - 1) % alc.size()).endPos());
+         }
+      }
+
+      // far enough that curves' ends not quite meeting can't put one end of a gap on the cut
+      double pad = tol * 2;
+
+      CurveYIndex index = new CurveYIndex(curves, pad);
+
+      for (AnnotatedCurve ac : new ArrayList<>(open))
+      {
+         Curve c = ac.Curve;
+         double mid_param = (c.StartParam + c.EndParam) / 2;
+         XY mid_point = c.computePos(mid_param);
+         XY normal = c.tangent(mid_param).rot270();
+
+         // the same way for curves facing either way along the same line, so those agree on the order they
+         // are stepped across
+         if (normal.X < 0 || (normal.X == 0 && normal.Y < 0))
+         {
+            normal = normal.negate();
+         }
+
+         // close enough that only curves on top of this one lie between the points, even when it is very short
+         double offset = Math.min(tol / 10, c.length() / 4);
+
+         XY before = mid_point.minus(normal.multiply(offset));
+         XY after = mid_point.plus(normal.multiply(offset));
+
+         double angle_before = 0;
+
+         for (int e = index.firstEntry(before.Y); e < index.endEntry(before.Y); e++)
+         {
+            int i = index.curveOf(e);
+            Curve c_other = curves.get(i);
+
+            // clear of the cut
+            if (c_other.maxX() + pad < before.X
+                  || c_other.minY() - pad > before.Y || c_other.maxY() + pad < before.Y)
+               continue;
+
+            angle_before += BRepUtil.sweptAngle(c_other, before)
+                  - (cutAngle(c_other.endPos(), before) - cutAngle(prev_ends.get(i), before));
+         }
+
+         ArrayList<OrderedPair<AnnotatedCurve, Integer>> steps = new ArrayList<>();
+
+         for (int e = index.firstEntry(mid_point.Y); e < index.endEntry(mid_point.Y); e++)
+         {
+            Curve c_other = curves.get(index.curveOf(e));
+
+            // only a curve passing between the points can be crossed going from one to the other
+            if (c_other.minX() - pad > mid_point.X || c_other.maxX() + pad < mid_point.X
+                  || c_other.minY() - pad > mid_point.Y || c_other.maxY() + pad < mid_point.Y)
+               continue;
+
+            double a_before = BRepUtil.sweptAngle(c_other, before);
+            double a_after = BRepUtil.sweptAngle(c_other, after);
+
+            // a curve we don't cross is seen at much the same angle from both, one we do cross is seen
+            // a whole turn differently
+            int step = (int)Math.round((a_after - a_before) / (Math.PI * 2));
+
+            if (step != 0)
+            {
+               steps.add(new OrderedPair<>(forward_annotations_map.get(c_other), step));
+            }
+         }
+
+         int winding = (int)Math.round(angle_before / (Math.PI * 2));
+
+         // away from 0 and 1 first, then in loop order
+         int away = winding > 0 ? 1 : -1;
+
+         steps.sort(Comparator.<OrderedPair<AnnotatedCurve, Integer>>comparingInt(st -> st.Second == away ? 0 : 1)
+               .thenComparingInt(st -> st.First.LoopNumber));
+
+         boolean keep = false;
+
+         for (OrderedPair<AnnotatedCurve, Integer> step : steps)
+         {
+            int next_winding = winding + step.Second;
+
+            if (step.First == ac)
+            {
+               keep = (winding == 0 && next_winding == 1) || (winding == 1 && next_winding == 0);
+               break;
+            }
+
+            winding = next_winding;
+         }
+
+         if (!keep)
+         {
+            open.remove(ac);
+         }
+      }
+   }
+
+   // the angle of pnt about centre, clockwise positive like BRepUtil.sweptAngle, jumping by a whole turn as pnt
+   // crosses the cut, which runs from centre in +X
+   private static double cutAngle(XY pnt, XY centre)
+   {
+      return -Math.atan2(centre.Y - pnt.Y, centre.X - pnt.X);
+   }
+
    // non-private only for testing
    @SuppressWarnings("WeakerAccess")
    void removeEasyLoops(HashMap<Integer, ArrayList<Curve>> working_loops,
@@ -409,7 +573,7 @@ class Intersector
    tryFindIntersections(
          XY mid_point,
          HashSet<Curve> all_curves,
-         HashSet<XY> curve_joints,
+         JointIndex curve_joints,
          double diameter, double tol,
          Random random)
    {
@@ -444,15 +608,11 @@ class Intersector
    }
 
    // public for testing
-   public boolean lineClearsPoints(LineCurve lc, HashSet<XY> curve_joints, double tol)
+   //
+   // the joints are indexed, as we try a lot of lines against the same ones (see JointIndex)
+   public boolean lineClearsPoints(LineCurve lc, JointIndex curve_joints, double tol)
    {
-      for (XY pnt : curve_joints)
-      {
-         if (Math.abs(pnt.minus(lc.Position).dot(lc.Direction.rot90())) < tol)
-            return false;
-      }
-
-      return true;
+      return !curve_joints.anyNear(lc, tol);
    }
 
    // returns a set of <engine.brep.Curve, int> pairs sorted by distance down the line
@@ -563,79 +723,187 @@ class Intersector
    // non-private only for unit-tests
    void splitCurvesAtIntersections(ArrayList<Curve> working_loop1, ArrayList<Curve> working_loop2, double tol)
    {
-      for (int i = 0; i < working_loop1.size(); i++)
-      {
-         Curve c1 = working_loop1.get(i);
-         for (int j = 0; j < working_loop2.size(); j++)
-         {
-            Curve c2 = working_loop2.get(j);
+      // most pairs of curves are nowhere near each other, so only pairs whose bounding boxes overlap go to
+      // curveCurveIntersect
+      ArrayList<ArrayList<Integer>> candidates = overlappingCurvePairs(working_loop1, working_loop2, tol);
+
+      // the pieces each of the original curves has been split into so far, in order
+      //
+      // a piece always lies within the bounding box of the curve it was cut from, so the candidates found for
+      // the curves hold for their pieces, and working through the pieces in order compares exactly the pairs
+      // we would have comparing everything with everything, in the same order, less those which cannot meet
+      ArrayList<ArrayList<Curve>> pieces1 = new ArrayList<>();
+      ArrayList<ArrayList<Curve>> pieces2 = new ArrayList<>();
 
-            boolean any_splits;
+      working_loop1.forEach(c -> pieces1.add(new ArrayList<>(Collections.singletonList(c))));
+      working_loop2.forEach(c -> pieces2.add(new ArrayList<>(Collections.singletonList(c))));
 
-            do
-            {
-               any_splits = false;
+      for (int a = 0; a < pieces1.size(); a++)
+      {
+         ArrayList<Curve> a_pieces = pieces1.get(a);
 
-               ArrayList<OrderedPair<Double, Double>> ret = BRepUtil.curveCurveIntersect(c1, c2);
+         for (int i = 0; i < a_pieces.size(); i++)
+         {
+            Curve c1 = a_pieces.get(i);
 
-               if (ret == null)
-                  break;
+            for (int b : candidates.get(a))
+            {
+               ArrayList<Curve> b_pieces = pieces2.get(b);
 
-               // we only count up in case the earlier entries fall close to existing splits and
-               // are ignored, otherwise if the first intersection causes a split
-               // we exit this loop immediately and look at the first pair from the newly inserted curve(s)
-               // instead
-               for (int k = 0; k < ret.size() && !any_splits; k++)
+               for (int j = 0; j < b_pieces.size(); j++)
                {
-                  OrderedPair<Double, Double> split_points = ret.get(k);
+                  Curve c2 = b_pieces.get(j);
 
-                  double start_dist = c1.paramCoordinateDist(c1.StartParam, split_points.First);
-                  double end_dist = c1.paramCoordinateDist(c1.EndParam, split_points.First);
+                  boolean any_splits;
 
-                  // if we are far enough from existing splits
-                  if (start_dist > tol && end_dist > tol)
-                  {
-                     any_splits = true;
-
-                     Curve c1split1 = c1.cloneWithChangedParams(c1.StartParam, split_points.First);
-                     Curve c1split2 = c1.cloneWithChangedParams(split_points.First, c1.EndParam);
-
-                     working_loop1.set(i, c1split1);
-                     working_loop1.add(i + 1, c1split2);
-
-                     // once we've split once any second split could be in either new curve
-                     // and also any further comparisons of the original c1 now need to be done separately on the two
-                     // fragments
-                     //
-                     // so all-in-all simplest seems to be to pretend the two earlier fragments were where we were
-                     // all along and re-start this (c1, c2) pair using them
-                     //
-                     // this will lead to a little repetition, as c1split2 will be checked against working_list2 items
-                     // at indices < j, but hardly seems worth worrying about for small-ish curve numbers with few splits
-                     c1 = c1split1;
-                  }
-
-                  start_dist = c2.paramCoordinateDist(c2.StartParam, split_points.Second);
-                  end_dist = c2.paramCoordinateDist(c2.EndParam, split_points.Second);
-
-                  // if we are far enough from existing splits
-                  if (start_dist > tol && end_dist > tol)
+                  do
                   {
-                     any_splits = true;
+                     any_splits = false;
+
+                     ArrayList<OrderedPair<Double, Double>> ret = BRepUtil.curveCurveIntersect(c1, c2);
+
+                     if (ret == null)
+                        break;
+
+                     // we only count up in case the earlier entries fall close to existing splits and
+                     // are ignored, otherwise if the first intersection causes a split
+                     // we exit this loop immediately and look at the first pair from the newly inserted
+                     // curve(s) instead
+                     for (int k = 0; k < ret.size() && !any_splits; k++)
+                     {
+                        OrderedPair<Double, Double> split_points = ret.get(k);
+
+                        double start_dist = c1.paramCoordinateDist(c1.StartParam, split_points.First);
+                        double end_dist = c1.paramCoordinateDist(c1.EndParam, split_points.First);
+
+                        // if we are far enough from existing splits
+                        if (start_dist > tol && end_dist > tol)
+                        {
+                           any_splits = true;
+
+                           Curve c1split1 = c1.cloneWithChangedParams(c1.StartParam, split_points.First);
+                           Curve c1split2 = c1.cloneWithChangedParams(split_points.First, c1.EndParam);
+
+                           a_pieces.set(i, c1split1);
+                           a_pieces.add(i + 1, c1split2);
+
+                           // once we've split once any second split could be in either new curve
+                           // and also any further comparisons of the original c1 now need to be done separately
+                           // on the two fragments
+                           //
+                           // so all-in-all simplest seems to be to pretend the two earlier fragments were where we
+                           // were all along and re-start this (c1, c2) pair using them
+                           //
+                           // this will lead to a little repetition, as c1split2 will be checked against b_pieces
+                           // items at indices < j, but hardly seems worth worrying about for small-ish curve numbers
+                           // with few splits
+                           c1 = c1split1;
+                        }
+
+                        start_dist = c2.paramCoordinateDist(c2.StartParam, split_points.Second);
+                        end_dist = c2.paramCoordinateDist(c2.EndParam, split_points.Second);
+
+                        // if we are far enough from existing splits
+                        if (start_dist > tol && end_dist > tol)
+                        {
+                           any_splits = true;
+
+                           Curve c2split1 = c2.cloneWithChangedParams(c2.StartParam, split_points.Second);
+                           Curve c2split2 = c2.cloneWithChangedParams(split_points.Second, c2.EndParam);
+
+                           b_pieces.set(j, c2split1);
+                           b_pieces.add(j + 1, c2split2);
+
+                           // see comment in previous if-block
+                           c2 = c2split1;
+                        }
+                     }
+                  } while (any_splits);
+               }
+            }
+         }
+      }
 
-                     Curve c2split1 = c2.cloneWithChangedParams(c2.StartParam, split_points.Second);
-                     Curve c2split2 = c2.cloneWithChangedParams(split_points.Second, c2.EndParam);
+      working_loop1.clear();
+      pieces1.forEach(working_loop1::addAll);
 
-                     working_loop2.set(j, c2split1);
-                     working_loop2.add(j + 1, c2split2);
+      working_loop2.clear();
+      pieces2.forEach(working_loop2::addAll);
+   }
 
-                     // see comment in previous if-block
-                     c2 = c2split1;
-                  }
+   // for each curve in curves1, the indices of the curves in curves2 whose bounding boxes come within tol of
+   // its own, in ascending order
+   //
+   // sort-and-sweep: all the boxes are sorted on their min X and swept across in that order, keeping those
+   // from each list whose X range we are still inside, so Y ranges are only compared for boxes overlapping in X
+   //
+   // non-private only for unit-tests
+   static ArrayList<ArrayList<Integer>> overlappingCurvePairs(List<Curve> curves1, List<Curve> curves2,
+         double tol)
+   {
+      int n1 = curves1.size();
+      int n = n1 + curves2.size();
+
+      // curves from both lists, curves2's numbered on from curves1's
+      Curve[] curves = new Curve[n];
+
+      for (int i = 0; i < n; i++)
+      {
+         curves[i] = i < n1 ? curves1.get(i) : curves2.get(i - n1);
+      }
+
+      Integer[] order = new Integer[n];
+
+      for (int i = 0; i < n; i++)
+      {
+         order[i] = i;
+      }
+
+      Arrays.sort(order, Comparator.comparingDouble(i -> curves[i].minX()));
+
+      ArrayList<ArrayList<Integer>> ret = new ArrayList<>();
+
+      for (int i = 0; i < n1; i++)
+      {
+         ret.add(new ArrayList<>());
+      }
+
+      ArrayList<Integer> active1 = new ArrayList<>();
+      ArrayList<Integer> active2 = new ArrayList<>();
+
+      for (int i : order)
+      {
+         Curve c = curves[i];
+         boolean from1 = i < n1;
+
+         ArrayList<Integer> others = from1 ? active2 : active1;
+
+         // anything which ends before we start, ends before everything after us starts too
+         others.removeIf(o -> curves[o].maxX() + tol < c.minX());
+
+         for (int o : others)
+         {
+            Curve other = curves[o];
+
+            if (other.minY() - tol <= c.maxY() && c.minY() - tol <= other.maxY())
+            {
+               if (from1)
+               {
+                  ret.get(i).add(o - n1);
                }
-            } while (any_splits);
+               else
+               {
+                  ret.get(o).add(i - n1);
+               }
+            }
          }
+
+         (from1 ? active1 : active2).add(i);
       }
+
+      ret.forEach(Collections::sort);
+
+      return ret;
    }
 
    // only non-private for unit-testing
@@ -667,6 +935,8 @@ class Intersector
 
       ac_forward_last.Next = ac_forward_first;
    }
+
+   private final Classification m_classification;
 }
 
 //      if (visualise)
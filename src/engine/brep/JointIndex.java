@@ -0,0 +1,160 @@
+package engine.brep;
+
+import engine.XY;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+// the joints between curves, indexed so we can ask whether any are close to a line without looking at them all
+//
+// a k-d tree in flat arrays: the points are ordered so that each node covers a range of them, split at the median
+// along whichever axis the range is wider in, and each node keeps the bounds of its range, the distance across a
+// line is linear, so it is largest and smallest over a node's bounds at their corners, and whole nodes which those
+// put clear of the line are skipped
+class JointIndex
+{
+   JointIndex(Collection<XY> joints)
+   {
+      XY[] pnts = joints.toArray(new XY[0]);
+      int n = pnts.length;
+
+      m_x = new double[n];
+      m_y = new double[n];
+
+      // a binary tree with at most s_leaf_size points per leaf has fewer than 2n nodes
+      int max_nodes = Math.max(1, 2 * n);
+
+      m_start = new int[max_nodes];
+      m_end = new int[max_nodes];
+      m_left = new int[max_nodes];
+      m_right = new int[max_nodes];
+      m_min_x = new double[max_nodes];
+      m_min_y = new double[max_nodes];
+      m_max_x = new double[max_nodes];
+      m_max_y = new double[max_nodes];
+
+      double biggest = 0;
+
+      for (XY p : pnts)
+      {
+         biggest = Math.max(biggest, Math.max(Math.abs(p.X), Math.abs(p.Y)));
+      }
+
+      // corner distances and point distances are rounded differently, so only skip a node when its corners are
+      // clear by a little more than that could be
+      m_slack = biggest * 1e-12;
+
+      if (n > 0)
+      {
+         build(pnts, 0, n);
+      }
+
+      for (int i = 0; i < n; i++)
+      {
+         m_x[i] = pnts[i].X;
+         m_y[i] = pnts[i].Y;
+      }
+   }
+
+   private int build(XY[] pnts, int start, int end)
+   {
+      int node = m_num_nodes++;
+
+      m_start[node] = start;
+      m_end[node] = end;
+      m_left[node] = -1;
+      m_right[node] = -1;
+
+      double min_x = Double.POSITIVE_INFINITY;
+      double min_y = Double.POSITIVE_INFINITY;
+      double max_x = Double.NEGATIVE_INFINITY;
+      double max_y = Double.NEGATIVE_INFINITY;
+
+      for (int i = start; i < end; i++)
+      {
+         min_x = Math.min(min_x, pnts[i].X);
+         min_y = Math.min(min_y, pnts[i].Y);
+         max_x = Math.max(max_x, pnts[i].X);
+         max_y = Math.max(max_y, pnts[i].Y);
+      }
+
+      m_min_x[node] = min_x;
+      m_min_y[node] = min_y;
+      m_max_x[node] = max_x;
+      m_max_y[node] = max_y;
+
+      if (end - start > s_leaf_size)
+      {
+         Arrays.sort(pnts, start, end, max_x - min_x > max_y - min_y
+               ? Comparator.comparingDouble((XY p) -> p.X)
+               : Comparator.comparingDouble((XY p) -> p.Y));
+
+         int mid = (start + end) / 2;
+
+         m_left[node] = build(pnts, start, mid);
+         m_right[node] = build(pnts, mid, end);
+      }
+
+      return node;
+   }
+
+   // true if any joint is less than tol from the (infinite) line through lc
+   //
+   // measured just as Intersector.lineClearsPoints always has, across the line from its Position
+   boolean anyNear(LineCurve lc, double tol)
+   {
+      if (m_num_nodes == 0)
+         return false;
+
+      // Direction.rot90()
+      return anyNear(0, lc.Position.X, lc.Position.Y, lc.Direction.Y, -lc.Direction.X, tol);
+   }
+
+   private boolean anyNear(int node, double px, double py, double nx, double ny, double tol)
+   {
+      double d1 = (m_min_x[node] - px) * nx + (m_min_y[node] - py) * ny;
+      double d2 = (m_max_x[node] - px) * nx + (m_min_y[node] - py) * ny;
+      double d3 = (m_min_x[node] - px) * nx + (m_max_y[node] - py) * ny;
+      double d4 = (m_max_x[node] - px) * nx + (m_max_y[node] - py) * ny;
+
+      double lo = Math.min(Math.min(d1, d2), Math.min(d3, d4));
+      double hi = Math.max(Math.max(d1, d2), Math.max(d3, d4));
+
+      if (lo >= tol + m_slack || hi <= -tol - m_slack)
+         return false;
+
+      if (m_left[node] == -1)
+      {
+         for (int i = m_start[node]; i < m_end[node]; i++)
+         {
+            if (Math.abs((m_x[i] - px) * nx + (m_y[i] - py) * ny) < tol)
+               return true;
+         }
+
+         return false;
+      }
+
+      return anyNear(m_left[node], px, py, nx, ny, tol)
+            || anyNear(m_right[node], px, py, nx, ny, tol);
+   }
+
+   private final static int s_leaf_size = 8;
+
+   // the points, in tree order
+   private final double[] m_x;
+   private final double[] m_y;
+
+   // per node, the range of points it covers, its children (-1 in a leaf) and its bounds
+   private final int[] m_start;
+   private final int[] m_end;
+   private final int[] m_left;
+   private final int[] m_right;
+   private final double[] m_min_x;
+   private final double[] m_min_y;
+   private final double[] m_max_x;
+   private final double[] m_max_y;
+   private int m_num_nodes = 0;
+
+   private final double m_slack;
+}
@@ -59,7 +59,7 @@ public class LineCurve extends Curve
    }
 
    @Override
-   public Box boundingBox()
+   protected Box computeBoundingBox()
    {
       return new Box(startPos().min(endPos()),
             startPos().max(endPos()));
@@ -5,6 +5,7 @@ import engine.OrderedPair;
 import engine.XY;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -196,12 +197,45 @@ public class Loop
       return ret;
    }
 
+   // loops are immutable, so worked out once (see Curve.boundingBox())
    Box getBounds()
    {
-      return m_curves.stream().map(Curve::boundingBox).reduce(new Box(), (b, a) -> a.union(b));
+      Box ret = m_bounds;
+
+      if (ret == null)
+      {
+         ret = bounds(m_curves);
+         m_bounds = ret;
+      }
+
+      return ret;
+   }
+
+   // the bounds of some curves, from their cached extents, so the only thing made is the returned box
+   static Box bounds(Collection<Curve> curves)
+   {
+      if (curves.isEmpty())
+         return new Box();
+
+      double min_x = Double.POSITIVE_INFINITY;
+      double min_y = Double.POSITIVE_INFINITY;
+      double max_x = Double.NEGATIVE_INFINITY;
+      double max_y = Double.NEGATIVE_INFINITY;
+
+      for(Curve c : curves)
+      {
+         min_x = Math.min(min_x, c.minX());
+         min_y = Math.min(min_y, c.minY());
+         max_x = Math.max(max_x, c.maxX());
+         max_y = Math.max(max_y, c.maxY());
+      }
+
+      return new Box(new XY(min_x, min_y), new XY(max_x, max_y));
    }
 
    private final ArrayList<Curve> m_curves = new ArrayList<>();
 
+   private Box m_bounds;
+
    private final double m_param_range;
 }
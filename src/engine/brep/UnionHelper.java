@@ -16,10 +16,28 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @SuppressWarnings("WeakerAccess")
 public class UnionHelper
 {
+   // unions the base loops one at a time, into one growing set
+   public UnionHelper()
+   {
+      this(null);
+   }
+
+   // unions the base loops as a balanced tree, pairing them up and unioning the pairs at the same time on
+   // the pool, then pairing up the results, and so on, so each union only re-splits and re-traces the curves
+   // of the two halves it joins, rather than everything so far
+   //
+   // what we make doesn't depend on the pool (but it isn't quite the same as unioning one at a time)
+   public UnionHelper(ForkJoinPool pool)
+   {
+      m_pool = pool;
+   }
+
    // exposed for testing but there could be cases where client code wants to reach-in
    // and add some special piece of geometry
    public void addBaseLoop(Loop l)
@@ -45,8 +63,19 @@ public class UnionHelper
    }
 
    // returns true when all complete
+   //
+   // with a pool, each call does a whole level of the tree of base loop unions, which empties the base loops
+   // on the first call, the detail loop sets are unioned in one at a time afterwards, either way, as they
+   // can subtract from the base loops so need those to be complete
    public boolean unionOne(Random r)
    {
+      if (m_pool != null && (m_tree_level != null || m_base_loops.size() > 0))
+      {
+         unionTreeLevel(r);
+
+         return false;
+      }
+
       if (m_base_loops.size() > 0)
       {
          Loop l = m_base_loops.get(0);
@@ -75,6 +104,66 @@ public class UnionHelper
       return true;
    }
 
+   private void unionTreeLevel(Random r)
+   {
+      if (m_tree_level == null)
+      {
+         m_tree_level = new ArrayList<>();
+
+         if (m_merged_loops.size() > 0)
+         {
+            m_tree_level.add(m_merged_loops);
+         }
+
+         for (Loop l : m_base_loops)
+         {
+            m_tree_level.add(new LoopSet(l));
+         }
+
+         m_base_loops.clear();
+      }
+
+      ArrayList<ForkJoinTask<LoopSet>> unions = new ArrayList<>();
+
+      for (int i = 0; i + 1 < m_tree_level.size(); i += 2)
+      {
+         LoopSet ls1 = m_tree_level.get(i);
+         LoopSet ls2 = m_tree_level.get(i + 1);
+
+         // each union's own Random, seeded here in order, so which thread does which doesn't matter
+         Random pair_random = new Random(r.nextLong());
+
+         unions.add(m_pool.submit(() -> m_intersector.union(ls1, ls2, 1e-6, pair_random)));
+      }
+
+      ArrayList<LoopSet> next_level = new ArrayList<>();
+
+      for (ForkJoinTask<LoopSet> union : unions)
+      {
+         LoopSet ls = union.join();
+
+         assert ls != null;
+
+         next_level.add(ls);
+      }
+
+      // an odd one out goes up a level as it is
+      if (m_tree_level.size() % 2 == 1)
+      {
+         next_level.add(m_tree_level.get(m_tree_level.size() - 1));
+      }
+
+      if (next_level.size() > 1)
+      {
+         m_tree_level = next_level;
+      }
+      else
+      {
+         m_merged_loops = next_level.size() == 1 ? next_level.get(0) : new LoopSet();
+         m_tree_level = null;
+      }
+   }
+
    public void generateGeometry(Graph graph)
    {
       for (INode n : graph.allGraphNodes())
@@ -187,8 +276,14 @@ public class UnionHelper
 
    private LoopSet m_merged_loops = new LoopSet();
 
+   // null unless we are part way up a tree of unions, when it is what is left to union at the current level
+   private ArrayList<LoopSet> m_tree_level;
+   private final ForkJoinPool m_pool;
+
    private Box m_bounds;
    private XY m_start_pos;
 
-   private final Intersector m_intersector = new Intersector();
+   // winding numbers, so unions don't depend on the Random handed to unionOne, or fail for want of a good
+   // cutting line
+   private final Intersector m_intersector = new Intersector(Intersector.Classification.WindingNumbers);
 }
@@ -0,0 +1,194 @@
+package engine.graph;
+
+import engine.Util;
+
+// finds crossing edges by sorting them on their minimum x and sweeping across, only testing pairs whose
+// x ranges overlap (and then only testing exactly if their y ranges overlap too)
+//
+// edges are given as pairs of node indices, and positions as arrays indexed by those, so that the relaxers can
+// hand over their own arrays, after setEdges everything is reused and nothing is allocated
+//
+// the sort order is kept between calls, and the merge sort skips merging runs which are already in order,
+// so when the positions have only moved a little (as in relaxation) re-sorting is cheap
+//
+// this is a sort-and-sweep over x-intervals, not a full Bentley-Ottmann sweep, so the worst case
+// (lots of long edges all overlapping in x) is still quadratic, but on our layouts edges are short compared to the
+// whole map and the number of pairs tested is close to E log E plus the number of genuine near misses
+public class CrossingEdgeFinder
+{
+   public interface ICrossingListener
+   {
+      // edge1 is always the higher-numbered edge
+      void crossing(int edge1, int edge2);
+   }
+
+   public void setEdges(int[] starts, int[] ends, int count)
+   {
+      m_starts = starts;
+      m_ends = ends;
+      m_count = count;
+
+      m_order = new int[count];
+      m_temp = new int[count];
+      m_active = new int[count];
+
+      m_min_xs = new double[count];
+      m_max_xs = new double[count];
+      m_min_ys = new double[count];
+      m_max_ys = new double[count];
+
+      for(int i = 0; i < count; i++)
+      {
+         m_order[i] = i;
+      }
+   }
+
+   // early-out, as soon as we see a crossing
+   public boolean hasCrossing(double[] xs, double[] ys)
+   {
+      return sweep(xs, ys, null);
+   }
+
+   // tells the listener about every crossing, returns whether there were any
+   public boolean findAll(double[] xs, double[] ys, ICrossingListener listener)
+   {
+      return sweep(xs, ys, listener);
+   }
+
+   private boolean sweep(double[] xs, double[] ys, ICrossingListener listener)
+   {
+      for(int i = 0; i < m_count; i++)
+      {
+         double x1 = xs[m_starts[i]];
+         double x2 = xs[m_ends[i]];
+         double y1 = ys[m_starts[i]];
+         double y2 = ys[m_ends[i]];
+
+         // padded slightly, so that rounding in the exact test can't find a crossing we would have skipped
+         m_min_xs[i] = Math.min(x1, x2) - s_tolerance;
+         m_max_xs[i] = Math.max(x1, x2) + s_tolerance;
+         m_min_ys[i] = Math.min(y1, y2) - s_tolerance;
+         m_max_ys[i] = Math.max(y1, y2) + s_tolerance;
+      }
+
+      sort(0, m_count);
+
+      boolean found = false;
+      int num_active = 0;
+
+      for(int o = 0; o < m_count; o++)
+      {
+         int i = m_order[o];
+         double min_x = m_min_xs[i];
+
+         // drop anything which finishes before we start, compacting as we go
+         int kept = 0;
+
+         for(int a = 0; a < num_active; a++)
+         {
+            int j = m_active[a];
+
+            if (m_max_xs[j] >= min_x)
+            {
+               m_active[kept] = j;
+               kept++;
+            }
+         }
+
+         num_active = kept;
+
+         for(int a = 0; a < num_active; a++)
+         {
+            int j = m_active[a];
+
+            if (m_max_ys[j] < m_min_ys[i] || m_min_ys[j] > m_max_ys[i])
+               continue;
+
+            // test in the same order as the old all-pairs loop did
+            int hi = Math.max(i, j);
+            int lo = Math.min(i, j);
+
+            if (edgesCross(hi, lo, xs, ys))
+            {
+               if (listener == null)
+                  return true;
+
+               listener.crossing(hi, lo);
+               found = true;
+            }
+         }
+
+         m_active[num_active] = i;
+         num_active++;
+      }
+
+      return found;
+   }
+
+   private boolean edgesCross(int e1, int e2, double[] xs, double[] ys)
+   {
+      int s1 = m_starts[e1];
+      int t1 = m_ends[e1];
+      int s2 = m_starts[e2];
+      int t2 = m_ends[e2];
+
+      // connecting lines not considered crossing
+      if (s1 == s2 || s1 == t2 || t1 == s2 || t1 == t2)
+         return false;
+
+      // this only allocates when it finds an intersection
+      return Util.edgeIntersect(xs[s1], ys[s1], xs[t1], ys[t1],
+            xs[s2], ys[s2], xs[t2], ys[t2]) != null;
+   }
+
+   // merge sort of m_order[from, to) on m_min_xs, using m_temp as scratch
+   private void sort(int from, int to)
+   {
+      if (to - from < 2)
+         return;
+
+      int mid = (from + to) >>> 1;
+
+      sort(from, mid);
+      sort(mid, to);
+
+      // already in order, which is the usual case when things have only moved a little
+      if (m_min_xs[m_order[mid - 1]] <= m_min_xs[m_order[mid]])
+         return;
+
+      System.arraycopy(m_order, from, m_temp, from, to - from);
+
+      int l = from;
+      int r = mid;
+
+      for(int k = from; k < to; k++)
+      {
+         if (r >= to || (l < mid && m_min_xs[m_temp[l]] <= m_min_xs[m_temp[r]]))
+         {
+            m_order[k] = m_temp[l];
+            l++;
+         }
+         else
+         {
+            m_order[k] = m_temp[r];
+            r++;
+         }
+      }
+   }
+
+   private int[] m_starts = new int[0];
+   private int[] m_ends = new int[0];
+   private int m_count;
+
+   // edge indices sorted on minimum x
+   private int[] m_order = new int[0];
+   private int[] m_temp = new int[0];
+   private int[] m_active = new int[0];
+
+   private double[] m_min_xs = new double[0];
+   private double[] m_max_xs = new double[0];
+   private double[] m_min_ys = new double[0];
+   private double[] m_max_ys = new double[0];
+
+   private final static double s_tolerance = 1e-6;
+}
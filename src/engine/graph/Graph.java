@@ -4,33 +4,40 @@ import engine.Box;
 import engine.XY;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 public class Graph
 {
    public INode addNode(String name, String codes, String template, double rad)
    {
-      return addNode(name, codes, template, rad, CircularGeomLayout::createFromNode);
+      return addNode(name, codes, template, rad, Node.DefaultLayourGreator);
    }
 
    public INode addNode(String name, String codes, String template, double rad,
                         GeomLayout.IGeomLayoutCreateFromNode geomCreator)
    {
-      Node n = new Node(name, codes, template, geomCreator, rad);
+      Node n = new Node(name, codes, template, geomCreator, rad, m_node_ids.next());
 
+      addNodeTracked(n);
+
+      return n;
+   }
+
+   private void addNodeTracked(Node n)
+   {
       if (m_restore != null)
       {
          m_restore.AddNode(n);
       }
 
       addNodeInner(n);
-
-      return n;
    }
 
    private void addNodeInner(Node n)
    {
+      n.setGraph(this);
       m_nodes.add(n);
+      m_topology_version++;
    }
 
    boolean removeNode(INode inode)
@@ -53,18 +60,33 @@ public class Graph
       return true;
    }
 
+   // for GraphCodec, adds a node or edge without going through restore points or the nodes' connect
+   void restoreNode(Node n)
+   {
+      addNodeInner(n);
+   }
+
+   void restoreEdge(DirectedEdge e)
+   {
+      m_edges.add(e);
+      m_topology_version++;
+   }
+
    private void removeNodeInner(Node node)
    {
       m_nodes.remove(node);
+      m_topology_version++;
    }
 
    public DirectedEdge connect(INode from, INode to,
                                double min_length, double max_length, double half_width)
    {
-      return connect(from, to, min_length, max_length, half_width,
-            GeomLayout::makeDefaultCorridor);
+      return connect(from, to, min_length, max_length, half_width, DefaultCorridorCreator);
    }
 
+   public final static GeomLayout.IGeomLayoutCreateFromDirectedEdge DefaultCorridorCreator
+         = GeomLayout::makeDefaultCorridor;
+
    public DirectedEdge connect(INode from, INode to,
                                double min_length, double max_length, double half_width,
                                GeomLayout.IGeomLayoutCreateFromDirectedEdge layoutCreator)
@@ -93,6 +115,7 @@ public class Graph
             e.LayoutCreator);
 
       m_edges.add(real_edge);
+      m_topology_version++;
 
       return real_edge;
    }
@@ -126,6 +149,7 @@ public class Graph
 
       assert m_edges.contains(e);
       m_edges.remove(e);
+      m_topology_version++;
    }
 
    public int numNodes()
@@ -178,6 +202,251 @@ public class Graph
       return new Box(min, max);
    }
 
+   // an independent copy, for running steppers on without touching this graph
+   //
+   // the nodes and edges are new objects, but the nodes keep their ids (hash codes) and the copy carries on
+   // handing out ids from where this graph had got to, so what steppers do to the copy depends only on the state
+   // of this graph, the copy starts with no restore points
+   //
+   // O(nodes + edges), straight from this graph, use snapshot().fork() instead when the copy is to be made on
+   // another thread
+   public Graph copy()
+   {
+      Graph ret = new Graph();
+
+      ret.m_node_ids = m_node_ids.copy();
+      ret.m_copied_from = this;
+
+      for(Node n : m_nodes)
+      {
+         Node nn = new Node(n);
+
+         ret.m_copy_of.put(n, nn);
+         ret.addNodeInner(nn);
+      }
+
+      for(DirectedEdge e : m_edges)
+      {
+         ret.connectInner(new DirectedEdge(ret.m_copy_of.get(e.Start), ret.m_copy_of.get(e.End),
+               e.MinLength, e.MaxLength, e.HalfWidth, e.LayoutCreator));
+      }
+
+      return ret;
+   }
+
+   // an immutable record of the graph as it is now, which can be forked (see copy()) from any thread
+   //
+   // this checks every node's version against the last snapshot, O(nodes), and if nothing has changed we get
+   // the last snapshot back, otherwise the new snapshot gets its own map of node states, O(nodes) again, which
+   // shares the NodeStates of unchanged nodes, and the edge list if the topology is unchanged, so only the changed
+   // nodes (or all the edges) are recorded again
+   public GraphSnapshot snapshot()
+   {
+      GraphSnapshot prev = m_last_snapshot;
+
+      boolean same_topology = prev != null && prev.topologyVersion() == m_topology_version;
+
+      ArrayList<Node> changed = new ArrayList<>();
+
+      for(Node n : m_nodes)
+      {
+         GraphSnapshot.NodeState ns = prev != null ? prev.nodeState(n) : null;
+
+         if (ns == null || ns.Version != n.version())
+         {
+            changed.add(n);
+         }
+      }
+
+      if (same_topology && changed.isEmpty())
+         return prev;
+
+      LinkedHashMap<Node, GraphSnapshot.NodeState> states;
+      List<GraphSnapshot.EdgeState> edges;
+
+      if (same_topology)
+      {
+         // replacing an entry leaves it where it was
+         states = prev.copyNodeStates();
+         edges = prev.edgeStates();
+
+         for(Node n : changed)
+         {
+            states.put(n, new GraphSnapshot.NodeState(n));
+         }
+      }
+      else
+      {
+         states = new LinkedHashMap<>();
+
+         // in our order, sharing unchanged nodes with the last snapshot
+         for(Node n : m_nodes)
+         {
+            GraphSnapshot.NodeState ns = prev != null ? prev.nodeState(n) : null;
+
+            if (ns == null || ns.Version != n.version())
+            {
+               ns = new GraphSnapshot.NodeState(n);
+            }
+
+            states.put(n, ns);
+         }
+
+         edges = GraphSnapshot.edgeStatesOf(m_edges);
+      }
+
+      m_last_snapshot = new GraphSnapshot(this, states, edges, m_topology_version, m_node_ids.copy());
+
+      return m_last_snapshot;
+   }
+
+   static Graph fromSnapshot(GraphSnapshot s)
+   {
+      Graph ret = new Graph();
+
+      ret.m_node_ids = s.nodeIds();
+      ret.m_copied_from = s.source();
+
+      for(GraphSnapshot.NodeState ns : s.nodeStates())
+      {
+         Node nn = new Node(ns);
+
+         ret.m_copy_of.put(ns.Origin, nn);
+         ret.addNodeInner(nn);
+      }
+
+      for(GraphSnapshot.EdgeState es : s.edgeStates())
+      {
+         ret.connectInner(new DirectedEdge(ret.m_copy_of.get(es.Start), ret.m_copy_of.get(es.End),
+               es.MinLength, es.MaxLength, es.HalfWidth, es.LayoutCreator));
+      }
+
+      return ret;
+   }
+
+   // in a copy, what a node of the original became, null if that isn't a node of the original
+   public INode copyOfNode(INode original)
+   {
+      return m_copy_of.get(original);
+   }
+
+   // something code outside this package keeps alongside the graph (e.g. the relaxers' GraphDistanceStore), made the
+   // first time it is asked for, one per type, and gone along with the graph, copies and checkpoints start without any
+   public synchronized <T> T attachment(Class<T> type, Supplier<T> make)
+   {
+      return type.cast(m_attachments.computeIfAbsent(type, t -> make.get()));
+   }
+
+   // makes this graph the same as a copy of it, which steppers have since worked on
+   //
+   // this graph must not have changed since the copy was made, the changes go through the usual
+   // connect/disconnect/add/remove so the current restore point (if any) can undo them
+   //
+   // returns the copy's nodes mapped to ours
+   public Map<INode, INode> commitCopy(Graph copy)
+   {
+      if (copy.m_copied_from != this)
+         throw new IllegalArgumentException("Can only commit a copy of this graph");
+
+      // the copy's nodes, mapped back to ours
+      HashMap<INode, Node> original_of = new HashMap<>();
+
+      for(Map.Entry<Node, Node> me : copy.m_copy_of.entrySet())
+      {
+         original_of.put(me.getValue(), me.getKey());
+      }
+
+      // drop the edges which are gone, or have changed
+      for(DirectedEdge e : allGraphEdges())
+      {
+         INode c_start = copy.m_copy_of.get(e.Start);
+         INode c_end = copy.m_copy_of.get(e.End);
+
+         DirectedEdge ce = copy.contains(c_start) && copy.contains(c_end) ? c_start.getConnectionTo(c_end) : null;
+
+         if (ce == null || !sameEdgeProperties(e, ce))
+         {
+            disconnect(e.Start, e.End);
+         }
+      }
+
+      // then the nodes which are gone, which by now are unconnected
+      for(Node n : new ArrayList<>(m_nodes))
+      {
+         if (!copy.contains(copy.m_copy_of.get(n)))
+         {
+            removeNode(n);
+         }
+      }
+
+      for(Node cn : copy.m_nodes)
+      {
+         if (!original_of.containsKey(cn))
+         {
+            Node n = new Node(cn);
+
+            addNodeTracked(n);
+
+            original_of.put(cn, n);
+         }
+      }
+
+      for(DirectedEdge ce : copy.m_edges)
+      {
+         INode start = original_of.get(ce.Start);
+         INode end = original_of.get(ce.End);
+
+         if (!start.connects(end))
+         {
+            connect(start, end, ce.MinLength, ce.MaxLength, ce.HalfWidth, ce.LayoutCreator);
+         }
+      }
+
+      for(Node cn : copy.m_nodes)
+      {
+         original_of.get(cn).copyStateFrom(cn);
+      }
+
+      // carry on from where the copy got to, so later nodes don't reuse the new nodes' ids
+      m_node_ids = copy.m_node_ids.copy();
+      // which a snapshot needs to notice, even if nothing else changed
+      m_topology_version++;
+
+      return Collections.unmodifiableMap(original_of);
+   }
+
+   private static boolean sameEdgeProperties(DirectedEdge e1, DirectedEdge e2)
+   {
+      return e1.MinLength == e2.MinLength
+            && e1.MaxLength == e2.MaxLength
+            && e1.HalfWidth == e2.HalfWidth
+            && e1.LayoutCreator == e2.LayoutCreator;
+   }
+
+   // called by our nodes just before they move
+   void beforeMove(Node n)
+   {
+      if (m_restore != null)
+      {
+         m_restore.RecordPos(n);
+      }
+   }
+
+   int topologyVersion()
+   {
+      return m_topology_version;
+   }
+
+   NodeIdSource nodeIds()
+   {
+      return m_node_ids;
+   }
+
+   void setNodeIds(NodeIdSource node_ids)
+   {
+      m_node_ids = node_ids;
+   }
+
    IGraphRestore currentRestore()
    {
       return m_restore;
@@ -200,15 +469,16 @@ public class Graph
    enum RestoreAction
    {
       Make,
-      Break
+      Break,
+      Replace     // the edge was broken and made again, differently, so break the new one and make the old
    }
 
    private final static class NodePos
    {
       public final XY Pos;
-      public final INode N;
+      public final Node N;
 
-      NodePos(INode n, XY pos)
+      NodePos(Node n, XY pos)
       {
          Pos = pos;
          N = n;
@@ -232,10 +502,21 @@ public class Graph
             m_chain_from_restore.m_chain_to_restore = this;
          }
 
-         m_positions.addAll(
-               Graph.this.allGraphNodes()
-                     .stream()
-                     .map(n -> new NodePos(n, n.getPos())).collect(Collectors.toList()));
+         m_num_nodes = Graph.this.numNodes();
+      }
+
+      // a node is about to move, if it's the first time since we were made, note where it was
+      //
+      // we only need the newest restore point to do this, as restoring an older one restores all the newer ones
+      // first, a node which moves again once a newer restore point is gone may get recorded twice
+      // but as we put positions back newest first the oldest record (the right one) wins
+      void RecordPos(Node n)
+      {
+         if (n.m_pos_recorded_in != this)
+         {
+            m_positions.add(new NodePos(n, n.getPos()));
+            n.m_pos_recorded_in = this;
+         }
       }
 
       void AddNode(Node n)
@@ -264,8 +545,17 @@ public class Graph
             // restore point, so the only restore-action it can already have is "break"
 
             // in which case the net effect of an edge added and removed is nothing
-            assert ra == RestoreAction.Break;
-            m_connections.remove(e);
+            // (or, if it was a replacement, we're back to it just having been removed)
+            assert ra == RestoreAction.Break || ra == RestoreAction.Replace;
+
+            if (ra == RestoreAction.Break)
+            {
+               m_connections.remove(e);
+            }
+            else
+            {
+               m_connections.put(e, RestoreAction.Make);
+            }
          }
          else
          {
@@ -282,9 +572,18 @@ public class Graph
             // only way we can already know about an edge we are adding is if it was already removed once in the
             // context of this restore point, so the only restore-action it can already have is "break"
 
-            // in which case the net effect of an edge added and removed is nothing
+            // in which case the net effect of an edge removed and added is nothing, unless it came back different
+            // (edges are equal if their nodes are, so the key here is still the edge we removed)
             assert ra == RestoreAction.Make;
-            m_connections.remove(e);
+
+            if (sameEdgeProperties(findKey(e), e))
+            {
+               m_connections.remove(e);
+            }
+            else
+            {
+               m_connections.put(e, RestoreAction.Replace);
+            }
          }
          else
          {
@@ -309,7 +608,7 @@ public class Graph
          {
             DirectedEdge e = me.getKey();
 
-            if (me.getValue() == RestoreAction.Break)
+            if (me.getValue() != RestoreAction.Make)
             {
                assert e.Start.connects(e.End);
 
@@ -328,7 +627,7 @@ public class Graph
          {
             DirectedEdge e = me.getKey();
 
-            if (me.getValue() == RestoreAction.Make)
+            if (me.getValue() != RestoreAction.Break)
             {
                assert !e.Start.connects(e.End);
 
@@ -336,16 +635,15 @@ public class Graph
             }
          }
 
-         int restored_size = Graph.this.numNodes();
-         int prev_size = m_positions.size();
-
          // putting connections back should leave us the same size as before...
-         assert restored_size == prev_size;
+         assert Graph.this.numNodes() == m_num_nodes;
 
-         // and finally put all the positions back
-         for (NodePos np : m_positions)
+         // and finally put back the positions of anything which moved, newest first
+         for (int i = m_positions.size() - 1; i >= 0; i--)
          {
-            np.N.setPos(np.Pos);
+            NodePos np = m_positions.get(i);
+
+            np.N.restorePos(np.Pos);
          }
 
          CleanUp();
@@ -353,6 +651,17 @@ public class Graph
          return true;
       }
 
+      private DirectedEdge findKey(DirectedEdge e)
+      {
+         for(DirectedEdge k : m_connections.keySet())
+         {
+            if (k.equals(e))
+               return k;
+         }
+
+         return null;
+      }
+
       void CleanUp()
       {
          if (m_chain_to_restore != null)
@@ -376,7 +685,9 @@ public class Graph
 
       private final HashMap<DirectedEdge, RestoreAction> m_connections = new HashMap<>();
 
+      // the first position, in our time, of each node which has moved
       private final ArrayList<NodePos> m_positions = new ArrayList<>();
+      private final int m_num_nodes;
 
       private final ArrayList<Node> m_nodes_added = new ArrayList<>();
       private final ArrayList<Node> m_nodes_removed = new ArrayList<>();
@@ -406,8 +717,22 @@ public class Graph
       return m_nodes.contains((Node)n);
    }
 
-   private final HashSet<Node> m_nodes = new HashSet<>();
-   private final HashSet<DirectedEdge> m_edges = new HashSet<>();
+   // in the order they were added, which makes the order we iterate in depend only on what has been done to us
+   // (and not on how big the sets have ever been) so a graph read back from a checkpoint iterates like the original
+   private final LinkedHashSet<Node> m_nodes = new LinkedHashSet<>();
+   private final LinkedHashSet<DirectedEdge> m_edges = new LinkedHashSet<>();
 
    private GraphRestore m_restore;
+
+   private NodeIdSource m_node_ids = new NodeIdSource(1);
+
+   // bumped by anything which adds or removes nodes or edges, so snapshots can tell whether to re-record the edges
+   private int m_topology_version = 0;
+   private GraphSnapshot m_last_snapshot;
+
+   // only in copies, where they came from and what each node there became here
+   private Graph m_copied_from;
+   private final HashMap<Node, Node> m_copy_of = new HashMap<>();
+
+   private final HashMap<Class<?>, Object> m_attachments = new HashMap<>();
 }
@@ -0,0 +1,195 @@
+package engine.graph;
+
+import engine.XY;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// writes a graph as compact binary, and reads it back exactly: ids, positions, colours and the order everything
+// is iterated in (nodes, edges and each node's connections) so steppers carry on with the read graph just as they
+// would have with the original
+//
+// layout creators are code, so they are written as their index in lists the caller supplies, the reader must
+// supply the equivalent lists (e.g. built the same way from another instance of the same TemplateStore)
+//
+// <num nodes>
+//    <id> <name> <codes> <template> <rad> <x> <y> <colour> <creator index>    per node
+// <num edges>
+//    <start index> <end index> <min> <max> <half width> <colour> <creator index>    per edge
+// <num connections> <edge index>...    per node
+// <node id source state>
+public class GraphCodec
+{
+   public static void write(Graph g, DataOutput out,
+                            List<GeomLayout.IGeomLayoutCreateFromNode> node_creators,
+                            List<GeomLayout.IGeomLayoutCreateFromDirectedEdge> edge_creators) throws IOException
+   {
+      ArrayList<INode> nodes = g.allGraphNodes();
+      ArrayList<DirectedEdge> edges = g.allGraphEdges();
+
+      HashMap<INode, Integer> node_idx = new HashMap<>();
+      HashMap<DirectedEdge, Integer> edge_idx = new HashMap<>();
+
+      out.writeInt(nodes.size());
+
+      for(INode n : nodes)
+      {
+         node_idx.put(n, node_idx.size());
+
+         out.writeInt(n.hashCode());
+         out.writeUTF(n.getName());
+         out.writeUTF(n.getCodes());
+         out.writeUTF(n.getTemplate());
+         out.writeDouble(n.getRad());
+         out.writeDouble(n.getPos().X);
+         out.writeDouble(n.getPos().Y);
+         out.writeInt(n.getColour());
+         out.writeInt(indexOf(node_creators, n.geomLayoutCreator()));
+      }
+
+      out.writeInt(edges.size());
+
+      for(DirectedEdge e : edges)
+      {
+         edge_idx.put(e, edge_idx.size());
+
+         out.writeInt(node_idx.get(e.Start));
+         out.writeInt(node_idx.get(e.End));
+         out.writeDouble(e.MinLength);
+         out.writeDouble(e.MaxLength);
+         out.writeDouble(e.HalfWidth);
+         out.writeInt(e.GetColour());
+         out.writeInt(indexOf(edge_creators, e.LayoutCreator));
+      }
+
+      for(INode n : nodes)
+      {
+         Node nn = (Node)n;
+
+         out.writeInt(nn.numConnections());
+
+         for(DirectedEdge e : nn.connectionsInOrder())
+         {
+            out.writeInt(edge_idx.get(e));
+         }
+      }
+
+      out.writeLong(g.nodeIds().state());
+   }
+
+   public static Graph read(DataInput in,
+                            List<GeomLayout.IGeomLayoutCreateFromNode> node_creators,
+                            List<GeomLayout.IGeomLayoutCreateFromDirectedEdge> edge_creators) throws IOException
+   {
+      Graph ret = new Graph();
+
+      int num_nodes = readCount(in);
+      ArrayList<Node> nodes = new ArrayList<>(num_nodes);
+
+      for(int i = 0; i < num_nodes; i++)
+      {
+         int id = in.readInt();
+         String name = in.readUTF();
+         String codes = in.readUTF();
+         String template = in.readUTF();
+         double rad = in.readDouble();
+         double x = in.readDouble();
+         double y = in.readDouble();
+         int colour = in.readInt();
+         GeomLayout.IGeomLayoutCreateFromNode creator = fromIndex(node_creators, in.readInt());
+
+         Node n = new Node(name, codes, template, creator, rad, id);
+
+         ret.restoreNode(n);
+
+         // not journalled, as the graph has no restore points yet
+         n.setPos(new XY(x, y));
+         n.setColour(colour);
+
+         nodes.add(n);
+      }
+
+      int num_edges = readCount(in);
+      ArrayList<DirectedEdge> edges = new ArrayList<>(num_edges);
+
+      for(int i = 0; i < num_edges; i++)
+      {
+         Node start = fromIndex(nodes, in.readInt());
+         Node end = fromIndex(nodes, in.readInt());
+         double min = in.readDouble();
+         double max = in.readDouble();
+         double half_width = in.readDouble();
+         int colour = in.readInt();
+         GeomLayout.IGeomLayoutCreateFromDirectedEdge creator = fromIndex(edge_creators, in.readInt());
+
+         if (start == null || end == null || start == end)
+            throw new IOException("Corrupt graph: bad edge ends");
+
+         DirectedEdge e = new DirectedEdge(start, end, min, max, half_width, creator);
+         e.SetColour(colour);
+
+         ret.restoreEdge(e);
+
+         edges.add(e);
+      }
+
+      for(Node n : nodes)
+      {
+         int num_conns = readCount(in);
+
+         for(int i = 0; i < num_conns; i++)
+         {
+            DirectedEdge e = fromIndex(edges, in.readInt());
+
+            if (e == null || e.Start != n && e.End != n)
+               throw new IOException("Corrupt graph: connection of a node which isn't on the edge");
+
+            n.restoreConnection(e);
+         }
+      }
+
+      ret.setNodeIds(NodeIdSource.fromState(in.readLong()));
+
+      return ret;
+   }
+
+   // by identity, -1 for null
+   private static <T> int indexOf(List<T> list, T t)
+   {
+      if (t == null)
+         return -1;
+
+      for(int i = 0; i < list.size(); i++)
+      {
+         if (list.get(i) == t)
+            return i;
+      }
+
+      throw new IllegalArgumentException("Cannot write a layout creator which isn't in the supplied list");
+   }
+
+   private static <T> T fromIndex(List<T> list, int idx) throws IOException
+   {
+      if (idx == -1)
+         return null;
+
+      if (idx < 0 || idx >= list.size())
+         throw new IOException("Corrupt graph: index " + idx + " out of range");
+
+      return list.get(idx);
+   }
+
+   private static int readCount(DataInput in) throws IOException
+   {
+      int ret = in.readInt();
+
+      if (ret < 0)
+         throw new IOException("Corrupt graph: negative count");
+
+      return ret;
+   }
+}
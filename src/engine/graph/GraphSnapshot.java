@@ -0,0 +1,208 @@
+package engine.graph;
+
+import engine.Box;
+import engine.XY;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// an immutable picture of a graph: its topology, positions and the rest of each node's state
+//
+// once made, a snapshot can be read and forked from any thread, any number of times, so several explorations can
+// start from the same point at once without touching the graph it came from
+//
+// snapshots of the same graph share what hasn't changed between them, each node's state is only recorded again if
+// the node has changed since the last snapshot, and the edges only if the topology has, but each snapshot still has
+// its own map of node states, so making one is O(nodes) (see Graph.snapshot()) as is forking one, which builds
+// a whole new graph
+public final class GraphSnapshot
+{
+   // what we know about one node
+   public final static class NodeState
+   {
+      NodeState(Node n)
+      {
+         Origin = n;
+         Name = n.getName();
+         Pos = n.getPos();
+         Colour = n.getColour();
+         Rad = n.getRad();
+         Version = n.version();
+      }
+
+      // the node in the graph we came from, only its immutable parts may be read from other threads
+      final Node Origin;
+      public final String Name;
+      public final XY Pos;
+      public final int Colour;
+      public final double Rad;
+      final int Version;
+   }
+
+   public final static class EdgeState
+   {
+      EdgeState(DirectedEdge e)
+      {
+         Start = (Node)e.Start;
+         End = (Node)e.End;
+         MinLength = e.MinLength;
+         MaxLength = e.MaxLength;
+         HalfWidth = e.HalfWidth;
+         LayoutCreator = e.LayoutCreator;
+         Colour = e.GetColour();
+      }
+
+      final Node Start;
+      final Node End;
+      public final double MinLength;
+      public final double MaxLength;
+      public final double HalfWidth;
+      final GeomLayout.IGeomLayoutCreateFromDirectedEdge LayoutCreator;
+      public final int Colour;
+   }
+
+   GraphSnapshot(Graph source, LinkedHashMap<Node, NodeState> nodes, List<EdgeState> edges, int topology_version,
+                 NodeIdSource node_ids)
+   {
+      m_source = source;
+      m_nodes = nodes;
+      m_edges = edges;
+      m_topology_version = topology_version;
+      m_node_ids = node_ids;
+   }
+
+   // a new graph, in the state this snapshot recorded, for steppers to work on
+   //
+   // like Graph.copy(), its nodes are new objects with the original ids and it can be committed back
+   // to the graph the snapshot came from with Graph.commitCopy, as long as that hasn't changed since
+   //
+   // O(nodes + edges), as it makes every node and edge
+   public Graph fork()
+   {
+      return Graph.fromSnapshot(this);
+   }
+
+   public int numNodes()
+   {
+      return m_nodes.size();
+   }
+
+   public int numEdges()
+   {
+      return m_edges.size();
+   }
+
+   // where a node of the original graph was, null if it wasn't in the graph
+   public XY getPos(INode n)
+   {
+      NodeState ns = m_nodes.get(n);
+
+      return ns != null ? ns.Pos : null;
+   }
+
+   // read-only views, for drawing
+   public Collection<NodeState> nodes()
+   {
+      return Collections.unmodifiableCollection(m_nodes.values());
+   }
+
+   public List<EdgeState> edges()
+   {
+      return m_edges;
+   }
+
+   public XY startPos(EdgeState e)
+   {
+      return m_nodes.get(e.Start).Pos;
+   }
+
+   public XY endPos(EdgeState e)
+   {
+      return m_nodes.get(e.End).Pos;
+   }
+
+   // as Graph.bounds()
+   public Box bounds()
+   {
+      if (m_nodes.size() == 0)
+         return new Box();
+
+      XY min = null;
+      XY max = null;
+
+      for (NodeState ns : m_nodes.values())
+      {
+         XY rad_box = new XY(ns.Rad, ns.Rad);
+
+         // extend by node radius
+         min = min == null ? ns.Pos.minus(rad_box) : min.min(ns.Pos.minus(rad_box));
+         max = max == null ? ns.Pos.plus(rad_box) : max.max(ns.Pos.plus(rad_box));
+      }
+
+      return new Box(min, max);
+   }
+
+   public boolean contains(INode n)
+   {
+      //noinspection SuspiciousMethodCalls
+      return m_nodes.containsKey(n);
+   }
+
+   Graph source()
+   {
+      return m_source;
+   }
+
+   Iterable<NodeState> nodeStates()
+   {
+      return m_nodes.values();
+   }
+
+   NodeState nodeState(Node n)
+   {
+      return m_nodes.get(n);
+   }
+
+   List<EdgeState> edgeStates()
+   {
+      return m_edges;
+   }
+
+   int topologyVersion()
+   {
+      return m_topology_version;
+   }
+
+   NodeIdSource nodeIds()
+   {
+      return m_node_ids.copy();
+   }
+
+   // the node states, in a form a later snapshot can build on
+   LinkedHashMap<Node, NodeState> copyNodeStates()
+   {
+      return new LinkedHashMap<>(m_nodes);
+   }
+
+   // (read-only, as later snapshots share it)
+   static List<EdgeState> edgeStatesOf(Iterable<DirectedEdge> edges)
+   {
+      ArrayList<EdgeState> ret = new ArrayList<>();
+
+      for(DirectedEdge e : edges)
+      {
+         ret.add(new EdgeState(e));
+      }
+
+      return Collections.unmodifiableList(ret);
+   }
+
+   private final Graph m_source;
+   private final LinkedHashMap<Node, NodeState> m_nodes;
+   private final List<EdgeState> m_edges;
+   private final int m_topology_version;
+   private final NodeIdSource m_node_ids;
+}
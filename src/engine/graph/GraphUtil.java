@@ -2,8 +2,11 @@ package engine.graph;
 
 import engine.OrderedPair;
 import engine.Util;
+import engine.XY;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 
 public class GraphUtil
@@ -12,23 +15,112 @@ public class GraphUtil
    {
       HashSet<DirectedEdgePair> ret = new HashSet<>();
 
-      for (DirectedEdge e1 : edges)
+      EdgeArrays ea = new EdgeArrays(edges);
+
+      ea.Finder.findAll(ea.Xs, ea.Ys,
+            (e1, e2) -> ret.add(edgeIntersect(ea.Edges.get(e1), ea.Edges.get(e2))));
+
+      return ret;
+   }
+
+   // for when we only want to know if there are any
+   //
+   // this unpacks the edges and makes a new finder every time, for repeated tests of a whole graph use the
+   // Graph overload, and where that's still too much, keep a CrossingEdgeFinder of your own
+   public static boolean hasCrossingEdges(Collection<DirectedEdge> edges)
+   {
+      EdgeArrays ea = new EdgeArrays(edges);
+
+      return ea.Finder.hasCrossing(ea.Xs, ea.Ys);
+   }
+
+   // the same for all of a graph's edges, using a finder kept on the graph, which is only remade when the edges
+   // change, so testing again after nodes have moved allocates nothing
+   public static boolean hasCrossingEdges(Graph g)
+   {
+      return g.attachment(GraphCrossings.class, GraphCrossings::new).hasCrossing(g);
+   }
+
+   private static class GraphCrossings
+   {
+      synchronized boolean hasCrossing(Graph g)
+      {
+         if (m_ea == null || m_topology_version != g.topologyVersion())
+         {
+            m_ea = new EdgeArrays(g.allGraphEdges());
+            m_topology_version = g.topologyVersion();
+         }
+
+         for(int i = 0; i < m_ea.Nodes.size(); i++)
+         {
+            XY pos = m_ea.Nodes.get(i).getPos();
+            m_ea.Xs[i] = pos.X;
+            m_ea.Ys[i] = pos.Y;
+         }
+
+         return m_ea.Finder.hasCrossing(m_ea.Xs, m_ea.Ys);
+      }
+
+      private EdgeArrays m_ea;
+      private int m_topology_version;
+   }
+
+   // the edges and their end positions unpacked for a CrossingEdgeFinder
+   private static class EdgeArrays
+   {
+      EdgeArrays(Collection<DirectedEdge> edges)
       {
-         for (DirectedEdge e2 : edges)
+         Edges = new ArrayList<>(edges);
+
+         HashMap<INode, Integer> node_idxs = new HashMap<>();
+         ArrayList<INode> nodes = new ArrayList<>();
+
+         int[] starts = new int[Edges.size()];
+         int[] ends = new int[Edges.size()];
+
+         for(int i = 0; i < Edges.size(); i++)
+         {
+            DirectedEdge e = Edges.get(i);
+
+            starts[i] = nodeIdx(e.Start, node_idxs, nodes);
+            ends[i] = nodeIdx(e.End, node_idxs, nodes);
+         }
+
+         Nodes = nodes;
+         Xs = new double[nodes.size()];
+         Ys = new double[nodes.size()];
+
+         for(int i = 0; i < nodes.size(); i++)
          {
-            if (e1 == e2)
-               break;
+            XY pos = nodes.get(i).getPos();
+            Xs[i] = pos.X;
+            Ys[i] = pos.Y;
+         }
+
+         Finder = new CrossingEdgeFinder();
+         Finder.setEdges(starts, ends, Edges.size());
+      }
 
-            DirectedEdgePair dep = edgeIntersect(e1, e2);
+      private static int nodeIdx(INode n, HashMap<INode, Integer> node_idxs, ArrayList<INode> nodes)
+      {
+         Integer idx = node_idxs.get(n);
 
-            if (dep != null)
-            {
-               ret.add(dep);
-            }
+         if (idx == null)
+         {
+            idx = nodes.size();
+            nodes.add(n);
+            node_idxs.put(n, idx);
          }
+
+         return idx;
       }
 
-      return ret;
+      final ArrayList<DirectedEdge> Edges;
+      // indexed as Xs and Ys
+      final ArrayList<INode> Nodes;
+      final double[] Xs;
+      final double[] Ys;
+      final CrossingEdgeFinder Finder;
    }
 
    public static DirectedEdgePair edgeIntersect(DirectedEdge edge1,
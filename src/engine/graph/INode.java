@@ -12,6 +12,7 @@ public interface INode
    // read/write forces and integration
    void resetForce();
    double getForce();
+   XY getForceVector();
    double step(double interval);
    void addForce(XY force);
 
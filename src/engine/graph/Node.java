@@ -7,6 +7,7 @@ import java.util.stream.Collectors;
 
 public class Node implements INode
 {
+   // for nodes which aren't going into a graph, graphs give their nodes ids from their own NodeIdSource
    public Node(String name, String codes, String template, double rad)
    {
       this(name, codes, template, DefaultLayourGreator, rad);
@@ -14,19 +15,60 @@ public class Node implements INode
 
    Node(String name, String codes, String template,
         GeomLayout.IGeomLayoutCreateFromNode gl_creator, double rad)
+   {
+      this(name, codes, template, gl_creator, rad, s_rand.nextInt());
+   }
+
+   Node(String name, String codes, String template,
+        GeomLayout.IGeomLayoutCreateFromNode gl_creator, double rad, int num)
    {
       m_name = name;
-      m_connections = new HashSet<>();
+      m_connections = new LinkedHashSet<>();
       m_codes = codes;
       m_template = template;
 
-      m_num = s_rand.nextInt();
+      m_num = num;
 
       m_rad = rad;
 
       m_gl_creator = gl_creator;
    }
 
+   // a copy for another graph, with the same id but no connections
+   Node(Node old)
+   {
+      this(old.m_name, old.m_codes, old.m_template, old.m_gl_creator, old.m_rad, old.m_num);
+
+      copyStateFrom(old);
+   }
+
+   // a node as a snapshot recorded it, reads only the immutable parts of the node the snapshot was taken from
+   Node(GraphSnapshot.NodeState ns)
+   {
+      this(ns.Name, ns.Origin.m_codes, ns.Origin.m_template, ns.Origin.m_gl_creator, ns.Origin.m_rad, ns.Origin.m_num);
+
+      m_pos = ns.Pos;
+      m_colour = ns.Colour;
+   }
+
+   // the things about a node which can change once it is made
+   void copyStateFrom(Node other)
+   {
+      beforeMove();
+
+      m_name = other.m_name;
+      m_pos = other.m_pos;
+      m_colour = other.m_colour;
+
+      m_version++;
+   }
+
+   // changes whenever any of the state above does, so snapshots can tell what they need to record again
+   int version()
+   {
+      return m_version;
+   }
+
    // we need hashsets of these and things built from these to be in a defined order
    // however, we want all instances still to be unequal so don't touch that
    // (is this deadly?)
@@ -88,6 +130,17 @@ public class Node implements INode
       m_connections.add(e);
    }
 
+   // for GraphCodec, which puts back each node's connections in its original order
+   void restoreConnection(DirectedEdge e)
+   {
+      connect(e);
+   }
+
+   Iterable<DirectedEdge> connectionsInOrder()
+   {
+      return Collections.unmodifiableSet(m_connections);
+   }
+
    private String tab(int tab)
    {
       String ret = "";
@@ -156,6 +209,7 @@ public class Node implements INode
          throw new NullPointerException("Null node name not permitted.");
 
       m_name = s;
+      m_version++;
    }
 
    @Override
@@ -221,8 +275,32 @@ public class Node implements INode
 
    @Override
    public void setPos(XY pos)
+   {
+      beforeMove();
+
+      m_pos = pos;
+      m_version++;
+   }
+
+   // for restore points putting a position back, which mustn't itself be recorded
+   void restorePos(XY pos)
    {
       m_pos = pos;
+      m_version++;
+   }
+
+   // lets the graph's current restore point record where we were, if it hasn't already
+   private void beforeMove()
+   {
+      if (m_graph != null)
+      {
+         m_graph.beforeMove(this);
+      }
+   }
+
+   void setGraph(Graph graph)
+   {
+      m_graph = graph;
    }
 
    @Override
@@ -249,11 +327,20 @@ public class Node implements INode
       return Math.sqrt(m_force.X * m_force.X + m_force.Y * m_force.Y);
    }
 
+   @Override
+   public XY getForceVector()
+   {
+      return m_force;
+   }
+
    @Override
    public double step(double t)
    {
       XY d = m_force.multiply(t);
+
+      beforeMove();
       m_pos = m_pos.plus(d);
+      m_version++;
 
       return d.length();
    }
@@ -286,9 +373,11 @@ public class Node implements INode
    public void setColour(int c)
    {
       m_colour = c;
+      m_version++;
    }
 
-   private final HashSet<DirectedEdge> m_connections;
+   // in the order they were made, so a node read back from a checkpoint can iterate them as the original did
+   private final LinkedHashSet<DirectedEdge> m_connections;
 
    // e : Expandable
    // < : Start (always alone?)
@@ -313,5 +402,12 @@ public class Node implements INode
 
    private int m_colour = 0xff8c8c8c;
 
+   private int m_version = 0;
+
+   // the graph we were made for, null for free-standing nodes
+   private Graph m_graph;
+   // the restore point which last recorded our position, so each only records it the first time we move
+   Graph.GraphRestore m_pos_recorded_in;
+
    private final GeomLayout.IGeomLayoutCreateFromNode m_gl_creator;
 }
@@ -0,0 +1,54 @@
+package engine.graph;
+
+// where a graph's nodes get their ids (which are their hash codes) from
+//
+// this gives the same sequence as java.util.Random.nextInt() but, being just a long, it can be copied along with
+// a graph, so that a copy goes on handing out exactly the ids the original would have
+//
+// each graph has its own, so graphs built on different threads (or the copies used for speculative expansion)
+// get reproducible ids, and hence iterate their node and edge sets in a reproducible order
+class NodeIdSource
+{
+   NodeIdSource(long seed)
+   {
+      m_seed = (seed ^ s_multiplier) & s_mask;
+   }
+
+   private NodeIdSource(NodeIdSource old)
+   {
+      m_seed = old.m_seed;
+   }
+
+   int next()
+   {
+      m_seed = (m_seed * s_multiplier + s_addend) & s_mask;
+
+      return (int)(m_seed >>> 16);
+   }
+
+   NodeIdSource copy()
+   {
+      return new NodeIdSource(this);
+   }
+
+   // for writing to, and reading back from, a checkpoint
+   long state()
+   {
+      return m_seed;
+   }
+
+   static NodeIdSource fromState(long state)
+   {
+      NodeIdSource ret = new NodeIdSource(0);
+      ret.m_seed = state & s_mask;
+
+      return ret;
+   }
+
+   private long m_seed;
+
+   // java.util.Random's constants
+   private final static long s_multiplier = 0x5DEECE66DL;
+   private final static long s_addend = 0xBL;
+   private final static long s_mask = (1L << 48) - 1;
+}
@@ -22,6 +22,16 @@ public class Template
    {
       void AfterExpand(INode n);
       void Done();
+
+      // any state which affects what later expansions do, for checkpoints (see TemplateStore.GetPostExpandStates)
+      default long GetState()
+      {
+         return 0;
+      }
+
+      default void SetState(long state)
+      {
+      }
    }
 
    Template(TemplateBuilder builder)
@@ -42,6 +52,27 @@ public class Template
       builder.Clear();
    }
 
+   private Template(Template other, IPostExpand post_expand)
+   {
+      m_name = other.m_name;
+      m_codes = other.m_codes;
+
+      m_nodes = other.m_nodes;
+      m_connections = other.m_connections;
+
+      m_num_in_nodes = other.m_num_in_nodes;
+      m_num_out_nodes = other.m_num_out_nodes;
+      m_num_internal_nodes = other.m_num_internal_nodes;
+
+      m_post_expand = post_expand;
+   }
+
+   // the same template with a different post-expand (null for none), the records are immutable so are shared
+   public Template WithPostExpand(IPostExpand post_expand)
+   {
+      return new Template(this, post_expand);
+   }
+
    public static String MakeConnectionName(String from, String to)
    {
       return from + "->" + to;
@@ -199,7 +230,7 @@ public class Template
          }
       }
 
-      return GraphUtil.findCrossingEdges(graph.allGraphEdges()).size() == 0;
+      return !GraphUtil.hasCrossingEdges(graph);
    }
 
    private void ApplyConnections(INode node_replacing, HashMap<NodeRecord, INode> template_to_graph,
@@ -298,11 +329,64 @@ public class Template
       return m_codes;
    }
 
+   int GetNumInNodes()
+   {
+      return m_num_in_nodes;
+   }
+
+   int GetNumOutNodes()
+   {
+      return m_num_out_nodes;
+   }
+
    public String GetName()
    {
       return m_name;
    }
 
+   // everything about us which affects what we make, as text, with nodes and connections in name order
+   // (except layout creators, which are code and mostly lambdas, whose class names change from run to run)
+   String Describe()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append(m_name).append(" ").append(m_codes).append(" ")
+            .append(m_post_expand != null ? m_post_expand.getClass().getName() : "").append("\n");
+
+      m_nodes.values().stream().sorted((a, b) -> a.Name.compareTo(b.Name)).forEach(nr ->
+            sb.append(" ").append(nr.Type).append(" ").append(nr.Name).append(" ").append(nr.Nudge)
+                  .append(" ").append(recordName(nr.PositionOn))
+                  .append(" ").append(recordName(nr.PositionTowards))
+                  .append(" ").append(recordName(nr.PositionAwayFrom))
+                  .append(" ").append(nr.Codes).append(" ").append(nr.Radius).append(" ").append(nr.Colour)
+                  .append("\n"));
+
+      m_connections.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(me ->
+      {
+         ConnectionRecord cr = me.getValue();
+
+         sb.append(" ").append(me.getKey()).append(" ").append(cr.MinLength).append(" ").append(cr.MaxLength)
+               .append(" ").append(cr.HalfWidth).append(" ").append(cr.Colour).append("\n");
+      });
+
+      return sb.toString();
+   }
+
+   private static String recordName(NodeRecord nr)
+   {
+      return nr != null ? nr.Name : "-";
+   }
+
+   public IPostExpand GetPostExpand()
+   {
+      return m_post_expand;
+   }
+
+   Collection<NodeRecord> GetNodeRecords()
+   {
+      return m_nodes.values();
+   }
+
    private final String m_name;
 
    final private Map<String, NodeRecord> m_nodes;
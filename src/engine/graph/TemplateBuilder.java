@@ -75,7 +75,7 @@ public class TemplateBuilder
             positionOnName, positionTowardsName, positionAwayFromName,
             codes, radius,
             0xff8c8c8c,
-            CircularGeomLayout::createFromNode);
+            Node.DefaultLayourGreator);
    }
 
    @SuppressWarnings("WeakerAccess")
@@ -3,6 +3,7 @@ package engine.graph;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 @SuppressWarnings("WeakerAccess")
 public class TemplateStore
@@ -14,6 +15,9 @@ public class TemplateStore
 
       m_templates.put(t.GetName(), t);
 
+      // rebuilt on next use
+      m_index = null;
+
       return true;
    }
 
@@ -27,6 +31,120 @@ public class TemplateStore
       return new ArrayList<>(m_templates.values());
    }
 
+   // the templates which could expand a node with these numbers of in and out connections, in the same order
+   // as GetTemplatesCopy(), must_expand keeps only the ones which add more expandable nodes
+   //
+   // a new list, as callers consume it, but only of the matches
+   public Collection<Template> GetTemplatesFor(int num_in, int num_out, boolean must_expand)
+   {
+      if (m_index == null)
+      {
+         buildIndex();
+      }
+
+      Bucket b = m_index.get(indexKey(num_in, num_out));
+
+      if (b == null)
+         return new ArrayList<>();
+
+      return new ArrayList<>(must_expand ? b.Expanding : b.All);
+   }
+
+   public Collection<Template> GetTemplatesFor(INode node, boolean must_expand)
+   {
+      return GetTemplatesFor(node.getInConnections().size(), node.getOutConnections().size(), must_expand);
+   }
+
+   private void buildIndex()
+   {
+      m_index = new HashMap<>();
+
+      for(Template t : m_templates.values())
+      {
+         Bucket b = m_index.computeIfAbsent(indexKey(t.GetNumInNodes(), t.GetNumOutNodes()), k -> new Bucket());
+
+         b.All.add(t);
+
+         if (t.GetCodes().contains("e"))
+         {
+            b.Expanding.add(t);
+         }
+      }
+   }
+
+   private static long indexKey(int num_in, int num_out)
+   {
+      return ((long)num_in << 32) | (num_out & 0xffffffffL);
+   }
+
+   // the state of each template's post-expand (e.g. how many doors have been made), in a fixed order, so a
+   // checkpoint can put another instance of the same store back where this one had got to
+   public long[] GetPostExpandStates()
+   {
+      ArrayList<Template> templates = new ArrayList<>(m_templates.values());
+      long[] ret = new long[templates.size()];
+
+      for(int i = 0; i < ret.length; i++)
+      {
+         Template.IPostExpand pe = templates.get(i).GetPostExpand();
+
+         ret[i] = pe != null ? pe.GetState() : 0;
+      }
+
+      return ret;
+   }
+
+   public void SetPostExpandStates(long[] states)
+   {
+      ArrayList<Template> templates = new ArrayList<>(m_templates.values());
+
+      if (states.length != templates.size())
+         throw new IllegalArgumentException("Post-expand states are for a different set of templates");
+
+      for(int i = 0; i < states.length; i++)
+      {
+         Template.IPostExpand pe = templates.get(i).GetPostExpand();
+
+         if (pe != null)
+         {
+            pe.SetState(states[i]);
+         }
+      }
+   }
+
+   // every distinct layout creator our templates give their nodes, in a fixed order, so a graph can be
+   // written with creators as indices into this (see GraphCodec) and read back with another instance of the store
+   public List<GeomLayout.IGeomLayoutCreateFromNode> GetNodeLayoutCreators()
+   {
+      ArrayList<GeomLayout.IGeomLayoutCreateFromNode> ret = new ArrayList<>();
+
+      for(Template t : m_templates.values())
+      {
+         for(Template.NodeRecord nr : t.GetNodeRecords())
+         {
+            GeomLayout.IGeomLayoutCreateFromNode c = nr.GeomCreator;
+
+            if (c != null && ret.stream().noneMatch(x -> x == c))
+            {
+               ret.add(c);
+            }
+         }
+      }
+
+      return ret;
+   }
+
+   // all our templates, as text (see Template.Describe) in name order, so two stores can be compared, e.g. to know
+   // whether a level cached from one would be the same made with the other
+   public String Describe()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      m_templates.keySet().stream().sorted().forEach(name -> sb.append(m_templates.get(name).Describe()));
+
+      return sb.toString();
+   }
+
    public Template FindByName(String name)
    {
       return m_templates.get(name);
@@ -38,4 +156,13 @@ public class TemplateStore
    }
 
    private final HashMap<String, Template> m_templates = new HashMap<>();
+
+   private final static class Bucket
+   {
+      final ArrayList<Template> All = new ArrayList<>();
+      final ArrayList<Template> Expanding = new ArrayList<>();
+   }
+
+   // templates by their numbers of in and out nodes, built when first needed
+   private HashMap<Long, Bucket> m_index;
 }
@@ -0,0 +1,592 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.CrossingEdgeFinder;
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.INode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// same forces, step and termination rules as RelaxerStepper, but positions, radii and forces live in flat arrays
+// for the duration of the relaxation, so an iteration allocates nothing (apart from the status report)
+//
+// the arithmetic is done in the same order as RelaxerStepper (which goes through XY), pairs are visited in the same
+// order and the grid broad-phase from GridRelaxerStepper skips only pairs which cannot push on each other,
+// so layouts come out identical to the other two relaxers
+//
+// the graph's nodes are not touched until we step out, when the final positions are written back with setPos,
+// so anything drawing the graph will not see it move until then
+public class ArrayRelaxerStepper implements IStepper
+{
+   public ArrayRelaxerStepper(IoCContainer m_ioc_container, Graph graph, LevelGeneratorConfiguration c)
+   {
+      m_graph = graph;
+      this.m_ioc_container = m_ioc_container;
+
+      m_config = c;
+   }
+
+   void setUp()
+   {
+      m_nodes = m_graph.allGraphNodes();
+      ArrayList<DirectedEdge> edges = m_graph.allGraphEdges();
+
+      // see RelaxerStepper for why these cap the node <-> node and node <-> edge distances
+      // (this also sets the node indices we rely on below)
+      m_node_dists = GraphDistanceStore.forGraph(m_graph).update(m_graph, m_config.RelaxationMinimumSeparation);
+
+      m_num_nodes = m_nodes.size();
+      m_num_edges = edges.size();
+
+      m_xs = new double[m_num_nodes];
+      m_ys = new double[m_num_nodes];
+      m_rads = new double[m_num_nodes];
+      m_fxs = new double[m_num_nodes];
+      m_fys = new double[m_num_nodes];
+      m_all_forces = new ForceChunk(m_fxs, m_fys);
+
+      double max_rad = 0;
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         INode n = m_nodes.get(i);
+
+         // we rely on indices being positions in m_nodes, both for indexing the arrays
+         // and so that searching the grid in index order is the same as scanning m_nodes
+         assert n.getIdx() == i;
+
+         XY pos = n.getPos();
+         m_xs[i] = pos.X;
+         m_ys[i] = pos.Y;
+         m_rads[i] = n.getRad();
+
+         max_rad = Math.max(max_rad, m_rads[i]);
+      }
+
+      m_max_rad = max_rad;
+
+      m_edge_starts = new int[m_num_edges];
+      m_edge_ends = new int[m_num_edges];
+      m_edge_min_lengths = new double[m_num_edges];
+      m_edge_max_lengths = new double[m_num_edges];
+      m_edge_half_widths = new double[m_num_edges];
+
+      for(int i = 0; i < m_num_edges; i++)
+      {
+         DirectedEdge e = edges.get(i);
+
+         m_edge_starts[i] = e.Start.getIdx();
+         m_edge_ends[i] = e.End.getIdx();
+         m_edge_min_lengths[i] = e.MinLength;
+         m_edge_max_lengths[i] = e.MaxLength;
+         m_edge_half_widths[i] = e.HalfWidth;
+      }
+
+      buildAdjacency();
+
+      m_crossing_finder.setEdges(m_edge_starts, m_edge_ends, m_num_edges);
+
+      m_integrator.reset(m_num_nodes, m_config);
+
+      m_grid = new NodeGrid(Math.max(max_rad * 2 + m_config.RelaxationMinimumSeparation, 1));
+
+      m_setup_done = true;
+   }
+
+   // neighbour lists, m_adjacent[m_adjacent_starts[i]] to m_adjacent[m_adjacent_starts[i + 1] - 1], sorted
+   // so that "are these two connected" is a short binary search instead of a HashSet lookup with a throw-away edge
+   private void buildAdjacency()
+   {
+      m_adjacent_starts = new int[m_num_nodes + 1];
+
+      for(int i = 0; i < m_num_edges; i++)
+      {
+         m_adjacent_starts[m_edge_starts[i] + 1]++;
+         m_adjacent_starts[m_edge_ends[i] + 1]++;
+      }
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         m_adjacent_starts[i + 1] += m_adjacent_starts[i];
+      }
+
+      m_adjacent = new int[m_num_edges * 2];
+      int[] cursors = Arrays.copyOf(m_adjacent_starts, m_num_nodes);
+
+      for(int i = 0; i < m_num_edges; i++)
+      {
+         m_adjacent[cursors[m_edge_starts[i]]++] = m_edge_ends[i];
+         m_adjacent[cursors[m_edge_ends[i]]++] = m_edge_starts[i];
+      }
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         Arrays.sort(m_adjacent, m_adjacent_starts[i], m_adjacent_starts[i + 1]);
+      }
+   }
+
+   boolean connects(int i, int j)
+   {
+      return Arrays.binarySearch(m_adjacent, m_adjacent_starts[i], m_adjacent_starts[i + 1], j) >= 0;
+   }
+
+   @Override
+   public StepperController.StatusReportInner step(StepperController.Status status)
+   {
+      if (!m_setup_done)
+      {
+         setUp();
+      }
+
+      StepperController.StatusReportInner ret = RelaxStep();
+
+      if (ret.Status != StepperController.Status.Iterate)
+      {
+         writeBack();
+      }
+
+      return ret;
+   }
+
+   // see RelaxerStepper.setIntegrator
+   public void setIntegrator(IRelaxationIntegrator integrator)
+   {
+      m_integrator = integrator;
+   }
+
+   public IRelaxationIntegrator getIntegrator()
+   {
+      return m_integrator;
+   }
+
+   private void writeBack()
+   {
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         m_nodes.get(i).setPos(new XY(m_xs[i], m_ys[i]));
+      }
+   }
+
+   StepperController.StatusReportInner RelaxStep()
+   {
+      buildGrid();
+
+      ForceChunk forces = AddAllForces();
+
+      double maxf = 0.0;
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         maxf = Math.max(Math.sqrt(m_fxs[i] * m_fxs[i] + m_fys[i] * m_fys[i]), maxf);
+      }
+
+      boolean ended = true;
+      double maxd = 0.0;
+      double step = 0.0;
+
+      if (maxf > 0)
+      {
+         maxd = m_integrator.step(m_xs, m_ys, m_fxs, m_fys, m_num_nodes, maxf);
+         step = m_integrator.lastTimeStep();
+
+         ended = maxd < m_config.RelaxationMoveTarget && maxf < m_config.RelaxationForceTarget;
+      }
+
+      return report(maxf, maxd, step, m_num_nodes, forces, hasCrossingEdges(), ended);
+   }
+
+   // fills in the metrics and makes the report for a step
+   StepperController.StatusReportInner report(double maxf, double maxd, double step, int nodes_moved,
+         ForceChunk forces, boolean crossing_edges, boolean ended)
+   {
+      m_metrics.Iteration++;
+      m_metrics.NodesMoved = nodes_moved;
+      m_metrics.MaxForce = maxf;
+      m_metrics.MaxMove = maxd;
+      m_metrics.TimeStep = step;
+      m_metrics.MaxEdgeStretch = forces.MaxEdgeStretch;
+      m_metrics.MaxEdgeSqueeze = forces.MaxEdgeSqueeze;
+      m_metrics.MaxEdgeSideSqueeze = forces.MaxEdgeSideSqueeze;
+      m_metrics.MaxNodeSqueeze = forces.MaxNodeSqueeze;
+      m_metrics.CrossingEdges = crossing_edges;
+
+      if (crossing_edges)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutFailure,
+               null, "Generated crossing edges during relaxation.");
+      } else if (ended)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess,
+               null, "Relaxed to still-point tolerances.");
+      }
+
+      return m_iterate_report;
+   }
+
+   // see RelaxerStepper.getMetrics
+   public RelaxationMetrics getMetrics()
+   {
+      return m_metrics;
+   }
+
+   // has to be done whenever positions have changed, before AddAllForces
+   void buildGrid()
+   {
+      m_grid.build(m_xs, m_ys, m_num_nodes);
+   }
+
+   // fills in m_fxs and m_fys from the current positions
+   // returns the accumulator holding the diagnostics for the whole graph
+   ForceChunk AddAllForces()
+   {
+      m_all_forces.reset();
+
+      AddForces(m_all_forces, 0, m_num_edges, 0, m_num_nodes);
+
+      return m_all_forces;
+   }
+
+   // the edge and node/edge forces for edges [edge_from, edge_to) and the node/node forces for
+   // nodes [node_from, node_to) against all lower-indexed nodes
+   // everything reads only positions and writes only into "into", so separate chunks can run at the same time
+   void AddForces(ForceChunk into, int edge_from, int edge_to, int node_from, int node_to)
+   {
+      for(int e = edge_from; e < edge_to; e++)
+      {
+         double ratio = AddEdgeForces(into, e);
+         into.MaxEdgeStretch = Math.max(ratio, into.MaxEdgeStretch);
+         into.MaxEdgeSqueeze = Math.min(ratio, into.MaxEdgeSqueeze);
+      }
+
+      AddAllNodeEdgeForces(into, edge_from, edge_to);
+
+      AddAllNodeForces(into, node_from, node_to);
+   }
+
+   private boolean hasCrossingEdges()
+   {
+      return m_crossing_finder.hasCrossing(m_xs, m_ys);
+   }
+
+   // every edge against every node it isn't attached to (that is close enough to feel it)
+   private void AddAllNodeEdgeForces(ForceChunk into, int edge_from, int edge_to)
+   {
+      for(int e = edge_from; e < edge_to; e++)
+      {
+         int s = m_edge_starts[e];
+         int t = m_edge_ends[e];
+
+         double range = m_edge_half_widths[e] + m_max_rad + m_config.RelaxationMinimumSeparation + s_margin;
+
+         int found = m_grid.query(
+               Math.min(m_xs[s], m_xs[t]) - range, Math.min(m_ys[s], m_ys[t]) - range,
+               Math.max(m_xs[s], m_xs[t]) + range, Math.max(m_ys[s], m_ys[t]) + range,
+               m_num_nodes, into.Found);
+
+         for(int i = 0; i < found; i++)
+         {
+            int n = into.Found.get(i);
+
+            if (n != s && n != t)
+            {
+               double ratio = AddNodeEdgeForces(into, e, n);
+               into.MaxEdgeSideSqueeze = Math.min(ratio, into.MaxEdgeSideSqueeze);
+            }
+         }
+      }
+   }
+
+   // every node against every other node it isn't connected to (that is close enough to feel it)
+   private void AddAllNodeForces(ForceChunk into, int node_from, int node_to)
+   {
+      for(int i = node_from; i < node_to; i++)
+      {
+         double range = m_rads[i] + m_max_rad + m_config.RelaxationMinimumSeparation + s_margin;
+
+         // only indices below ours, as each pair is only visited once
+         int found = m_grid.query(m_xs[i] - range, m_ys[i] - range, m_xs[i] + range, m_ys[i] + range, i,
+               into.Found);
+
+         for(int k = 0; k < found; k++)
+         {
+            int j = into.Found.get(k);
+
+            if (!connects(i, j))
+            {
+               double fraction = AddNodeForces(into, i, j);
+
+               // fraction too close, if any...
+               into.MaxNodeSqueeze = Math.max(into.MaxNodeSqueeze, 1 - fraction);
+            }
+         }
+      }
+   }
+
+   // returns the edge length as a fraction of d0
+   double AddEdgeForces(ForceChunk into, int e)
+   {
+      int s = m_edge_starts[e];
+      int t = m_edge_ends[e];
+
+      double dx = m_xs[t] - m_xs[s];
+      double dy = m_ys[t] - m_ys[s];
+
+      // in this case can just ignore these as we hope (i) won't happen and (ii) there will be other non-zero
+      // forces to pull them apart
+      if (dx == 0 && dy == 0)
+         return 1.0;
+
+      double l = Math.sqrt(dx * dx + dy * dy);
+      dx /= l;
+      dy /= l;
+
+      double dmin = m_edge_min_lengths[e];
+      double dmax = m_edge_max_lengths[e];
+
+      assert dmin <= dmax;
+
+      // LevelUtil.unitEdgeForce, inlined
+      double ratio;
+
+      if (l < dmin)
+      {
+         ratio = l / dmin;
+      } else if (l > dmax)
+      {
+         ratio = l / dmax;
+      } else
+      {
+         ratio = 1.0;
+      }
+
+      double force = (ratio - 1) * m_config.EdgeLengthForceScale;
+
+      double fx = dx * force;
+      double fy = dy * force;
+
+      into.Fxs[s] += fx;
+      into.Fys[s] += fy;
+      into.Fxs[t] += -fx;
+      into.Fys[t] += -fy;
+
+      return ratio;
+   }
+
+   // returns separation as a fraction of summed_radii
+   double AddNodeForces(ForceChunk into, int i, int j)
+   {
+      double dx = m_xs[j] - m_xs[i];
+      double dy = m_ys[j] - m_ys[i];
+
+      double adjusted_radius = Math.min(m_node_dists.get(i, j),
+            m_rads[i] + m_rads[j] + m_config.RelaxationMinimumSeparation);
+
+      // in this case can just ignore these as we hope (i) won't happen and (ii) there will be other non-zero
+      // forces to pull them apart
+      if (dx == 0 && dy == 0)
+         return 0.0;
+
+      double l = Math.sqrt(dx * dx + dy * dy);
+      dx /= l;
+      dy /= l;
+
+      // LevelUtil.unitNodeForce, inlined
+      double unit_ratio = l / adjusted_radius;
+
+      // no attractive forces
+      if (unit_ratio > 1)
+         return 0.0;
+
+      double ratio = -(unit_ratio - 1);
+
+      if (ratio != 0)
+      {
+         double force = (unit_ratio - 1) * m_config.NodeToNodeForceScale;
+
+         double fx = dx * force;
+         double fy = dy * force;
+
+         into.Fxs[i] += fx;
+         into.Fys[i] += fy;
+         into.Fxs[j] += -fx;
+         into.Fys[j] += -fy;
+      }
+
+      return ratio;
+   }
+
+   double AddNodeEdgeForces(ForceChunk into, int e, int n)
+   {
+      int s = m_edge_starts[e];
+      int t = m_edge_ends[e];
+
+      // LevelUtil.nodeEdgeDistDetailed, inlined
+      double dex = m_xs[t] - m_xs[s];
+      double dey = m_ys[t] - m_ys[s];
+
+      if (dex == 0 && dey == 0)
+         return 1.0;
+
+      double le = Math.sqrt(dex * dex + dey * dey);
+      dex /= le;
+      dey /= le;
+
+      double proj = dex * (m_xs[n] - m_xs[s]) + dey * (m_ys[n] - m_ys[s]);
+
+      double tx;
+      double ty;
+
+      if (proj < 0)
+      {
+         tx = m_xs[s];
+         ty = m_ys[s];
+      }
+      else if (proj < le)
+      {
+         tx = dex * proj + m_xs[s];
+         ty = dey * proj + m_ys[s];
+      }
+      else
+      {
+         tx = m_xs[t];
+         ty = m_ys[t];
+      }
+
+      double dx = tx - m_xs[n];
+      double dy = ty - m_ys[n];
+
+      if (dx == 0 && dy == 0)
+         return 1.0;
+
+      double dist = Math.sqrt(dx * dx + dy * dy);
+      dx /= dist;
+      dy /= dist;
+
+      double summed_radii = Math.min(m_node_dists.get(s, n),
+            Math.min(m_node_dists.get(t, n),
+                  m_rads[n] + m_edge_half_widths[e]) + m_config.RelaxationMinimumSeparation);
+
+      if (dist > summed_radii)
+      {
+         return 1.0;
+      }
+
+      double ratio = dist / summed_radii;
+
+      double force = (ratio - 1) * m_config.EdgeToNodeForceScale;
+
+      double fx = dx * force;
+      double fy = dy * force;
+
+      into.Fxs[n] += fx;
+      into.Fys[n] += fy;
+
+      // the divide by two seems to be important, otherwise we can add "momentum" to the system and it can spin without ever converging
+      fx = -fx / 2;
+      fy = -fy / 2;
+
+      into.Fxs[s] += fx;
+      into.Fys[s] += fy;
+      into.Fxs[t] += fx;
+      into.Fys[t] += fy;
+
+      return ratio;
+   }
+
+   // somewhere for a run of force calculations to put its results
+   // the relaxer keeps one covering the whole graph, the parallel relaxer one per chunk of work
+   static class ForceChunk
+   {
+      ForceChunk(double[] fxs, double[] fys)
+      {
+         Fxs = fxs;
+         Fys = fys;
+      }
+
+      void reset()
+      {
+         Arrays.fill(Fxs, 0.0);
+         Arrays.fill(Fys, 0.0);
+
+         resetDiagnostics();
+      }
+
+      void resetDiagnostics()
+      {
+         MaxEdgeStretch = 1.0;
+         MaxEdgeSqueeze = 1.0;
+         MaxEdgeSideSqueeze = 0.0;
+         MaxNodeSqueeze = 0.0;
+      }
+
+      // merging the diagnostics doesn't depend on order, forces are summed separately by whoever owns the chunks
+      void mergeDiagnostics(ForceChunk other)
+      {
+         MaxEdgeStretch = Math.max(MaxEdgeStretch, other.MaxEdgeStretch);
+         MaxEdgeSqueeze = Math.min(MaxEdgeSqueeze, other.MaxEdgeSqueeze);
+         MaxEdgeSideSqueeze = Math.min(MaxEdgeSideSqueeze, other.MaxEdgeSideSqueeze);
+         MaxNodeSqueeze = Math.max(MaxNodeSqueeze, other.MaxNodeSqueeze);
+      }
+
+      final double[] Fxs;
+      final double[] Fys;
+
+      final NodeGrid.Results Found = new NodeGrid.Results();
+
+      double MaxEdgeStretch;
+      double MaxEdgeSqueeze;
+      double MaxEdgeSideSqueeze;
+      double MaxNodeSqueeze;
+   }
+
+   private final Graph m_graph;
+   ArrayList<INode> m_nodes;
+
+   int m_num_nodes;
+   int m_num_edges;
+
+   // per-node state, indexed by INode.getIdx()
+   double[] m_xs;
+   double[] m_ys;
+   double[] m_rads;
+   double[] m_fxs;
+   double[] m_fys;
+
+   // per-edge state, indexed by position in allGraphEdges()
+   int[] m_edge_starts;
+   int[] m_edge_ends;
+   double[] m_edge_min_lengths;
+   double[] m_edge_max_lengths;
+   double[] m_edge_half_widths;
+
+   int[] m_adjacent_starts;
+   int[] m_adjacent;
+
+   // see RelaxerStepper.m_node_dists
+   GraphDistanceStore.Lengths m_node_dists;
+
+   private ForceChunk m_all_forces;
+
+   private final CrossingEdgeFinder m_crossing_finder = new CrossingEdgeFinder();
+
+   private IRelaxationIntegrator m_integrator = new SteepestDescentIntegrator();
+
+   private final RelaxationMetrics m_metrics = new RelaxationMetrics();
+   private final StepperController.StatusReportInner m_iterate_report =
+         new StepperController.StatusReportInner(StepperController.Status.Iterate, m_metrics);
+
+   NodeGrid m_grid;
+   double m_max_rad;
+
+   final LevelGeneratorConfiguration m_config;
+
+   private boolean m_setup_done = false;
+
+   @SuppressWarnings("FieldCanBeLocal")
+   final private IoCContainer m_ioc_container;
+
+   // search ranges are padded slightly so that rounding can't lose a pair sitting right on the cut-off
+   final static double s_margin = 1e-6;
+}
@@ -0,0 +1,107 @@
+package engine.level;
+
+import engine.graph.Graph;
+import engine.graph.GraphSnapshot;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// runs a LevelGenerator on its own thread, so whoever wants to watch it (e.g. drawing every frame) doesn't
+// have to wait for it, and it doesn't have to wait for them
+//
+// the generator's graph is only touched by the worker, what the watcher sees are immutable snapshots of it, handed
+// over through a single slot: the worker fills it when it is empty (and always with the final result) and poll()
+// empties it, so neither side ever waits and the worker doesn't spend time snapshotting faster than they're looked at
+public class AsyncLevelGenerator
+{
+   public AsyncLevelGenerator(LevelGenerator generator)
+   {
+      m_generator = generator;
+   }
+
+   public static final class Progress
+   {
+      Progress(GraphSnapshot graph, LevelGenerator.Phase phase, String log, Level level,
+               boolean complete, boolean succeeded)
+      {
+         Graph = graph;
+         Phase = phase;
+         Log = log;
+         Level = level;
+         Complete = complete;
+         Succeeded = succeeded;
+      }
+
+      // null before the generator has made its graph
+      public final GraphSnapshot Graph;
+      public final LevelGenerator.Phase Phase;
+      public final String Log;
+      // only once complete, and then only if we succeeded
+      public final Level Level;
+      public final boolean Complete;
+      public final boolean Succeeded;
+   }
+
+   public void start()
+   {
+      m_thread = new Thread(this::run, "AsyncLevelGenerator");
+      m_thread.setDaemon(true);
+      m_thread.start();
+   }
+
+   // stops early, if we haven't finished already
+   public void stop() throws InterruptedException
+   {
+      m_thread.interrupt();
+      m_thread.join();
+   }
+
+   // the newest progress, or null if there's been nothing new since the last call
+   public Progress poll()
+   {
+      return m_slot.getAndSet(null);
+   }
+
+   private void run()
+   {
+      try
+      {
+         StepperController.StatusReport ret;
+
+         do
+         {
+            if (Thread.interrupted())
+               return;
+
+            ret = m_generator.step();
+
+            if (!ret.Complete && m_slot.get() == null)
+            {
+               m_slot.set(makeProgress(ret.log(), null, false, false));
+            }
+         }
+         while(!ret.Complete);
+
+         boolean succeeded = ret.Status == StepperController.Status.StepOutSuccess;
+
+         m_slot.set(makeProgress(ret.log(), succeeded ? m_generator.getLevel() : null, true, succeeded));
+      }
+      catch (Throwable e)
+      {
+         // Errors too (e.g. a failed assert) or whoever is watching would wait for ever for us to complete
+         m_slot.set(makeProgress("Exception: " + e, null, true, false));
+      }
+   }
+
+   private Progress makeProgress(String log, Level level, boolean complete, boolean succeeded)
+   {
+      Graph g = m_generator.getGraph();
+
+      return new Progress(g != null ? g.snapshot() : null, m_generator.getPhase(), log, level, complete, succeeded);
+   }
+
+   private final LevelGenerator m_generator;
+
+   private final AtomicReference<Progress> m_slot = new AtomicReference<>();
+
+   private Thread m_thread;
+}
@@ -0,0 +1,164 @@
+package engine.level;
+
+import engine.graph.Graph;
+import engine.graph.TemplateStore;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// generates many levels at once, with no display, each job on its own thread from a fixed size pool
+//
+// every job gets its own LevelGenerator, graph, configuration (with a Random made from the job's seed),
+// failure cache (if the configuration asks for one) and templates, and graphs hand out their own node ids,
+// so nothing is shared between jobs but the factories and a job's level depends only on the job, not on
+// the pool size or what else is running
+public class BatchLevelGenerator implements AutoCloseable
+{
+   public BatchLevelGenerator(IoCContainer ioc_container, int num_threads)
+   {
+      m_ioc_container = ioc_container;
+      m_pool = Executors.newFixedThreadPool(num_threads, r -> {
+         Thread t = new Thread(r, "BatchLevelGenerator");
+         t.setDaemon(true);
+         return t;
+      });
+   }
+
+   public static class Job
+   {
+      // config is only a template, the job gets a shallow copy with its own Rand, and with an empty
+      // copy of its FailureCache, as what a shared one told a job would depend on what other jobs had done first
+      // (so the FailureCache in config itself is never used)
+      //
+      // templates can have state (e.g. DoorPostExpand counts the doors it has made) so each job
+      // makes its own store
+      public Job(int seed, int req_size, LevelGeneratorConfiguration config, Supplier<TemplateStore> templates)
+      {
+         Seed = seed;
+         ReqSize = req_size;
+         Config = config;
+         Templates = templates;
+      }
+
+      public final int Seed;
+      public final int ReqSize;
+      public final LevelGeneratorConfiguration Config;
+      public final Supplier<TemplateStore> Templates;
+   }
+
+   public static class Result
+   {
+      Result(Job job, Level level, Graph graph, String failure, Throwable exception, long millis)
+      {
+         JobDone = job;
+         Level = level;
+         Graph = graph;
+         Failure = failure;
+         Exception = exception;
+         Millis = millis;
+      }
+
+      public boolean succeeded()
+      {
+         return Level != null;
+      }
+
+      public final Job JobDone;
+      // null if the generation failed
+      public final Level Level;
+      // the laid out graph the level came from, as far as it got
+      public final Graph Graph;
+      // why not, if it failed, and what it threw if it threw
+      public final String Failure;
+      public final Throwable Exception;
+      public final long Millis;
+   }
+
+   public interface IResultListener
+   {
+      void finished(Result result);
+   }
+
+   // runs all the jobs, telling the listener about each as it finishes (which won't be in job order)
+   // the listener is called on the calling thread, so it need not be thread-safe
+   //
+   // returns once every job has been reported
+   public void generate(List<Job> jobs, IResultListener listener) throws InterruptedException
+   {
+      ExecutorCompletionService<Result> ecs = new ExecutorCompletionService<>(m_pool);
+
+      for(Job j : jobs)
+      {
+         ecs.submit(() -> runJob(j));
+      }
+
+      for(int i = 0; i < jobs.size(); i++)
+      {
+         Future<Result> f = ecs.take();
+
+         try
+         {
+            listener.finished(f.get());
+         }
+         catch (ExecutionException e)
+         {
+            // runJob catches everything it can, so this is an Error of some sort
+            throw new RuntimeException("Level generation job failed", e.getCause());
+         }
+      }
+   }
+
+   private Result runJob(Job job)
+   {
+      long start = System.nanoTime();
+
+      LevelGeneratorConfiguration c = LevelGeneratorConfiguration.shallowCopy(job.Config);
+      c.Seed = job.Seed;
+      c.Rand = new Random(job.Seed);
+
+      if (c.FailureCache != null)
+      {
+         c.FailureCache = c.FailureCache.emptyCopy();
+      }
+
+      LevelGenerator gen = new LevelGenerator(m_ioc_container, job.ReqSize, c, job.Templates.get());
+
+      try
+      {
+         StepperController.StatusReport ret;
+
+         do
+         {
+            ret = gen.step();
+         }
+         while(!ret.Complete);
+
+         long millis = (System.nanoTime() - start) / 1000000;
+
+         if (ret.Status != StepperController.Status.StepOutSuccess)
+            return new Result(job, null, gen.getGraph(), ret.log(), null, millis);
+
+         return new Result(job, gen.getLevel(), gen.getGraph(), null, null, millis);
+      }
+      catch (RuntimeException e)
+      {
+         return new Result(job, null, gen.getGraph(), "Exception in phase: " + gen.getPhase(), e,
+               (System.nanoTime() - start) / 1000000);
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      m_pool.shutdownNow();
+   }
+
+   private final IoCContainer m_ioc_container;
+   private final ExecutorService m_pool;
+}
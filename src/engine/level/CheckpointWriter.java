@@ -0,0 +1,112 @@
+package engine.level;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// writes a LevelGenerator's checkpoints to a file, on its own thread, so the generator only pays for encoding them
+//
+// only the newest checkpoint matters, so if one is still waiting to be written when the next arrives it is
+// replaced, and each is written to a temporary file first and moved over the last, so the file always holds
+// a whole checkpoint
+public class CheckpointWriter implements LevelGenerator.ICheckpointListener, AutoCloseable
+{
+   public CheckpointWriter(Path file)
+   {
+      m_file = file;
+      m_temp_file = file.resolveSibling(file.getFileName() + ".tmp");
+
+      m_executor = Executors.newSingleThreadExecutor(r ->
+      {
+         Thread t = new Thread(r, "CheckpointWriter");
+         t.setDaemon(true);
+         return t;
+      });
+   }
+
+   @Override
+   public void checkpointed(LevelCheckpoint checkpoint)
+   {
+      // if there was nothing waiting, nobody is going to write this yet
+      if (m_pending.getAndSet(checkpoint) == null)
+      {
+         m_executor.execute(this::writePending);
+      }
+   }
+
+   private void writePending()
+   {
+      LevelCheckpoint cp = m_pending.getAndSet(null);
+
+      if (cp == null)
+         return;
+
+      try
+      {
+         try (OutputStream out = Files.newOutputStream(m_temp_file))
+         {
+            cp.write(out);
+         }
+
+         try
+         {
+            Files.move(m_temp_file, m_file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (AtomicMoveNotSupportedException e)
+         {
+            Files.move(m_temp_file, m_file, StandardCopyOption.REPLACE_EXISTING);
+         }
+
+         m_num_written++;
+      }
+      catch (IOException e)
+      {
+         // keep the first, it's most likely the cause of any others
+         m_error.compareAndSet(null, e);
+      }
+   }
+
+   // how many checkpoints have made it to the file, some are skipped if they arrive faster than we can write
+   public int getNumWritten()
+   {
+      return m_num_written;
+   }
+
+   // waits for anything pending to be written, and throws the first error there was in writing anything
+   @Override
+   public void close() throws IOException
+   {
+      m_executor.shutdown();
+
+      try
+      {
+         m_executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      IOException e = m_error.get();
+
+      if (e != null)
+         throw e;
+   }
+
+   private final Path m_file;
+   private final Path m_temp_file;
+
+   private final ExecutorService m_executor;
+
+   private final AtomicReference<LevelCheckpoint> m_pending = new AtomicReference<>();
+   private final AtomicReference<IOException> m_error = new AtomicReference<>();
+
+   private volatile int m_num_written = 0;
+}
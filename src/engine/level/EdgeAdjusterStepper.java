@@ -79,8 +79,11 @@ public class EdgeAdjusterStepper implements IStepper
    private final DirectedEdge m_edge;
    private final LevelGeneratorConfiguration m_config;
 
-   private GeomLayout.IGeomLayoutCreateFromNode m_geom_maker
+   // a single instance, so checkpoints can recognise the nodes we made with it
+   public final static GeomLayout.IGeomLayoutCreateFromNode DefaultGeomMaker
          = n -> new CircularGeomLayout(n.getPos(), n.getRad() / 2);
 
+   private GeomLayout.IGeomLayoutCreateFromNode m_geom_maker = DefaultGeomMaker;
+
    private final IoCContainer m_ioc_container;
 }
@@ -8,10 +8,17 @@ class ExpandToSizeStepper implements IStepper
 
    public ExpandToSizeStepper(IoCContainer m_ioc_container, Graph graph, int required_size, TemplateStore templates,
                               LevelGeneratorConfiguration c)
+   {
+      this(m_ioc_container, graph, required_size, templates, c, graph == null ? 0 : graph.numNodes());
+   }
+
+   // for carrying on from a checkpoint, where the graph has already grown from orig_size
+   ExpandToSizeStepper(IoCContainer m_ioc_container, Graph graph, int required_size, TemplateStore templates,
+                       LevelGeneratorConfiguration c, int orig_size)
    {
       this.m_ioc_container = m_ioc_container;
       m_graph = graph;
-      m_orig_size = m_graph == null ? 0 : m_graph.numNodes();
+      m_orig_size = orig_size;
       m_required_size = required_size;
       m_templates = templates;
       m_config = c;
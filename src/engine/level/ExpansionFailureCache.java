@@ -0,0 +1,158 @@
+package engine.level;
+
+import engine.graph.DirectedEdge;
+import engine.graph.INode;
+import engine.graph.Template;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// remembers which templates have failed to expand which sorts of node, so that steppers can try them last
+//
+// "sorts of node" is a cheap signature (see signature()) of the node's template and codes and, for each connection,
+// its direction, the other node's template and codes and how stretched it is, so a failure is remembered
+// for nodes in roughly the same situation, rather than just the one node
+//
+// bounded, forgetting the least recently used entries first, and synchronized so one can be shared between
+// steppers running on different threads (however, sharing one between LevelGenerators makes what each generates
+// depend on what the others did first)
+public class ExpansionFailureCache
+{
+   public ExpansionFailureCache(int max_entries)
+   {
+      m_max_entries = max_entries;
+
+      m_failures = new LinkedHashMap<String, Boolean>(16, 0.75f, true)
+      {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+         {
+            return size() > m_max_entries;
+         }
+      };
+   }
+
+   // how stretched an edge is, in quarters of its maximum length, which is about as fine as relaxation
+   // settles things anyway
+   private static long stretchBucket(DirectedEdge e)
+   {
+      return e.MaxLength > 0 ? Math.round(e.Length() / e.MaxLength * 4) : 0;
+   }
+
+   public static String signature(INode node)
+   {
+      ArrayList<String> conns = new ArrayList<>();
+
+      for(DirectedEdge e : node.getConnections())
+      {
+         boolean out = e.Start == node;
+         INode other = out ? e.End : e.Start;
+
+         conns.add((out ? ">" : "<") + other.getTemplate() + ":" + other.getCodes() + ":" + stretchBucket(e));
+      }
+
+      // connections are a set, so put them in an order that doesn't depend on the nodes' ids
+      Collections.sort(conns);
+
+      return node.getTemplate() + ":" + node.getCodes() + "|" + String.join("|", conns);
+   }
+
+   private static String key(String signature, Template t)
+   {
+      return signature + "#" + t.GetName();
+   }
+
+   // counts as a hit or a miss
+   public synchronized boolean isKnownFailure(String signature, Template t)
+   {
+      boolean ret = m_failures.get(key(signature, t)) != null;
+
+      if (ret)
+      {
+         m_hits++;
+      }
+      else
+      {
+         m_misses++;
+      }
+
+      return ret;
+   }
+
+   public synchronized void recordFailure(String signature, Template t)
+   {
+      m_failures.put(key(signature, t), Boolean.TRUE);
+   }
+
+   // it worked this time, so it isn't hopeless for this sort of node
+   public synchronized void recordSuccess(String signature, Template t)
+   {
+      m_failures.remove(key(signature, t));
+   }
+
+   // another cache the same size, knowing nothing yet
+   public ExpansionFailureCache emptyCopy()
+   {
+      return new ExpansionFailureCache(m_max_entries);
+   }
+
+   // everything we know, least recently used first, so read() puts them back in the same order (see LevelCheckpoint)
+   synchronized void write(DataOutputStream out) throws IOException
+   {
+      out.writeInt(m_failures.size());
+
+      for(String k : m_failures.keySet())
+      {
+         out.writeUTF(k);
+      }
+
+      out.writeLong(m_hits);
+      out.writeLong(m_misses);
+   }
+
+   // replaces everything we know with what write() wrote
+   synchronized void read(DataInputStream in) throws IOException
+   {
+      int n = in.readInt();
+
+      if (n < 0)
+         throw new IOException("Corrupt failure cache: bad number of entries");
+
+      m_failures.clear();
+
+      for(int i = 0; i < n; i++)
+      {
+         m_failures.put(in.readUTF(), Boolean.TRUE);
+      }
+
+      m_hits = in.readLong();
+      m_misses = in.readLong();
+   }
+
+   public synchronized int size()
+   {
+      return m_failures.size();
+   }
+
+   public synchronized long getHits()
+   {
+      return m_hits;
+   }
+
+   public synchronized long getMisses()
+   {
+      return m_misses;
+   }
+
+   private final int m_max_entries;
+
+   private final LinkedHashMap<String, Boolean> m_failures;
+
+   private long m_hits = 0;
+   private long m_misses = 0;
+}
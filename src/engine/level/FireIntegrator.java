@@ -0,0 +1,151 @@
+package engine.level;
+
+import java.util.Arrays;
+
+// FIRE (the "fast inertial relaxation engine" of Bitzek et al. 2006)
+//
+// nodes carry a velocity from step to step, which is steered towards the current force direction, and the time
+// step grows while the system keeps going downhill (force and velocity agree), as soon as it overshoots (they
+// disagree) everything stops, the time step is cut and we start again from rest
+//
+// steepest descent spends most of its time crawling once the remaining forces are small (the edge length forces
+// especially are weak by design) and momentum lets us cover that ground in far fewer steps
+//
+// no node is ever moved further than RelaxationMaxMove in one step, for the same reason as in steepest descent
+public class FireIntegrator implements IRelaxationIntegrator
+{
+   public FireIntegrator()
+   {
+      this(1.0, 10.0);
+   }
+
+   // time steps are in units where steepest descent with a step of 1 moves a node by its force
+   public FireIntegrator(double start_time_step, double max_time_step)
+   {
+      m_start_time_step = start_time_step;
+      m_max_time_step = max_time_step;
+   }
+
+   @Override
+   public void reset(int num_nodes, LevelGeneratorConfiguration c)
+   {
+      m_config = c;
+
+      m_vxs = new double[num_nodes];
+      m_vys = new double[num_nodes];
+
+      m_time_step = m_start_time_step;
+      m_alpha = s_alpha_start;
+      m_steps_downhill = 0;
+   }
+
+   @Override
+   public double step(double[] xs, double[] ys, double[] fxs, double[] fys, int count, double maxf)
+   {
+      double power = 0;
+      double v2 = 0;
+      double f2 = 0;
+
+      for(int i = 0; i < count; i++)
+      {
+         power += fxs[i] * m_vxs[i] + fys[i] * m_vys[i];
+         v2 += m_vxs[i] * m_vxs[i] + m_vys[i] * m_vys[i];
+         f2 += fxs[i] * fxs[i] + fys[i] * fys[i];
+      }
+
+      // at rest (our first step, or no force has moved us yet) we can't have overshot, and there's nothing to steer,
+      // so just let the force start us off
+      if (v2 > 0)
+      {
+         if (power > 0)
+         {
+            // steer the velocity towards the force, keeping its overall size
+            double mix = m_alpha * Math.sqrt(v2 / f2);
+
+            for(int i = 0; i < count; i++)
+            {
+               m_vxs[i] = (1 - m_alpha) * m_vxs[i] + mix * fxs[i];
+               m_vys[i] = (1 - m_alpha) * m_vys[i] + mix * fys[i];
+            }
+
+            m_steps_downhill++;
+
+            if (m_steps_downhill > s_delay_steps)
+            {
+               m_time_step = Math.min(m_time_step * s_time_step_increase, m_max_time_step);
+               m_alpha *= s_alpha_decrease;
+            }
+         }
+         else
+         {
+            // gone over the top, stop dead and be more careful
+            Arrays.fill(m_vxs, 0, count, 0.0);
+            Arrays.fill(m_vys, 0, count, 0.0);
+
+            m_time_step = Math.max(m_time_step * s_time_step_decrease, m_start_time_step * s_min_time_step_fraction);
+            m_alpha = s_alpha_start;
+            m_steps_downhill = 0;
+         }
+      }
+
+      double maxd = 0;
+
+      for(int i = 0; i < count; i++)
+      {
+         m_vxs[i] += fxs[i] * m_time_step;
+         m_vys[i] += fys[i] * m_time_step;
+
+         double dx = m_vxs[i] * m_time_step;
+         double dy = m_vys[i] * m_time_step;
+
+         maxd = Math.max(Math.sqrt(dx * dx + dy * dy), maxd);
+      }
+
+      // if anything would move too far, slow everything down (velocities too, or they'd just build up again)
+      double scale = 1.0;
+
+      if (maxd > m_config.RelaxationMaxMove)
+      {
+         scale = m_config.RelaxationMaxMove / maxd;
+         maxd = m_config.RelaxationMaxMove;
+      }
+
+      for(int i = 0; i < count; i++)
+      {
+         m_vxs[i] *= scale;
+         m_vys[i] *= scale;
+
+         xs[i] += m_vxs[i] * m_time_step;
+         ys[i] += m_vys[i] * m_time_step;
+      }
+
+      return maxd;
+   }
+
+   @Override
+   public double lastTimeStep()
+   {
+      return m_time_step;
+   }
+
+   private final double m_start_time_step;
+   private final double m_max_time_step;
+
+   private LevelGeneratorConfiguration m_config;
+
+   private double[] m_vxs;
+   private double[] m_vys;
+
+   private double m_time_step;
+   private double m_alpha;
+   private int m_steps_downhill;
+
+   // the standard FIRE parameters from the paper
+   private final static int s_delay_steps = 5;
+   private final static double s_time_step_increase = 1.1;
+   private final static double s_time_step_decrease = 0.5;
+   private final static double s_alpha_start = 0.1;
+   private final static double s_alpha_decrease = 0.99;
+   // and don't let a run of overshoots stall us completely
+   private final static double s_min_time_step_fraction = 0.02;
+}
@@ -0,0 +1,371 @@
+package engine.level;
+
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.INode;
+
+import java.util.*;
+import java.util.function.Function;
+
+//
+// shortest path lengths through a graph, but only those short enough to matter to the relaxer
+//
+// the relaxer only ever uses min(path length, summed radii + separation) and the summed radii (of a node
+// with another node, or with an edge's half-width) can be no more than the node's own radius plus the
+// largest radius or half-width in the graph, so from each node we only need paths out to:
+//
+//    rad + max(largest radius, largest half-width) + separation
+//
+// which we find with a Dijkstra search from that node which stops at that distance
+// so storage grows with the number of nodes times the typical size of a neighbourhood, instead of the square of
+// the number of nodes
+//
+// one of these is kept per graph (see forGraph) and remembers the edges it last saw, so after an edit only the
+// searches which could have been affected are re-run: those which reached an end of an added,
+// removed or changed edge, plus those from new nodes
+//
+public class GraphDistanceStore
+{
+   public GraphDistanceStore(Function<DirectedEdge, Double> get_edge_length)
+   {
+      m_get_edge_length = get_edge_length;
+   }
+
+   // the shared store for a graph, using the same edge length as the relaxers always have
+   // (kept on the graph, as we hold its nodes and edges, which hold the graph, so it goes away with it)
+   public static GraphDistanceStore forGraph(Graph g)
+   {
+      return g.attachment(GraphDistanceStore.class,
+            () -> new GraphDistanceStore(e -> (e.MaxLength + e.MinLength) / 2));
+   }
+
+   // brings the store up to date with the graph and returns the path lengths indexed by INode.getIdx()
+   // (this also sets the node indices, to positions in g.allGraphNodes())
+   public synchronized Lengths update(Graph g, double separation)
+   {
+      ArrayList<INode> nodes = g.allGraphNodes();
+      ArrayList<DirectedEdge> edges = g.allGraphEdges();
+
+      double max_extent = 0;
+
+      for(INode n : nodes)
+      {
+         max_extent = Math.max(max_extent, n.getRad());
+      }
+
+      HashMap<INode, ArrayList<DirectedEdge>> adjacency = new HashMap<>();
+
+      for(DirectedEdge e : edges)
+      {
+         max_extent = Math.max(max_extent, e.HalfWidth);
+
+         adjacency.computeIfAbsent(e.Start, x -> new ArrayList<>()).add(e);
+         adjacency.computeIfAbsent(e.End, x -> new ArrayList<>()).add(e);
+      }
+
+      double extra = max_extent + separation;
+
+      // if the searches we already have might have stopped short, start again
+      // (if they went further than we now need, they're still right, just slightly bigger than necessary)
+      if (extra > m_extra)
+      {
+         m_balls.clear();
+         m_reached_from.clear();
+         m_edge_lengths.clear();
+
+         m_extra = extra;
+      }
+
+      HashSet<INode> dirty = findDirty(nodes, edges);
+
+      for(INode n : dirty)
+      {
+         search(n, adjacency);
+      }
+
+      m_last_update_searches = dirty.size();
+
+      return makeLengths(nodes);
+   }
+
+   // sources whose searches could be different now, and forgets the searches from nodes which have gone
+   private HashSet<INode> findDirty(ArrayList<INode> nodes, ArrayList<DirectedEdge> edges)
+   {
+      HashSet<INode> dirty = new HashSet<>();
+      HashSet<INode> touched = new HashSet<>();
+
+      HashMap<DirectedEdge, Double> old_edge_lengths = m_edge_lengths;
+      m_edge_lengths = new HashMap<>();
+
+      for(DirectedEdge e : edges)
+      {
+         double length = m_get_edge_length.apply(e);
+
+         m_edge_lengths.put(e, length);
+
+         Double old_length = old_edge_lengths.remove(e);
+
+         if (old_length == null || old_length != length)
+         {
+            touched.add(e.Start);
+            touched.add(e.End);
+         }
+      }
+
+      // whatever is left was removed
+      for(DirectedEdge e : old_edge_lengths.keySet())
+      {
+         touched.add(e.Start);
+         touched.add(e.End);
+      }
+
+      // anything which reached an end of a changed edge may now find a different path
+      // (any new shortest path through an added edge has to get to one of its ends without it first)
+      for(INode n : touched)
+      {
+         HashSet<INode> reached_from = m_reached_from.get(n);
+
+         if (reached_from != null)
+         {
+            dirty.addAll(reached_from);
+         }
+      }
+
+      HashSet<INode> current = new HashSet<>(nodes);
+
+      for(INode n : nodes)
+      {
+         if (!m_balls.containsKey(n))
+         {
+            dirty.add(n);
+         }
+      }
+
+      // forget nodes which are no longer in the graph, both as sources and as places we got to
+      ArrayList<INode> gone = new ArrayList<>();
+
+      for(INode n : m_balls.keySet())
+      {
+         if (!current.contains(n))
+         {
+            gone.add(n);
+         }
+      }
+
+      for(INode n : gone)
+      {
+         forgetSearch(n);
+      }
+
+      dirty.retainAll(current);
+
+      for(INode n : dirty)
+      {
+         forgetSearch(n);
+      }
+
+      return dirty;
+   }
+
+   private void forgetSearch(INode from)
+   {
+      HashMap<INode, Double> ball = m_balls.remove(from);
+
+      if (ball == null)
+         return;
+
+      for(INode n : ball.keySet())
+      {
+         HashSet<INode> reached_from = m_reached_from.get(n);
+
+         reached_from.remove(from);
+
+         if (reached_from.isEmpty())
+         {
+            m_reached_from.remove(n);
+         }
+      }
+   }
+
+   // Dijkstra, stopping once everything left is further than this node's cut-off
+   private void search(INode from, HashMap<INode, ArrayList<DirectedEdge>> adjacency)
+   {
+      double cutoff = from.getRad() + m_extra;
+
+      HashMap<INode, Double> ball = new HashMap<>();
+      HashMap<INode, Double> best = new HashMap<>();
+
+      PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+      best.put(from, 0.0);
+      queue.add(new QueueEntry(from, 0.0));
+
+      while(!queue.isEmpty())
+      {
+         QueueEntry qe = queue.poll();
+
+         // already found a shorter way here
+         if (ball.containsKey(qe.N))
+            continue;
+
+         ball.put(qe.N, qe.Dist);
+         m_reached_from.computeIfAbsent(qe.N, x -> new HashSet<>()).add(from);
+
+         ArrayList<DirectedEdge> connections = adjacency.get(qe.N);
+
+         if (connections == null)
+            continue;
+
+         for(DirectedEdge e : connections)
+         {
+            INode other = e.Start == qe.N ? e.End : e.Start;
+
+            double dist = qe.Dist + m_edge_lengths.get(e);
+
+            if (dist > cutoff || ball.containsKey(other))
+               continue;
+
+            Double prev = best.get(other);
+
+            if (prev == null || dist < prev)
+            {
+               best.put(other, dist);
+               queue.add(new QueueEntry(other, dist));
+            }
+         }
+      }
+
+      m_balls.put(from, ball);
+   }
+
+   private Lengths makeLengths(ArrayList<INode> nodes)
+   {
+      int count = 0;
+
+      for(INode n : nodes)
+      {
+         n.setIdx(count);
+
+         count++;
+      }
+
+      int[] starts = new int[nodes.size() + 1];
+
+      for(int i = 0; i < nodes.size(); i++)
+      {
+         starts[i + 1] = starts[i] + m_balls.get(nodes.get(i)).size();
+      }
+
+      int[] to = new int[starts[nodes.size()]];
+      double[] dists = new double[starts[nodes.size()]];
+
+      for(int i = 0; i < nodes.size(); i++)
+      {
+         HashMap<INode, Double> ball = m_balls.get(nodes.get(i));
+
+         // sort each row by index, for binary searching, packing index and position together into a long
+         // so we can use a primitive sort
+         long[] keys = new long[ball.size()];
+         double[] unsorted = new double[ball.size()];
+
+         int k = 0;
+
+         for(Map.Entry<INode, Double> entry : ball.entrySet())
+         {
+            keys[k] = ((long)entry.getKey().getIdx() << 32) | k;
+            unsorted[k] = entry.getValue();
+            k++;
+         }
+
+         Arrays.sort(keys);
+
+         for(k = 0; k < keys.length; k++)
+         {
+            to[starts[i] + k] = (int)(keys[k] >>> 32);
+            dists[starts[i] + k] = unsorted[(int)keys[k]];
+         }
+      }
+
+      return new Lengths(starts, to, dists);
+   }
+
+   // how many searches the last update had to run
+   // non-private for testing
+   int lastUpdateSearches()
+   {
+      return m_last_update_searches;
+   }
+
+   // an immutable snapshot of the path lengths, by node index, stored one sorted row per node
+   public static class Lengths
+   {
+      Lengths(int[] starts, int[] to, double[] dists)
+      {
+         m_starts = starts;
+         m_to = to;
+         m_dists = dists;
+      }
+
+      // the shortest path length between nodes i and j, or Double.MAX_VALUE if that is further than
+      // the relaxer could care about
+      public double get(int i, int j)
+      {
+         // the search from i might have stopped short of j, where the search from j (with a bigger radius)
+         // got there
+         int at = Arrays.binarySearch(m_to, m_starts[i], m_starts[i + 1], j);
+
+         if (at >= 0)
+            return m_dists[at];
+
+         at = Arrays.binarySearch(m_to, m_starts[j], m_starts[j + 1], i);
+
+         if (at >= 0)
+            return m_dists[at];
+
+         return Double.MAX_VALUE;
+      }
+
+      // total number of stored distances
+      public int size()
+      {
+         return m_to.length;
+      }
+
+      private final int[] m_starts;
+      private final int[] m_to;
+      private final double[] m_dists;
+   }
+
+   private static class QueueEntry implements Comparable<QueueEntry>
+   {
+      QueueEntry(INode n, double dist)
+      {
+         N = n;
+         Dist = dist;
+      }
+
+      @Override
+      public int compareTo(QueueEntry o)
+      {
+         return Double.compare(Dist, o.Dist);
+      }
+
+      final INode N;
+      final double Dist;
+   }
+
+   private final Function<DirectedEdge, Double> m_get_edge_length;
+
+   // the largest radius or half-width, plus the separation, that our searches have allowed for
+   private double m_extra = -1;
+
+   // for each node, the distances to everything within its cut-off
+   private final HashMap<INode, HashMap<INode, Double>> m_balls = new HashMap<>();
+   // and the other way around, for each node, which searches got to it
+   private final HashMap<INode, HashSet<INode>> m_reached_from = new HashMap<>();
+
+   // lengths of the edges as of the last update
+   private HashMap<DirectedEdge, Double> m_edge_lengths = new HashMap<>();
+
+   private int m_last_update_searches;
+}
@@ -0,0 +1,136 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.INode;
+
+// same forces as RelaxerStepper, but uses a grid of node positions to only visit node/node and node/edge
+// pairs which can be close enough to push on each other
+//
+// pairs are visited in the same order as the brute-force scan, and pairs which are skipped would
+// not have generated a force, so layouts come out identical (only the squeeze diagnostics in the log can differ)
+public class GridRelaxerStepper extends RelaxerStepper
+{
+   public GridRelaxerStepper(IoCContainer m_ioc_container, Graph graph, LevelGeneratorConfiguration c)
+   {
+      super(m_ioc_container, graph, c);
+   }
+
+   @Override
+   void setUp()
+   {
+      super.setUp();
+
+      double max_rad = 0;
+
+      for(int i = 0; i < m_nodes.size(); i++)
+      {
+         INode n = m_nodes.get(i);
+
+         // we rely on indices being positions in m_nodes, so that searching the grid in index order
+         // is the same as scanning m_nodes
+         assert n.getIdx() == i;
+
+         max_rad = Math.max(max_rad, n.getRad());
+      }
+
+      m_max_rad = max_rad;
+
+      // nothing can push on anything further away than the two biggest radii plus separation
+      // so make cells that size and most searches will cover only the surrounding 3x3 cells
+      m_grid = new NodeGrid(Math.max(max_rad * 2 + m_config.RelaxationMinimumSeparation, 1));
+
+      m_xs = new double[m_nodes.size()];
+      m_ys = new double[m_nodes.size()];
+   }
+
+   @Override
+   void PrepareStep()
+   {
+      for(int i = 0; i < m_nodes.size(); i++)
+      {
+         XY pos = m_nodes.get(i).getPos();
+         m_xs[i] = pos.X;
+         m_ys[i] = pos.Y;
+      }
+
+      m_grid.build(m_xs, m_ys, m_nodes.size());
+   }
+
+   @Override
+   double AddAllNodeEdgeForces()
+   {
+      double max_edge_side_squeeze = 0.0;
+
+      for(DirectedEdge e : m_edges)
+      {
+         XY s = e.Start.getPos();
+         XY t = e.End.getPos();
+
+         // a node can only feel this edge if it is within its own radius plus half-width plus separation
+         // of the edge, so searching the box around the edge padded by the largest radius finds everything
+         double range = e.HalfWidth + m_max_rad + m_config.RelaxationMinimumSeparation + s_margin;
+
+         int found = m_grid.query(
+               Math.min(s.X, t.X) - range, Math.min(s.Y, t.Y) - range,
+               Math.max(s.X, t.X) + range, Math.max(s.Y, t.Y) + range,
+               m_nodes.size());
+
+         for(int i = 0; i < found; i++)
+         {
+            INode n = m_nodes.get(m_grid.result(i));
+
+            if (!e.Connects(n))
+            {
+               double ratio = AddNodeEdgeForces(e, n);
+               max_edge_side_squeeze = Math.min(ratio, max_edge_side_squeeze);
+            }
+         }
+      }
+
+      return max_edge_side_squeeze;
+   }
+
+   @Override
+   double AddAllNodeForces()
+   {
+      double max_node_squeeze = 0.0;
+
+      for(int i = 0; i < m_nodes.size(); i++)
+      {
+         INode n = m_nodes.get(i);
+         XY pos = n.getPos();
+
+         double range = n.getRad() + m_max_rad + m_config.RelaxationMinimumSeparation + s_margin;
+
+         // only indices below ours, as the brute-force version only looks at each pair once
+         int found = m_grid.query(pos.X - range, pos.Y - range, pos.X + range, pos.Y + range, i);
+
+         for(int j = 0; j < found; j++)
+         {
+            INode m = m_nodes.get(m_grid.result(j));
+
+            if (!n.connects(m))
+            {
+               double fraction = AddNodeForces(n, m);
+
+               // fraction too close, if any...
+               max_node_squeeze = Math.max(max_node_squeeze, 1 - fraction);
+            }
+         }
+      }
+
+      return max_node_squeeze;
+   }
+
+   private NodeGrid m_grid;
+
+   private double m_max_rad;
+
+   private double[] m_xs;
+   private double[] m_ys;
+
+   // search ranges are padded slightly so that rounding can't lose a pair sitting right on the cut-off
+   private final static double s_margin = 1e-6;
+}
@@ -0,0 +1,22 @@
+package engine.level;
+
+// how the relaxers turn forces into movement
+//
+// positions and forces are flat arrays indexed by INode.getIdx(), the relaxer owns them and the integrator
+// just moves the positions on, keeping whatever state (e.g. velocities) it needs between steps
+//
+// relaxers still decide when they are finished (max move and max force both under target) and still fail if
+// a step generates crossing edges, so integrators should keep individual moves no bigger than
+// RelaxationMaxMove, as that is what keeps edges from jumping through each other
+public interface IRelaxationIntegrator
+{
+   // called once, before the first step
+   void reset(int num_nodes, LevelGeneratorConfiguration c);
+
+   // moves xs/ys on by one step, maxf is the largest force magnitude in fxs/fys and is > 0
+   // returns the furthest any node moved
+   double step(double[] xs, double[] ys, double[] fxs, double[] fys, int count, double maxf);
+
+   // the time step used by the last call to step, for reporting
+   double lastTimeStep();
+}
@@ -15,6 +15,8 @@ public class IoCContainer
    final public INodeExpanderFactory NodeExpanderFactory;
    final public INodeTemplateExpanderFactory NodeTemplateExpanderFactory;
    final public IAdjusterFactory AdjusterFactory;
+   // for the relaxation of the whole level, once expansion is finished
+   final public IRelaxerFactory FinalRelaxerFactory;
 
    public IoCContainer(
          IRelaxerFactory relaxerFactory,
@@ -22,12 +24,25 @@ public class IoCContainer
          INodeExpanderFactory nodeExpanderFactory,
          INodeTemplateExpanderFactory nodeTemplateExpanderFactory,
          IAdjusterFactory adjusterFactory)
+   {
+      this(relaxerFactory, allNodesExpanderFactory, nodeExpanderFactory, nodeTemplateExpanderFactory,
+            adjusterFactory, RelaxerStepper::new);
+   }
+
+   public IoCContainer(
+         IRelaxerFactory relaxerFactory,
+         IAllNodesExpanderFactory allNodesExpanderFactory,
+         INodeExpanderFactory nodeExpanderFactory,
+         INodeTemplateExpanderFactory nodeTemplateExpanderFactory,
+         IAdjusterFactory adjusterFactory,
+         IRelaxerFactory finalRelaxerFactory)
    {
       RelaxerFactory = relaxerFactory;
       AllNodesExpanderFactory = allNodesExpanderFactory;
       NodeExpanderFactory = nodeExpanderFactory;
       NodeTemplateExpanderFactory = nodeTemplateExpanderFactory;
       AdjusterFactory = adjusterFactory;
+      FinalRelaxerFactory = finalRelaxerFactory;
    }
 
    public interface IRelaxerFactory
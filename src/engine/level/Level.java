@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 
 public class Level implements ICollidable
 {
@@ -27,6 +28,21 @@ public class Level implements ICollidable
       m_wall_facet_length = wall_facet_length;
       m_bounds = bounds;
       m_start_pos = start_pos;
+      m_wall_loops = new WallLoopSet();
+      m_wall_map = new HashMap<>();
+   }
+
+   // a level whose walls are already in loops and the cell map, e.g. read back by LevelFile
+   Level(double cell_size, double wall_facet_length, Box bounds, XY start_pos,
+         WallLoopSet wall_loops, HashMap<CC, ArrayList<Wall>> wall_map)
+   {
+      m_cell_size = cell_size;
+      m_cell_radius = Math.sqrt(cell_size * cell_size) / 2;
+      m_wall_facet_length = wall_facet_length;
+      m_bounds = bounds;
+      m_start_pos = start_pos;
+      m_wall_loops = wall_loops;
+      m_wall_map = wall_map;
    }
 
    public Collection<WallLoop> getWallLoops()
@@ -308,8 +324,23 @@ public class Level implements ICollidable
       return Collections.unmodifiableCollection(m_objects);
    }
 
-   private final HashMap<CC, ArrayList<Wall>> m_wall_map
-         = new HashMap<>();
+   // for LevelFile
+   double getCellSize()
+   {
+      return m_cell_size;
+   }
+
+   double getWallFacetLength()
+   {
+      return m_wall_facet_length;
+   }
+
+   Map<CC, ArrayList<Wall>> getWallMap()
+   {
+      return Collections.unmodifiableMap(m_wall_map);
+   }
+
+   private final HashMap<CC, ArrayList<Wall>> m_wall_map;
 
    private final Box m_bounds;
 
@@ -317,7 +348,7 @@ public class Level implements ICollidable
    private final double m_cell_radius;
    private final double m_wall_facet_length;
 
-   private final WallLoopSet m_wall_loops = new WallLoopSet();
+   private final WallLoopSet m_wall_loops;
 
    private final XY m_start_pos;
 
@@ -0,0 +1,108 @@
+package engine.level;
+
+import engine.graph.TemplateStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+// finished levels, kept in a directory as LevelFiles, so a level we've made before needn't be made again
+//
+// each is named for a hash of everything which decides what level we'd get: the seed, the size, the
+// configuration, the templates and the steppers (see key()) so a change to any of those just misses, rather
+// than giving a stale level
+public class LevelCache
+{
+   public LevelCache(Path dir)
+   {
+      m_dir = dir;
+   }
+
+   // the IoCContainer's factories (which relaxers, integrators etc.) are code and can't be hashed, so the caller
+   // names them in steppers, and must change that name whenever it sets up different ones
+   //
+   // layout creators are code too, so after changing what one does, clear the cache
+   public static String key(int seed, int size, LevelGeneratorConfiguration config, TemplateStore templates,
+                            String steppers)
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append(LevelFile.s_version).append("\n");
+      sb.append(seed).append(" ").append(size).append("\n");
+      sb.append(steppers).append("\n");
+
+      sb.append(config.RelaxationMinimumSeparation).append(" ")
+            .append(config.EdgeToNodeForceScale).append(" ")
+            .append(config.EdgeLengthForceScale).append(" ")
+            .append(config.NodeToNodeForceScale).append(" ")
+            .append(config.RelaxationMaxMove).append(" ")
+            .append(config.RelaxationForceTarget).append(" ")
+            .append(config.RelaxationMoveTarget).append(" ")
+            // levels depend on whether trials are speculative, but not on how many there are
+            .append(config.SpeculativeTemplateTrials == 1).append(" ")
+            // nor on its size, as real levels don't fill it, but whether there is one changes the template order
+            .append(config.FailureCache != null).append(" ")
+            .append(config.ParallelUnion).append(" ")
+            .append(config.CellSize).append(" ")
+            .append(config.WallFacetLength).append("\n");
+
+      sb.append(templates.Describe());
+
+      try
+      {
+         MessageDigest md = MessageDigest.getInstance("SHA-256");
+         byte[] hash = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+         StringBuilder ret = new StringBuilder();
+
+         // half is plenty to tell levels apart
+         for(int i = 0; i < 16; i++)
+         {
+            ret.append(String.format(Locale.ROOT, "%02x", hash[i]));
+         }
+
+         return ret.toString();
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         // every JVM has SHA-256
+         throw new IllegalStateException(e);
+      }
+   }
+
+   // null if we haven't got it, or what we've got can't be read (e.g. it's from an older version)
+   public Level load(String key)
+   {
+      Path file = fileFor(key);
+
+      if (!Files.exists(file))
+         return null;
+
+      try
+      {
+         return LevelFile.read(file);
+      }
+      catch (IOException e)
+      {
+         return null;
+      }
+   }
+
+   public void store(String key, Level level) throws IOException
+   {
+      Files.createDirectories(m_dir);
+
+      LevelFile.write(level, fileFor(key));
+   }
+
+   private Path fileFor(String key)
+   {
+      return m_dir.resolve(key + ".level");
+   }
+
+   private final Path m_dir;
+}
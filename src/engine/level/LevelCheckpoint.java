@@ -0,0 +1,297 @@
+package engine.level;
+
+import engine.graph.GeomLayout;
+import engine.graph.Graph;
+import engine.graph.GraphCodec;
+import engine.graph.Node;
+import engine.graph.TemplateStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// enough of a LevelGenerator's state, at a point where its steppers hold nothing which isn't in the graph,
+// to carry on from there and make exactly the level it would have made (see LevelGenerator.checkpoint())
+//
+// encoded when made, on the generator's thread, as that only takes a copy of the graph's worth of time, so
+// writing it somewhere can happen on any thread (see CheckpointWriter)
+//
+// <magic> <version> <phase> <seed> <required size> <expansion start size>
+// <random length> <java.util.Random, serialized>
+// <num post-expand states> <state>...
+// <has failure cache> [<failure cache, see ExpansionFailureCache.write>]
+// <graph, see GraphCodec>
+//
+// the configuration's FailureCache changes the order templates are tried in, so its contents are recorded,
+// but the rest of the configuration is not (supply the same again to resume)
+public final class LevelCheckpoint
+{
+   private LevelCheckpoint(LevelGenerator.Phase phase, int seed, int req_size, byte[] data)
+   {
+      m_phase = phase;
+      m_seed = seed;
+      m_req_size = req_size;
+      m_data = data;
+   }
+
+   static LevelCheckpoint capture(LevelGenerator.Phase phase, int seed, int req_size, int expand_start_size,
+                                  Random rand, ExpansionFailureCache failure_cache, TemplateStore templates,
+                                  Graph graph)
+   {
+      try
+      {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         DataOutputStream out = new DataOutputStream(bytes);
+
+         out.writeInt(s_magic);
+         out.writeInt(s_version);
+         out.writeInt(phase.ordinal());
+         out.writeInt(seed);
+         out.writeInt(req_size);
+         out.writeInt(expand_start_size);
+
+         byte[] rand_bytes = serializeRandom(rand);
+         out.writeInt(rand_bytes.length);
+         out.write(rand_bytes);
+
+         long[] states = templates.GetPostExpandStates();
+         out.writeInt(states.length);
+
+         for(long l : states)
+         {
+            out.writeLong(l);
+         }
+
+         out.writeBoolean(failure_cache != null);
+
+         if (failure_cache != null)
+         {
+            failure_cache.write(out);
+         }
+
+         GraphCodec.write(graph, out, nodeCreators(templates), edgeCreators());
+
+         out.flush();
+
+         return new LevelCheckpoint(phase, seed, req_size, bytes.toByteArray());
+      }
+      catch (IOException e)
+      {
+         // only writing to memory
+         throw new IllegalStateException(e);
+      }
+   }
+
+   public LevelGenerator.Phase getPhase()
+   {
+      return m_phase;
+   }
+
+   // the seed and size the generator was started with, resume() ignores the config's
+   public int getSeed()
+   {
+      return m_seed;
+   }
+
+   public int getRequiredSize()
+   {
+      return m_req_size;
+   }
+
+   // the encoded checkpoint, do not modify
+   public byte[] getBytes()
+   {
+      return m_data;
+   }
+
+   public void write(OutputStream out) throws IOException
+   {
+      out.write(m_data);
+   }
+
+   public static LevelCheckpoint read(InputStream in) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+
+      while((n = in.read(buf)) > 0)
+      {
+         bytes.write(buf, 0, n);
+      }
+
+      return fromBytes(bytes.toByteArray());
+   }
+
+   public static LevelCheckpoint fromBytes(byte[] data) throws IOException
+   {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+      if (in.readInt() != s_magic)
+         throw new IOException("Not a level checkpoint");
+
+      if (in.readInt() != s_version)
+         throw new IOException("Unsupported level checkpoint version");
+
+      LevelGenerator.Phase phase = readPhase(in);
+      int seed = in.readInt();
+      int req_size = in.readInt();
+
+      return new LevelCheckpoint(phase, seed, req_size, data);
+   }
+
+   // a generator which carries on from here
+   //
+   // config and templates should be what the original generator had (but templates must be another instance,
+   // as post-expands' state is put back as it was) the config is copied, with the recorded seed and a Random in
+   // the recorded state
+   // and, if it has a FailureCache, a new one the same size with the recorded contents
+   public LevelGenerator resume(IoCContainer ioc_container, LevelGeneratorConfiguration config,
+                                TemplateStore templates) throws IOException
+   {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(m_data));
+
+      in.readInt();
+      in.readInt();
+
+      LevelGenerator.Phase phase = readPhase(in);
+      int seed = in.readInt();
+      int req_size = in.readInt();
+      int expand_start_size = in.readInt();
+
+      int rand_length = in.readInt();
+
+      if (rand_length < 0 || rand_length > m_data.length)
+         throw new IOException("Corrupt level checkpoint: bad random length");
+
+      byte[] rand_bytes = new byte[rand_length];
+      in.readFully(rand_bytes);
+
+      int num_states = in.readInt();
+
+      if (num_states < 0 || num_states > m_data.length)
+         throw new IOException("Corrupt level checkpoint: bad number of post-expand states");
+
+      long[] states = new long[num_states];
+
+      for(int i = 0; i < num_states; i++)
+      {
+         states[i] = in.readLong();
+      }
+
+      if (in.readBoolean() != (config.FailureCache != null))
+         throw new IOException(config.FailureCache != null
+               ? "Level checkpoint was made without a failure cache"
+               : "Level checkpoint was made with a failure cache");
+
+      ExpansionFailureCache failure_cache = null;
+
+      if (config.FailureCache != null)
+      {
+         failure_cache = config.FailureCache.emptyCopy();
+         failure_cache.read(in);
+      }
+
+      Graph graph = GraphCodec.read(in, nodeCreators(templates), edgeCreators());
+
+      try
+      {
+         templates.SetPostExpandStates(states);
+      }
+      catch (IllegalArgumentException e)
+      {
+         throw new IOException("Level checkpoint was made with different templates", e);
+      }
+
+      LevelGeneratorConfiguration c = LevelGeneratorConfiguration.shallowCopy(config);
+      c.Seed = seed;
+      c.Rand = deserializeRandom(rand_bytes);
+      c.FailureCache = failure_cache;
+
+      return new LevelGenerator(ioc_container, req_size, c, templates, phase, graph, expand_start_size);
+   }
+
+   private static LevelGenerator.Phase readPhase(DataInputStream in) throws IOException
+   {
+      int p = in.readInt();
+
+      if (p < 0 || p >= LevelGenerator.Phase.values().length)
+         throw new IOException("Corrupt level checkpoint: bad phase");
+
+      return LevelGenerator.Phase.values()[p];
+   }
+
+   // the creators our graphs' nodes and edges can have, written as indices into these
+   private static List<GeomLayout.IGeomLayoutCreateFromNode> nodeCreators(TemplateStore templates)
+   {
+      ArrayList<GeomLayout.IGeomLayoutCreateFromNode> ret = new ArrayList<>();
+
+      ret.add(Node.DefaultLayourGreator);
+      ret.add(EdgeAdjusterStepper.DefaultGeomMaker);
+      ret.addAll(templates.GetNodeLayoutCreators());
+
+      return ret;
+   }
+
+   private static List<GeomLayout.IGeomLayoutCreateFromDirectedEdge> edgeCreators()
+   {
+      return Collections.singletonList(Graph.DefaultCorridorCreator);
+   }
+
+   // Random doesn't let us read its seed, but it is Serializable
+   private static byte[] serializeRandom(Random rand) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+      {
+         oos.writeObject(rand);
+      }
+
+      return bytes.toByteArray();
+   }
+
+   private static Random deserializeRandom(byte[] data) throws IOException
+   {
+      // checkpoints are files, so don't let one make anything but a Random
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))
+      {
+         @Override
+         protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+         {
+            if (!desc.getName().equals(Random.class.getName()))
+               throw new InvalidClassException(desc.getName(), "Not allowed in a level checkpoint");
+
+            return super.resolveClass(desc);
+         }
+      })
+      {
+         return (Random)ois.readObject();
+      }
+      catch (ClassNotFoundException | ClassCastException e)
+      {
+         throw new IOException("Corrupt level checkpoint: bad random", e);
+      }
+   }
+
+   private final LevelGenerator.Phase m_phase;
+   private final int m_seed;
+   private final int m_req_size;
+   private final byte[] m_data;
+
+   // "LVLC"
+   private final static int s_magic = 0x4c564c43;
+   private final static int s_version = 3;
+}
@@ -0,0 +1,277 @@
+package engine.level;
+
+import engine.Box;
+import engine.XY;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// a finished Level in binary, with everything makeLevel worked out (walls, their normals and links, and which cell
+// of the collision map each is in) so reading one back is just making the objects
+//
+// <magic> <version>
+// <cell size> <wall facet length>
+// <has bounds> [<min x> <min y> <max x> <max y>]
+// <has start> [<start x> <start y>]
+// <num walls>
+//    <start x> <start y> <end x> <end y> <normal x> <normal y> <next> <prev>    per wall, loop by loop
+// <num loops>
+//    <num walls>    per loop
+// <num cells>
+//    <cell x> <cell y> <num walls> <wall>...    per cell
+//
+// walls are referred to by their index in the wall list, everything is big-endian
+public final class LevelFile
+{
+   public static void write(Level level, Path file) throws IOException
+   {
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+      {
+         write(level, out);
+      }
+
+      // so nobody ever reads half a file
+      try
+      {
+         Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   private static void write(Level level, DataOutputStream out) throws IOException
+   {
+      out.writeInt(s_magic);
+      out.writeInt(s_version);
+
+      out.writeDouble(level.getCellSize());
+      out.writeDouble(level.getWallFacetLength());
+
+      Box b = level.getBounds();
+      boolean has_bounds = b != null && b.DX() >= 0;
+
+      out.writeBoolean(has_bounds);
+
+      if (has_bounds)
+      {
+         writeXY(out, b.Min);
+         writeXY(out, b.Max);
+      }
+
+      XY start = level.startPos();
+
+      out.writeBoolean(start != null);
+
+      if (start != null)
+      {
+         writeXY(out, start);
+      }
+
+      IdentityHashMap<Wall, Integer> wall_idx = new IdentityHashMap<>();
+
+      for(WallLoop wl : level.getWallLoops())
+      {
+         for(Wall w : wl)
+         {
+            wall_idx.put(w, wall_idx.size());
+         }
+      }
+
+      out.writeInt(wall_idx.size());
+
+      for(WallLoop wl : level.getWallLoops())
+      {
+         for(Wall w : wl)
+         {
+            writeXY(out, w.Start);
+            writeXY(out, w.End);
+            writeXY(out, w.Normal);
+            out.writeInt(indexOf(wall_idx, w.getNext()));
+            out.writeInt(indexOf(wall_idx, w.getPrev()));
+         }
+      }
+
+      out.writeInt(level.getWallLoops().size());
+
+      for(WallLoop wl : level.getWallLoops())
+      {
+         out.writeInt(wl.size());
+      }
+
+      Map<CC, ArrayList<Wall>> wall_map = level.getWallMap();
+
+      out.writeInt(wall_map.size());
+
+      for(Map.Entry<CC, ArrayList<Wall>> me : wall_map.entrySet())
+      {
+         out.writeInt(me.getKey().First);
+         out.writeInt(me.getKey().Second);
+         out.writeInt(me.getValue().size());
+
+         for(Wall w : me.getValue())
+         {
+            out.writeInt(indexOf(wall_idx, w));
+         }
+      }
+   }
+
+   // maps the file rather than reading it, so a large level costs just the walk over it making objects
+   // (on Windows the file can't be replaced or deleted until the mapping is garbage collected)
+   public static Level read(Path file) throws IOException
+   {
+      try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+
+         return read(buf);
+      }
+      catch (BufferUnderflowException | IndexOutOfBoundsException e)
+      {
+         throw new IOException("Corrupt level file: " + file, e);
+      }
+   }
+
+   private static Level read(MappedByteBuffer buf) throws IOException
+   {
+      if (buf.getInt() != s_magic)
+         throw new IOException("Not a level file");
+
+      if (buf.getInt() != s_version)
+         throw new IOException("Unsupported level file version");
+
+      double cell_size = buf.getDouble();
+      double wall_facet_length = buf.getDouble();
+
+      Box bounds = buf.get() != 0 ? new Box(readXY(buf), readXY(buf)) : new Box();
+      XY start = buf.get() != 0 ? readXY(buf) : null;
+
+      // each wall is 6 doubles and 2 ints, so this can't be more than the rest of the file
+      int num_walls = readCount(buf, 56);
+      Wall[] walls = new Wall[num_walls];
+      int[] links = new int[num_walls * 2];
+
+      for(int i = 0; i < num_walls; i++)
+      {
+         walls[i] = new Wall(readXY(buf), readXY(buf), readXY(buf));
+         links[i * 2] = buf.getInt();
+         links[i * 2 + 1] = buf.getInt();
+      }
+
+      for(int i = 0; i < num_walls; i++)
+      {
+         walls[i].setNext(wallAt(walls, links[i * 2]));
+         walls[i].setPrev(wallAt(walls, links[i * 2 + 1]));
+      }
+
+      int num_loops = readCount(buf, 4);
+      WallLoopSet loops = new WallLoopSet();
+      int next_wall = 0;
+
+      for(int i = 0; i < num_loops; i++)
+      {
+         int size = readCount(buf, 0);
+
+         if (size > num_walls - next_wall)
+            throw new IOException("Corrupt level file: loops have more walls than the file");
+
+         WallLoop wl = new WallLoop();
+         wl.ensureCapacity(size);
+
+         for(int j = 0; j < size; j++)
+         {
+            wl.add(walls[next_wall++]);
+         }
+
+         loops.add(wl);
+      }
+
+      int num_cells = readCount(buf, 12);
+      HashMap<CC, ArrayList<Wall>> wall_map = new HashMap<>(num_cells * 4 / 3 + 1);
+
+      for(int i = 0; i < num_cells; i++)
+      {
+         CC cell = new CC(buf.getInt(), buf.getInt());
+
+         int size = readCount(buf, 4);
+         ArrayList<Wall> cell_walls = new ArrayList<>(size);
+
+         for(int j = 0; j < size; j++)
+         {
+            cell_walls.add(wallAt(walls, buf.getInt()));
+         }
+
+         wall_map.put(cell, cell_walls);
+      }
+
+      return new Level(cell_size, wall_facet_length, bounds, start, loops, wall_map);
+   }
+
+   private static void writeXY(DataOutputStream out, XY xy) throws IOException
+   {
+      out.writeDouble(xy.X);
+      out.writeDouble(xy.Y);
+   }
+
+   private static XY readXY(MappedByteBuffer buf)
+   {
+      return new XY(buf.getDouble(), buf.getDouble());
+   }
+
+   private static int indexOf(IdentityHashMap<Wall, Integer> wall_idx, Wall w)
+   {
+      if (w == null)
+         return -1;
+
+      Integer ret = wall_idx.get(w);
+
+      if (ret == null)
+         throw new IllegalArgumentException("Level refers to a wall which isn't in any of its loops");
+
+      return ret;
+   }
+
+   private static Wall wallAt(Wall[] walls, int idx) throws IOException
+   {
+      if (idx == -1)
+         return null;
+
+      if (idx < 0 || idx >= walls.length)
+         throw new IOException("Corrupt level file: wall " + idx + " out of range");
+
+      return walls[idx];
+   }
+
+   // a count of things each at least item_size bytes, checked against what's left so a corrupt count
+   // doesn't have us allocating huge arrays
+   private static int readCount(MappedByteBuffer buf, int item_size) throws IOException
+   {
+      int ret = buf.getInt();
+
+      if (ret < 0 || (long)ret * item_size > buf.remaining())
+         throw new IOException("Corrupt level file: bad count");
+
+      return ret;
+   }
+
+   // "LVLF"
+   private final static int s_magic = 0x4c564c46;
+   // bump whenever the format, or what Level makes of it, changes
+   final static int s_version = 1;
+}
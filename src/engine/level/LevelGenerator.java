@@ -7,6 +7,7 @@ import engine.graph.INode;
 import engine.graph.TemplateStore;
 
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class LevelGenerator
 {
@@ -20,6 +21,35 @@ public class LevelGenerator
       m_templates = ts;
    }
 
+   // carrying on from a checkpoint, see LevelCheckpoint.resume
+   LevelGenerator(IoCContainer ioc_container, int req_size, LevelGeneratorConfiguration config, TemplateStore ts,
+                  Phase phase, Graph graph, int expand_start_size)
+   {
+      this(ioc_container, req_size, config, ts);
+
+      m_graph = graph;
+      m_expand_start_size = expand_start_size;
+
+      switch (phase)
+      {
+         case GraphExpand:
+            makeSteppers(true);
+            break;
+
+         case FinalRelax:
+            makeSteppers(false);
+            break;
+
+         case BaseGeometry:
+            break;
+
+         default:
+            throw new IllegalArgumentException("Cannot resume in phase " + phase);
+      }
+
+      m_phase = phase;
+   }
+
    public StepperController.StatusReport step()
    {
       switch (m_phase)
@@ -63,17 +93,9 @@ public class LevelGenerator
    private StepperController.StatusReport initStep()
    {
       m_graph = MakeSeed();
+      m_expand_start_size = m_graph.numNodes();
 
-      m_expander = new StepperController(m_graph,
-            new ExpandToSizeStepper(m_ioc_container, m_graph, m_reqSize, m_templates,
-                  m_config));
-
-      LevelGeneratorConfiguration temp = LevelGeneratorConfiguration.shallowCopy(m_config);
-      temp.RelaxationForceTarget /= 5;
-      temp.RelaxationMoveTarget /= 5;
-
-      m_final_relaxer = new StepperController(m_graph,
-            new RelaxerStepper(m_ioc_container, m_graph, temp));
+      makeSteppers(true);
 
       m_phase = Phase.GraphExpand;
 
@@ -83,6 +105,27 @@ public class LevelGenerator
             false);
    }
 
+   private void makeSteppers(boolean expand)
+   {
+      if (expand)
+      {
+         m_expander = new StepperController(m_graph,
+               new ExpandToSizeStepper(m_ioc_container, m_graph, m_reqSize, m_templates,
+                     m_config, m_expand_start_size));
+
+         m_expander.setListener(m_step_listener);
+      }
+
+      LevelGeneratorConfiguration temp = LevelGeneratorConfiguration.shallowCopy(m_config);
+      temp.RelaxationForceTarget /= 5;
+      temp.RelaxationMoveTarget /= 5;
+
+      m_final_relaxer = new StepperController(m_graph,
+            m_ioc_container.FinalRelaxerFactory.makeRelaxer(m_ioc_container, m_graph, temp));
+
+      m_final_relaxer.setListener(m_step_listener);
+   }
+
    private StepperController.StatusReport graphExpandStep()
    {
       StepperController.StatusReport ret = null;
@@ -95,11 +138,15 @@ public class LevelGenerator
          {
             m_phase = Phase.FinalRelax;
 
+            maybeCheckpoint();
+
             return new StepperController.StatusReport(
                   StepperController.Status.Iterate,
                   ret.Log,
                   false);
          }
+
+         maybeCheckpoint();
       }
 
       return ret;
@@ -117,6 +164,8 @@ public class LevelGenerator
          {
             m_phase = Phase.BaseGeometry;
 
+            maybeCheckpoint();
+
             return new StepperController.StatusReport(
                   StepperController.Status.Iterate,
                   ret.Log,
@@ -129,7 +178,7 @@ public class LevelGenerator
 
    private StepperController.StatusReport baseGeometryStep()
    {
-      m_union_helper = new UnionHelper();
+      m_union_helper = m_config.ParallelUnion ? new UnionHelper(ForkJoinPool.commonPool()) : new UnionHelper();
 
       m_union_helper.generateGeometry(m_graph);
 
@@ -161,6 +210,62 @@ public class LevelGenerator
             false);
    }
 
+   // whether our steppers hold nothing which isn't in the graph (or can be remade from what we know) so we
+   // could carry on from here with a new set of steppers:
+   // - expanding, when only the top stepper is running and it is about to decide whether to expand again
+   // - final relaxing, before the relaxer has set itself up
+   // - about to make the base geometry
+   // after that the geometry isn't in the graph, but it only takes the Union phase to redo it
+   private boolean atSafePoint()
+   {
+      switch (m_phase)
+      {
+         case GraphExpand:
+            return m_expander.depth() == 1
+                  && m_expander.lastStatus() != StepperController.Status.StepOutFailure;
+
+         case FinalRelax:
+            return m_final_relaxer.steps() == 0;
+
+         case BaseGeometry:
+            return true;
+      }
+
+      return false;
+   }
+
+   // a record of where we are, to carry on from later with LevelCheckpoint.resume(), null if this isn't a point
+   // we can do that from (see atSafePoint)
+   //
+   // templates must be a store the generator does not share, as the post-expands' state is recorded
+   public LevelCheckpoint checkpoint()
+   {
+      if (!atSafePoint())
+         return null;
+
+      return LevelCheckpoint.capture(m_phase, m_config.Seed, m_reqSize, m_expand_start_size, m_config.Rand,
+            m_config.FailureCache, m_templates, m_graph);
+   }
+
+   private void maybeCheckpoint()
+   {
+      if (m_checkpoint_listener == null)
+         return;
+
+      long now = System.nanoTime();
+
+      if (now - m_last_checkpoint_nanos < m_checkpoint_interval_nanos)
+         return;
+
+      LevelCheckpoint cp = checkpoint();
+
+      if (cp != null)
+      {
+         m_last_checkpoint_nanos = now;
+         m_checkpoint_listener.checkpointed(cp);
+      }
+   }
+
    private Graph MakeSeed()
    {
       Graph ret = new Graph();
@@ -194,6 +299,43 @@ public class LevelGenerator
       return m_phase;
    }
 
+   // the controller running the steppers for a phase, for its step counts
+   // (null for phases which don't use one, or haven't started)
+   public StepperController getController(Phase phase)
+   {
+      switch (phase)
+      {
+         case GraphExpand:
+            return m_expander;
+
+         case FinalRelax:
+            return m_final_relaxer;
+      }
+
+      return null;
+   }
+
+   // to be told about every expansion and final relaxation step, set before the first step
+   public void setStepListener(StepperController.IStepListener listener)
+   {
+      m_step_listener = listener;
+   }
+
+   public interface ICheckpointListener
+   {
+      // called on the generator's thread, so hand writing it out to another (see CheckpointWriter)
+      void checkpointed(LevelCheckpoint checkpoint);
+   }
+
+   // to be given a checkpoint at the first safe point (see atSafePoint) once each interval has passed,
+   // zero for every safe point
+   public void setCheckpointListener(ICheckpointListener listener, long interval_millis)
+   {
+      m_checkpoint_listener = listener;
+      m_checkpoint_interval_nanos = interval_millis * 1000000;
+      m_last_checkpoint_nanos = System.nanoTime();
+   }
+
    public enum Phase
    {
       Init,
@@ -210,11 +352,17 @@ public class LevelGenerator
 
    private final TemplateStore m_templates;
 
-   @SuppressWarnings("FieldCanBeLocal")
    private final int m_reqSize;
+   // the graph's size when expansion started, so a resumed ExpandToSizeStepper judges partial success the same
+   private int m_expand_start_size;
 
    private StepperController m_expander;
    private StepperController m_final_relaxer;
+   private StepperController.IStepListener m_step_listener;
+
+   private ICheckpointListener m_checkpoint_listener;
+   private long m_checkpoint_interval_nanos;
+   private long m_last_checkpoint_nanos;
 
    private boolean m_lay_out_running = true;
    private boolean m_level_generated = false;
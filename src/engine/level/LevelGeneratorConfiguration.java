@@ -7,6 +7,7 @@ public class LevelGeneratorConfiguration
 {
    public LevelGeneratorConfiguration(int rand_seed)
    {
+      Seed = rand_seed;
       Rand = new Random(rand_seed);
    }
 
@@ -25,8 +26,16 @@ public class LevelGeneratorConfiguration
       lcg.RelaxationForceTarget = old.RelaxationForceTarget;
       lcg.RelaxationMoveTarget = old.RelaxationMoveTarget;
 
+      lcg.Seed = old.Seed;
       lcg.Rand = old.Rand;
 
+      lcg.ExpandStepsToRun = old.ExpandStepsToRun;
+
+      lcg.SpeculativeTemplateTrials = old.SpeculativeTemplateTrials;
+      lcg.FailureCache = old.FailureCache;
+
+      lcg.ParallelUnion = old.ParallelUnion;
+
       lcg.CellSize = old.CellSize;
       lcg.WallFacetLength = old.WallFacetLength;
 
@@ -65,6 +74,10 @@ public class LevelGeneratorConfiguration
 
    public Random Rand;
 
+   // what Rand was first made from, recorded in checkpoints so a resume can be checked against it
+   // (set this too when replacing Rand with a new one)
+   public int Seed;
+
    // ^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^
    // --------------------------------------------------------------------------------------------------------------
 
@@ -78,6 +91,34 @@ public class LevelGeneratorConfiguration
    // ^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^
    // --------------------------------------------------------------------------------------------------------------
 
+   // --------------------------------------------------------------------------------------------------------------
+   // vvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvv
+   // speculative expansion
+
+   // how many of a node's templates to try at once, each on its own copy of the graph (see
+   // TryAllTemplatesOnOneNodeStepper), 1 tries them one after another on the graph itself
+   //
+   // the levels made depend on the seed and on whether this is 1, but not on what it is otherwise
+   public int SpeculativeTemplateTrials = 1;
+
+   // if set, templates which have failed on similar nodes before are tried after the others
+   // (see ExpansionFailureCache), null tries them all in a purely random order
+   public ExpansionFailureCache FailureCache = null;
+
+   // ^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^
+   // --------------------------------------------------------------------------------------------------------------
+
+   // --------------------------------------------------------------------------------------------------------------
+   // vvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvv
+   // geometry union
+
+   // if set, the base geometry is unioned as a tree of pairs, on the common fork-join pool (see UnionHelper)
+   // rather than one piece at a time, which takes fewer, bigger steps and gives a slightly different level
+   public boolean ParallelUnion = false;
+
+   // ^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^
+   // --------------------------------------------------------------------------------------------------------------
+
    // --------------------------------------------------------------------------------------------------------------
    // vvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvvv
    // settings for the created level
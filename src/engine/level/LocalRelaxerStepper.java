@@ -0,0 +1,479 @@
+package engine.level;
+
+import engine.Util;
+import engine.graph.CrossingEdgeFinder;
+import engine.graph.Graph;
+
+// relaxes only the part of the graph which needs it, holding everything else still
+//
+// after an expansion or an edge split most of the graph is still relaxed from last time, so we start by finding the
+// nodes with forces over RelaxationForceTarget and make those, their immediate graph neighbours and anything close
+// enough to push on them "active", everything else is "fixed"
+//
+// each iteration then only calculates forces involving at least one active node (which gives the exact
+// forces on the active nodes) and only moves active nodes, using grids of the active nodes, the fixed nodes and the
+// fixed edges to find what is close by, so an iteration costs about the size of the active region and
+// its surroundings, not the size of the graph
+//
+// once the active region settles, we recalculate forces over the whole graph (once), if nothing outside the active
+// region is now over target we are done (and everything meets the same criteria as a full relaxation would) otherwise
+// whatever is over target joins the active region and we carry on
+//
+// setup still copies the whole graph into arrays (see ArrayRelaxerStepper) and each full check is one pass over
+// the graph, but those happen a handful of times per relaxation, rather than once per iteration
+public class LocalRelaxerStepper extends ArrayRelaxerStepper
+{
+   public LocalRelaxerStepper(IoCContainer m_ioc_container, Graph graph, LevelGeneratorConfiguration c)
+   {
+      super(m_ioc_container, graph, c);
+   }
+
+   @Override
+   void setUp()
+   {
+      super.setUp();
+
+      m_is_active = new boolean[m_num_nodes];
+
+      m_active = new int[m_num_nodes];
+      m_fixed = new int[m_num_nodes];
+      m_active_edges = new int[m_num_edges];
+      m_fixed_edges = new int[m_num_edges];
+
+      m_active_xs = new double[m_num_nodes];
+      m_active_ys = new double[m_num_nodes];
+      m_active_fxs = new double[m_num_nodes];
+      m_active_fys = new double[m_num_nodes];
+
+      m_fixed_xs = new double[m_num_nodes];
+      m_fixed_ys = new double[m_num_nodes];
+      m_fixed_edge_xs = new double[m_num_edges];
+      m_fixed_edge_ys = new double[m_num_edges];
+
+      m_new_active = new int[m_num_nodes];
+
+      // forces landing on fixed nodes are never read, so we only clear the entries for active nodes
+      m_local = new ForceChunk(new double[m_num_nodes], new double[m_num_nodes]);
+
+      double cell_size = Math.max(m_max_rad * 2 + m_config.RelaxationMinimumSeparation, 1);
+
+      m_active_grid = new NodeGrid(cell_size);
+      m_fixed_grid = new NodeGrid(cell_size);
+      m_fixed_edge_grid = new NodeGrid(cell_size);
+
+      activateOverTarget();
+   }
+
+   // non-private for testing
+   int numActive()
+   {
+      return m_num_active;
+   }
+
+   @Override
+   StepperController.StatusReportInner RelaxStep()
+   {
+      for(int k = 0; k < m_num_active; k++)
+      {
+         int i = m_active[k];
+
+         m_active_xs[k] = m_xs[i];
+         m_active_ys[k] = m_ys[i];
+
+         m_local.Fxs[i] = 0.0;
+         m_local.Fys[i] = 0.0;
+      }
+
+      m_active_grid.build(m_active_xs, m_active_ys, m_num_active);
+
+      m_local.resetDiagnostics();
+
+      AddLocalForces();
+
+      double maxf = 0.0;
+
+      for(int k = 0; k < m_num_active; k++)
+      {
+         int i = m_active[k];
+
+         m_active_fxs[k] = m_local.Fxs[i];
+         m_active_fys[k] = m_local.Fys[i];
+
+         maxf = Math.max(Math.sqrt(m_active_fxs[k] * m_active_fxs[k] + m_active_fys[k] * m_active_fys[k]), maxf);
+      }
+
+      boolean ended = true;
+      double maxd = 0.0;
+      double step = 0.0;
+
+      if (maxf > 0)
+      {
+         maxd = getIntegrator().step(m_active_xs, m_active_ys, m_active_fxs, m_active_fys, m_num_active, maxf);
+         step = getIntegrator().lastTimeStep();
+
+         for(int k = 0; k < m_num_active; k++)
+         {
+            int i = m_active[k];
+
+            m_xs[i] = m_active_xs[k];
+            m_ys[i] = m_active_ys[k];
+         }
+
+         ended = maxd < m_config.RelaxationMoveTarget && maxf < m_config.RelaxationForceTarget;
+      }
+
+      boolean crossing_edges = hasLocalCrossingEdges();
+
+      if (ended && !crossing_edges)
+      {
+         int added = activateOverTarget();
+
+         if (added != 0)
+         {
+            report(maxf, maxd, step, m_num_active, m_local, false, false);
+
+            return new StepperController.StatusReportInner(StepperController.Status.Iterate,
+                  null, "Widened relaxation by " + added + " nodes to " + m_num_active + " of " + m_num_nodes);
+         }
+      }
+
+      return report(maxf, maxd, step, m_num_active, m_local, crossing_edges, ended);
+   }
+
+   // every force with at least one active node involved, which is all the forces on the active nodes
+   private void AddLocalForces()
+   {
+      double sep = m_config.RelaxationMinimumSeparation;
+
+      for(int k = 0; k < m_num_active_edges; k++)
+      {
+         double ratio = AddEdgeForces(m_local, m_active_edges[k]);
+         m_local.MaxEdgeStretch = Math.max(ratio, m_local.MaxEdgeStretch);
+         m_local.MaxEdgeSqueeze = Math.min(ratio, m_local.MaxEdgeSqueeze);
+      }
+
+      // edges which move, against anything close
+      for(int k = 0; k < m_num_active_edges; k++)
+      {
+         int e = m_active_edges[k];
+         int s = m_edge_starts[e];
+         int t = m_edge_ends[e];
+
+         double range = m_edge_half_widths[e] + m_max_rad + sep + s_margin;
+
+         double min_x = Math.min(m_xs[s], m_xs[t]) - range;
+         double min_y = Math.min(m_ys[s], m_ys[t]) - range;
+         double max_x = Math.max(m_xs[s], m_xs[t]) + range;
+         double max_y = Math.max(m_ys[s], m_ys[t]) + range;
+
+         int found = m_active_grid.query(min_x, min_y, max_x, max_y, m_num_active);
+
+         for(int r = 0; r < found; r++)
+         {
+            addNodeEdgeForce(e, m_active[m_active_grid.result(r)]);
+         }
+
+         found = m_fixed_grid.query(min_x, min_y, max_x, max_y, m_num_fixed);
+
+         for(int r = 0; r < found; r++)
+         {
+            addNodeEdgeForce(e, m_fixed[m_fixed_grid.result(r)]);
+         }
+      }
+
+      // edges which don't move, against active nodes close to them
+      // (found by their mid-points, so the search is padded by the longest half-length)
+      for(int k = 0; k < m_num_active; k++)
+      {
+         int i = m_active[k];
+
+         double range = m_rads[i] + m_max_fixed_half_width + sep + m_max_fixed_half_length + s_margin;
+
+         int found = m_fixed_edge_grid.query(m_xs[i] - range, m_ys[i] - range, m_xs[i] + range, m_ys[i] + range,
+               m_num_fixed_edges);
+
+         for(int r = 0; r < found; r++)
+         {
+            addNodeEdgeForce(m_fixed_edges[m_fixed_edge_grid.result(r)], i);
+         }
+      }
+
+      for(int k = 0; k < m_num_active; k++)
+      {
+         int i = m_active[k];
+
+         double range = m_rads[i] + m_max_rad + sep + s_margin;
+
+         double min_x = m_xs[i] - range;
+         double min_y = m_ys[i] - range;
+         double max_x = m_xs[i] + range;
+         double max_y = m_ys[i] + range;
+
+         // active pairs only once, m_active is in ascending order, so these all have lower indices than i
+         int found = m_active_grid.query(min_x, min_y, max_x, max_y, k);
+
+         for(int r = 0; r < found; r++)
+         {
+            addNodeForce(i, m_active[m_active_grid.result(r)]);
+         }
+
+         found = m_fixed_grid.query(min_x, min_y, max_x, max_y, m_num_fixed);
+
+         for(int r = 0; r < found; r++)
+         {
+            addNodeForce(i, m_fixed[m_fixed_grid.result(r)]);
+         }
+      }
+   }
+
+   private void addNodeEdgeForce(int e, int n)
+   {
+      if (n == m_edge_starts[e] || n == m_edge_ends[e])
+         return;
+
+      double ratio = AddNodeEdgeForces(m_local, e, n);
+      m_local.MaxEdgeSideSqueeze = Math.min(ratio, m_local.MaxEdgeSideSqueeze);
+   }
+
+   private void addNodeForce(int i, int j)
+   {
+      if (connects(i, j))
+         return;
+
+      // same way round as the other relaxers, higher index first
+      double fraction = AddNodeForces(m_local, Math.max(i, j), Math.min(i, j));
+
+      // fraction too close, if any...
+      m_local.MaxNodeSqueeze = Math.max(m_local.MaxNodeSqueeze, 1 - fraction);
+   }
+
+   // fixed edges cannot have moved into each other, so only edges which have an active end need checking
+   private boolean hasLocalCrossingEdges()
+   {
+      if (m_active_crossings.hasCrossing(m_xs, m_ys))
+         return true;
+
+      for(int k = 0; k < m_num_active_edges; k++)
+      {
+         int e = m_active_edges[k];
+         int s = m_edge_starts[e];
+         int t = m_edge_ends[e];
+
+         double range = m_max_fixed_half_length + s_margin;
+
+         int found = m_fixed_edge_grid.query(
+               Math.min(m_xs[s], m_xs[t]) - range, Math.min(m_ys[s], m_ys[t]) - range,
+               Math.max(m_xs[s], m_xs[t]) + range, Math.max(m_ys[s], m_ys[t]) + range,
+               m_num_fixed_edges);
+
+         for(int r = 0; r < found; r++)
+         {
+            int fe = m_fixed_edges[m_fixed_edge_grid.result(r)];
+
+            if (edgesCross(Math.max(e, fe), Math.min(e, fe)))
+               return true;
+         }
+      }
+
+      return false;
+   }
+
+   private boolean edgesCross(int e1, int e2)
+   {
+      int s1 = m_edge_starts[e1];
+      int t1 = m_edge_ends[e1];
+      int s2 = m_edge_starts[e2];
+      int t2 = m_edge_ends[e2];
+
+      // connecting lines not considered crossing
+      if (s1 == s2 || s1 == t2 || t1 == s2 || t1 == t2)
+         return false;
+
+      return Util.edgeIntersect(m_xs[s1], m_ys[s1], m_xs[t1], m_ys[t1],
+            m_xs[s2], m_ys[s2], m_xs[t2], m_ys[t2]) != null;
+   }
+
+   // one pass over the whole graph, anything not yet active which is over the force target joins the active region,
+   // with its neighbourhood
+   // returns how many nodes became active
+   private int activateOverTarget()
+   {
+      buildGrid();
+      AddAllForces();
+
+      int num_new = 0;
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         if (!m_is_active[i]
+               && Math.sqrt(m_fxs[i] * m_fxs[i] + m_fys[i] * m_fys[i]) > m_config.RelaxationForceTarget)
+         {
+            m_new_active[num_new] = i;
+            num_new++;
+         }
+      }
+
+      if (num_new == 0)
+         return 0;
+
+      int before = m_num_active;
+
+      activate(num_new);
+
+      return m_num_active - before;
+   }
+
+   // activates the first "count" nodes in m_new_active, plus their graph neighbours and anything close enough
+   // to push on them or their neighbours
+   private void activate(int count)
+   {
+      for(int k = 0; k < count; k++)
+      {
+         m_is_active[m_new_active[k]] = true;
+      }
+
+      int seeds_and_neighbours = count;
+
+      for(int k = 0; k < count; k++)
+      {
+         int i = m_new_active[k];
+
+         for(int a = m_adjacent_starts[i]; a < m_adjacent_starts[i + 1]; a++)
+         {
+            int j = m_adjacent[a];
+
+            if (!m_is_active[j])
+            {
+               m_is_active[j] = true;
+               m_new_active[seeds_and_neighbours] = j;
+               seeds_and_neighbours++;
+            }
+         }
+      }
+
+      // the grid was built by activateOverTarget
+      for(int k = 0; k < seeds_and_neighbours; k++)
+      {
+         int i = m_new_active[k];
+
+         double range = m_rads[i] + m_max_rad + m_config.RelaxationMinimumSeparation + s_margin;
+
+         int found = m_grid.query(m_xs[i] - range, m_ys[i] - range, m_xs[i] + range, m_ys[i] + range, m_num_nodes);
+
+         for(int r = 0; r < found; r++)
+         {
+            m_is_active[m_grid.result(r)] = true;
+         }
+      }
+
+      rebuildRegions();
+   }
+
+   private void rebuildRegions()
+   {
+      m_num_active = 0;
+      m_num_fixed = 0;
+
+      for(int i = 0; i < m_num_nodes; i++)
+      {
+         if (m_is_active[i])
+         {
+            m_active[m_num_active] = i;
+            m_num_active++;
+         }
+         else
+         {
+            m_fixed[m_num_fixed] = i;
+            m_fixed_xs[m_num_fixed] = m_xs[i];
+            m_fixed_ys[m_num_fixed] = m_ys[i];
+            m_num_fixed++;
+         }
+      }
+
+      m_fixed_grid.build(m_fixed_xs, m_fixed_ys, m_num_fixed);
+
+      m_num_active_edges = 0;
+      m_num_fixed_edges = 0;
+      m_max_fixed_half_length = 0;
+      m_max_fixed_half_width = 0;
+
+      for(int e = 0; e < m_num_edges; e++)
+      {
+         int s = m_edge_starts[e];
+         int t = m_edge_ends[e];
+
+         if (m_is_active[s] || m_is_active[t])
+         {
+            m_active_edges[m_num_active_edges] = e;
+            m_num_active_edges++;
+         }
+         else
+         {
+            m_fixed_edges[m_num_fixed_edges] = e;
+            m_fixed_edge_xs[m_num_fixed_edges] = (m_xs[s] + m_xs[t]) / 2;
+            m_fixed_edge_ys[m_num_fixed_edges] = (m_ys[s] + m_ys[t]) / 2;
+            m_num_fixed_edges++;
+
+            double dx = m_xs[t] - m_xs[s];
+            double dy = m_ys[t] - m_ys[s];
+
+            m_max_fixed_half_length = Math.max(m_max_fixed_half_length, Math.sqrt(dx * dx + dy * dy) / 2);
+            m_max_fixed_half_width = Math.max(m_max_fixed_half_width, m_edge_half_widths[e]);
+         }
+      }
+
+      m_fixed_edge_grid.build(m_fixed_edge_xs, m_fixed_edge_ys, m_num_fixed_edges);
+
+      int[] starts = new int[m_num_active_edges];
+      int[] ends = new int[m_num_active_edges];
+
+      for(int k = 0; k < m_num_active_edges; k++)
+      {
+         starts[k] = m_edge_starts[m_active_edges[k]];
+         ends[k] = m_edge_ends[m_active_edges[k]];
+      }
+
+      m_active_crossings.setEdges(starts, ends, m_num_active_edges);
+
+      // which nodes the integrator is looking after has changed, so any state it had is meaningless
+      getIntegrator().reset(m_num_active, m_config);
+   }
+
+   private boolean[] m_is_active;
+
+   // node and edge indices, in ascending order
+   private int[] m_active;
+   private int m_num_active;
+   private int[] m_fixed;
+   private int m_num_fixed;
+   private int[] m_active_edges;
+   private int m_num_active_edges;
+   private int[] m_fixed_edges;
+   private int m_num_fixed_edges;
+
+   // compacted positions and forces of the active nodes, for the grid and integrator
+   private double[] m_active_xs;
+   private double[] m_active_ys;
+   private double[] m_active_fxs;
+   private double[] m_active_fys;
+
+   // compacted positions of the fixed nodes and the mid-points of the fixed edges, for their grids
+   private double[] m_fixed_xs;
+   private double[] m_fixed_ys;
+   private double[] m_fixed_edge_xs;
+   private double[] m_fixed_edge_ys;
+
+   private double m_max_fixed_half_length;
+   private double m_max_fixed_half_width;
+
+   private NodeGrid m_active_grid;
+   private NodeGrid m_fixed_grid;
+   private NodeGrid m_fixed_edge_grid;
+
+   private final CrossingEdgeFinder m_active_crossings = new CrossingEdgeFinder();
+
+   private ForceChunk m_local;
+
+   // scratch space for activation
+   private int[] m_new_active;
+}
@@ -0,0 +1,728 @@
+package engine.level;
+
+import engine.Util;
+import engine.XY;
+import engine.graph.CrossingEdgeFinder;
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.GraphUtil;
+import engine.graph.INode;
+
+import java.util.*;
+
+// relaxes a large graph coarse-to-fine
+//
+// the graph is repeatedly coarsened by contracting a matching of its edges (each node merged with at most one
+// neighbour) until it is small, or stops shrinking
+// the coarsest graph is relaxed first, then each finer graph is placed around it (see prolong) and relaxed in turn,
+// down to the real graph
+//
+// relaxation moves nodes at most RelaxationMaxMove a step, so on a big graph long-range structure takes a very
+// long time to spread, a coarse graph has fewer, bigger nodes and we let those move proportionately further, so
+// by the time we get down to the real graph only local adjustments are left
+//
+// if relaxing a coarse level goes wrong (the coarse graphs can get crossings the real one never would) we skip it
+// and if the real graph itself fails we put it back where it started and just relax that directly
+public class MultilevelRelaxerStepper implements IStepper
+{
+   public MultilevelRelaxerStepper(IoCContainer ioc_container, Graph graph, LevelGeneratorConfiguration c)
+   {
+      this(ioc_container, graph, c, ArrayRelaxerStepper::new);
+   }
+
+   // level_relaxer_factory makes the relaxer for each level, including the last one on the real graph
+   public MultilevelRelaxerStepper(IoCContainer ioc_container, Graph graph, LevelGeneratorConfiguration c,
+         IoCContainer.IRelaxerFactory level_relaxer_factory)
+   {
+      m_ioc_container = ioc_container;
+      m_graph = graph;
+      m_config = c;
+      m_level_relaxer_factory = level_relaxer_factory;
+   }
+
+   @Override
+   public StepperController.StatusReportInner step(StepperController.Status status)
+   {
+      if (m_relaxer == null)
+      {
+         setUp();
+      }
+
+      StepperController.StatusReportInner ret = m_relaxer.step(m_relaxer_status);
+      m_relaxer_status = StepperController.Status.Iterate;
+
+      switch (ret.Status)
+      {
+         case StepOutSuccess:
+            if (m_current_level == 0)
+               return ret;
+
+            return refine("Level " + m_current_level + " relaxed.");
+
+         case StepOutFailure:
+            if (m_current_level > 0)
+            {
+               // a coarse level is only a means to an end, so put it back how it was and carry on from there
+               for(INode n : m_level_start.keySet())
+               {
+                  n.setPos(m_level_start.get(n));
+               }
+
+               return refine("Level " + m_current_level + " skipped: " + ret.log());
+            }
+
+            if (m_fallen_back)
+               return ret;
+
+            return fallBack("Level 0: " + ret.log());
+      }
+
+      // which level we're on is in the metrics, as the number of nodes moved
+      return ret;
+   }
+
+   private StepperController.StatusReportInner refine(String log)
+   {
+      m_current_level--;
+
+      if (!prolong(m_levels.get(m_current_level)))
+         return fallBack("Could not place level " + m_current_level + " without crossing edges.");
+
+      startRelaxer();
+
+      return new StepperController.StatusReportInner(StepperController.Status.Iterate,
+            null, log + " Refining level " + m_current_level + " (" + currentGraph().numNodes() + " nodes).");
+   }
+
+   private void setUp()
+   {
+      m_original_positions = new HashMap<>();
+
+      for(INode n : m_graph.allGraphNodes())
+      {
+         m_original_positions.put(n, n.getPos());
+      }
+
+      Graph g = m_graph;
+
+      while(g.numNodes() > s_min_coarse_nodes)
+      {
+         Level l = coarsen(g);
+
+         // a star, or similar, barely shrinks and isn't worth another level
+         if (l.Coarse.numNodes() > g.numNodes() * s_min_shrink)
+            break;
+
+         m_levels.add(l);
+         g = l.Coarse;
+      }
+
+      m_current_level = m_levels.size();
+
+      startRelaxer();
+   }
+
+   // builds the next coarser graph, merging each node with at most one of its neighbours
+   // non-private for testing
+   static Level coarsen(Graph fine)
+   {
+      Level ret = new Level(fine, new Graph());
+
+      ArrayList<INode> nodes = fine.allGraphNodes();
+
+      // deterministic tie-breaking, whatever order the connections come out in
+      HashMap<INode, Integer> order = new HashMap<>();
+
+      for(int i = 0; i < nodes.size(); i++)
+      {
+         order.put(nodes.get(i), i);
+      }
+
+      Comparator<INode> smallest_first = Comparator.comparingDouble(INode::getRad)
+            .thenComparing(order::get);
+
+      // take the smallest nodes first, and pair each with its smallest free neighbour, so the merged nodes
+      // stay about the same size as each other
+      ArrayList<INode> by_size = new ArrayList<>(nodes);
+      by_size.sort(smallest_first);
+
+      for(INode n : by_size)
+      {
+         if (ret.Parent.containsKey(n))
+            continue;
+
+         INode partner = null;
+
+         for(DirectedEdge e : n.getConnections())
+         {
+            INode other = e.Start == n ? e.End : e.Start;
+
+            if (ret.Parent.containsKey(other))
+               continue;
+
+            if (partner == null || smallest_first.compare(other, partner) < 0)
+            {
+               partner = other;
+            }
+         }
+
+         if (partner == null)
+         {
+            INode c = ret.Coarse.addNode(n.getName(), n.getCodes(), n.getTemplate(), n.getRad());
+            c.setPos(n.getPos());
+
+            ret.Parent.put(n, c);
+            ret.Reach.put(n, 0.0);
+         }
+         else
+         {
+            double r1 = n.getRad();
+            double r2 = partner.getRad();
+
+            // keep the area, and put the merged node at the area-weighted centre
+            double w1 = r1 * r1;
+            double w2 = r2 * r2;
+            double w = w1 + w2;
+
+            INode c = ret.Coarse.addNode(n.getName() + "+" + partner.getName(), "", "", Math.sqrt(w));
+
+            c.setPos(w == 0 ? n.getPos()
+                  : n.getPos().multiply(w1 / w).plus(partner.getPos().multiply(w2 / w)));
+
+            ret.Parent.put(n, c);
+            ret.Parent.put(partner, c);
+
+            DirectedEdge joining = n.getConnectionTo(partner);
+
+            if (joining == null)
+            {
+               joining = partner.getConnectionTo(n);
+            }
+
+            double length = (joining.MinLength + joining.MaxLength) / 2;
+            double f1 = w == 0 ? 0.5 : w1 / w;
+
+            ret.Reach.put(n, length * (1 - f1));
+            ret.Reach.put(partner, length * f1);
+
+            ret.Partner.put(n, partner);
+            ret.Partner.put(partner, n);
+         }
+      }
+
+      for(INode n : nodes)
+      {
+         ret.Offset.put(n, n.getPos().minus(ret.Parent.get(n).getPos()));
+      }
+
+      for(INode c : ret.Coarse.allGraphNodes())
+      {
+         ret.CoarseStart.put(c, c.getPos());
+      }
+
+      // merged nodes are further apart than the fine nodes whose edge joined them, we scale the edge up with the size
+      // of the nodes (in two dimensions a group of nodes spreads out about as the square root of how many there are,
+      // which is how the merged radius goes too) and where several fine edges join the same two merged nodes, we keep
+      // the shortest
+      for(DirectedEdge e : fine.allGraphEdges())
+      {
+         INode from = ret.Parent.get(e.Start);
+         INode to = ret.Parent.get(e.End);
+
+         if (from == to)
+            continue;
+
+         double fine_rads = e.Start.getRad() + e.End.getRad();
+         double scale = fine_rads > 0 ? (from.getRad() + to.getRad()) / fine_rads : 1.0;
+
+         DirectedEdge existing = from.getConnectionTo(to);
+
+         if (existing == null)
+         {
+            existing = to.getConnectionTo(from);
+         }
+
+         if (existing != null)
+         {
+            if (existing.MinLength + existing.MaxLength <= (e.MinLength + e.MaxLength) * scale)
+               continue;
+
+            ret.Coarse.disconnect(existing.Start, existing.End);
+         }
+
+         ret.Coarse.connect(from, to, e.MinLength * scale, e.MaxLength * scale, e.HalfWidth);
+      }
+
+      return ret;
+   }
+
+   // places the level's fine graph around the (now relaxed) coarse one
+   //
+   // nodes which weren't merged go where their parent is, and each merged pair goes either side of its parent, as far
+   // out as the edge between them wants, lined up so that each is on the side its own other neighbours are
+   //
+   // that can still leave edges crossing, so we try turning the pairs involved, and if that doesn't sort it out,
+   // pulling every pair in closer to their parent and trying again, and if nothing works we put the fine graph
+   // back where it was before any of this
+   // returns false if even that has crossing edges
+   // non-private for testing
+   static boolean prolong(Level l)
+   {
+      ArrayList<INode> nodes = l.Fine.allGraphNodes();
+      ArrayList<DirectedEdge> edges = l.Fine.allGraphEdges();
+
+      HashMap<INode, Integer> idxs = new HashMap<>();
+
+      for(int i = 0; i < nodes.size(); i++)
+      {
+         idxs.put(nodes.get(i), i);
+      }
+
+      Placement pl = new Placement(l, nodes, edges, idxs);
+
+      for(double scale : s_prolong_scales)
+      {
+         pl.Scale = scale;
+
+         for(INode parent : pl.Pairs.keySet())
+         {
+            pl.Axes.put(parent, pl.sidesAxis(parent));
+            pl.PairScales.put(parent, 1.0);
+            pl.place(parent);
+         }
+
+         for(INode n : nodes)
+         {
+            if (!l.Partner.containsKey(n))
+            {
+               pl.Xs[idxs.get(n)] = l.Parent.get(n).getPos().X;
+               pl.Ys[idxs.get(n)] = l.Parent.get(n).getPos().Y;
+            }
+         }
+
+         if (pl.untangle())
+         {
+            for(int i = 0; i < nodes.size(); i++)
+            {
+               nodes.get(i).setPos(new XY(pl.Xs[i], pl.Ys[i]));
+            }
+
+            return true;
+         }
+      }
+
+      // we'll have to do without whatever the coarse graph did for us here, and start this level from where it was
+      for(INode n : nodes)
+      {
+         n.setPos(l.CoarseStart.get(l.Parent.get(n)).plus(l.Offset.get(n)));
+      }
+
+      return !GraphUtil.hasCrossingEdges(l.Fine);
+   }
+
+   // working state for prolong, positions are held in arrays so we can check for crossings cheaply
+   private static class Placement
+   {
+      Placement(Level l, ArrayList<INode> nodes, ArrayList<DirectedEdge> edges, HashMap<INode, Integer> idxs)
+      {
+         m_level = l;
+         m_edges = edges;
+         m_idxs = idxs;
+
+         Xs = new double[nodes.size()];
+         Ys = new double[nodes.size()];
+
+         m_starts = new int[edges.size()];
+         m_ends = new int[edges.size()];
+
+         int[] degrees = new int[nodes.size()];
+
+         for(int i = 0; i < edges.size(); i++)
+         {
+            m_starts[i] = idxs.get(edges.get(i).Start);
+            m_ends[i] = idxs.get(edges.get(i).End);
+
+            degrees[m_starts[i]]++;
+            degrees[m_ends[i]]++;
+         }
+
+         Finder.setEdges(m_starts, m_ends, edges.size());
+
+         m_node_edges = new int[nodes.size()][];
+
+         for(int i = 0; i < nodes.size(); i++)
+         {
+            m_node_edges[i] = new int[degrees[i]];
+            degrees[i] = 0;
+         }
+
+         for(int i = 0; i < edges.size(); i++)
+         {
+            m_node_edges[m_starts[i]][degrees[m_starts[i]]++] = i;
+            m_node_edges[m_ends[i]][degrees[m_ends[i]]++] = i;
+         }
+
+         for(INode n : nodes)
+         {
+            INode partner = l.Partner.get(n);
+
+            // each pair once, with its parent as the key
+            if (partner != null && !Pairs.containsKey(l.Parent.get(n)))
+            {
+               Pairs.put(l.Parent.get(n), new INode[] { n, partner });
+            }
+         }
+      }
+
+      // the direction from the pair's second node to its first which puts each on the side its other
+      // neighbours are
+      XY sidesAxis(INode parent)
+      {
+         INode[] pair = Pairs.get(parent);
+
+         XY axis = pull(pair[0], parent).minus(pull(pair[1], parent));
+
+         // no preference, so keep them lined up as they started
+         if (axis.isZero())
+         {
+            axis = m_level.Offset.get(pair[0]).minus(m_level.Offset.get(pair[1]));
+         }
+
+         if (axis.isZero())
+         {
+            axis = new XY(1, 0);
+         }
+
+         return axis.asUnit();
+      }
+
+      private XY pull(INode n, INode parent)
+      {
+         XY ret = new XY();
+
+         for(DirectedEdge e : n.getConnections())
+         {
+            INode other_parent = m_level.Parent.get(e.Start == n ? e.End : e.Start);
+
+            XY d = other_parent.getPos().minus(parent.getPos());
+
+            if (other_parent != parent && !d.isZero())
+            {
+               ret = ret.plus(d.asUnit());
+            }
+         }
+
+         return ret;
+      }
+
+      void place(INode parent)
+      {
+         INode[] pair = Pairs.get(parent);
+         XY axis = Axes.get(parent);
+
+         double scale = Scale * PairScales.get(parent);
+
+         XY p0 = parent.getPos().plus(axis.multiply(m_level.Reach.get(pair[0]) * scale));
+         XY p1 = parent.getPos().minus(axis.multiply(m_level.Reach.get(pair[1]) * scale));
+
+         int i0 = m_idxs.get(pair[0]);
+         int i1 = m_idxs.get(pair[1]);
+
+         Xs[i0] = p0.X;
+         Ys[i0] = p0.Y;
+         Xs[i1] = p1.X;
+         Ys[i1] = p1.Y;
+      }
+
+      // tries turning each pair with an edge in a crossing, in eighths of a turn, and pulling it in closer to its
+      // parent, keeping whatever gives the fewest crossings overall, until there are none or it stops helping
+      // returns whether there are none
+      boolean untangle()
+      {
+         int crossings = countCrossings(null);
+
+         for(int pass = 0; pass < s_untangle_passes && crossings > 0; pass++)
+         {
+            LinkedHashSet<INode> involved = new LinkedHashSet<>();
+
+            countCrossings(involved);
+
+            int before = crossings;
+
+            for(INode parent : involved)
+            {
+               XY start_axis = Axes.get(parent);
+               XY best_axis = start_axis;
+               double best_pull = PairScales.get(parent);
+
+               // only this pair's edges change, so only their crossings need counting
+               int best_local = localCrossings(parent);
+               int start_local = best_local;
+
+               for(int turn = 0; turn < 8 && best_local > 0; turn++)
+               {
+                  double angle = turn * Math.PI / 4;
+                  double cos = Math.cos(angle);
+                  double sin = Math.sin(angle);
+
+                  Axes.put(parent, new XY(start_axis.X * cos - start_axis.Y * sin,
+                        start_axis.X * sin + start_axis.Y * cos));
+
+                  for(double pull : s_pair_scales)
+                  {
+                     PairScales.put(parent, pull);
+                     place(parent);
+
+                     int now = localCrossings(parent);
+
+                     if (now < best_local)
+                     {
+                        best_local = now;
+                        best_axis = Axes.get(parent);
+                        best_pull = pull;
+                     }
+                  }
+               }
+
+               Axes.put(parent, best_axis);
+               PairScales.put(parent, best_pull);
+               place(parent);
+
+               crossings -= start_local - best_local;
+            }
+
+            if (crossings == before)
+               break;
+         }
+
+         return crossings == 0;
+      }
+
+      // crossings involving the edges of the pair with this parent, tested against every edge
+      private int localCrossings(INode parent)
+      {
+         INode[] pair = Pairs.get(parent);
+
+         int i0 = m_idxs.get(pair[0]);
+         int i1 = m_idxs.get(pair[1]);
+
+         int ret = 0;
+
+         for(int i : new int[] { i0, i1 })
+         {
+            for(int e : m_node_edges[i])
+            {
+               // the edge between the two, we've already done from the first
+               if (i == i1 && (m_starts[e] == i0 || m_ends[e] == i0))
+                  continue;
+
+               for(int f = 0; f < m_starts.length; f++)
+               {
+                  // a pair of the pair's own edges, count it once, from the lower one
+                  boolean f_ours = m_starts[f] == i0 || m_ends[f] == i0 || m_starts[f] == i1 || m_ends[f] == i1;
+
+                  if (f_ours && f <= e)
+                     continue;
+
+                  if (edgesCross(e, f))
+                  {
+                     ret++;
+                  }
+               }
+            }
+         }
+
+         return ret;
+      }
+
+      private boolean edgesCross(int e, int f)
+      {
+         int s1 = m_starts[e];
+         int t1 = m_ends[e];
+         int s2 = m_starts[f];
+         int t2 = m_ends[f];
+
+         // connecting edges don't count as crossing
+         if (s1 == s2 || s1 == t2 || t1 == s2 || t1 == t2)
+            return false;
+
+         return Util.edgeIntersect(Xs[s1], Ys[s1], Xs[t1], Ys[t1], Xs[s2], Ys[s2], Xs[t2], Ys[t2]) != null;
+      }
+
+      // fills in involved with the parents of any pairs with an edge in a crossing, if it isn't null
+      private int countCrossings(LinkedHashSet<INode> involved)
+      {
+         int[] count = new int[1];
+
+         Finder.findAll(Xs, Ys, (e1, e2) ->
+         {
+            count[0]++;
+
+            if (involved != null)
+            {
+               addInvolved(e1, involved);
+               addInvolved(e2, involved);
+            }
+         });
+
+         return count[0];
+      }
+
+      private void addInvolved(int edge, LinkedHashSet<INode> involved)
+      {
+         DirectedEdge e = m_edges.get(edge);
+
+         for(INode n : new INode[] { e.Start, e.End })
+         {
+            if (m_level.Partner.containsKey(n))
+            {
+               involved.add(m_level.Parent.get(n));
+            }
+         }
+      }
+
+      final CrossingEdgeFinder Finder = new CrossingEdgeFinder();
+      final double[] Xs;
+      final double[] Ys;
+      final LinkedHashMap<INode, INode[]> Pairs = new LinkedHashMap<>();
+      final HashMap<INode, XY> Axes = new HashMap<>();
+      final HashMap<INode, Double> PairScales = new HashMap<>();
+      double Scale;
+
+      private final Level m_level;
+      private final ArrayList<DirectedEdge> m_edges;
+      private final int[] m_starts;
+      private final int[] m_ends;
+      // the edges at each node
+      private final int[][] m_node_edges;
+      private final HashMap<INode, Integer> m_idxs;
+   }
+
+   private StepperController.StatusReportInner fallBack(String why)
+   {
+      for(INode n : m_graph.allGraphNodes())
+      {
+         n.setPos(m_original_positions.get(n));
+      }
+
+      m_fallen_back = true;
+      m_current_level = 0;
+
+      startRelaxer();
+
+      return new StepperController.StatusReportInner(StepperController.Status.Iterate,
+            null, "Multilevel relaxation failed, relaxing the whole graph directly. " + why);
+   }
+
+   private void startRelaxer()
+   {
+      Graph g = currentGraph();
+
+      m_level_start = new HashMap<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         m_level_start.put(n, n.getPos());
+      }
+
+      m_relaxer = m_level_relaxer_factory.makeRelaxer(m_ioc_container, g,
+            m_current_level == 0 ? m_config : coarseConfig(g));
+      m_relaxer_status = StepperController.Status.StepIn;
+   }
+
+   // a coarse graph's nodes are bigger, by this much on average, so they can move further in a step,
+   // and we can stop when they are still that much less settled
+   private LevelGeneratorConfiguration coarseConfig(Graph coarse)
+   {
+      double scale = Math.max(meanRad(coarse) / meanRad(m_graph), 1.0);
+
+      LevelGeneratorConfiguration ret = LevelGeneratorConfiguration.shallowCopy(m_config);
+
+      ret.RelaxationMaxMove *= scale;
+      ret.RelaxationForceTarget *= scale * s_coarse_target_scale;
+      ret.RelaxationMoveTarget *= scale * s_coarse_target_scale;
+
+      return ret;
+   }
+
+   private static double meanRad(Graph g)
+   {
+      double sum = 0;
+
+      for(INode n : g.allGraphNodes())
+      {
+         sum += n.getRad();
+      }
+
+      // shouldn't be possible to have no nodes or all zero-radius nodes, but don't divide by zero if we do
+      return sum > 0 ? sum / g.numNodes() : 1.0;
+   }
+
+   private Graph currentGraph()
+   {
+      if (m_current_level == 0)
+         return m_graph;
+
+      return m_levels.get(m_current_level - 1).Coarse;
+   }
+
+   // non-private for testing
+   int numLevels()
+   {
+      return m_levels.size();
+   }
+
+   // one coarsening step: the two graphs and, for each node of the finer graph, which coarse node it went into
+   // and where it was relative to that
+   static class Level
+   {
+      Level(Graph fine, Graph coarse)
+      {
+         Fine = fine;
+         Coarse = coarse;
+      }
+
+      final Graph Fine;
+      final Graph Coarse;
+      final HashMap<INode, INode> Parent = new HashMap<>();
+      final HashMap<INode, XY> Offset = new HashMap<>();
+      // for fine nodes merged with another, which one
+      final HashMap<INode, INode> Partner = new HashMap<>();
+      // how far, once relaxed, we expect each fine node to sit from the middle of its merged node
+      final HashMap<INode, Double> Reach = new HashMap<>();
+      // where the coarse nodes were before the coarse graph was relaxed
+      final HashMap<INode, XY> CoarseStart = new HashMap<>();
+   }
+
+   private final Graph m_graph;
+   private final LevelGeneratorConfiguration m_config;
+   private final IoCContainer.IRelaxerFactory m_level_relaxer_factory;
+
+   // m_levels.get(i) takes us from level i to level i + 1, level 0 being the real graph
+   private final ArrayList<Level> m_levels = new ArrayList<>();
+   private int m_current_level;
+
+   private IStepper m_relaxer;
+   private StepperController.Status m_relaxer_status;
+
+   private HashMap<INode, XY> m_original_positions;
+   // where the current level's nodes were before we started relaxing it
+   private HashMap<INode, XY> m_level_start;
+   private boolean m_fallen_back = false;
+
+   @SuppressWarnings("FieldCanBeLocal")
+   private final IoCContainer m_ioc_container;
+
+   // don't coarsen any further than this
+   private final static int s_min_coarse_nodes = 32;
+   // and give up coarsening if a step doesn't get us down to at least this fraction of the nodes
+   private final static double s_min_shrink = 0.8;
+   // how far out from their parents to try putting merged pairs, as fractions of the length of the edge between them
+   private final static double[] s_prolong_scales = { 1.0, 0.5, 0.25, 0.1, 0.03 };
+   // and how many times to go round trying to turn pairs to get rid of crossings
+   // (and how much to try pulling in individual pairs while we're at it)
+   private final static double[] s_pair_scales = { 1.0, 0.5, 0.25 };
+   private final static int s_untangle_passes = 10;
+   // intermediate levels only need to be roughly right
+   private final static double s_coarse_target_scale = 10;
+}
@@ -0,0 +1,209 @@
+package engine.level;
+
+import java.util.Arrays;
+
+// a uniform grid over a set of indexed points, used as a broad-phase to find which
+// nodes are close enough to something to need an exact force calculation
+//
+// the grid is rebuilt in place whenever the positions change, cells are stored compressed:
+// m_entries[m_cell_starts[c]] to m_entries[m_cell_starts[c + 1] - 1] are the indices of the points in cell c
+// so once the arrays have grown big enough a rebuild allocates nothing
+class NodeGrid
+{
+   NodeGrid(double min_cell_size)
+   {
+      if (min_cell_size <= 0)
+         throw new IllegalArgumentException("Grid cell size must be > 0");
+
+      m_min_cell_size = min_cell_size;
+   }
+
+   void build(double[] xs, double[] ys, int count)
+   {
+      m_count = count;
+
+      if (count == 0)
+         return;
+
+      double min_x = xs[0];
+      double min_y = ys[0];
+      double max_x = xs[0];
+      double max_y = ys[0];
+
+      for (int i = 1; i < count; i++)
+      {
+         min_x = Math.min(min_x, xs[i]);
+         min_y = Math.min(min_y, ys[i]);
+         max_x = Math.max(max_x, xs[i]);
+         max_y = Math.max(max_y, ys[i]);
+      }
+
+      m_cell_size = m_min_cell_size;
+
+      // if a few nodes have wandered a long way from the rest we don't want an enormous, mostly empty
+      // grid, so grow the cells until there are no more than a few per point
+      // (bigger cells just mean more candidates, never missed ones)
+      while (cellsAlong(max_x - min_x) * (long)cellsAlong(max_y - min_y) > 4L * count + 16)
+      {
+         m_cell_size *= 2;
+      }
+
+      m_origin_x = min_x;
+      m_origin_y = min_y;
+      m_cells_x = cellsAlong(max_x - min_x);
+      m_cells_y = cellsAlong(max_y - min_y);
+
+      int num_cells = m_cells_x * m_cells_y;
+
+      if (m_cell_starts.length < num_cells + 1)
+      {
+         m_cell_starts = new int[num_cells + 1];
+      }
+
+      if (m_entries.length < count)
+      {
+         m_entries = new int[count];
+         m_point_cells = new int[count];
+      }
+
+      Arrays.fill(m_cell_starts, 0, num_cells + 1, 0);
+
+      // counting sort of the points into their cells
+      for (int i = 0; i < count; i++)
+      {
+         int cell = cellX(xs[i]) + cellY(ys[i]) * m_cells_x;
+         m_point_cells[i] = cell;
+         m_cell_starts[cell + 1]++;
+      }
+
+      for (int c = 0; c < num_cells; c++)
+      {
+         m_cell_starts[c + 1] += m_cell_starts[c];
+      }
+
+      // filling in order of index means each cell's entries come out sorted
+      for (int i = 0; i < count; i++)
+      {
+         int cell = m_point_cells[i];
+
+         // use the cell start as a write cursor, which leaves it pointing at the start of the next cell
+         m_entries[m_cell_starts[cell]] = i;
+         m_cell_starts[cell]++;
+      }
+
+      // and shift the cursors back to being starts
+      for (int c = num_cells; c > 0; c--)
+      {
+         m_cell_starts[c] = m_cell_starts[c - 1];
+      }
+
+      m_cell_starts[0] = 0;
+   }
+
+   // finds all points in cells overlapping the given box and with indices < below
+   // results are read back with result(i) for i < the returned count, and come out in ascending index order
+   int query(double min_x, double min_y, double max_x, double max_y, int below)
+   {
+      return query(min_x, min_y, max_x, max_y, below, m_results);
+   }
+
+   int result(int i)
+   {
+      return m_results.get(i);
+   }
+
+   // as above, but into a caller-supplied buffer, so that several threads can search the same grid at once
+   int query(double min_x, double min_y, double max_x, double max_y, int below, Results out)
+   {
+      int found = 0;
+
+      if (m_count == 0)
+         return 0;
+
+      int cx0 = cellX(min_x);
+      int cx1 = cellX(max_x);
+      int cy0 = cellY(min_y);
+      int cy1 = cellY(max_y);
+
+      for (int cy = cy0; cy <= cy1; cy++)
+      {
+         for (int cx = cx0; cx <= cx1; cx++)
+         {
+            int cell = cx + cy * m_cells_x;
+
+            for (int e = m_cell_starts[cell]; e < m_cell_starts[cell + 1]; e++)
+            {
+               int idx = m_entries[e];
+
+               // entries are sorted within a cell, so nothing more of interest here
+               if (idx >= below)
+                  break;
+
+               out.add(found, idx);
+               found++;
+            }
+         }
+      }
+
+      // callers want to see candidates in the same order as a full scan would have
+      // so that forces accumulate identically
+      Arrays.sort(out.m_indices, 0, found);
+
+      return found;
+   }
+
+   static class Results
+   {
+      int get(int i)
+      {
+         return m_indices[i];
+      }
+
+      private void add(int at, int idx)
+      {
+         if (at == m_indices.length)
+         {
+            m_indices = Arrays.copyOf(m_indices, at * 2);
+         }
+
+         m_indices[at] = idx;
+      }
+
+      private int[] m_indices = new int[16];
+   }
+
+   double cellSize()
+   {
+      return m_cell_size;
+   }
+
+   private int cellsAlong(double extent)
+   {
+      return (int)(extent / m_cell_size) + 1;
+   }
+
+   // clamped, as queries can extend beyond the area occupied by points
+   private int cellX(double x)
+   {
+      return Math.min(Math.max((int)Math.floor((x - m_origin_x) / m_cell_size), 0), m_cells_x - 1);
+   }
+
+   private int cellY(double y)
+   {
+      return Math.min(Math.max((int)Math.floor((y - m_origin_y) / m_cell_size), 0), m_cells_y - 1);
+   }
+
+   private final double m_min_cell_size;
+
+   private double m_cell_size;
+   private double m_origin_x;
+   private double m_origin_y;
+   private int m_cells_x;
+   private int m_cells_y;
+   private int m_count;
+
+   private int[] m_cell_starts = new int[0];
+   private int[] m_entries = new int[0];
+   private int[] m_point_cells = new int[0];
+   private final Results m_results = new Results();
+}
@@ -0,0 +1,159 @@
+package engine.level;
+
+import engine.graph.Graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// ArrayRelaxerStepper with the force passes and the force reduction spread over a ForkJoinPool
+//
+// the work is cut into a number of chunks which depends only on the size of the graph, each chunk has its own
+// force buffers and the buffers are always summed in chunk order, so the same graph relaxes to exactly
+// the same layout however many threads the pool has
+//
+// (that layout is not bit-identical to the single threaded relaxers, as the forces on each node are
+// summed in a different order, but it's the same to within rounding)
+public class ParallelArrayRelaxerStepper extends ArrayRelaxerStepper
+{
+   public ParallelArrayRelaxerStepper(IoCContainer m_ioc_container, Graph graph, LevelGeneratorConfiguration c)
+   {
+      this(m_ioc_container, graph, c, ForkJoinPool.commonPool());
+   }
+
+   public ParallelArrayRelaxerStepper(IoCContainer m_ioc_container, Graph graph, LevelGeneratorConfiguration c,
+                                      ForkJoinPool pool)
+   {
+      super(m_ioc_container, graph, c);
+
+      m_pool = pool;
+   }
+
+   @Override
+   void setUp()
+   {
+      super.setUp();
+
+      m_num_chunks = numChunks(m_num_nodes + m_num_edges);
+
+      m_chunks = new ForceChunk[m_num_chunks];
+
+      for(int i = 0; i < m_num_chunks; i++)
+      {
+         m_chunks[i] = new ForceChunk(new double[m_num_nodes], new double[m_num_nodes]);
+      }
+
+      m_all_diagnostics = new ForceChunk(new double[0], new double[0]);
+   }
+
+   // non-private for testing
+   static int numChunks(int work)
+   {
+      return Math.max(1, Math.min(s_max_chunks, work / s_min_chunk_work));
+   }
+
+   @Override
+   ForceChunk AddAllForces()
+   {
+      runChunks(c ->
+      {
+         ForceChunk fc = m_chunks[c];
+
+         fc.reset();
+
+         AddForces(fc,
+               chunkStart(c, m_num_edges), chunkStart(c + 1, m_num_edges),
+               chunkStart(c, m_num_nodes), chunkStart(c + 1, m_num_nodes));
+      });
+
+      // every node's force is the sum of its forces from each chunk, always added up in chunk order
+      runChunks(c ->
+      {
+         int to = chunkStart(c + 1, m_num_nodes);
+
+         for(int i = chunkStart(c, m_num_nodes); i < to; i++)
+         {
+            double fx = 0.0;
+            double fy = 0.0;
+
+            for(ForceChunk fc : m_chunks)
+            {
+               fx += fc.Fxs[i];
+               fy += fc.Fys[i];
+            }
+
+            m_fxs[i] = fx;
+            m_fys[i] = fy;
+         }
+      });
+
+      m_all_diagnostics.reset();
+
+      for(ForceChunk fc : m_chunks)
+      {
+         m_all_diagnostics.mergeDiagnostics(fc);
+      }
+
+      return m_all_diagnostics;
+   }
+
+   private int chunkStart(int chunk, int of)
+   {
+      return (int)((long)of * chunk / m_num_chunks);
+   }
+
+   private void runChunks(IntConsumer body)
+   {
+      if (m_num_chunks == 1)
+      {
+         body.accept(0);
+      }
+      else
+      {
+         m_pool.invoke(new ChunkTask(0, m_num_chunks, body));
+      }
+   }
+
+   // splits a range of chunks in half until there's only one left in each task
+   private static class ChunkTask extends RecursiveAction
+   {
+      ChunkTask(int from, int to, IntConsumer body)
+      {
+         m_from = from;
+         m_to = to;
+         m_body = body;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (m_to - m_from == 1)
+         {
+            m_body.accept(m_from);
+
+            return;
+         }
+
+         int mid = (m_from + m_to) / 2;
+
+         invokeAll(new ChunkTask(m_from, mid, m_body), new ChunkTask(mid, m_to, m_body));
+      }
+
+      private final int m_from;
+      private final int m_to;
+      private final IntConsumer m_body;
+
+      private static final long serialVersionUID = 1L;
+   }
+
+   private final ForkJoinPool m_pool;
+
+   private int m_num_chunks;
+   private ForceChunk[] m_chunks;
+   private ForceChunk m_all_diagnostics;
+
+   // enough chunks to keep a big machine busy, without so many that summing the buffers gets expensive
+   private final static int s_max_chunks = 64;
+   // and not so small that the task overhead outweighs the work
+   private final static int s_min_chunk_work = 64;
+}
@@ -0,0 +1,70 @@
+package engine.level;
+
+// what a relaxer saw on its latest step
+//
+// relaxers fill one of these in, in place, every step, and hand it back in their status reports, instead of
+// formatting a log message which almost always gets thrown away, describe() builds the message for anyone who
+// actually wants it
+//
+// it is overwritten by the next step, so anything wanting to keep the values (e.g. to chart convergence) should
+// take a copy()
+public class RelaxationMetrics
+{
+   public RelaxationMetrics copy()
+   {
+      RelaxationMetrics ret = new RelaxationMetrics();
+
+      ret.Iteration = Iteration;
+      ret.NodesMoved = NodesMoved;
+      ret.MaxForce = MaxForce;
+      ret.MaxMove = MaxMove;
+      ret.TimeStep = TimeStep;
+      ret.MaxEdgeStretch = MaxEdgeStretch;
+      ret.MaxEdgeSqueeze = MaxEdgeSqueeze;
+      ret.MaxEdgeSideSqueeze = MaxEdgeSideSqueeze;
+      ret.MaxNodeSqueeze = MaxNodeSqueeze;
+      ret.CrossingEdges = CrossingEdges;
+
+      return ret;
+   }
+
+   // the message the relaxers used to log on every step
+   public String describe()
+   {
+      return " iteration:" + Iteration +
+            " nodes moved:" + NodesMoved +
+            " move:" + MaxMove +
+            " time step:" + TimeStep +
+            " force:" + MaxForce +
+            " max edge stretch:" + MaxEdgeStretch +
+            " max edge squeeze: " + MaxEdgeSqueeze +
+            " max edge side squeeze: " + MaxEdgeSideSqueeze +
+            " max node squeeze: " + MaxNodeSqueeze +
+            (CrossingEdges ? " crossing edges" : "");
+   }
+
+   @Override
+   public String toString()
+   {
+      return describe();
+   }
+
+   // steps taken so far by this relaxer, including this one
+   public int Iteration;
+   // how many nodes the relaxer was moving (fewer than the whole graph for a local relaxation)
+   public int NodesMoved;
+
+   public double MaxForce;
+   public double MaxMove;
+   public double TimeStep;
+
+   // edge lengths as fractions of what they want to be
+   public double MaxEdgeStretch;
+   public double MaxEdgeSqueeze;
+   // closest a node got to an edge, and how much too close the closest pair of nodes got,
+   // both as fractions of the separation they want
+   public double MaxEdgeSideSqueeze;
+   public double MaxNodeSqueeze;
+
+   public boolean CrossingEdges;
+}
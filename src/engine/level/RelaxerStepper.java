@@ -2,9 +2,9 @@ package engine.level;
 
 import engine.OrderedPair;
 import engine.XY;
+import engine.graph.CrossingEdgeFinder;
 import engine.graph.DirectedEdge;
 import engine.graph.Graph;
-import engine.graph.GraphUtil;
 import engine.graph.INode;
 
 import java.util.ArrayList;
@@ -19,7 +19,7 @@ public class RelaxerStepper implements IStepper
       m_config = c;
    }
 
-   private void setUp()
+   void setUp()
    {
       m_nodes = m_graph.allGraphNodes();
       m_edges = m_graph.allGraphEdges();
@@ -31,9 +31,28 @@ public class RelaxerStepper implements IStepper
       // (node <-> node and node <-> edge forces have to be stronger than edge forces
       // as we rely on edges stretching (in other cases) to tell ue when we need to
       // lengthen an edge (inserting a corner)
-      ShortestPathFinder spf = new ShortestPathFinder();
+      //
+      // only paths short enough to matter are stored, and the store for the graph only redoes the searches
+      // affected by edits since the last relaxer ran
+      m_node_dists = GraphDistanceStore.forGraph(m_graph).update(m_graph, m_config.RelaxationMinimumSeparation);
+
+      int[] starts = new int[m_edges.size()];
+      int[] ends = new int[m_edges.size()];
+
+      for(int i = 0; i < m_edges.size(); i++)
+      {
+         starts[i] = m_edges.get(i).Start.getIdx();
+         ends[i] = m_edges.get(i).End.getIdx();
+      }
+
+      m_crossing_finder.setEdges(starts, ends, m_edges.size());
+
+      m_xs = new double[m_nodes.size()];
+      m_ys = new double[m_nodes.size()];
+      m_fxs = new double[m_nodes.size()];
+      m_fys = new double[m_nodes.size()];
 
-      m_node_dists = spf.FindPathLengths(m_graph, x -> (x.MaxLength + x.MinLength) / 2);
+      m_integrator.reset(m_nodes.size(), m_config);
 
       m_setup_done = true;
    }
@@ -49,14 +68,26 @@ public class RelaxerStepper implements IStepper
       return RelaxStep();
    }
 
-   // step is scaled so that the max force we see causes a movement of max_move
-   // until that means a step of > 1, then we start letting the system slow down :-)
+   // how the forces become movement, by default steepest descent
+   // (see SteepestDescentIntegrator) set this before the first step
+   public void setIntegrator(IRelaxationIntegrator integrator)
+   {
+      m_integrator = integrator;
+   }
+
+   public IRelaxationIntegrator getIntegrator()
+   {
+      return m_integrator;
+   }
+
    private StepperController.StatusReportInner RelaxStep()
    {
       double maxf = 0.0;
 
       m_nodes.forEach(INode::resetForce);
 
+      PrepareStep();
+
       double max_edge_stretch = 1.0;
       double max_edge_squeeze = 1.0;
 
@@ -67,6 +98,96 @@ public class RelaxerStepper implements IStepper
          max_edge_squeeze = Math.min(ratio, max_edge_squeeze);
       }
 
+      double max_edge_side_squeeze = AddAllNodeEdgeForces();
+
+      double max_node_squeeze = AddAllNodeForces();
+
+      for(INode n : m_nodes)
+      {
+         maxf = Math.max(n.getForce(), maxf);
+      }
+
+      boolean ended = true;
+      double maxd = 0.0;
+      double step = 0.0;
+
+      if (maxf > 0)
+      {
+         for(int i = 0; i < m_nodes.size(); i++)
+         {
+            INode n = m_nodes.get(i);
+
+            XY pos = n.getPos();
+            m_xs[i] = pos.X;
+            m_ys[i] = pos.Y;
+
+            XY force = n.getForceVector();
+            m_fxs[i] = force.X;
+            m_fys[i] = force.Y;
+         }
+
+         maxd = m_integrator.step(m_xs, m_ys, m_fxs, m_fys, m_nodes.size(), maxf);
+         step = m_integrator.lastTimeStep();
+
+         for(int i = 0; i < m_nodes.size(); i++)
+         {
+            m_nodes.get(i).setPos(new XY(m_xs[i], m_ys[i]));
+         }
+
+         ended = maxd < m_config.RelaxationMoveTarget && maxf < m_config.RelaxationForceTarget;
+      }
+
+      m_metrics.Iteration++;
+      m_metrics.NodesMoved = m_nodes.size();
+      m_metrics.MaxForce = maxf;
+      m_metrics.MaxMove = maxd;
+      m_metrics.TimeStep = step;
+      m_metrics.MaxEdgeStretch = max_edge_stretch;
+      m_metrics.MaxEdgeSqueeze = max_edge_squeeze;
+      m_metrics.MaxEdgeSideSqueeze = max_edge_side_squeeze;
+      m_metrics.MaxNodeSqueeze = max_node_squeeze;
+      m_metrics.CrossingEdges = hasCrossingEdges();
+
+      if (m_metrics.CrossingEdges)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutFailure,
+               null, "Generated crossing edges during relaxation.");
+      } else if (ended)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess,
+               null, "Relaxed to still-point tolerances.");
+      }
+
+      return m_iterate_report;
+   }
+
+   // what happened on the latest step
+   public RelaxationMetrics getMetrics()
+   {
+      return m_metrics;
+   }
+
+   private boolean hasCrossingEdges()
+   {
+      for(int i = 0; i < m_nodes.size(); i++)
+      {
+         XY pos = m_nodes.get(i).getPos();
+         m_xs[i] = pos.X;
+         m_ys[i] = pos.Y;
+      }
+
+      return m_crossing_finder.hasCrossing(m_xs, m_ys);
+   }
+
+   // called once positions are final for this step, before any forces are calculated
+   void PrepareStep()
+   {
+   }
+
+   // every edge against every node it isn't attached to
+   // returns the smallest distance-to-summed-radii ratio seen
+   double AddAllNodeEdgeForces()
+   {
       double max_edge_side_squeeze = 0.0;
 
       for(DirectedEdge e : m_edges)
@@ -81,6 +202,13 @@ public class RelaxerStepper implements IStepper
          }
       }
 
+      return max_edge_side_squeeze;
+   }
+
+   // every node against every other node it isn't connected to
+   // returns the largest amount by which a pair is too close, as a fraction of the separation they want
+   double AddAllNodeForces()
+   {
       double max_node_squeeze = 0.0;
 
       for(INode n : m_nodes)
@@ -100,51 +228,9 @@ public class RelaxerStepper implements IStepper
          }
       }
 
-      for(INode n : m_nodes)
-      {
-         maxf = Math.max(n.getForce(), maxf);
-      }
-
-      boolean ended = true;
-      double maxd = 0.0;
-      double step = 0.0;
-
-      if (maxf > 0)
-      {
-         step = Math.min(m_config.RelaxationMaxMove / maxf, m_config.RelaxationMaxMove);
-
-         for (INode n : m_nodes)
-         {
-            maxd = Math.max(n.step(step), maxd);
-         }
-
-         ended = maxd < m_config.RelaxationMoveTarget && maxf < m_config.RelaxationForceTarget;
-      }
-
-      int crossings = GraphUtil.findCrossingEdges(m_edges).size();
-
-      if (crossings > 0)
-      {
-         return new StepperController.StatusReportInner(StepperController.Status.StepOutFailure,
-               null, "Generated crossing edges during relaxation.");
-      } else if (ended)
-      {
-         return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess,
-               null, "Relaxed to still-point tolerances.");
-      }
-
-      return new StepperController.StatusReportInner(StepperController.Status.Iterate,
-            null,
-            " move:" + maxd +
-            " time step:" + step +
-            " force:" + maxf +
-            " max edge stretch:" + max_edge_stretch +
-            " max edge squeeze: " + max_edge_squeeze +
-            " max edge side squeeze: " + max_edge_side_squeeze +
-            " max node squeeze: " + max_node_squeeze);
+      return max_node_squeeze;
    }
 
-
    // returns the edge length as a fraction of d0
    private double AddEdgeForces(DirectedEdge e, double dmin, double dmax)
    {
@@ -182,10 +268,10 @@ public class RelaxerStepper implements IStepper
    }
 
    // returns separation as a fraction of summed_radii
-   private double AddNodeForces(INode node1, INode node2)
+   double AddNodeForces(INode node1, INode node2)
    {
       XY d = node2.getPos().minus(node1.getPos());
-      double adjusted_radius = Math.min(m_node_dists[node1.getIdx()][node2.getIdx()],
+      double adjusted_radius = Math.min(m_node_dists.get(node1.getIdx(), node2.getIdx()),
             node1.getRad() + node2.getRad() + m_config.RelaxationMinimumSeparation);
 
       // in this case can just ignore these as we hope (i) won't happen and (ii) there will be other non-zero
@@ -218,15 +304,15 @@ public class RelaxerStepper implements IStepper
       return ratio;
    }
 
-   private double AddNodeEdgeForces(DirectedEdge e, INode n)
+   double AddNodeEdgeForces(DirectedEdge e, INode n)
    {
       LevelUtil.NEDRet vals = LevelUtil.nodeEdgeDistDetailed(n.getPos(), e.Start.getPos(), e.End.getPos());
 
       if (vals == null)
          return 1.0;
 
-      double summed_radii = Math.min(m_node_dists[e.Start.getIdx()][n.getIdx()],
-            Math.min(m_node_dists[e.End.getIdx()][n.getIdx()],
+      double summed_radii = Math.min(m_node_dists.get(e.Start.getIdx(), n.getIdx()),
+            Math.min(m_node_dists.get(e.End.getIdx(), n.getIdx()),
                   n.getRad() + e.HalfWidth) + m_config.RelaxationMinimumSeparation);
 
       if (vals.Dist > summed_radii)
@@ -250,8 +336,8 @@ public class RelaxerStepper implements IStepper
    }
 
    private final Graph m_graph;
-   private ArrayList<INode> m_nodes;
-   private ArrayList<DirectedEdge> m_edges;
+   ArrayList<INode> m_nodes;
+   ArrayList<DirectedEdge> m_edges;
 
    // whichever is smaller out of the summed-radii and the
    // shortest path through the graph between two nodes
@@ -259,9 +345,24 @@ public class RelaxerStepper implements IStepper
    // because otherwise a large node can force its second-closest
    // neighbour (and further) so far away that the edge gets split
    // and then the new second-closest neighbour is in the same position
-   private double[][] m_node_dists;
+   private GraphDistanceStore.Lengths m_node_dists;
+
+   private final CrossingEdgeFinder m_crossing_finder = new CrossingEdgeFinder();
+
+   private IRelaxationIntegrator m_integrator = new SteepestDescentIntegrator();
+
+   // filled in every step, and returned (in the same report) on every step which isn't the last
+   private final RelaxationMetrics m_metrics = new RelaxationMetrics();
+   private final StepperController.StatusReportInner m_iterate_report =
+         new StepperController.StatusReportInner(StepperController.Status.Iterate, m_metrics);
+
+   // scratch space for integrating and checking crossings
+   private double[] m_xs;
+   private double[] m_ys;
+   private double[] m_fxs;
+   private double[] m_fys;
 
-   private final LevelGeneratorConfiguration m_config;
+   final LevelGeneratorConfiguration m_config;
 
    private boolean m_setup_done = false;
 
@@ -0,0 +1,42 @@
+package engine.level;
+
+// what the relaxers have always done: move every node along its force, with the step scaled so that the
+// largest force moves its node RelaxationMaxMove, until that means a step of > 1, when we let the system slow down
+public class SteepestDescentIntegrator implements IRelaxationIntegrator
+{
+   @Override
+   public void reset(int num_nodes, LevelGeneratorConfiguration c)
+   {
+      m_config = c;
+   }
+
+   @Override
+   public double step(double[] xs, double[] ys, double[] fxs, double[] fys, int count, double maxf)
+   {
+      m_time_step = Math.min(m_config.RelaxationMaxMove / maxf, m_config.RelaxationMaxMove);
+
+      double maxd = 0.0;
+
+      for(int i = 0; i < count; i++)
+      {
+         double dx = fxs[i] * m_time_step;
+         double dy = fys[i] * m_time_step;
+
+         xs[i] += dx;
+         ys[i] += dy;
+
+         maxd = Math.max(Math.sqrt(dx * dx + dy * dy), maxd);
+      }
+
+      return maxd;
+   }
+
+   @Override
+   public double lastTimeStep()
+   {
+      return m_time_step;
+   }
+
+   private LevelGeneratorConfiguration m_config;
+   private double m_time_step;
+}
@@ -21,6 +21,8 @@ public class StepperController
       final StepperController.Status Status;
       final IStepper ChildStepper;
       final String Log;
+      // only from relaxers, and then there is no Log, see log()
+      final RelaxationMetrics Metrics;
 
       StatusReportInner(StepperController.Status status,
                 IStepper childStepper,
@@ -29,6 +31,23 @@ public class StepperController
          Status = status;
          ChildStepper = childStepper;
          Log = log;
+         Metrics = null;
+      }
+
+      // relaxers can make one of these once and return it every iteration, as the metrics are updated in place
+      StatusReportInner(StepperController.Status status,
+                RelaxationMetrics metrics)
+      {
+         Status = status;
+         ChildStepper = null;
+         Log = null;
+         Metrics = metrics;
+      }
+
+      // the message, built from the metrics if that's what we have
+      String log()
+      {
+         return Log != null || Metrics == null ? Log : Metrics.describe();
       }
    }
 
@@ -36,6 +55,7 @@ public class StepperController
    {
       public final StepperController.Status Status;
       public final String Log;
+      public final RelaxationMetrics Metrics;
       public final boolean Complete;
 
       StatusReport(StatusReportInner eri,
@@ -43,6 +63,7 @@ public class StepperController
       {
          Status = eri.Status;
          Log = eri.Log;
+         Metrics = eri.Metrics;
 
          Complete = complete;
       }
@@ -53,9 +74,24 @@ public class StepperController
       {
          Status = status;
          Log = log;
+         Metrics = null;
 
          Complete = complete;
       }
+
+      // Log, or if this came from a relaxer, a message built from the metrics
+      // (do this before the next step, as that will change the metrics)
+      public String log()
+      {
+         return Log != null || Metrics == null ? Log : Metrics.describe();
+      }
+   }
+
+   // told about every step, e.g. for charting convergence
+   public interface IStepListener
+   {
+      // depth is how many steppers are running, after this step
+      void stepped(StatusReport report, int depth);
    }
 
    StepperController(Graph graph, IStepper initial_stepper)
@@ -92,7 +128,51 @@ public class StepperController
             break;
       }
 
-      return new StatusReport(eri, CurrentStepper() == null);
+      m_counts[m_last_step_status.ordinal()]++;
+
+      StatusReport ret = new StatusReport(eri, CurrentStepper() == null);
+
+      if (m_listener != null)
+      {
+         m_listener.stepped(ret, m_stack.size());
+      }
+
+      return ret;
+   }
+
+   public void setListener(IStepListener listener)
+   {
+      m_listener = listener;
+   }
+
+   // how many steps have returned this status
+   public long count(Status status)
+   {
+      return m_counts[status.ordinal()];
+   }
+
+   public long steps()
+   {
+      long ret = 0;
+
+      for(long c : m_counts)
+      {
+         ret += c;
+      }
+
+      return ret;
+   }
+
+   // how many steppers are running, and what the last step returned, so LevelGenerator can tell when it is
+   // somewhere it can checkpoint
+   int depth()
+   {
+      return m_stack.size();
+   }
+
+   Status lastStatus()
+   {
+      return m_last_step_status;
    }
 
    private void PushStepper(IStepper stepper)
@@ -123,4 +203,7 @@ public class StepperController
          m_stack = new Stack<>();
    private final Graph m_graph;
    private Status m_last_step_status;
+
+   private final long[] m_counts = new long[Status.values().length];
+   private IStepListener m_listener;
 }
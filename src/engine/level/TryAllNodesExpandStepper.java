@@ -42,14 +42,11 @@ public class TryAllNodesExpandStepper implements IStepper
 
       INode node = LevelUtil.removeRandom(m_config.Rand, m_all_nodes);
 
-      Collection<Template> templates = m_templates.GetTemplatesCopy();
-
-      // if this was our last chance at a node, take only templates that expand further
+      // only the templates which fit the node's connections, and if this was our last chance at a node,
+      // only those that expand further
       // (could also allow those that expand enough, but that would involve copying the
       // required size down here...
-      if (m_all_nodes.size() == 0)
-         templates = templates.stream().filter(t -> t.GetCodes().contains("e"))
-               .collect(Collectors.toCollection(ArrayList::new));
+      Collection<Template> templates = m_templates.GetTemplatesFor(node, m_all_nodes.size() == 0);
 
       IStepper child = m_ioc_container.NodeExpanderFactory.makeNodeExpander(
             m_ioc_container, m_graph, node, templates, m_config);
@@ -1,43 +1,96 @@
 package engine.level;
 
 import engine.graph.Graph;
+import engine.graph.GraphSnapshot;
 import engine.graph.INode;
 import engine.graph.Template;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// tries the templates on the node in a random order until one expands and relaxes
+//
+// with LevelGeneratorConfiguration.SpeculativeTemplateTrials > 1, rather than trying them one at a time on the graph
+// (and rolling back each failure) several are tried at once, each on its own copy of the graph, in the pool,
+// the first to succeed, in the random order, is committed to the graph and the rest abandoned
+//
+// each trial gets its own random seed, drawn up front along with the order, so what a trial does doesn't depend
+// on which others ran or how quickly, and the result is the same however many run at once
+//
+// templates, and so their post-expands, are shared between trials, and post-expands keep state (e.g. DoorPostExpand's
+// door count), so a trial's template only records what its post-expand would have been given, and that is run,
+// on our graph, for the trial we commit and no other
+//
+// with a LevelGeneratorConfiguration.FailureCache, templates known to have failed on similar nodes are
+// tried last (still in their random order) and each failure or success is recorded there
 public class TryAllTemplatesOnOneNodeStepper implements IStepper
 {
-
    public TryAllTemplatesOnOneNodeStepper(IoCContainer m_ioc_container,
                                           Graph graph, INode node, Collection<Template> templates,
                                           LevelGeneratorConfiguration c)
+   {
+      this(m_ioc_container, graph, node, templates, c, ForkJoinPool.commonPool());
+   }
+
+   public TryAllTemplatesOnOneNodeStepper(IoCContainer m_ioc_container,
+                                          Graph graph, INode node, Collection<Template> templates,
+                                          LevelGeneratorConfiguration c,
+                                          ExecutorService pool)
    {
       m_graph = graph;
       m_node = node;
       m_templates = templates;
       m_config = c;
       this.m_ioc_container = m_ioc_container;
+      m_pool = pool;
    }
 
    @Override
    public StepperController.StatusReportInner step(StepperController.Status status)
    {
+      if (m_config.SpeculativeTemplateTrials > 1)
+      {
+         return speculativeStep();
+      }
+
+      if (m_signature == null)
+      {
+         setAsideKnownFailures();
+      }
+
       // if our child succeeds, we succeed
       if (status == StepperController.Status.StepOutSuccess)
       {
+         recordResult(m_current, true);
+
          return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess,
                null, "engine.Graph Expand step Succeeded");
       }
 
+      if (status == StepperController.Status.StepOutFailure)
+      {
+         recordResult(m_current, false);
+      }
+
       // no matter what other previous status, if we run out of templates we're a fail
-      if (m_templates.size() == 0)
+      if (m_templates.size() == 0 && m_known_failures.size() == 0)
       {
          return new StepperController.StatusReportInner(StepperController.Status.StepOutFailure,
                null, "engine.Node: " + m_node.getName() + " failed to expand");
       }
 
-      Template t = LevelUtil.removeRandom(m_config.Rand, m_templates);
+      Template t = LevelUtil.removeRandom(m_config.Rand,
+            m_templates.size() > 0 ? m_templates : m_known_failures);
+      m_current = t;
 
       IStepper child = m_ioc_container.NodeTemplateExpanderFactory.makeNodeTemplateExpander(
             m_ioc_container, m_graph, m_node, t, m_config);
@@ -47,10 +100,241 @@ public class TryAllTemplatesOnOneNodeStepper implements IStepper
             child, "Trying to expand node: " + m_node.getName() + " with template: " + t.GetName());
    }
 
+   // moves anything the cache says has failed on this sort of node before out of m_templates, to try last
+   private void setAsideKnownFailures()
+   {
+      ExpansionFailureCache cache = m_config.FailureCache;
+
+      m_signature = cache != null ? ExpansionFailureCache.signature(m_node) : "";
+
+      if (cache == null)
+         return;
+
+      for(Template t : new ArrayList<>(m_templates))
+      {
+         if (cache.isKnownFailure(m_signature, t))
+         {
+            m_templates.remove(t);
+            m_known_failures.add(t);
+         }
+      }
+   }
+
+   private void recordResult(Template t, boolean success)
+   {
+      ExpansionFailureCache cache = m_config.FailureCache;
+
+      if (cache == null || t == null)
+         return;
+
+      if (success)
+      {
+         cache.recordSuccess(m_signature, t);
+      }
+      else
+      {
+         cache.recordFailure(m_signature, t);
+      }
+   }
+
+   private StepperController.StatusReportInner speculativeStep()
+   {
+      if (m_trials == null)
+      {
+         setAsideKnownFailures();
+
+         m_trials = new ArrayList<>();
+
+         while(m_templates.size() > 0 || m_known_failures.size() > 0)
+         {
+            Template t = LevelUtil.removeRandom(m_config.Rand,
+                  m_templates.size() > 0 ? m_templates : m_known_failures);
+
+            m_trials.add(new Trial(m_trials.size(), t, m_config.Rand.nextLong()));
+         }
+      }
+
+      // we only get stepped again once we've decided, so all we need to do is keep enough trials going
+      // from the first undecided one
+      int launch_to = Math.min(m_trials.size(), m_next_undecided + m_config.SpeculativeTemplateTrials);
+
+      for(int i = m_next_undecided; i < launch_to; i++)
+      {
+         m_trials.get(i).launch();
+      }
+
+      if (m_next_undecided == m_trials.size())
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutFailure,
+               null, "engine.Node: " + m_node.getName() + " failed to expand");
+      }
+
+      Trial trial = m_trials.get(m_next_undecided);
+
+      Graph result;
+
+      try
+      {
+         // don't hold up whoever is stepping us for too long, they may want to draw
+         result = trial.m_result.get(s_wait_millis, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException e)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.Iterate,
+               null, "Waiting for template: " + trial.m_template.GetName());
+      }
+      catch (InterruptedException | ExecutionException e)
+      {
+         abandonAll();
+
+         throw new RuntimeException("Speculative expansion of node: " + m_node.getName() + " failed", e);
+      }
+
+      m_next_undecided++;
+
+      // this trial can't have been abandoned, as nothing before it succeeded
+      recordResult(trial.m_template, result != null);
+
+      if (result == null)
+      {
+         return new StepperController.StatusReportInner(StepperController.Status.Iterate,
+               null, "Failed to expand node: " + m_node.getName() + " with template: " + trial.m_template.GetName());
+      }
+
+      // anything still running is later in the order, so can stop
+      abandonAll();
+
+      Map<INode, INode> committed = m_graph.commitCopy(result);
+
+      trial.m_post_expand.replay(trial.m_template.GetPostExpand(), committed);
+
+      return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess,
+            null, "engine.Graph Expand step Succeeded with template: " + trial.m_template.GetName());
+   }
+
+   private void abandonAll()
+   {
+      m_first_success.set(-1);
+   }
+
+   // one template tried on its own copy of the graph
+   private class Trial
+   {
+      Trial(int index, Template template, long seed)
+      {
+         m_index = index;
+         m_template = template;
+         m_seed = seed;
+      }
+
+      void launch()
+      {
+         if (m_result != null)
+            return;
+
+         // snapshot here, while the graph can't be changing under us, the graph doesn't change until we commit
+         // so all the trials share one snapshot and each forks its own copy in the pool
+         GraphSnapshot snapshot = m_graph.snapshot();
+
+         m_result = m_pool.submit(() -> run(snapshot.fork()));
+      }
+
+      // the copy, expanded and relaxed, or null if that failed or was abandoned
+      private Graph run(Graph copy)
+      {
+         LevelGeneratorConfiguration c = LevelGeneratorConfiguration.shallowCopy(m_config);
+         c.Rand = new Random(m_seed);
+
+         IStepper child = m_ioc_container.NodeTemplateExpanderFactory.makeNodeTemplateExpander(
+               m_ioc_container, copy, copy.copyOfNode(m_node), m_template.WithPostExpand(m_post_expand), c);
+
+         StepperController sc = new StepperController(copy, child);
+
+         StepperController.StatusReport sr;
+
+         do
+         {
+            // an earlier template has succeeded, so we're not wanted
+            if (m_first_success.get() < m_index)
+               return null;
+
+            sr = sc.Step();
+         }
+         while(!sr.Complete);
+
+         if (sr.Status != StepperController.Status.StepOutSuccess)
+            return null;
+
+         m_first_success.accumulateAndGet(m_index, Math::min);
+
+         return copy;
+      }
+
+      final int m_index;
+      final Template m_template;
+      final long m_seed;
+      final PostExpandRecorder m_post_expand = new PostExpandRecorder();
+
+      Future<Graph> m_result;
+   }
+
+   // stands in for a template's post-expand in a trial, only ever used by the one trial's thread
+   private static class PostExpandRecorder implements Template.IPostExpand
+   {
+      @Override
+      public void AfterExpand(INode n)
+      {
+         m_nodes.add(n);
+      }
+
+      @Override
+      public void Done()
+      {
+         m_num_done++;
+      }
+
+      // what the trial did to its copy, done to the nodes they became when it was committed
+      void replay(Template.IPostExpand post_expand, Map<INode, INode> committed)
+      {
+         if (post_expand == null)
+            return;
+
+         for(INode n : m_nodes)
+         {
+            post_expand.AfterExpand(committed.get(n));
+         }
+
+         for(int i = 0; i < m_num_done; i++)
+         {
+            post_expand.Done();
+         }
+      }
+
+      private final ArrayList<INode> m_nodes = new ArrayList<>();
+      private int m_num_done = 0;
+   }
+
    private final Graph m_graph;
    private final INode m_node;
    private final Collection<Template> m_templates;
    private final LevelGeneratorConfiguration m_config;
    private final IoCContainer m_ioc_container;
 
+   private final ExecutorService m_pool;
+
+   // the node's ExpansionFailureCache signature, taken before we change anything (or "" when there's no cache)
+   private String m_signature;
+   // the templates the cache told us to try last
+   private final ArrayList<Template> m_known_failures = new ArrayList<>();
+   // the template our current child is trying, serial mode only
+   private Template m_current;
+
+   // speculative mode only, every template in the order we'd have tried them
+   private ArrayList<Trial> m_trials;
+   // the first trial we don't know the result of yet
+   private int m_next_undecided = 0;
+   // the earliest trial known to have succeeded, later ones give up when they see it
+   private final AtomicInteger m_first_success = new AtomicInteger(Integer.MAX_VALUE);
+
+   private final static long s_wait_millis = 10;
 }
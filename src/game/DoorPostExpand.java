@@ -31,6 +31,18 @@ public class DoorPostExpand implements Template.IPostExpand
       m_door_count++;
    }
 
+   @Override
+   public long GetState()
+   {
+      return m_door_count;
+   }
+
+   @Override
+   public void SetState(long state)
+   {
+      m_door_count = (int)state;
+   }
+
    private int m_door_count = 1;
 
    private static final int[] s_colours = new int[] { 0xff800000, 0xff008000, 0xff000080 };
@@ -0,0 +1,195 @@
+package game;
+
+import engine.XY;
+import engine.level.CheckpointWriter;
+import engine.level.EdgeAdjusterStepper;
+import engine.level.IoCContainer;
+import engine.level.Level;
+import engine.level.LevelCheckpoint;
+import engine.level.LevelGenerator;
+import engine.level.LevelGeneratorConfiguration;
+import engine.level.RelaxerStepper;
+import engine.level.StepperController;
+import engine.level.TryAllNodesExpandStepper;
+import engine.level.TryAllTemplatesOnOneNodeStepper;
+import engine.level.TryTemplateExpandStepper;
+import engine.level.Wall;
+import engine.level.WallLoop;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+
+// generates one level with no display, as fast as it can, and writes it out
+//
+// usage: HeadlessMain <seed> <size> <output file> [<checkpoint file>]
+//
+// with a checkpoint file, where we had got to is written there every few seconds, and if it already exists we
+// carry on from it (making the same level we would have without stopping) as long as it was for the same seed
+// and size, once the level is written out the checkpoint is deleted
+//
+// nothing here touches Processing, so this runs on machines without a display (or the Processing jars)
+public class HeadlessMain
+{
+   public static void main(String[] args)
+   {
+      if (args.length != 3 && args.length != 4)
+      {
+         System.err.println("usage: HeadlessMain <seed> <size> <output file> [<checkpoint file>]");
+         System.exit(2);
+      }
+
+      int seed = Integer.parseInt(args[0]);
+      int size = Integer.parseInt(args[1]);
+      String out_file = args[2];
+      Path checkpoint_file = args.length == 4 ? Paths.get(args[3]) : null;
+
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(seed);
+      // no frames to get back to, so don't keep returning from the expand and relax phases
+      config.ExpandStepsToRun = Integer.MAX_VALUE;
+
+      IoCContainer ioc_container = new IoCContainer(
+            RelaxerStepper::new,
+            TryAllNodesExpandStepper::new,
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      LevelGenerator gen;
+      CheckpointWriter checkpoint_writer = null;
+
+      if (checkpoint_file != null && Files.exists(checkpoint_file))
+      {
+         try
+         {
+            LevelCheckpoint cp = LevelCheckpoint.fromBytes(Files.readAllBytes(checkpoint_file));
+
+            if (cp.getSeed() != seed || cp.getRequiredSize() != size)
+               throw new IOException("it is for seed " + cp.getSeed() + " and size " + cp.getRequiredSize());
+
+            gen = cp.resume(ioc_container, config, new TemplateStore1());
+         }
+         catch (IOException e)
+         {
+            System.err.println("Cannot resume from: " + checkpoint_file + " (" + e.getMessage() + ")");
+            System.exit(1);
+            return;
+         }
+
+         System.out.println("Resuming in phase " + gen.getPhase());
+      }
+      else
+      {
+         gen = new LevelGenerator(ioc_container, size, config, new TemplateStore1());
+      }
+
+      if (checkpoint_file != null)
+      {
+         checkpoint_writer = new CheckpointWriter(checkpoint_file);
+         gen.setCheckpointListener(checkpoint_writer, s_checkpoint_interval_millis);
+      }
+
+      EnumMap<LevelGenerator.Phase, Long> phase_nanos = new EnumMap<>(LevelGenerator.Phase.class);
+
+      StepperController.StatusReport ret;
+
+      do
+      {
+         // a step can move us on to the next phase, but its time belongs to the phase it ran in
+         LevelGenerator.Phase phase = gen.getPhase();
+
+         long start = System.nanoTime();
+         ret = gen.step();
+         phase_nanos.merge(phase, System.nanoTime() - start, Long::sum);
+      }
+      while(!ret.Complete);
+
+      long total = 0;
+
+      for(LevelGenerator.Phase p : LevelGenerator.Phase.values())
+      {
+         long nanos = phase_nanos.getOrDefault(p, 0L);
+         total += nanos;
+
+         System.out.println(String.format(Locale.ROOT, "%-14s %10.1f ms", p, nanos / 1e6));
+      }
+
+      System.out.println(String.format(Locale.ROOT, "%-14s %10.1f ms", "Total", total / 1e6));
+
+      if (checkpoint_writer != null)
+      {
+         try
+         {
+            checkpoint_writer.close();
+         }
+         catch (IOException e)
+         {
+            // we've still made the level
+            System.err.println("Cannot write checkpoint: " + checkpoint_file + " (" + e.getMessage() + ")");
+         }
+      }
+
+      if (ret.Status != StepperController.Status.StepOutSuccess)
+      {
+         System.err.println("Level generation failed: " + ret.log());
+         System.exit(1);
+      }
+
+      try
+      {
+         writeLevel(gen.getLevel(), out_file);
+      }
+      catch (FileNotFoundException e)
+      {
+         System.err.println("Cannot write: " + out_file + " (" + e.getMessage() + ")");
+         System.exit(1);
+      }
+
+      if (checkpoint_file != null)
+      {
+         try
+         {
+            // finished with, and resuming from it again would only make the same level
+            Files.deleteIfExists(checkpoint_file);
+         }
+         catch (IOException e)
+         {
+            System.err.println("Cannot delete checkpoint: " + checkpoint_file + " (" + e.getMessage() + ")");
+         }
+      }
+   }
+
+   private static final long s_checkpoint_interval_millis = 5000;
+
+   // a plain text dump, the start position then each wall loop as one "start end normal" line per wall:
+   //
+   // start <x> <y>
+   // loop <num walls>
+   // <start x> <start y> <end x> <end y> <normal x> <normal y>
+   // ...
+   static void writeLevel(Level level, String file) throws FileNotFoundException
+   {
+      try (PrintWriter pw = new PrintWriter(file))
+      {
+         XY start = level.startPos();
+
+         pw.println(String.format(Locale.ROOT, "start %s %s", start.X, start.Y));
+
+         for(WallLoop wl : level.getWallLoops())
+         {
+            pw.println("loop " + wl.size());
+
+            for(Wall w : wl)
+            {
+               pw.println(String.format(Locale.ROOT, "%s %s %s %s %s %s",
+                     w.Start.X, w.Start.Y, w.End.X, w.End.Y, w.Normal.X, w.Normal.Y));
+            }
+         }
+      }
+   }
+}
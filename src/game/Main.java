@@ -6,16 +6,15 @@ import engine.IDrawable;
 import engine.KeyTracker;
 import engine.XY;
 import engine.XYZ;
-import engine.graph.DirectedEdge;
-import engine.graph.Graph;
-import engine.graph.INode;
+import engine.graph.GraphSnapshot;
+import engine.level.AsyncLevelGenerator;
 import engine.level.EdgeAdjusterStepper;
 import engine.level.IoCContainer;
 import engine.level.Level;
+import engine.level.LevelCache;
 import engine.level.LevelGenerator;
 import engine.level.LevelGeneratorConfiguration;
 import engine.level.RelaxerStepper;
-import engine.level.StepperController;
 import engine.level.TryAllNodesExpandStepper;
 import engine.level.TryAllTemplatesOnOneNodeStepper;
 import engine.level.TryTemplateExpandStepper;
@@ -26,6 +25,8 @@ import engine.modelling.Positioner;
 import game.objects.TurretFactory;
 
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 @SuppressWarnings("WeakerAccess")
@@ -37,7 +38,7 @@ public class Main extends processing.core.PApplet implements IDraw
 
    public Main()
    {
-      m_config = new LevelGeneratorConfiguration(85);
+      m_config = new LevelGeneratorConfiguration(s_seed);
 
       // configure our crude IoC system
       IoCContainer ioc_container = new IoCContainer(
@@ -47,7 +48,22 @@ public class Main extends processing.core.PApplet implements IDraw
             TryTemplateExpandStepper::new,
             EdgeAdjusterStepper::new);
 
-      m_generator = new LevelGenerator(ioc_container, 10, m_config, new TemplateStore1());
+      TemplateStore1 templates = new TemplateStore1();
+
+      m_cache_key = LevelCache.key(s_seed, s_size, m_config, templates, s_steppers);
+      m_level = m_cache.load(m_cache_key);
+
+      if (m_level != null)
+      {
+         // made this one before, so nothing to generate, and it's ready to play
+         m_complete = true;
+
+         return;
+      }
+
+      // generate on another thread, so we can draw at full speed while it runs
+      m_generator = new AsyncLevelGenerator(
+            new LevelGenerator(ioc_container, s_size, m_config, templates));
    }
 
    @Override
@@ -61,6 +77,11 @@ public class Main extends processing.core.PApplet implements IDraw
    public void setup()
    {
       ellipseMode(RADIUS);
+
+      if (m_generator != null)
+      {
+         m_generator.start();
+      }
    }
 
    @Override
@@ -174,30 +195,39 @@ public class Main extends processing.core.PApplet implements IDraw
       strokeWeight(0.0f);
 //      textSize(0.01f);
 
-      StepperController.StatusReport ret;
-
       if (m_generator != null && !m_complete)
       {
-         ret = m_generator.step();
-
-         // take before complete so we can draw it...
-         m_level = m_generator.getLevel();
+         // whatever the generator has got to, if anything new
+         AsyncLevelGenerator.Progress p = m_generator.poll();
 
-         if (ret.Complete)
+         if (p != null)
          {
-            if (ret.Status != StepperController.Status.StepOutSuccess)
+            m_progress = p;
+
+            if (p.Complete)
             {
-               exit();
-            }
+               if (!p.Succeeded)
+               {
+                  // exit() only asks the sketch to stop, and there is no level to keep
+                  exit();
+
+                  return;
+               }
+
+               m_level = p.Level;
+               m_complete = true;
 
-            m_complete = true;
+               storeLevel();
+            }
          }
       }
 
+      GraphSnapshot graph = m_progress != null ? m_progress.Graph : null;
+
       double range = min(width, height);
 
-      if (m_auto_scale && m_generator != null && m_generator.getGraph() != null)
-         autoScale(m_generator.getGraph(), range * 0.05, range * 0.95);
+      if (m_auto_scale && graph != null)
+         autoScale(graph, range * 0.05, range * 0.95);
 
       translate((float)(range * 0.05), (float)(range * 0.05));
 
@@ -205,12 +235,11 @@ public class Main extends processing.core.PApplet implements IDraw
 
       translate((float)m_off_x, (float)m_off_y);
 
-      if (m_generator != null && m_generator.getGraph() != null)
+      if (m_generator != null && graph != null)
       {
-         LevelGenerator.Phase p = m_generator.getPhase();
-         drawGraph(m_generator.getGraph(),
+         drawGraph(graph,
                m_labels,
-               p != LevelGenerator.Phase.Union,
+               m_progress.Phase != LevelGenerator.Phase.Union,
                true,
                m_arrows);
       }
@@ -218,6 +247,19 @@ public class Main extends processing.core.PApplet implements IDraw
 //      saveFrame("..\\graph non-git\\Frame####.jpg");
    }
 
+   private void storeLevel()
+   {
+      try
+      {
+         m_cache.store(m_cache_key, m_level);
+      }
+      catch (IOException e)
+      {
+         // we just won't have it next time
+         System.err.println("Cannot cache level: " + e.getMessage());
+      }
+   }
+
    private void play()
    {
       m_level.step(0.1);
@@ -280,6 +322,7 @@ public class Main extends processing.core.PApplet implements IDraw
    private void startPlay()
    {
       m_generator = null;
+      m_progress = null;
       m_config = null;
 
       m_keys = new KeyTracker();
@@ -307,7 +350,7 @@ public class Main extends processing.core.PApplet implements IDraw
             m_player.getPos3D().plus(new XYZ(0, 5, 0))));
    }
 
-   private void autoScale(Graph g, double low, double high)
+   private void autoScale(GraphSnapshot g, double low, double high)
    {
       Box b = g.bounds();
 
@@ -321,63 +364,62 @@ public class Main extends processing.core.PApplet implements IDraw
       m_scale = smaller_scale;
    }
 
-   void drawGraph(Graph g, boolean show_labels, boolean show_connections,
+   void drawGraph(GraphSnapshot g, boolean show_labels, boolean show_connections,
                          @SuppressWarnings("SameParameterValue") boolean show_circles, boolean show_arrows)
    {
       if (show_circles)
       {
-         g.allGraphNodes().forEach(this::drawNode);
+         g.nodes().forEach(this::drawNode);
       }
 
 
       if (show_connections)
       {
-         for (INode n : g.allGraphNodes())
+         for (GraphSnapshot.EdgeState e : g.edges())
          {
-            drawConnections(n, show_arrows);
+            drawConnection(g, e, show_arrows);
          }
       }
 
       if (show_labels)
       {
-         g.allGraphNodes().forEach(this::drawLabel);
+         g.nodes().forEach(this::drawLabel);
       }
    }
 
-   void drawNode(INode n)
+   void drawNode(GraphSnapshot.NodeState n)
    {
       noStroke();
-      fill(n.getColour());
-      ellipse((float) n.getPos().X, (float) n.getPos().Y,
-            (float) n.getRad(), (float) n.getRad());
+      fill(n.Colour);
+      ellipse((float) n.Pos.X, (float) n.Pos.Y,
+            (float) n.Rad, (float) n.Rad);
    }
 
-   void drawLabel(INode n)
+   void drawLabel(GraphSnapshot.NodeState n)
    {
       fill(255, 255, 255);
-      text(n.getName(),
-            (float) n.getPos().X, (float) n.getPos().Y);
+      text(n.Name,
+            (float) n.Pos.X, (float) n.Pos.Y);
    }
 
-   void drawConnections(INode n, boolean show_arrows)
+   void drawConnection(GraphSnapshot g, GraphSnapshot.EdgeState e, boolean show_arrows)
    {
-      // in connections are drawn by the other node...
-      for(DirectedEdge e : n.getOutConnections())
-      {
-         stroke(e.GetColour());
-         strokeWidth(e.HalfWidth * 1.9, false);
-         line(e.Start.getPos(), e.End.getPos());
+      XY start = g.startPos(e);
+      XY end = g.endPos(e);
 
-         if (show_arrows)
-         {
-            XY d = e.End.getPos().minus(e.Start.getPos());
-            d = d.divide(10);
+      stroke(e.Colour);
+      strokeWidth(e.HalfWidth * 1.9, false);
+      line(start, end);
+
+      if (show_arrows)
+      {
+         XY d = end.minus(start);
+         d = d.divide(10);
 
-            XY rot = d.rot90();
+         XY rot = d.rot90();
 
-            line(e.End.getPos(), e.End.getPos().minus(d).minus(rot));
-            line(e.End.getPos(), e.End.getPos().minus(d).plus(rot));
-         }
+         line(end, end.minus(d).minus(rot));
+         line(end, end.minus(d).plus(rot));
       }
    }
 
@@ -603,8 +645,18 @@ public class Main extends processing.core.PApplet implements IDraw
 
    private boolean m_map = false;
 
+   private final static int s_seed = 85;
+   private final static int s_size = 10;
+   // names the factories we give the IoCContainer, for the level cache, change it if they change
+   private final static String s_steppers = "RelaxerStepper, steepest descent";
+
+   private final LevelCache m_cache = new LevelCache(Paths.get("level-cache"));
+   private final String m_cache_key;
+
    private LevelGeneratorConfiguration m_config;
-   private LevelGenerator m_generator;
+   private AsyncLevelGenerator m_generator;
+   // the last we heard from m_generator
+   private AsyncLevelGenerator.Progress m_progress;
    private Level m_level;
 
    boolean m_playing = false;
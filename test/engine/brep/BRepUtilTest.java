@@ -49,7 +49,7 @@ public class BRepUtilTest
       }
 
       @Override
-      public Box boundingBox()
+      protected Box computeBoundingBox()
       {
          return null;
       }
@@ -947,6 +947,54 @@ public class BRepUtilTest
       }
    }
 
+   @Test
+   public void testSweptAngle()
+   {
+      CircleCurve fwd = new CircleCurve(new XY(), 1);
+      CircleCurve rev = new CircleCurve(new XY(), 1, CircleCurve.RotationDirection.Reverse);
+
+      // whole turns from inside, nothing from outside, either way from anywhere inside
+      assertEquals(Math.PI * 2, BRepUtil.sweptAngle(fwd, new XY()), 1e-12);
+      assertEquals(Math.PI * 2, BRepUtil.sweptAngle(fwd, new XY(0.9, 0.2)), 1e-12);
+      assertEquals(-Math.PI * 2, BRepUtil.sweptAngle(rev, new XY(0, -0.5)), 1e-12);
+      assertEquals(0, BRepUtil.sweptAngle(fwd, new XY(2, 0)), 1e-12);
+
+      // a quarter arc, from the 12 o'clock to 3 o'clock, seen from the centre
+      CircleCurve quarter = new CircleCurve(new XY(), 1, 0, Math.PI / 2);
+      assertEquals(Math.PI / 2, BRepUtil.sweptAngle(quarter, new XY()), 1e-12);
+
+      // the rest of that circle, seen from the same place, and from between each part and its chord
+      CircleCurve rest = new CircleCurve(new XY(), 1, Math.PI / 2, 0);
+
+      for(XY pnt : new XY[] { new XY(), new XY(0.6, 0.6), new XY(-0.5, 0.1), new XY(0.3, -0.9) })
+      {
+         assertEquals(Math.PI * 2, BRepUtil.sweptAngle(quarter, pnt) + BRepUtil.sweptAngle(rest, pnt), 1e-12);
+      }
+
+      for(XY pnt : new XY[] { new XY(0.8, 0.8), new XY(-2, 0), new XY(0, 3) })
+      {
+         assertEquals(0, BRepUtil.sweptAngle(quarter, pnt) + BRepUtil.sweptAngle(rest, pnt), 1e-12);
+      }
+
+      // lines just turn through the chord
+      LineCurve lc = new LineCurve(new XY(-1, 1), new XY(1, 0), 2);
+      assertEquals(Math.PI / 2, BRepUtil.sweptAngle(lc, new XY()), 1e-12);
+      assertEquals(-Math.PI / 2, BRepUtil.sweptAngle(lc, new XY(0, 2)), 1e-12);
+
+      boolean thrown = false;
+
+      try
+      {
+         BRepUtil.sweptAngle(new Fake(), new XY());
+      }
+      catch(UnsupportedOperationException uoe)
+      {
+         thrown = true;
+      }
+
+      assertTrue(thrown);
+   }
+
    private static void checkParamsUnknownOrder(String msg,
                                                Curve c,
                                                double pa, double pb,
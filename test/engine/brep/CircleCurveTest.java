@@ -180,6 +180,13 @@ public class CircleCurveTest
       Box b = cc.boundingBox();
 
       assertTrue(new Box(new XY(-2, -1), new XY(12, 13)).equals(b));
+
+      assertSame(b, cc.boundingBox());
+
+      assertEquals(-2, cc.minX(), 0);
+      assertEquals(-1, cc.minY(), 0);
+      assertEquals(12, cc.maxX(), 0);
+      assertEquals(13, cc.maxY(), 0);
    }
 
    @Test
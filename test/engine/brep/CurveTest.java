@@ -34,7 +34,7 @@ public class CurveTest
       }
 
       @Override
-      public Box boundingBox()
+      protected Box computeBoundingBox()
       {
          return null;
       }
@@ -0,0 +1,101 @@
+package engine.brep;
+
+import engine.XY;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CurveYIndexTest
+{
+   @Test
+   public void testEmptyAndFlat()
+   {
+      CurveYIndex empty = new CurveYIndex(Collections.emptyList(), 0.1);
+
+      assertEquals(empty.firstEntry(0), empty.endEntry(0));
+
+      // no height at all, without padding
+      ArrayList<Curve> flat = new ArrayList<>();
+      flat.add(new LineCurve(new XY(0, 1), new XY(1, 0), 5));
+      flat.add(new LineCurve(new XY(10, 1), new XY(1, 0), 5));
+
+      CurveYIndex cyi = new CurveYIndex(flat, 0);
+
+      assertEquals(2, cyi.endEntry(1) - cyi.firstEntry(1));
+   }
+
+   @Test
+   public void testFindsEverythingReachingY()
+   {
+      Random r = new Random(1);
+
+      ArrayList<Curve> curves = new ArrayList<>();
+
+      for (int i = 0; i < 500; i++)
+      {
+         XY pos = new XY(r.nextDouble() * 100, r.nextDouble() * 100);
+
+         if (i % 5 == 0)
+         {
+            curves.add(new CircleCurve(pos, r.nextDouble() * 5 + 0.1));
+         }
+         else
+         {
+            double ang = r.nextDouble() * Math.PI * 2;
+
+            // some long ones, which go in lots of buckets
+            double length = i % 50 == 0 ? 80 : r.nextDouble() * 5;
+
+            curves.add(new LineCurve(pos, new XY(Math.sin(ang), Math.cos(ang)), length));
+         }
+      }
+
+      double pad = 0.5;
+
+      CurveYIndex cyi = new CurveYIndex(curves, pad);
+
+      int num_looked_at = 0;
+      int num_reaching = 0;
+
+      for (int q = 0; q < 1000; q++)
+      {
+         double y = r.nextDouble() * 120 - 10;
+
+         HashSet<Integer> found = new HashSet<>();
+         int prev = -1;
+
+         for (int e = cyi.firstEntry(y); e < cyi.endEntry(y); e++)
+         {
+            int i = cyi.curveOf(e);
+
+            // ascending, so no repeats
+            assertTrue(i > prev);
+            prev = i;
+
+            found.add(i);
+         }
+
+         for (int i = 0; i < curves.size(); i++)
+         {
+            Curve c = curves.get(i);
+
+            if (c.minY() - pad <= y && y <= c.maxY() + pad)
+            {
+               assertTrue(found.contains(i));
+               num_reaching++;
+            }
+         }
+
+         num_looked_at += found.size();
+      }
+
+      // not a trivial test, and only looking through a few more than we need to
+      assertTrue(num_reaching > 1000);
+      assertTrue(num_looked_at < num_reaching * 3);
+   }
+}
@@ -56,7 +56,7 @@ public class IntersectorTest
       }
 
       @Override
-      public Box boundingBox()
+      protected Box computeBoundingBox()
       {
          return null;
       }
@@ -244,6 +244,93 @@ public class IntersectorTest
       }
    }
 
+   @Test
+   public void testSplitCurvesAtIntersections_FarApartCurvesUntouched()
+   {
+      // a row of circles, only the last of which meets the one circle in the other list
+      ArrayList<Curve> curves1 = new ArrayList<>();
+
+      for(int i = 0; i < 10; i++)
+      {
+         curves1.add(new CircleCurve(new XY(i * 10, 0), 1));
+      }
+
+      ArrayList<Curve> curves2 = new ArrayList<>();
+      curves2.add(new CircleCurve(new XY(91, 0), 1));
+
+      ArrayList<Curve> before = new ArrayList<>(curves1);
+
+      m_intersector.splitCurvesAtIntersections(curves1, curves2, 1e-6);
+
+      // the last circle is cut twice, as in the two-circles case, and nothing else is touched
+      assertEquals(12, curves1.size());
+      assertEquals(3, curves2.size());
+
+      for(int i = 0; i < 9; i++)
+      {
+         assertSame(before.get(i), curves1.get(i));
+      }
+
+      assertTrue(curves1.get(9).endPos().equals(curves1.get(10).startPos(), 1e-6));
+      assertTrue(curves1.get(10).endPos().equals(curves1.get(11).startPos(), 1e-6));
+      assertTrue(curves1.get(11).endPos().equals(curves1.get(9).startPos(), 1e-6));
+   }
+
+   @Test
+   public void testOverlappingCurvePairs()
+   {
+      Random r = new Random(1);
+
+      ArrayList<Curve> curves1 = new ArrayList<>();
+      ArrayList<Curve> curves2 = new ArrayList<>();
+
+      for(int i = 0; i < 50; i++)
+      {
+         double a1 = r.nextDouble() * Math.PI * 2;
+         double a2 = r.nextDouble() * Math.PI * 2;
+
+         curves1.add(new LineCurve(new XY(r.nextDouble() * 100, r.nextDouble() * 100),
+               new XY(Math.sin(a1), Math.cos(a1)), r.nextDouble() * 10));
+         curves2.add(new LineCurve(new XY(r.nextDouble() * 100, r.nextDouble() * 100),
+               new XY(Math.sin(a2), Math.cos(a2)), r.nextDouble() * 10));
+      }
+
+      // including ones just touching, and just apart
+      curves1.add(new LineCurve(new XY(200, 200), new XY(1, 0), 10));
+      curves2.add(new LineCurve(new XY(210, 200), new XY(0, 1), 10));
+      curves1.add(new LineCurve(new XY(300, 300), new XY(1, 0), 10));
+      curves2.add(new LineCurve(new XY(310.1, 300), new XY(0, 1), 10));
+
+      ArrayList<ArrayList<Integer>> pairs = Intersector.overlappingCurvePairs(curves1, curves2, 1e-6);
+
+      assertEquals(curves1.size(), pairs.size());
+
+      int num_pairs = 0;
+
+      for(int i = 0; i < curves1.size(); i++)
+      {
+         ArrayList<Integer> expected = new ArrayList<>();
+
+         for(int j = 0; j < curves2.size(); j++)
+         {
+            if (!curves1.get(i).boundingBox().disjoint(curves2.get(j).boundingBox()))
+            {
+               expected.add(j);
+            }
+         }
+
+         // all of them, and in order
+         assertEquals(expected, pairs.get(i));
+
+         num_pairs += expected.size();
+      }
+
+      // not a trivial test
+      assertTrue(num_pairs > 0);
+      assertEquals(Collections.singletonList(50), pairs.get(50));
+      assertEquals(Collections.emptyList(), pairs.get(51));
+   }
+
    @Test
    public void testFindSplices()
    {
@@ -331,7 +418,7 @@ public class IntersectorTest
                m_intersector.tryFindIntersections(
                      new XY(0, -5),
                      all_curves,
-                     curve_joints,
+                     new JointIndex(curve_joints),
                      10, 1e-6,
                      new Random(1)
                );
@@ -361,7 +448,7 @@ public class IntersectorTest
                m_intersector.tryFindIntersections(
                      new XY(0, 0),  // use centre to force hitting both circles
                      all_curves,
-                     curve_joints,
+                     new JointIndex(curve_joints),
                      10, 1e-6,
                      new Random(1)
                );
@@ -395,7 +482,7 @@ public class IntersectorTest
                m_intersector.tryFindIntersections(
                      new XY(0, 0),  // use centre to force hitting both circles
                      all_curves,
-                     curve_joints,
+                     new JointIndex(curve_joints),
                      10, 1e-6,
                      new Random(1)
                );
@@ -496,13 +583,24 @@ public class IntersectorTest
 
    @Test
    public void testUnion() throws Exception
+   {
+      checkUnion(m_intersector);
+   }
+
+   @Test
+   public void testUnion_WindingNumbers() throws Exception
+   {
+      checkUnion(new Intersector(Intersector.Classification.WindingNumbers));
+   }
+
+   private void checkUnion(Intersector intersector)
    {
       // nothing union nothing should equal nothing
       {
          LoopSet ls1 = new LoopSet();
          LoopSet ls2 = new LoopSet();
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNull(ret);
       }
@@ -515,7 +613,7 @@ public class IntersectorTest
          Loop l1 = new Loop(new CircleCurve(new XY(), 1));
          ls1.add(l1);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -530,7 +628,7 @@ public class IntersectorTest
          Loop l2 = new Loop(new CircleCurve(new XY(), 1));
          ls2.add(l2);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -551,7 +649,7 @@ public class IntersectorTest
          // paranoia
          assertEquals(ls1, ls2);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -569,7 +667,7 @@ public class IntersectorTest
          Loop l2 = new Loop(new CircleCurve(new XY(1, 0), 1));
          ls2.add(l2);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -623,7 +721,7 @@ public class IntersectorTest
          ls2.add(l2a);
          ls2.add(l2b);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(3, ret.size());
@@ -644,7 +742,7 @@ public class IntersectorTest
          Loop l2 = new Loop(new CircleCurve(new XY(2, 0), 1));
          ls2.add(l2);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -694,7 +792,7 @@ public class IntersectorTest
          Loop l2 = new Loop(new CircleCurve(new XY(2, 0), 1));
          ls2.add(l2);
 
-         LoopSet ret = m_intersector.union(ls2, ls1, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls2, ls1, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -743,7 +841,7 @@ public class IntersectorTest
          Loop l2 = new Loop(new CircleCurve(new XY(0.5, 0), 0.5, CircleCurve.RotationDirection.Reverse));
          ls2.add(l2);
 
-         LoopSet ret = m_intersector.union(ls1, ls2, 1e-6, new Random(1));
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, new Random(1));
 
          assertNotNull(ret);
          assertEquals(1, ret.size());
@@ -782,6 +880,70 @@ public class IntersectorTest
       }
    }
 
+   // clockwise, as Forwards circles are, from min
+   private static Loop makeRect(XY min, double w, double h)
+   {
+      ArrayList<Curve> curves = new ArrayList<>();
+
+      curves.add(new LineCurve(min, new XY(0, 1), h));
+      curves.add(new LineCurve(min.plus(new XY(0, h)), new XY(1, 0), w));
+      curves.add(new LineCurve(min.plus(new XY(w, h)), new XY(0, -1), h));
+      curves.add(new LineCurve(min.plus(new XY(w, 0)), new XY(-1, 0), w));
+
+      return new Loop(curves);
+   }
+
+   private static double totalLength(Loop l)
+   {
+      return l.getCurves().stream().mapToDouble(Curve::length).sum();
+   }
+
+   @Test
+   public void testUnion_WindingNumbersCoincidentEdges() throws Exception
+   {
+      Intersector intersector = new Intersector(Intersector.Classification.WindingNumbers);
+
+      // side by side, sharing part of an edge, which is inside the result from both sides
+      {
+         LoopSet ls1 = new LoopSet();
+         LoopSet ls2 = new LoopSet();
+
+         ls1.add(makeRect(new XY(0, 0), 1, 1));
+         ls2.add(makeRect(new XY(1, 0.5), 1, 1));
+
+         // and doesn't need a Random
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, null);
+
+         assertNotNull(ret);
+         assertEquals(1, ret.size());
+
+         // the outline, without the half unit of shared edge
+         assertEquals(7, totalLength(ret.get(0)), 1e-6);
+
+         for(Curve c : ret.get(0).getCurves())
+         {
+            XY mid = c.computePos((c.StartParam + c.EndParam) / 2);
+
+            assertFalse(Math.abs(mid.X - 1) < 1e-6 && mid.Y > 0.5 && mid.Y < 1);
+         }
+      }
+
+      // one inside the other, sharing part of an edge running the same way, so that is in the result just once
+      {
+         LoopSet ls1 = new LoopSet();
+         LoopSet ls2 = new LoopSet();
+
+         ls1.add(makeRect(new XY(0, 0), 2, 2));
+         ls2.add(makeRect(new XY(0, 0.5), 1, 1));
+
+         LoopSet ret = intersector.union(ls1, ls2, 1e-6, null);
+
+         assertNotNull(ret);
+         assertEquals(1, ret.size());
+         assertEquals(8, totalLength(ret.get(0)), 1e-6);
+      }
+   }
+
    @Test
    public void testAnnotatedCurve()
    {
@@ -805,7 +967,7 @@ public class IntersectorTest
       @Override
       protected boolean extractInternalCurves(double tol, Random random,
             HashMap<Curve, AnnotatedCurve> forward_annotations_map, HashSet<Curve> all_curves,
-            HashSet<AnnotatedCurve> open, HashSet<XY> curve_joints, Double diameter)
+            HashSet<AnnotatedCurve> open, JointIndex curve_joints, Double diameter)
       {
          return false;
       }
@@ -818,7 +980,7 @@ public class IntersectorTest
       tryFindIntersections(
             XY mid_point,
             HashSet<Curve> all_curves,
-            HashSet<XY> curve_joints,
+            JointIndex curve_joints,
             double diameter, double tol,
             Random random)
       {
@@ -829,7 +991,7 @@ public class IntersectorTest
    class IntersectorDummy3 extends Intersector
    {
       @Override
-      public boolean lineClearsPoints(LineCurve lc, HashSet<XY> curve_joints, double tol)
+      public boolean lineClearsPoints(LineCurve lc, JointIndex curve_joints, double tol)
       {
          return false;
       }
@@ -900,24 +1062,24 @@ public class IntersectorTest
          HashSet<XY> hs = new HashSet<>();
          hs.add(new XY(1, 1));
 
-         assertTrue(m_intersector.lineClearsPoints(lc1, hs, 1e-6));
-         assertFalse(m_intersector.lineClearsPoints(lc2, hs, 1e-6));
+         assertTrue(m_intersector.lineClearsPoints(lc1, new JointIndex(hs), 1e-6));
+         assertFalse(m_intersector.lineClearsPoints(lc2, new JointIndex(hs), 1e-6));
       }
 
       {
          HashSet<XY> hs = new HashSet<>();
          hs.add(new XY(0, 0));
 
-         assertFalse(m_intersector.lineClearsPoints(lc1, hs, 1e-6));
-         assertFalse(m_intersector.lineClearsPoints(lc2, hs, 1e-6));
+         assertFalse(m_intersector.lineClearsPoints(lc1, new JointIndex(hs), 1e-6));
+         assertFalse(m_intersector.lineClearsPoints(lc2, new JointIndex(hs), 1e-6));
       }
 
       {
          HashSet<XY> hs = new HashSet<>();
          hs.add(new XY(2, 0));
 
-         assertFalse(m_intersector.lineClearsPoints(lc1, hs, 1e-6));
-         assertTrue(m_intersector.lineClearsPoints(lc2, hs, 1e-6));
+         assertFalse(m_intersector.lineClearsPoints(lc1, new JointIndex(hs), 1e-6));
+         assertTrue(m_intersector.lineClearsPoints(lc2, new JointIndex(hs), 1e-6));
       }
    }
 
@@ -0,0 +1,103 @@
+package engine.brep;
+
+import engine.XY;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JointIndexTest
+{
+   // what lineClearsPoints used to do, looking at every point
+   private static boolean anyNearSlow(Iterable<XY> pnts, LineCurve lc, double tol)
+   {
+      for (XY pnt : pnts)
+      {
+         if (Math.abs(pnt.minus(lc.Position).dot(lc.Direction.rot90())) < tol)
+            return true;
+      }
+
+      return false;
+   }
+
+   @Test
+   public void testEmpty()
+   {
+      JointIndex ji = new JointIndex(Collections.emptyList());
+
+      assertFalse(ji.anyNear(new LineCurve(new XY(), new XY(1, 0), 1), 1e-6));
+   }
+
+   @Test
+   public void testTolerance()
+   {
+      JointIndex ji = new JointIndex(Collections.singletonList(new XY(0, 1)));
+
+      // the line's length makes no difference, nor which way along it the point is
+      assertTrue(ji.anyNear(new LineCurve(new XY(5, 0.5), new XY(-1, 0), 1), 0.6));
+      assertTrue(ji.anyNear(new LineCurve(new XY(-5, 0.5), new XY(-1, 0), 1), 0.6));
+
+      // strictly less than tol
+      assertFalse(ji.anyNear(new LineCurve(new XY(5, 0.5), new XY(-1, 0), 1), 0.5));
+      assertFalse(ji.anyNear(new LineCurve(new XY(5, 0.5), new XY(-1, 0), 1), 0.4));
+   }
+
+   @Test
+   public void testSameAsLookingAtEveryPoint()
+   {
+      Random r = new Random(1);
+
+      ArrayList<XY> pnts = new ArrayList<>();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         pnts.add(new XY(r.nextDouble() * 100, r.nextDouble() * 100));
+      }
+
+      // some on top of each other, and some in a straight line, as joints often are
+      for (int i = 0; i < 20; i++)
+      {
+         pnts.add(pnts.get(i));
+         pnts.add(new XY(i, 50));
+      }
+
+      JointIndex ji = new JointIndex(new HashSet<>(pnts));
+
+      int num_near = 0;
+
+      for (int i = 0; i < 2000; i++)
+      {
+         double ang = r.nextDouble() * Math.PI * 2;
+         XY dir = new XY(Math.sin(ang), Math.cos(ang));
+
+         // half of them right through one of the points
+         XY pos = i % 2 == 0
+               ? pnts.get(r.nextInt(pnts.size()))
+               : new XY(r.nextDouble() * 100, r.nextDouble() * 100);
+
+         LineCurve lc = new LineCurve(pos, dir, 10);
+
+         double tol = r.nextDouble() * 0.1;
+
+         boolean near = anyNearSlow(pnts, lc, tol);
+
+         assertEquals(near, ji.anyNear(lc, tol));
+
+         if (near)
+         {
+            num_near++;
+         }
+      }
+
+      // the points along y = 50
+      assertTrue(ji.anyNear(new LineCurve(new XY(-10, 50), new XY(1, 0), 1), 1e-9));
+
+      // not a trivial test
+      assertTrue(num_near > 1000);
+      assertTrue(num_near < 2000);
+   }
+}
@@ -93,6 +93,16 @@ public class LineCurveTest
       assertTrue(new Box(new XY(-1, -2), new XY(4, -2)).equals(lc.boundingBox()));
       assertTrue(new Box(new XY(), new XY(5 / Math.sqrt(2), 5 / Math.sqrt(2))).equals(lc2.boundingBox()));
       assertTrue(new Box(new XY(10, 11), new XY(10, 16)).equals(lc3.boundingBox()));
+
+      // worked out once and kept
+      assertSame(lc.boundingBox(), lc.boundingBox());
+      assertSame(lc.startPos(), lc.startPos());
+      assertSame(lc.endPos(), lc.endPos());
+
+      assertEquals(-1, lc.minX(), 0);
+      assertEquals(-2, lc.minY(), 0);
+      assertEquals(4, lc.maxX(), 0);
+      assertEquals(-2, lc.maxY(), 0);
    }
 
    @Test
@@ -1,5 +1,6 @@
 package engine.brep;
 
+import engine.Box;
 import engine.XY;
 import org.junit.Test;
 
@@ -79,6 +80,23 @@ public class LoopTest
       }
    }
 
+   @Test
+   public void testGetBounds()
+   {
+      ArrayList<Curve> curves = new ArrayList<>();
+      curves.add(new LineCurve(new XY(0, 0), new XY(0, 1), 2));
+      curves.add(new CircleCurve(new XY(0, 3), 1, Math.PI, 0));
+      curves.add(new LineCurve(new XY(0, 4), new XY(0, -1), 4));
+
+      Loop l = new Loop(curves);
+
+      // (the arc counts as its whole circle)
+      assertEquals(new Box(new XY(-1, 0), new XY(1, 4)), l.getBounds());
+      assertSame(l.getBounds(), l.getBounds());
+
+      assertTrue(new Loop().getBounds().isEmpty());
+   }
+
    @Test
    public void testParams()
    {
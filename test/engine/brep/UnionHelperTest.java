@@ -7,8 +7,10 @@ import engine.graph.Graph;
 import engine.graph.INode;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -191,4 +193,125 @@ public class UnionHelperTest
          assertTrue(uh.unionOne(new Random(1)));
       }
    }
+
+   @Test
+   public void testUnionOneTree() throws Exception
+   {
+      ForkJoinPool pool = new ForkJoinPool(2);
+
+      try
+      {
+         {
+            UnionHelper uh = new UnionHelper(pool);
+
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(0, 0), 10)));
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(30, 0), 10)));
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(0, 30), 10)));
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(30, 30), 10)));
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(15, 15), 20)));
+
+            Random r = new Random(1);
+
+            // five become three (two pairs and the odd one out) and the base loops are all taken
+            assertFalse(uh.unionOne(r));
+            assertEquals(0, uh.getBaseLoops().size());
+            assertEquals(0, uh.getMergedLoops().size());
+
+            // three become two
+            assertFalse(uh.unionOne(r));
+            assertEquals(0, uh.getMergedLoops().size());
+
+            // and two become one, with the 5th loop joining all the others
+            assertFalse(uh.unionOne(r));
+            assertEquals(1, uh.getMergedLoops().size());
+
+            assertTrue(uh.unionOne(r));
+         }
+
+         {
+            UnionHelper uh = new UnionHelper(pool);
+
+            uh.addBaseLoop(new Loop(new CircleCurve(new XY(0, 0), 10)));
+
+            LoopSet ls = new LoopSet();
+            ls.add(new Loop(new CircleCurve(new XY(10, 0), 5, CircleCurve.RotationDirection.Reverse)));
+            ls.add(new Loop(new CircleCurve(new XY(0, 10), 5, CircleCurve.RotationDirection.Reverse)));
+            ls.add(new Loop(new CircleCurve(new XY(-10, 0), 5, CircleCurve.RotationDirection.Reverse)));
+            ls.add(new Loop(new CircleCurve(new XY(0, -10), 5, CircleCurve.RotationDirection.Reverse)));
+            uh.addDetailLoops(ls);
+
+            // one base loop is a tree of one
+            assertFalse(uh.unionOne(new Random(1)));
+            assertEquals(1, uh.getMergedLoops().size());
+            assertEquals(1, uh.getDetailLoopSets().size());
+
+            // detail still goes on afterwards
+            assertFalse(uh.unionOne(new Random(1)));
+            assertEquals(0, uh.getDetailLoopSets().size());
+            assertEquals(8, uh.getMergedLoops().stream().findFirst().get().numCurves());
+
+            assertTrue(uh.unionOne(new Random(1)));
+         }
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   }
+
+   private static ArrayList<Loop> unionTree(ForkJoinPool pool)
+   {
+      UnionHelper uh = new UnionHelper(pool);
+
+      for (int i = 0; i < 9; i++)
+      {
+         uh.addBaseLoop(new Loop(new CircleCurve(new XY(i * 15, (i % 2) * 5), 10)));
+      }
+
+      Random r = new Random(3);
+
+      //noinspection StatementWithEmptyBody
+      while(!uh.unionOne(r))
+         ;
+
+      return new ArrayList<>(uh.getMergedLoops());
+   }
+
+   @Test
+   public void testUnionTreeDeterministic() throws Exception
+   {
+      ForkJoinPool pool1 = new ForkJoinPool(1);
+      ForkJoinPool pool4 = new ForkJoinPool(4);
+
+      try
+      {
+         ArrayList<Loop> ls1 = unionTree(pool1);
+         ArrayList<Loop> ls4 = unionTree(pool4);
+
+         // all the circles overlap their neighbours
+         assertEquals(1, ls1.size());
+
+         // however many threads did it, it comes out the same
+         assertEquals(ls1.size(), ls4.size());
+
+         for (int i = 0; i < ls1.size(); i++)
+         {
+            Loop l1 = ls1.get(i);
+            Loop l4 = ls4.get(i);
+
+            assertEquals(l1.numCurves(), l4.numCurves());
+
+            for (int j = 0; j < l1.numCurves(); j++)
+            {
+               assertEquals(l1.getCurves().get(j).startPos(), l4.getCurves().get(j).startPos());
+               assertEquals(l1.getCurves().get(j).endPos(), l4.getCurves().get(j).endPos());
+            }
+         }
+      }
+      finally
+      {
+         pool1.shutdown();
+         pool4.shutdown();
+      }
+   }
 }
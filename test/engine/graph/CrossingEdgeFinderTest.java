@@ -0,0 +1,143 @@
+package engine.graph;
+
+import engine.Util;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CrossingEdgeFinderTest
+{
+   private static HashSet<Long> bruteForce(int[] starts, int[] ends, double[] xs, double[] ys)
+   {
+      HashSet<Long> ret = new HashSet<>();
+
+      for(int i = 0; i < starts.length; i++)
+      {
+         for(int j = 0; j < i; j++)
+         {
+            if (starts[i] == starts[j] || starts[i] == ends[j] || ends[i] == starts[j] || ends[i] == ends[j])
+               continue;
+
+            if (Util.edgeIntersect(xs[starts[i]], ys[starts[i]], xs[ends[i]], ys[ends[i]],
+                  xs[starts[j]], ys[starts[j]], xs[ends[j]], ys[ends[j]]) != null)
+            {
+               ret.add((long)i << 32 | j);
+            }
+         }
+      }
+
+      return ret;
+   }
+
+   @Test
+   public void testMatchesBruteForce() throws Exception
+   {
+      Random r = new Random(1);
+
+      int num_nodes = 200;
+      int num_edges = 150;
+
+      double[] xs = new double[num_nodes];
+      double[] ys = new double[num_nodes];
+
+      int[] starts = new int[num_edges];
+      int[] ends = new int[num_edges];
+
+      for(int i = 0; i < num_edges; i++)
+      {
+         starts[i] = r.nextInt(num_nodes);
+
+         do
+         {
+            ends[i] = r.nextInt(num_nodes);
+         }
+         while (ends[i] == starts[i]);
+      }
+
+      CrossingEdgeFinder cef = new CrossingEdgeFinder();
+      cef.setEdges(starts, ends, num_edges);
+
+      // several rounds of moving things a bit, as the finder keeps its sort order between calls
+      for(int round = 0; round < 10; round++)
+      {
+         for(int i = 0; i < num_nodes; i++)
+         {
+            if (round == 0)
+            {
+               xs[i] = r.nextDouble() * 1000;
+               ys[i] = r.nextDouble() * 1000;
+            }
+            else
+            {
+               xs[i] += r.nextDouble() * 20 - 10;
+               ys[i] += r.nextDouble() * 20 - 10;
+            }
+         }
+
+         HashSet<Long> expected = bruteForce(starts, ends, xs, ys);
+         HashSet<Long> found = new HashSet<>();
+
+         boolean any = cef.findAll(xs, ys, (e1, e2) ->
+         {
+            assertTrue(e1 > e2);
+            assertTrue(found.add((long)e1 << 32 | e2));
+         });
+
+         assertEquals(expected, found);
+         assertEquals(!expected.isEmpty(), any);
+         assertEquals(!expected.isEmpty(), cef.hasCrossing(xs, ys));
+      }
+   }
+
+   @Test
+   public void testSharedEndsDontCross() throws Exception
+   {
+      // a star, all edges meet at node 0
+      double[] xs = new double[] { 0, 1, -1, 0, 0 };
+      double[] ys = new double[] { 0, 0, 0, 1, -1 };
+
+      int[] starts = new int[] { 0, 0, 0, 0 };
+      int[] ends = new int[] { 1, 2, 3, 4 };
+
+      CrossingEdgeFinder cef = new CrossingEdgeFinder();
+      cef.setEdges(starts, ends, 4);
+
+      assertFalse(cef.hasCrossing(xs, ys));
+
+      // and a cross between 1-2 and 3-4
+      starts = new int[] { 1, 3 };
+      ends = new int[] { 2, 4 };
+
+      cef.setEdges(starts, ends, 2);
+
+      assertTrue(cef.hasCrossing(xs, ys));
+   }
+
+   @Test
+   public void testNoEdges() throws Exception
+   {
+      CrossingEdgeFinder cef = new CrossingEdgeFinder();
+
+      assertFalse(cef.hasCrossing(new double[0], new double[0]));
+
+      cef.setEdges(new int[0], new int[0], 0);
+
+      assertFalse(cef.hasCrossing(new double[0], new double[0]));
+   }
+
+   @Test
+   public void testVerticalAndHorizontal() throws Exception
+   {
+      // edges with zero width in x or y still need finding
+      double[] xs = new double[] { 0, 0, -1, 1 };
+      double[] ys = new double[] { -1, 1, 0, 0 };
+
+      CrossingEdgeFinder cef = new CrossingEdgeFinder();
+      cef.setEdges(new int[] { 0, 2 }, new int[] { 1, 3 }, 2);
+
+      assertTrue(cef.hasCrossing(xs, ys));
+   }
+}
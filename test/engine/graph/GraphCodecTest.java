@@ -0,0 +1,130 @@
+package engine.graph;
+
+import engine.XY;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GraphCodecTest
+{
+   private static final List<GeomLayout.IGeomLayoutCreateFromNode> s_node_creators
+         = Arrays.asList(Node.DefaultLayourGreator, CircularPillarGeomLayout::createFromNode);
+   private static final List<GeomLayout.IGeomLayoutCreateFromDirectedEdge> s_edge_creators
+         = Collections.singletonList(Graph.DefaultCorridorCreator);
+
+   private static Graph roundTrip(Graph g) throws Exception
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      GraphCodec.write(g, new DataOutputStream(bytes), s_node_creators, s_edge_creators);
+
+      return GraphCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+            s_node_creators, s_edge_creators);
+   }
+
+   private static List<String> describeConnections(Graph g)
+   {
+      ArrayList<String> ret = new ArrayList<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         for(DirectedEdge e : ((Node)n).connectionsInOrder())
+         {
+            ret.add(n.hashCode() + ":" + e.Start.hashCode() + "->" + e.End.hashCode());
+         }
+      }
+
+      return ret;
+   }
+
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "a", "t1", 10);
+      INode n2 = g.addNode("n2", "b", "t2", 20, s_node_creators.get(1));
+      INode n3 = g.addNode("n3", "c", "t3", 30);
+      n1.setPos(new XY(1, 2));
+      n2.setPos(new XY(3, 4));
+      n3.setColour(17);
+
+      g.connect(n1, n2, 1, 2, 3);
+      DirectedEdge e = g.connect(n3, n1, 4, 5, 6);
+      e.SetColour(19);
+      g.connect(n2, n3, 7, 8, 9, null);
+
+      // out of the order they were made in, for n1's connections
+      g.disconnect(n1, n2);
+      g.connect(n1, n2, 1, 2, 3);
+
+      Graph r = roundTrip(g);
+
+      assertEquals(3, r.numNodes());
+      assertEquals(3, r.numEdges());
+
+      ArrayList<INode> g_nodes = g.allGraphNodes();
+      ArrayList<INode> r_nodes = r.allGraphNodes();
+
+      for(int i = 0; i < 3; i++)
+      {
+         INode gn = g_nodes.get(i);
+         INode rn = r_nodes.get(i);
+
+         assertEquals(gn.hashCode(), rn.hashCode());
+         assertEquals(gn.getName(), rn.getName());
+         assertEquals(gn.getCodes(), rn.getCodes());
+         assertEquals(gn.getTemplate(), rn.getTemplate());
+         assertEquals(gn.getRad(), rn.getRad(), 0);
+         assertEquals(gn.getPos(), rn.getPos());
+         assertEquals(gn.getColour(), rn.getColour());
+         assertSame(gn.geomLayoutCreator(), rn.geomLayoutCreator());
+      }
+
+      ArrayList<DirectedEdge> g_edges = g.allGraphEdges();
+      ArrayList<DirectedEdge> r_edges = r.allGraphEdges();
+
+      for(int i = 0; i < 3; i++)
+      {
+         DirectedEdge ge = g_edges.get(i);
+         DirectedEdge re = r_edges.get(i);
+
+         assertEquals(ge.Start.hashCode(), re.Start.hashCode());
+         assertEquals(ge.End.hashCode(), re.End.hashCode());
+         assertEquals(ge.MaxLength, re.MaxLength, 0);
+         assertEquals(ge.GetColour(), re.GetColour());
+         assertSame(ge.LayoutCreator, re.LayoutCreator);
+      }
+
+      assertEquals(describeConnections(g), describeConnections(r));
+
+      // and carries on handing out the same ids
+      assertEquals(g.addNode("", "", "", 1).hashCode(), r.addNode("", "", "", 1).hashCode());
+   }
+
+   @Test
+   public void testUnknownCreator() throws Exception
+   {
+      Graph g = new Graph();
+
+      g.addNode("n", "", "", 10, n -> null);
+
+      try
+      {
+         roundTrip(g);
+         fail("Expected an IllegalArgumentException");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // expected
+      }
+   }
+}
@@ -0,0 +1,129 @@
+package engine.graph;
+
+import engine.XY;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GraphSnapshotTest
+{
+   @Test
+   public void testSnapshot() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "x", "y", 10);
+      INode n2 = g.addNode("n2", "x", "y", 20);
+      n1.setPos(new XY(1, 2));
+
+      g.connect(n1, n2, 1, 2, 3);
+
+      GraphSnapshot s = g.snapshot();
+
+      assertEquals(2, s.numNodes());
+      assertEquals(1, s.numEdges());
+      assertTrue(s.contains(n1));
+      assertEquals(new XY(1, 2), s.getPos(n1));
+
+      // the read-only views, for drawing
+      assertEquals(2, s.nodes().size());
+      GraphSnapshot.EdgeState es = s.edges().get(0);
+      assertEquals(new XY(1, 2), s.startPos(es));
+      assertEquals(new XY(0, 0), s.endPos(es));
+      assertEquals(3, es.HalfWidth, 0);
+      assertEquals(g.bounds().Min, s.bounds().Min);
+      assertEquals(g.bounds().Max, s.bounds().Max);
+
+      // unaffected by later changes
+      n1.setPos(new XY(5, 5));
+      g.disconnect(n1, n2);
+
+      assertEquals(new XY(1, 2), s.getPos(n1));
+      assertEquals(1, s.numEdges());
+      assertNull(s.getPos(new Node("", "", "", 0)));
+   }
+
+   @Test
+   public void testSharing() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "x", "y", 10);
+      INode n2 = g.addNode("n2", "x", "y", 20);
+      g.connect(n1, n2, 1, 2, 3);
+
+      GraphSnapshot s1 = g.snapshot();
+
+      // nothing changed, same snapshot
+      assertSame(s1, g.snapshot());
+
+      // a move records just that node again
+      n1.setPos(new XY(1, 1));
+
+      GraphSnapshot s2 = g.snapshot();
+
+      assertNotSame(s1, s2);
+      assertSame(s1.nodeState((Node)n2), s2.nodeState((Node)n2));
+      assertNotSame(s1.nodeState((Node)n1), s2.nodeState((Node)n1));
+      assertSame(s1.edgeStates(), s2.edgeStates());
+
+      // a topology change records the edges again, but still shares unchanged nodes
+      INode n3 = g.addNode("n3", "x", "y", 30);
+      g.connect(n2, n3, 4, 5, 6);
+
+      GraphSnapshot s3 = g.snapshot();
+
+      assertEquals(2, s3.numEdges());
+      assertSame(s2.nodeState((Node)n1), s3.nodeState((Node)n1));
+
+      // restoring moves things back, which the next snapshot notices
+      IGraphRestore igr = g.createRestorePoint();
+      n1.setPos(new XY(7, 7));
+      igr.Restore();
+
+      assertEquals(new XY(1, 1), g.snapshot().getPos(n1));
+   }
+
+   @Test
+   public void testFork() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "x", "y", 10);
+      INode n2 = g.addNode("n2", "x", "y", 20);
+      n1.setPos(new XY(1, 2));
+      n2.setColour(17);
+      g.connect(n1, n2, 1, 2, 3);
+
+      GraphSnapshot s = g.snapshot();
+
+      Graph f1 = s.fork();
+      Graph f2 = s.fork();
+
+      INode f1n1 = f1.copyOfNode(n1);
+      INode f2n1 = f2.copyOfNode(n1);
+
+      assertNotSame(f1n1, f2n1);
+      assertEquals(n1.hashCode(), f1n1.hashCode());
+      assertEquals(new XY(1, 2), f1n1.getPos());
+      assertEquals(17, f1.copyOfNode(n2).getColour());
+      assertEquals("x", f1n1.getCodes());
+
+      DirectedEdge e = f1n1.getConnectionTo(f1.copyOfNode(n2));
+      assertNotNull(e);
+      assertEquals(2, e.MaxLength, 0);
+
+      // forks are independent of each other
+      f1n1.setPos(new XY(9, 9));
+      f1.addNode("n3", "", "", 1);
+
+      assertEquals(new XY(1, 2), f2n1.getPos());
+      assertEquals(2, f2.numNodes());
+
+      // and can be committed back
+      g.commitCopy(f1);
+
+      assertEquals(3, g.numNodes());
+      assertEquals(new XY(9, 9), n1.getPos());
+   }
+}
@@ -767,4 +767,185 @@ public class GraphTest
       // cannot connect a node we know and one we don't
       testCatchUnsupported(() -> g.connect(n, new Node("", "", "", 0), 0, 0, 0));
    }
+
+   @Test
+   public void testRestorePositions() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "", "", 0);
+      INode n2 = g.addNode("n2", "", "", 0);
+      INode n3 = g.addNode("n3", "", "", 0);
+      n1.setPos(new XY(1, 0));
+      n2.setPos(new XY(2, 0));
+      n3.setPos(new XY(3, 0));
+
+      GraphRecord gr1 = new GraphRecord(g);
+
+      IGraphRestore igr1 = g.createRestorePoint();
+
+      // moved more than once, only the first counts
+      n1.setPos(new XY(10, 0));
+      n1.setPos(new XY(11, 0));
+
+      GraphRecord gr2 = new GraphRecord(g);
+
+      // a newer restore point, which we keep (as a stepper succeeding would)
+      g.createRestorePoint();
+
+      n1.setPos(new XY(12, 0));
+      n2.setPos(new XY(20, 0));
+
+      // and one we undo
+      IGraphRestore igr3 = g.createRestorePoint();
+
+      n2.setPos(new XY(21, 0));
+      n3.setPos(new XY(30, 0));
+
+      igr3.Restore();
+
+      assertEquals(new XY(20, 0), n2.getPos());
+      assertEquals(new XY(3, 0), n3.getPos());
+
+      // moving again, after the undone one, is still undone by the older ones
+      n3.setPos(new XY(31, 0));
+      n2.setPos(new XY(22, 0));
+
+      // and so is a node moved by stepping, then removed
+      n3.resetForce();
+      n3.addForce(new XY(1, 1));
+      n3.step(1);
+      assertTrue(g.removeNode(n3));
+
+      assertFalse(gr2.Compare(g));
+
+      igr1.Restore();
+
+      assertTrue(gr1.Compare(g));
+      assertEquals(new XY(3, 0), n3.getPos());
+   }
+
+   // name, position and connections of every node, for comparing graphs made of different node objects
+   private static HashSet<String> describe(Graph g)
+   {
+      HashSet<String> ret = new HashSet<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         ret.add(n.longName() + " " + n.getPos().X + "," + n.getPos().Y + " " + n.getColour());
+      }
+
+      for(DirectedEdge e : g.allGraphEdges())
+      {
+         ret.add(e.Start.longName() + "->" + e.End.longName() + " " + e.MinLength + " " + e.MaxLength
+               + " " + e.HalfWidth);
+      }
+
+      return ret;
+   }
+
+   @Test
+   public void testCopy() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "x", "y", 10);
+      INode n2 = g.addNode("n2", "x", "y", 20);
+      INode n3 = g.addNode("n3", "x", "y", 30);
+      n1.setPos(new XY(1, 2));
+      n2.setPos(new XY(3, 4));
+      n3.setColour(17);
+
+      g.connect(n1, n2, 1, 2, 3);
+      g.connect(n3, n2, 4, 5, 6);
+
+      Graph copy = g.copy();
+
+      assertEquals(describe(g), describe(copy));
+
+      INode c1 = copy.copyOfNode(n1);
+
+      assertNotSame(n1, c1);
+      assertEquals(n1.hashCode(), c1.hashCode());
+      assertNull(copy.copyOfNode(new Node("", "", "", 0)));
+
+      // and independent
+      c1.setPos(new XY(10, 10));
+      copy.disconnect(c1, copy.copyOfNode(n2));
+
+      assertEquals(new XY(1, 2), n1.getPos());
+      assertTrue(n1.connects(n2));
+
+      // nodes added to the copy get the ids they would have got in the original
+      INode c4 = copy.addNode("n4", "", "", 1);
+      INode n4 = g.addNode("n4", "", "", 1);
+
+      assertEquals(n4.hashCode(), c4.hashCode());
+   }
+
+   @Test
+   public void testCommitCopy() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "x", "y", 10);
+      INode n2 = g.addNode("n2", "x", "y", 20);
+      INode n3 = g.addNode("n3", "x", "y", 30);
+
+      g.connect(n1, n2, 1, 2, 3);
+      g.connect(n2, n3, 4, 5, 6);
+      g.connect(n3, n1, 7, 8, 9);
+
+      HashSet<String> before = describe(g);
+
+      Graph copy = g.copy();
+
+      INode c1 = copy.copyOfNode(n1);
+      INode c2 = copy.copyOfNode(n2);
+      INode c3 = copy.copyOfNode(n3);
+
+      // remove a node, add one, re-make an edge with new lengths and move things
+      copy.disconnect(c1, c2);
+      copy.disconnect(c3, c1);
+      assertTrue(copy.removeNode(c1));
+
+      INode c4 = copy.addNode("n4", "", "", 1);
+      copy.connect(c3, c4, 1, 1, 1);
+
+      copy.disconnect(c2, c3);
+      copy.connect(c2, c3, 10, 11, 12);
+
+      c2.setPos(new XY(5, 5));
+      c3.setName("three");
+
+      IGraphRestore igr = g.createRestorePoint();
+
+      g.commitCopy(copy);
+
+      assertEquals(describe(copy), describe(g));
+      assertFalse(g.contains(n1));
+      assertEquals(new XY(5, 5), n2.getPos());
+      assertEquals("three", n3.getName());
+
+      // can undo it like anything else
+      igr.Restore();
+
+      n3.setName("n3");
+
+      assertEquals(before, describe(g));
+
+      // only our own copies
+      boolean thrown = false;
+
+      try
+      {
+         new Graph().commitCopy(copy);
+      }
+      catch(IllegalArgumentException iae)
+      {
+         thrown = true;
+      }
+
+      assertTrue(thrown);
+   }
 }
@@ -4,9 +4,15 @@ import engine.Util;
 import engine.XY;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class GraphUtilTest
 {
@@ -97,6 +103,76 @@ public class GraphUtilTest
       }
    }
 
+   @Test
+   public void testFindCrossingEdges()
+   {
+      Node n1 = makeNodeAt(0, -1);
+      Node n2 = makeNodeAt(0, 1);
+      Node n3 = makeNodeAt(-1, 0);
+      Node n4 = makeNodeAt(1, 0);
+      Node n5 = makeNodeAt(5, 5);
+
+      DirectedEdge e1 = makeEdge(n1, n2);
+      DirectedEdge e2 = makeEdge(n3, n4);
+      // shares an end with both the others, but crosses neither
+      DirectedEdge e3 = makeEdge(n2, n5);
+      DirectedEdge e4 = makeEdge(n4, n5);
+
+      ArrayList<DirectedEdge> edges = new ArrayList<>(Arrays.asList(e1, e2, e3, e4));
+
+      HashSet<DirectedEdgePair> crossings = GraphUtil.findCrossingEdges(edges);
+
+      assertEquals(1, crossings.size());
+      assertTrue(crossings.contains(new DirectedEdgePair(e1, e2, 0, 0)));
+      assertTrue(GraphUtil.hasCrossingEdges(edges));
+
+      edges.remove(e2);
+
+      assertEquals(0, GraphUtil.findCrossingEdges(edges).size());
+      assertFalse(GraphUtil.hasCrossingEdges(edges));
+   }
+
+   @Test
+   public void testHasCrossingEdgesGraph()
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("", "", "", 0);
+      INode n2 = g.addNode("", "", "", 0);
+      INode n3 = g.addNode("", "", "", 0);
+      INode n4 = g.addNode("", "", "", 0);
+
+      n1.setPos(new XY(0, -1));
+      n2.setPos(new XY(0, 1));
+      n3.setPos(new XY(-1, 0));
+      n4.setPos(new XY(1, 0));
+
+      g.connect(n1, n2, 1, 1, 0);
+      g.connect(n3, n4, 1, 1, 0);
+
+      assertTrue(GraphUtil.hasCrossingEdges(g));
+
+      // moving nodes is seen without anything being remade
+      n3.setPos(new XY(2, 0));
+
+      assertFalse(GraphUtil.hasCrossingEdges(g));
+
+      n3.setPos(new XY(-1, 0));
+
+      assertTrue(GraphUtil.hasCrossingEdges(g));
+
+      // and so are new and removed edges
+      g.disconnect(n3, n4);
+
+      assertFalse(GraphUtil.hasCrossingEdges(g));
+
+      INode n5 = g.addNode("", "", "", 0);
+      n5.setPos(new XY(-1, 0.5));
+      g.connect(n5, n4, 1, 1, 0);
+
+      assertTrue(GraphUtil.hasCrossingEdges(g));
+   }
+
    // ------------------
 
    private Node makeNodeAt(double x, double y)
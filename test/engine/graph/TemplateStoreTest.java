@@ -101,4 +101,62 @@ public class TemplateStoreTest
       assertTrue(ts.Contains("b"));
       assertFalse(ts.Contains("Ambivalent Bob"));
    }
+
+   @Test
+   public void testGetTemplatesFor()
+   {
+      TemplateStore ts = new TemplateStore();
+
+      TemplateBuilder tb1 = new TemplateBuilder("a", "");
+      tb1.AddNode(Template.NodeType.In, "i");
+      tb1.AddNode(Template.NodeType.Out, "o");
+
+      TemplateBuilder tb2 = new TemplateBuilder("b", "e");
+      tb2.AddNode(Template.NodeType.In, "i");
+      tb2.AddNode(Template.NodeType.Out, "o");
+
+      TemplateBuilder tb3 = new TemplateBuilder("c", "e");
+      tb3.AddNode(Template.NodeType.In, "i");
+
+      Template t1 = tb1.Build();
+      Template t2 = tb2.Build();
+      Template t3 = tb3.Build();
+
+      ts.AddTemplate(t1);
+      ts.AddTemplate(t2);
+
+      Collection<Template> one_one = ts.GetTemplatesFor(1, 1, false);
+
+      assertEquals(2, one_one.size());
+      assertTrue(one_one.contains(t1));
+      assertTrue(one_one.contains(t2));
+
+      Collection<Template> expanding = ts.GetTemplatesFor(1, 1, true);
+
+      assertEquals(1, expanding.size());
+      assertTrue(expanding.contains(t2));
+
+      assertEquals(0, ts.GetTemplatesFor(1, 0, false).size());
+
+      // adding one updates the index
+      ts.AddTemplate(t3);
+
+      assertEquals(1, ts.GetTemplatesFor(1, 0, false).size());
+      assertTrue(ts.GetTemplatesFor(1, 0, true).contains(t3));
+
+      // and the result is ours to consume
+      one_one.clear();
+      assertEquals(2, ts.GetTemplatesFor(1, 1, false).size());
+
+      // or by node
+      Graph g = new Graph();
+      INode n1 = g.addNode("n1", "", "", 1);
+      INode n2 = g.addNode("n2", "", "", 1);
+      INode n3 = g.addNode("n3", "", "", 1);
+      g.connect(n1, n2, 1, 1, 1);
+      g.connect(n2, n3, 1, 1, 1);
+
+      assertEquals(2, ts.GetTemplatesFor(n2, false).size());
+      assertEquals(1, ts.GetTemplatesFor(n3, false).size());
+   }
 }
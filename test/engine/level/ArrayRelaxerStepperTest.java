@@ -0,0 +1,130 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.Graph;
+import engine.graph.IGraphRestore;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class ArrayRelaxerStepperTest
+{
+   @Test
+   public void testIdenticalToRelaxerStepper() throws Exception
+   {
+      for(int seed = 1; seed < 4; seed++)
+      {
+         Graph g = GridRelaxerStepperTest.makeLatticeGraph(8, seed);
+
+         LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+         IGraphRestore igr = g.createRestorePoint();
+
+         ArrayList<StepperController.Status> plain_statuses =
+               GridRelaxerStepperTest.runSteps(new RelaxerStepper(null, g, c), 5000);
+         HashMap<INode, XY> plain_positions = GridRelaxerStepperTest.positions(g);
+
+         igr.Restore();
+
+         ArrayList<StepperController.Status> array_statuses =
+               GridRelaxerStepperTest.runSteps(new ArrayRelaxerStepper(null, g, c), 5000);
+         HashMap<INode, XY> array_positions = GridRelaxerStepperTest.positions(g);
+
+         // we only write back when we step out, so make sure we got that far
+         assertNotEquals(StepperController.Status.Iterate, plain_statuses.get(plain_statuses.size() - 1));
+         assertEquals(plain_statuses, array_statuses);
+
+         for(INode n : g.allGraphNodes())
+         {
+            assertEquals(plain_positions.get(n), array_positions.get(n));
+         }
+      }
+   }
+
+   @Test
+   public void testNodesOnlyMoveOnStepOut() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("n1", "", "", 10.0);
+      INode n2 = g.addNode("n2", "", "", 10.0);
+
+      n1.setPos(new XY(0, 0));
+      n2.setPos(new XY(1, 0));
+
+      ArrayRelaxerStepper rs = new ArrayRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      StepperController.StatusReportInner ret = rs.step(StepperController.Status.Iterate);
+
+      // overlapping nodes will take more than one step to push apart
+      assertEquals(StepperController.Status.Iterate, ret.Status);
+      assertEquals(new XY(0, 0), n1.getPos());
+      assertEquals(new XY(1, 0), n2.getPos());
+
+      for(int i = 0; i < 1000 && ret.Status == StepperController.Status.Iterate; i++)
+      {
+         ret = rs.step(StepperController.Status.Iterate);
+      }
+
+      assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
+      assertTrue(n1.getPos().minus(n2.getPos()).length() > 20);
+   }
+
+   @Test
+   public void testCrossingEdgesFail() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("edge1start", "", "", 10.0);
+      INode n2 = g.addNode("edge1end", "", "", 10.0);
+      INode n3 = g.addNode("edge2start", "", "", 10.0);
+      INode n4 = g.addNode("edge2end", "", "", 10.0);
+
+      n1.setPos(new XY(0, -100));
+      n2.setPos(new XY(0, 100));
+      n3.setPos(new XY(-100, 0));
+      n4.setPos(new XY(100, 0));
+
+      g.connect(n1, n2, 100, 100, 10);
+      g.connect(n3, n4, 100, 100, 10);
+
+      ArrayRelaxerStepper rs = new ArrayRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      StepperController.StatusReportInner ret = rs.step(StepperController.Status.Iterate);
+
+      assertEquals(StepperController.Status.StepOutFailure, ret.Status);
+      assertTrue(ret.Log.contains("crossing edges"));
+   }
+
+   @Test
+   public void testMetrics() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(5, 1);
+
+      ArrayRelaxerStepper rs = new ArrayRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      StepperController.StatusReportInner first = rs.step(StepperController.Status.StepIn);
+      StepperController.StatusReportInner second = rs.step(StepperController.Status.Iterate);
+
+      assertEquals(StepperController.Status.Iterate, first.Status);
+
+      // no message built until someone asks, and the same report every time
+      assertNull(first.Log);
+      assertSame(first, second);
+      assertSame(rs.getMetrics(), first.Metrics);
+
+      RelaxationMetrics m = rs.getMetrics();
+
+      assertEquals(2, m.Iteration);
+      assertEquals(g.numNodes(), m.NodesMoved);
+      assertTrue(m.MaxForce > 0);
+      assertTrue(m.MaxMove > 0);
+      assertFalse(m.CrossingEdges);
+
+      assertTrue(first.log().contains("force:" + m.MaxForce));
+   }
+}
@@ -0,0 +1,83 @@
+package engine.level;
+
+import game.TemplateStore1;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncLevelGeneratorTest
+{
+   // polls until complete, returns the last progress and checks nothing comes after it
+   private static AsyncLevelGenerator.Progress runToEnd(AsyncLevelGenerator alg) throws InterruptedException
+   {
+      AsyncLevelGenerator.Progress last = null;
+
+      while(last == null || !last.Complete)
+      {
+         AsyncLevelGenerator.Progress p = alg.poll();
+
+         if (p != null)
+         {
+            last = p;
+         }
+
+         Thread.sleep(1);
+      }
+
+      // and that's the lot
+      alg.stop();
+      assertNull(alg.poll());
+
+      return last;
+   }
+
+   @Test(timeout = 60000)
+   public void testRunsToCompletion() throws Exception
+   {
+      IoCContainer ioc_container = new IoCContainer(
+            RelaxerStepper::new,
+            TryAllNodesExpandStepper::new,
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      LevelGeneratorConfiguration lgc = new LevelGeneratorConfiguration(1);
+      // return often, so there's progress to see
+      lgc.ExpandStepsToRun = 10;
+
+      AsyncLevelGenerator alg = new AsyncLevelGenerator(
+            new LevelGenerator(ioc_container, 5, lgc, new TemplateStore1()));
+
+      alg.start();
+
+      AsyncLevelGenerator.Progress last = runToEnd(alg);
+
+      assertTrue(last.Succeeded);
+      assertNotNull(last.Level);
+      assertEquals(LevelGenerator.Phase.Done, last.Phase);
+      assertNotNull(last.Graph);
+      assertTrue(last.Graph.numNodes() > 3);
+   }
+
+   @Test(timeout = 60000)
+   public void testErrorStillCompletes() throws Exception
+   {
+      IoCContainer ioc_container = new IoCContainer(
+            RelaxerStepper::new,
+            (a, b, c, d) -> { throw new AssertionError("boom"); },
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      AsyncLevelGenerator alg = new AsyncLevelGenerator(
+            new LevelGenerator(ioc_container, 5, new LevelGeneratorConfiguration(1), new TemplateStore1()));
+
+      alg.start();
+
+      AsyncLevelGenerator.Progress last = runToEnd(alg);
+
+      assertFalse(last.Succeeded);
+      assertNull(last.Level);
+      assertTrue(last.Log.contains("boom"));
+   }
+}
@@ -0,0 +1,104 @@
+package engine.level;
+
+import game.TemplateStore1;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class BatchLevelGeneratorTest
+{
+   private static HashMap<Integer, String> runAll(int num_threads, ArrayList<BatchLevelGenerator.Job> jobs)
+         throws InterruptedException
+   {
+      HashMap<Integer, String> ret = new HashMap<>();
+
+      try (BatchLevelGenerator blg = new BatchLevelGenerator(LevelTestUtil.makeIoC(), num_threads))
+      {
+         blg.generate(jobs, r -> {
+            assertTrue(r.Failure, r.succeeded());
+            assertNull(ret.put(r.JobDone.Seed, LevelTestUtil.describe(r.Level, r.Graph)));
+         });
+      }
+
+      return ret;
+   }
+
+   @Test
+   public void testFailureCacheSameWhateverThePoolSize() throws Exception
+   {
+      LevelGeneratorConfiguration lgc = new LevelGeneratorConfiguration(0);
+      lgc.FailureCache = new ExpansionFailureCache(100);
+
+      ArrayList<BatchLevelGenerator.Job> jobs = new ArrayList<>();
+
+      for(int i = 1; i <= 4; i++)
+      {
+         jobs.add(new BatchLevelGenerator.Job(i, 6, lgc, TemplateStore1::new));
+      }
+
+      HashMap<Integer, String> serial = runAll(1, jobs);
+      HashMap<Integer, String> parallel = runAll(3, jobs);
+
+      assertEquals(4, serial.size());
+      assertEquals(serial, parallel);
+
+      // and a job does the same on its own, so it can't have learnt anything from the others
+      for(BatchLevelGenerator.Job j : jobs)
+      {
+         ArrayList<BatchLevelGenerator.Job> alone = new ArrayList<>();
+         alone.add(j);
+
+         assertEquals(serial.get(j.Seed), runAll(1, alone).get(j.Seed));
+      }
+
+      assertEquals(0, lgc.FailureCache.size());
+   }
+
+   @Test
+   public void testSameWhateverThePoolSize() throws Exception
+   {
+      ArrayList<BatchLevelGenerator.Job> jobs = new ArrayList<>();
+
+      for(int i = 1; i <= 4; i++)
+      {
+         jobs.add(new BatchLevelGenerator.Job(i, 6, new LevelGeneratorConfiguration(0), TemplateStore1::new));
+      }
+
+      HashMap<Integer, String> serial = runAll(1, jobs);
+      HashMap<Integer, String> parallel = runAll(3, jobs);
+
+      assertEquals(4, serial.size());
+      assertEquals(serial, parallel);
+
+      // and the seed matters
+      assertNotEquals(serial.get(1), serial.get(2));
+   }
+
+   @Test
+   public void testFailure() throws Exception
+   {
+      IoCContainer throwing = new IoCContainer(
+            RelaxerStepper::new,
+            (a, b, c, d) -> { throw new IllegalStateException("boom"); },
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      ArrayList<BatchLevelGenerator.Result> results = new ArrayList<>();
+
+      try (BatchLevelGenerator blg = new BatchLevelGenerator(throwing, 2))
+      {
+         ArrayList<BatchLevelGenerator.Job> jobs = new ArrayList<>();
+         jobs.add(new BatchLevelGenerator.Job(1, 6, new LevelGeneratorConfiguration(0), TemplateStore1::new));
+
+         blg.generate(jobs, results::add);
+      }
+
+      assertEquals(1, results.size());
+      assertFalse(results.get(0).succeeded());
+      assertTrue(results.get(0).Exception instanceof IllegalStateException);
+   }
+}
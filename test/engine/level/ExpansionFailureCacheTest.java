@@ -0,0 +1,138 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.Graph;
+import engine.graph.INode;
+import engine.graph.Template;
+import engine.graph.TemplateBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ExpansionFailureCacheTest
+{
+   @Test
+   public void testRecordAndCount() throws Exception
+   {
+      ExpansionFailureCache efc = new ExpansionFailureCache(10);
+
+      Template t1 = new TemplateBuilder("a", "").Build();
+      Template t2 = new TemplateBuilder("b", "").Build();
+
+      assertFalse(efc.isKnownFailure("sig", t1));
+
+      efc.recordFailure("sig", t1);
+
+      assertTrue(efc.isKnownFailure("sig", t1));
+      assertFalse(efc.isKnownFailure("sig", t2));
+      assertFalse(efc.isKnownFailure("other", t1));
+
+      assertEquals(1, efc.getHits());
+      assertEquals(3, efc.getMisses());
+
+      // a success clears it
+      efc.recordSuccess("sig", t1);
+
+      assertFalse(efc.isKnownFailure("sig", t1));
+      assertEquals(0, efc.size());
+   }
+
+   @Test
+   public void testLRU() throws Exception
+   {
+      ExpansionFailureCache efc = new ExpansionFailureCache(2);
+
+      Template t1 = new TemplateBuilder("a", "").Build();
+      Template t2 = new TemplateBuilder("b", "").Build();
+      Template t3 = new TemplateBuilder("c", "").Build();
+
+      efc.recordFailure("sig", t1);
+      efc.recordFailure("sig", t2);
+
+      // touch t1 so t2 is the oldest
+      assertTrue(efc.isKnownFailure("sig", t1));
+
+      efc.recordFailure("sig", t3);
+
+      assertEquals(2, efc.size());
+      assertTrue(efc.isKnownFailure("sig", t1));
+      assertFalse(efc.isKnownFailure("sig", t2));
+      assertTrue(efc.isKnownFailure("sig", t3));
+   }
+
+   @Test
+   public void testWriteRead() throws Exception
+   {
+      ExpansionFailureCache efc = new ExpansionFailureCache(2);
+
+      Template t1 = new TemplateBuilder("a", "").Build();
+      Template t2 = new TemplateBuilder("b", "").Build();
+      Template t3 = new TemplateBuilder("c", "").Build();
+
+      efc.recordFailure("sig", t1);
+      efc.recordFailure("sig", t2);
+
+      // touch t1 so t2 is the oldest
+      assertTrue(efc.isKnownFailure("sig", t1));
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      efc.write(new DataOutputStream(bytes));
+
+      ExpansionFailureCache read = efc.emptyCopy();
+      read.recordFailure("other", t3);
+      read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+      assertEquals(2, read.size());
+      assertEquals(1, read.getHits());
+      assertEquals(0, read.getMisses());
+
+      // and still t2 is the oldest
+      read.recordFailure("sig", t3);
+
+      assertTrue(read.isKnownFailure("sig", t1));
+      assertFalse(read.isKnownFailure("sig", t2));
+      assertFalse(read.isKnownFailure("other", t3));
+   }
+
+   @Test
+   public void testSignature() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode a = g.addNode("a", "<", "x", 10);
+      INode b = g.addNode("b", "e", "y", 10);
+      INode c = g.addNode("c", ">", "x", 10);
+      a.setPos(new XY(0, 0));
+      b.setPos(new XY(100, 0));
+      c.setPos(new XY(200, 0));
+      g.connect(a, b, 100, 100, 10);
+      g.connect(b, c, 100, 100, 10);
+
+      Graph g2 = new Graph();
+
+      // same situation, different names and ids
+      INode a2 = g2.addNode("p", "<", "x", 10);
+      INode b2 = g2.addNode("q", "e", "y", 10);
+      INode c2 = g2.addNode("r", ">", "x", 10);
+      a2.setPos(new XY(0, 0));
+      b2.setPos(new XY(0, 100));
+      c2.setPos(new XY(0, 200));
+      g2.connect(a2, b2, 100, 100, 10);
+      g2.connect(b2, c2, 100, 100, 10);
+
+      assertEquals(ExpansionFailureCache.signature(b), ExpansionFailureCache.signature(b2));
+
+      // stretch an edge a lot, and the situation is different
+      c2.setPos(new XY(0, 400));
+
+      assertNotEquals(ExpansionFailureCache.signature(b), ExpansionFailureCache.signature(b2));
+
+      // and the ends are different from the middle
+      assertNotEquals(ExpansionFailureCache.signature(a), ExpansionFailureCache.signature(b));
+   }
+}
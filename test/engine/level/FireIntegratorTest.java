@@ -0,0 +1,139 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.Graph;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class FireIntegratorTest
+{
+   @Test
+   public void testConvergesFasterThanSteepestDescent() throws Exception
+   {
+      for(int seed = 1; seed < 4; seed++)
+      {
+         Graph g = GridRelaxerStepperTest.makeLatticeGraph(8, seed);
+         HashMap<INode, XY> start_positions = GridRelaxerStepperTest.positions(g);
+
+         LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+         ArrayList<StepperController.Status> sd_statuses =
+               GridRelaxerStepperTest.runSteps(new ArrayRelaxerStepper(null, g, c), 10000);
+
+         for(INode n : g.allGraphNodes())
+         {
+            n.setPos(start_positions.get(n));
+         }
+
+         ArrayRelaxerStepper fire = new ArrayRelaxerStepper(null, g, c);
+         fire.setIntegrator(new FireIntegrator());
+
+         ArrayList<StepperController.Status> fire_statuses = GridRelaxerStepperTest.runSteps(fire, 10000);
+
+         assertEquals(StepperController.Status.StepOutSuccess, sd_statuses.get(sd_statuses.size() - 1));
+         assertEquals(StepperController.Status.StepOutSuccess, fire_statuses.get(fire_statuses.size() - 1));
+
+         assertTrue(fire_statuses.size() * 5 < sd_statuses.size());
+      }
+   }
+
+   @Test
+   public void testSameInEitherRelaxer() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(6, 1);
+      HashMap<INode, XY> start_positions = GridRelaxerStepperTest.positions(g);
+
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      RelaxerStepper rs = new RelaxerStepper(null, g, c);
+      rs.setIntegrator(new FireIntegrator());
+
+      ArrayList<StepperController.Status> rs_statuses = GridRelaxerStepperTest.runSteps(rs, 10000);
+      HashMap<INode, XY> rs_positions = GridRelaxerStepperTest.positions(g);
+
+      for(INode n : g.allGraphNodes())
+      {
+         n.setPos(start_positions.get(n));
+      }
+
+      ArrayRelaxerStepper ars = new ArrayRelaxerStepper(null, g, c);
+      ars.setIntegrator(new FireIntegrator());
+
+      ArrayList<StepperController.Status> ars_statuses = GridRelaxerStepperTest.runSteps(ars, 10000);
+
+      assertEquals(rs_statuses, ars_statuses);
+
+      for(INode n : g.allGraphNodes())
+      {
+         assertEquals(rs_positions.get(n), n.getPos());
+      }
+   }
+
+   @Test
+   public void testFirstStepIsNotAnOvershoot() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      FireIntegrator fi = new FireIntegrator(1, 100);
+      fi.reset(1, c);
+
+      double[] xs = new double[1];
+      double[] ys = new double[1];
+      double[] fxs = new double[] { 0.1 };
+      double[] fys = new double[] { 0 };
+
+      // starting from rest there's no velocity to disagree with the force, so the time step is left alone
+      fi.step(xs, ys, fxs, fys, 1, 0.1);
+
+      assertEquals(1, fi.lastTimeStep(), 0);
+      assertEquals(0.1, xs[0], 1e-12);
+
+      // and the same force again is downhill
+      fi.step(xs, ys, fxs, fys, 1, 0.1);
+
+      assertEquals(1, fi.lastTimeStep(), 0);
+      assertTrue(xs[0] > 0.1);
+   }
+
+   @Test
+   public void testNeverMovesTooFar() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      FireIntegrator fi = new FireIntegrator(1, 100);
+      fi.reset(2, c);
+
+      double[] xs = new double[2];
+      double[] ys = new double[2];
+      double[] fxs = new double[] { 1, -1 };
+      double[] fys = new double[] { 0.5, 0 };
+
+      // a constant force keeps accelerating us, but the steps stay capped
+      for(int i = 0; i < 100; i++)
+      {
+         double old_x = xs[0];
+         double old_y = ys[0];
+
+         double maxd = fi.step(xs, ys, fxs, fys, 2, 1.2);
+
+         assertTrue(maxd <= c.RelaxationMaxMove + 1e-12);
+         assertTrue(new XY(xs[0] - old_x, ys[0] - old_y).length() <= c.RelaxationMaxMove + 1e-12);
+      }
+
+      // and reversing the force stops us dead
+      fxs[0] = -1;
+      fys[0] = -0.5;
+      fxs[1] = 1;
+
+      double old_x = xs[0];
+
+      fi.step(xs, ys, fxs, fys, 2, 1.2);
+
+      assertTrue(xs[0] < old_x);
+   }
+}
@@ -0,0 +1,229 @@
+package engine.level;
+
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GraphDistanceStoreTest
+{
+   // a lattice with some edges missing and random edge lengths and radii
+   private static Graph makeGraph(int size, Random r)
+   {
+      Graph g = new Graph();
+
+      INode[][] nodes = new INode[size][size];
+
+      for(int i = 0; i < size; i++)
+      {
+         for(int j = 0; j < size; j++)
+         {
+            INode n = g.addNode("n", "", "", 5 + r.nextDouble() * 10);
+            nodes[i][j] = n;
+
+            if (i > 0 && r.nextDouble() < 0.8)
+               g.connect(nodes[i - 1][j], n, 5 + r.nextDouble() * 20, 30, 1 + r.nextDouble() * 3);
+
+            if (j > 0 && r.nextDouble() < 0.8)
+               g.connect(nodes[i][j - 1], n, 5 + r.nextDouble() * 20, 30, 1 + r.nextDouble() * 3);
+         }
+      }
+
+      return g;
+   }
+
+   private static double maxExtent(Graph g)
+   {
+      double ret = 0;
+
+      for(INode n : g.allGraphNodes())
+      {
+         ret = Math.max(ret, n.getRad());
+      }
+
+      for(DirectedEdge e : g.allGraphEdges())
+      {
+         ret = Math.max(ret, e.HalfWidth);
+      }
+
+      return ret;
+   }
+
+   // everything within the cut-off must match Floyd-Warshall, beyond it we can either not know or be right
+   private static void checkAgainstFloydWarshall(Graph g, GraphDistanceStore.Lengths lengths, double sep)
+   {
+      ArrayList<INode> nodes = g.allGraphNodes();
+
+      // FindPathLengths sets the indices the same way as the store
+      double[][] fw = new ShortestPathFinder().FindPathLengths(g, e -> (e.MaxLength + e.MinLength) / 2);
+
+      double extra = maxExtent(g) + sep;
+
+      for(int i = 0; i < nodes.size(); i++)
+      {
+         assertEquals(i, nodes.get(i).getIdx());
+
+         for(int j = 0; j < nodes.size(); j++)
+         {
+            double expected = fw[i][j];
+            double got = lengths.get(i, j);
+
+            if (expected <= nodes.get(i).getRad() + extra)
+            {
+               assertEquals(expected, got, 1e-9);
+            }
+            else if (got != Double.MAX_VALUE)
+            {
+               assertEquals(expected, got, 1e-9);
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testMatchesFloydWarshall() throws Exception
+   {
+      Random r = new Random(1);
+
+      for(int i = 0; i < 5; i++)
+      {
+         Graph g = makeGraph(7, r);
+
+         GraphDistanceStore gds = new GraphDistanceStore(e -> (e.MaxLength + e.MinLength) / 2);
+
+         GraphDistanceStore.Lengths lengths = gds.update(g, 3);
+
+         checkAgainstFloydWarshall(g, lengths, 3);
+
+         // and we should be storing a lot less than everything
+         assertTrue(lengths.size() < g.numNodes() * g.numNodes() / 2);
+      }
+   }
+
+   @Test
+   public void testIncrementalUpdate() throws Exception
+   {
+      Random r = new Random(2);
+
+      Graph g = makeGraph(10, r);
+
+      GraphDistanceStore gds = new GraphDistanceStore(e -> (e.MaxLength + e.MinLength) / 2);
+
+      gds.update(g, 3);
+
+      assertEquals(g.numNodes(), gds.lastUpdateSearches());
+
+      // nothing changed, nothing to do
+      gds.update(g, 3);
+      assertEquals(0, gds.lastUpdateSearches());
+
+      // split an edge the way EdgeAdjusterStepper does, with a node no bigger than what's already there
+      DirectedEdge e = g.allGraphEdges().get(0);
+      INode c = g.addNode("c", "", "", 5);
+      g.disconnect(e.Start, e.End);
+      g.connect(e.Start, c, e.MinLength / 2, e.MaxLength, e.HalfWidth);
+      g.connect(c, e.End, e.MinLength / 2, e.MaxLength, e.HalfWidth);
+
+      GraphDistanceStore.Lengths lengths = gds.update(g, 3);
+
+      // only the neighbourhood of the split should have been redone
+      assertTrue(gds.lastUpdateSearches() > 0);
+      assertTrue(gds.lastUpdateSearches() < g.numNodes() / 2);
+
+      checkAgainstFloydWarshall(g, lengths, 3);
+
+      // cut some more edges, and connect things which weren't
+      ArrayList<DirectedEdge> edges = g.allGraphEdges();
+
+      for(int i = 0; i < 5; i++)
+      {
+         DirectedEdge de = edges.get(r.nextInt(edges.size()));
+
+         g.disconnect(de.Start, de.End);
+      }
+
+      ArrayList<INode> nodes = g.allGraphNodes();
+
+      for(int i = 0; i < 5; i++)
+      {
+         INode n1 = nodes.get(r.nextInt(nodes.size()));
+         INode n2 = nodes.get(r.nextInt(nodes.size()));
+
+         if (n1 != n2 && !n1.connects(n2))
+         {
+            g.connect(n1, n2, 5, 10, 1);
+         }
+      }
+
+      lengths = gds.update(g, 3);
+
+      checkAgainstFloydWarshall(g, lengths, 3);
+   }
+
+   @Test
+   public void testBiggerNodeRedoesEverything() throws Exception
+   {
+      Random r = new Random(3);
+
+      Graph g = makeGraph(5, r);
+
+      GraphDistanceStore gds = new GraphDistanceStore(e -> (e.MaxLength + e.MinLength) / 2);
+
+      gds.update(g, 3);
+
+      INode big = g.addNode("big", "", "", 100);
+      g.connect(g.allGraphNodes().get(0) == big ? g.allGraphNodes().get(1) : g.allGraphNodes().get(0), big,
+            10, 10, 1);
+
+      GraphDistanceStore.Lengths lengths = gds.update(g, 3);
+
+      assertEquals(g.numNodes(), gds.lastUpdateSearches());
+
+      checkAgainstFloydWarshall(g, lengths, 3);
+   }
+
+   @Test
+   public void testForGraph() throws Exception
+   {
+      Graph g1 = new Graph();
+      Graph g2 = new Graph();
+
+      assertSame(GraphDistanceStore.forGraph(g1), GraphDistanceStore.forGraph(g1));
+      assertNotSame(GraphDistanceStore.forGraph(g1), GraphDistanceStore.forGraph(g2));
+   }
+
+   @Test
+   public void testStoreDoesNotKeepGraph() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("", "", "", 10);
+      INode n2 = g.addNode("", "", "", 10);
+      g.connect(n1, n2, 100, 100, 10);
+
+      GraphDistanceStore.forGraph(g).update(g, 10);
+
+      WeakReference<Graph> ref = new WeakReference<>(g);
+
+      //noinspection UnusedAssignment
+      g = null;
+      //noinspection UnusedAssignment
+      n1 = null;
+      //noinspection UnusedAssignment
+      n2 = null;
+
+      for(int i = 0; i < 50 && ref.get() != null; i++)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+
+      assertNull(ref.get());
+   }
+}
@@ -0,0 +1,129 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.Graph;
+import engine.graph.IGraphRestore;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GridRelaxerStepperTest
+{
+   // a jittered lattice of nodes with random radii, joined along the lattice lines, so it starts without
+   // crossing edges but has plenty of node/node and node/edge forces to work on
+   static Graph makeLatticeGraph(int size, long seed)
+   {
+      Random r = new Random(seed);
+
+      Graph g = new Graph();
+
+      INode[][] nodes = new INode[size][size];
+
+      for(int i = 0; i < size; i++)
+      {
+         for(int j = 0; j < size; j++)
+         {
+            INode n = g.addNode("n", "", "", 5 + r.nextDouble() * 15);
+            n.setPos(new XY(i * 30 + r.nextDouble() * 5, j * 30 + r.nextDouble() * 5));
+            nodes[i][j] = n;
+
+            if (i > 0 && r.nextDouble() < 0.7)
+               g.connect(nodes[i - 1][j], n, 30, 50, 3);
+
+            if (j > 0 && r.nextDouble() < 0.7)
+               g.connect(nodes[i][j - 1], n, 30, 50, 3);
+         }
+      }
+
+      return g;
+   }
+
+   static ArrayList<StepperController.Status> runSteps(IStepper stepper, int max_steps)
+   {
+      ArrayList<StepperController.Status> ret = new ArrayList<>();
+
+      for(int i = 0; i < max_steps; i++)
+      {
+         StepperController.StatusReportInner sri = stepper.step(StepperController.Status.Iterate);
+
+         ret.add(sri.Status);
+
+         if (sri.Status != StepperController.Status.Iterate)
+            break;
+      }
+
+      return ret;
+   }
+
+   static HashMap<INode, XY> positions(Graph g)
+   {
+      HashMap<INode, XY> ret = new HashMap<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         ret.put(n, n.getPos());
+      }
+
+      return ret;
+   }
+
+   @Test
+   public void testIdenticalToBruteForce() throws Exception
+   {
+      for(int seed = 1; seed < 4; seed++)
+      {
+         Graph g = makeLatticeGraph(8, seed);
+
+         LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+         IGraphRestore igr = g.createRestorePoint();
+
+         ArrayList<StepperController.Status> brute_statuses = runSteps(new RelaxerStepper(null, g, c), 300);
+         HashMap<INode, XY> brute_positions = positions(g);
+
+         igr.Restore();
+
+         ArrayList<StepperController.Status> grid_statuses = runSteps(new GridRelaxerStepper(null, g, c), 300);
+         HashMap<INode, XY> grid_positions = positions(g);
+
+         assertEquals(brute_statuses, grid_statuses);
+
+         for(INode n : g.allGraphNodes())
+         {
+            // exactly the same, not just close
+            assertEquals(brute_positions.get(n), grid_positions.get(n));
+         }
+      }
+   }
+
+   @Test
+   public void testCrossingEdgesStillFail() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("edge1start", "", "", 10.0);
+      INode n2 = g.addNode("edge1end", "", "", 10.0);
+      INode n3 = g.addNode("edge2start", "", "", 10.0);
+      INode n4 = g.addNode("edge2end", "", "", 10.0);
+
+      n1.setPos(new XY(0, -100));
+      n2.setPos(new XY(0, 100));
+      n3.setPos(new XY(-100, 0));
+      n4.setPos(new XY(100, 0));
+
+      g.connect(n1, n2, 100, 100, 10);
+      g.connect(n3, n4, 100, 100, 10);
+
+      GridRelaxerStepper rs = new GridRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      StepperController.StatusReportInner ret = rs.step(StepperController.Status.Iterate);
+
+      assertEquals(StepperController.Status.StepOutFailure, ret.Status);
+      assertTrue(ret.Log.contains("crossing edges"));
+   }
+}
@@ -0,0 +1,100 @@
+package engine.level;
+
+import game.TemplateStore1;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class LevelCacheTest
+{
+   @Test
+   public void testKey() throws Exception
+   {
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(0);
+
+      String key = LevelCache.key(1, 10, config, new TemplateStore1(), "default");
+
+      // the same for another instance of everything
+      assertEquals(key, LevelCache.key(1, 10, new LevelGeneratorConfiguration(5), new TemplateStore1(),
+            "default"));
+
+      assertNotEquals(key, LevelCache.key(2, 10, config, new TemplateStore1(), "default"));
+      assertNotEquals(key, LevelCache.key(1, 11, config, new TemplateStore1(), "default"));
+
+      config.RelaxationMaxMove *= 2;
+      assertNotEquals(key, LevelCache.key(1, 10, config, new TemplateStore1(), "default"));
+      config.RelaxationMaxMove /= 2;
+
+      // how many trials there are doesn't change the level, whether there are any does
+      config.SpeculativeTemplateTrials = 2;
+      String spec_key = LevelCache.key(1, 10, config, new TemplateStore1(), "default");
+      assertNotEquals(key, spec_key);
+      config.SpeculativeTemplateTrials = 4;
+      assertEquals(spec_key, LevelCache.key(1, 10, config, new TemplateStore1(), "default"));
+      config.SpeculativeTemplateTrials = 1;
+
+      // a tree of unions comes out slightly differently
+      config.ParallelUnion = true;
+      assertNotEquals(key, LevelCache.key(1, 10, config, new TemplateStore1(), "default"));
+      config.ParallelUnion = false;
+
+      // whether there is a failure cache changes the order templates are tried in
+      config.FailureCache = new ExpansionFailureCache(100);
+      assertNotEquals(key, LevelCache.key(1, 10, config, new TemplateStore1(), "default"));
+      config.FailureCache = null;
+
+      // and so do different relaxers
+      assertNotEquals(key, LevelCache.key(1, 10, config, new TemplateStore1(), "FIRE"));
+   }
+
+   @Test
+   public void testStoreAndLoad() throws Exception
+   {
+      Path dir = Files.createTempDirectory("level-cache");
+      LevelCache lc = new LevelCache(dir.resolve("sub"));
+
+      IoCContainer ioc_container = new IoCContainer(
+            RelaxerStepper::new,
+            TryAllNodesExpandStepper::new,
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+
+      LevelGenerator gen = new LevelGenerator(ioc_container, 5, new LevelGeneratorConfiguration(1),
+            new TemplateStore1());
+
+      StepperController.StatusReport ret;
+
+      do
+      {
+         ret = gen.step();
+      }
+      while(!ret.Complete);
+
+      String key = LevelCache.key(1, 5, new LevelGeneratorConfiguration(1), new TemplateStore1(), "default");
+
+      assertNull(lc.load(key));
+
+      lc.store(key, gen.getLevel());
+
+      Level l = lc.load(key);
+
+      assertNotNull(l);
+      assertEquals(gen.getLevel().startPos(), l.startPos());
+      assertEquals(gen.getLevel().getWallLoops().size(), l.getWallLoops().size());
+
+      // an unreadable file is just a miss
+      LevelCache lc2 = new LevelCache(dir);
+      Files.write(dir.resolve(key + ".level"), new byte[] { 1, 2, 3 });
+      assertNull(lc2.load(key));
+
+      // (mapped files may not be deletable until collected, on some platforms)
+      dir.toFile().deleteOnExit();
+      dir.resolve("sub").toFile().deleteOnExit();
+      dir.resolve("sub").resolve(key + ".level").toFile().deleteOnExit();
+      dir.resolve(key + ".level").toFile().deleteOnExit();
+   }
+}
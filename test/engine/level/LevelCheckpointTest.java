@@ -0,0 +1,191 @@
+package engine.level;
+
+import game.TemplateStore1;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LevelCheckpointTest
+{
+   private static void runToEnd(LevelGenerator gen)
+   {
+      StepperController.StatusReport ret;
+
+      do
+      {
+         ret = gen.step();
+      }
+      while(!ret.Complete);
+
+      assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
+   }
+
+   @Test
+   public void testResumeMakesTheSameLevel() throws Exception
+   {
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(3);
+      config.ExpandStepsToRun = 10;
+
+      LevelGenerator gen = new LevelGenerator(LevelTestUtil.makeIoC(), 8, config, new TemplateStore1());
+
+      ArrayList<LevelCheckpoint> checkpoints = new ArrayList<>();
+      gen.setCheckpointListener(checkpoints::add, 0);
+
+      runToEnd(gen);
+
+      String expected = LevelTestUtil.describe(gen.getLevel(), gen.getGraph());
+
+      // some from each phase we can checkpoint in
+      assertTrue(checkpoints.stream().filter(cp -> cp.getPhase() == LevelGenerator.Phase.GraphExpand).count() > 1);
+      assertTrue(checkpoints.stream().anyMatch(cp -> cp.getPhase() == LevelGenerator.Phase.FinalRelax));
+      assertTrue(checkpoints.stream().anyMatch(cp -> cp.getPhase() == LevelGenerator.Phase.BaseGeometry));
+
+      // the first, one from the middle of expansion, and the last
+      for(LevelCheckpoint cp : new LevelCheckpoint[] {
+            checkpoints.get(0), checkpoints.get(checkpoints.size() / 2), checkpoints.get(checkpoints.size() - 1) })
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         cp.write(out);
+
+         LevelCheckpoint read = LevelCheckpoint.read(new ByteArrayInputStream(out.toByteArray()));
+
+         assertEquals(cp.getPhase(), read.getPhase());
+         assertEquals(3, read.getSeed());
+         assertEquals(8, read.getRequiredSize());
+
+         LevelGenerator resumed = read.resume(LevelTestUtil.makeIoC(), new LevelGeneratorConfiguration(0), new TemplateStore1());
+
+         assertEquals(cp.getPhase(), resumed.getPhase());
+
+         // the recorded seed, not the config's, goes on into later checkpoints
+         assertEquals(3, resumed.checkpoint().getSeed());
+
+         runToEnd(resumed);
+
+         assertEquals(expected, LevelTestUtil.describe(resumed.getLevel(), resumed.getGraph()));
+      }
+   }
+
+   @Test
+   public void testResumeWithFailureCache() throws Exception
+   {
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(3);
+      config.ExpandStepsToRun = 10;
+      config.FailureCache = new ExpansionFailureCache(100);
+
+      // something no node will look up, so we can see it carried through
+      config.FailureCache.recordFailure("nowhere", new TemplateStore1().FindByName("Door"));
+
+      LevelGenerator gen = new LevelGenerator(LevelTestUtil.makeIoC(), 8, config, new TemplateStore1());
+
+      ArrayList<LevelCheckpoint> checkpoints = new ArrayList<>();
+      gen.setCheckpointListener(checkpoints::add, 0);
+
+      runToEnd(gen);
+
+      String expected = LevelTestUtil.describe(gen.getLevel(), gen.getGraph());
+
+      // one from the middle of expansion
+      LevelCheckpoint cp = LevelCheckpoint.fromBytes(checkpoints.get(checkpoints.size() / 2).getBytes());
+
+      assertEquals(LevelGenerator.Phase.GraphExpand, cp.getPhase());
+
+      LevelGeneratorConfiguration resume_config = new LevelGeneratorConfiguration(0);
+      resume_config.FailureCache = new ExpansionFailureCache(100);
+
+      LevelGenerator resumed = cp.resume(LevelTestUtil.makeIoC(), resume_config, new TemplateStore1());
+
+      // which has the cache as it was, so checkpoints the same
+      assertTrue(Arrays.equals(cp.getBytes(), resumed.checkpoint().getBytes()));
+
+      runToEnd(resumed);
+
+      assertEquals(expected, LevelTestUtil.describe(resumed.getLevel(), resumed.getGraph()));
+
+      // the cache we gave it was only something to copy
+      assertEquals(0, resume_config.FailureCache.size());
+
+      // and it has to be the same sort of configuration
+      try
+      {
+         cp.resume(LevelTestUtil.makeIoC(), new LevelGeneratorConfiguration(0), new TemplateStore1());
+         fail("Expected an IOException");
+      }
+      catch (IOException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testOnlyAtSafePoints() throws Exception
+   {
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(1);
+      config.ExpandStepsToRun = 1;
+
+      LevelGenerator gen = new LevelGenerator(LevelTestUtil.makeIoC(), 5, config, new TemplateStore1());
+
+      // nothing to record before there is a graph
+      assertNull(gen.checkpoint());
+
+      gen.step();
+
+      // about to expand the seed
+      assertNotNull(gen.checkpoint());
+
+      // with a stepper below the top one, we can't
+      gen.step();
+
+      assertTrue(gen.getController(LevelGenerator.Phase.GraphExpand).depth() > 1);
+      assertNull(gen.checkpoint());
+   }
+
+   @Test
+   public void testRejectsGarbage() throws Exception
+   {
+      try
+      {
+         LevelCheckpoint.fromBytes(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+         fail("Expected an IOException");
+      }
+      catch (IOException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testWriter() throws Exception
+   {
+      Path dir = Files.createTempDirectory("checkpoint");
+      Path file = dir.resolve("level.ckpt");
+
+      LevelGeneratorConfiguration config = new LevelGeneratorConfiguration(2);
+
+      LevelGenerator gen = new LevelGenerator(LevelTestUtil.makeIoC(), 5, config, new TemplateStore1());
+
+      try (CheckpointWriter cw = new CheckpointWriter(file))
+      {
+         gen.setCheckpointListener(cw, 0);
+
+         runToEnd(gen);
+      }
+
+      // the last one written is the last one made, which is just before the base geometry
+      LevelCheckpoint cp = LevelCheckpoint.fromBytes(Files.readAllBytes(file));
+
+      assertEquals(LevelGenerator.Phase.BaseGeometry, cp.getPhase());
+      assertFalse(Files.exists(dir.resolve("level.ckpt.tmp")));
+
+      Files.delete(file);
+      Files.delete(dir);
+   }
+}
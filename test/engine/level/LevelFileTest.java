@@ -0,0 +1,153 @@
+package engine.level;
+
+import engine.XY;
+import engine.brep.CircleCurve;
+import engine.brep.Loop;
+import engine.brep.LoopSet;
+import engine.brep.UnionHelper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LevelFileTest
+{
+   private static Level makeLevel()
+   {
+      UnionHelper uh = new UnionHelper();
+
+      uh.addBaseLoop(new Loop(new CircleCurve(new XY(), 100)));
+      uh.addBaseLoop(new Loop(new CircleCurve(new XY(150, 0), 80)));
+
+      LoopSet ls = new LoopSet();
+      ls.add(new Loop(new CircleCurve(new XY(50, 0), 10, CircleCurve.RotationDirection.Reverse)));
+      uh.addDetailLoops(ls);
+
+      //noinspection StatementWithEmptyBody
+      while(!uh.unionOne(new Random(1)))
+      {
+      }
+
+      return uh.makeLevel(20, 10);
+   }
+
+   private static void assertSameWall(Wall w1, Wall w2)
+   {
+      assertEquals(w1.Start, w2.Start);
+      assertEquals(w1.End, w2.End);
+      assertEquals(w1.Normal, w2.Normal);
+   }
+
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      Level level = makeLevel();
+
+      Path file = Files.createTempFile("level", ".level");
+      // (on some platforms a file can't be deleted while mapped, and it stays mapped until the buffer is collected)
+      file.toFile().deleteOnExit();
+
+      LevelFile.write(level, file);
+      Level read = LevelFile.read(file);
+
+      assertEquals(level.getCellSize(), read.getCellSize(), 0);
+      assertEquals(level.getWallFacetLength(), read.getWallFacetLength(), 0);
+      assertEquals(level.getBounds().Min, read.getBounds().Min);
+      assertEquals(level.getBounds().Max, read.getBounds().Max);
+      assertEquals(level.startPos(), read.startPos());
+
+      assertEquals(level.getWallLoops().size(), read.getWallLoops().size());
+
+      Iterator<WallLoop> it = read.getWallLoops().iterator();
+
+      for(WallLoop wl : level.getWallLoops())
+      {
+         WallLoop rwl = it.next();
+
+         assertEquals(wl.size(), rwl.size());
+
+         for(int i = 0; i < wl.size(); i++)
+         {
+            Wall w = wl.get(i);
+            Wall rw = rwl.get(i);
+
+            assertSameWall(w, rw);
+
+            // the links are to the matching walls of the same loop
+            assertSame(rwl.get((i + 1) % rwl.size()), rw.getNext());
+            assertSame(rwl.get((i + rwl.size() - 1) % rwl.size()), rw.getPrev());
+         }
+      }
+
+      // the cell map is the same, rather than remade
+      assertEquals(level.getWallMap().keySet(), read.getWallMap().keySet());
+
+      for(Map.Entry<CC, ArrayList<Wall>> me : level.getWallMap().entrySet())
+      {
+         ArrayList<Wall> rws = read.getWallMap().get(me.getKey());
+
+         assertEquals(me.getValue().size(), rws.size());
+
+         for(int i = 0; i < rws.size(); i++)
+         {
+            assertSameWall(me.getValue().get(i), rws.get(i));
+         }
+      }
+
+      // and it works
+      for(double d = 0; d < 360; d += 10)
+      {
+         XY dir = new XY(Math.sin(d * Math.PI / 180), Math.cos(d * Math.PI / 180));
+
+         Level.RayCollision rc1 = level.nearestWall(new XY(0, 0), dir, 300);
+         Level.RayCollision rc2 = read.nearestWall(new XY(0, 0), dir, 300);
+
+         assertEquals(rc1.DistanceTo, rc2.DistanceTo, 0);
+         assertSameWall(rc1.WallHit, rc2.WallHit);
+      }
+   }
+
+   @Test
+   public void testCorrupt() throws Exception
+   {
+      Path file = Files.createTempFile("level", ".level");
+      file.toFile().deleteOnExit();
+
+      LevelFile.write(makeLevel(), file);
+
+      byte[] data = Files.readAllBytes(file);
+
+      // cut short
+      assertUnreadable(Arrays.copyOf(data, data.length / 2));
+
+      // not a level at all
+      data[0] = 0;
+      assertUnreadable(data);
+   }
+
+   private static void assertUnreadable(byte[] data) throws Exception
+   {
+      Path file = Files.createTempFile("level", ".level");
+      file.toFile().deleteOnExit();
+
+      Files.write(file, data);
+
+      try
+      {
+         LevelFile.read(file);
+         fail("Expected an IOException");
+      }
+      catch (IOException e)
+      {
+         // expected
+      }
+   }
+}
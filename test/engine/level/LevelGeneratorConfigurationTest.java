@@ -32,6 +32,7 @@ public class LevelGeneratorConfigurationTest
          lgc.RelaxationMoveTarget = 8;
          lgc.WallFacetLength = 9;
          lgc.NodeToNodeForceScale = 10;
+         lgc.ParallelUnion = true;
 
          LevelGeneratorConfiguration lgc2 = LevelGeneratorConfiguration.shallowCopy(lgc);
 
@@ -45,7 +46,7 @@ public class LevelGeneratorConfigurationTest
          // Which is why this is a shallow copy...
          assertEquals(lgc.Rand, lgc2.Rand);
 
-         assertEquals(1, lgc.ExpandStepsToRun, 0);
+         assertEquals(1, lgc2.ExpandStepsToRun, 0);
          assertEquals(2, lgc.CellSize, 0);
          assertEquals(3, lgc.EdgeLengthForceScale, 0);
          assertEquals(4, lgc.EdgeToNodeForceScale, 0);
@@ -55,6 +56,7 @@ public class LevelGeneratorConfigurationTest
          assertEquals(8, lgc.RelaxationMoveTarget, 0);
          assertEquals(9, lgc.WallFacetLength, 0);
          assertEquals(10, lgc.NodeToNodeForceScale, 0);
+         assertEquals(true, lgc2.ParallelUnion);
       }
    }
 }
@@ -0,0 +1,41 @@
+package engine.level;
+
+import engine.graph.Graph;
+import engine.graph.INode;
+
+// fixtures shared by the tests which generate whole levels and compare them
+class LevelTestUtil
+{
+   static IoCContainer makeIoC()
+   {
+      return new IoCContainer(
+            RelaxerStepper::new,
+            TryAllNodesExpandStepper::new,
+            TryAllTemplatesOnOneNodeStepper::new,
+            TryTemplateExpandStepper::new,
+            EdgeAdjusterStepper::new);
+   }
+
+   // the walls and node names and positions, enough to tell two levels apart
+   static String describe(Level level, Graph graph)
+   {
+      StringBuilder sb = new StringBuilder();
+
+      for(WallLoop wl : level.getWallLoops())
+      {
+         for(Wall w : wl)
+         {
+            sb.append(w.Start.X).append(",").append(w.Start.Y).append(" ");
+         }
+
+         sb.append("\n");
+      }
+
+      for(INode n : graph.allGraphNodes())
+      {
+         sb.append(n.longName()).append(n.getPos().X).append(",").append(n.getPos().Y).append(" ");
+      }
+
+      return sb.toString();
+   }
+}
@@ -0,0 +1,186 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class LocalRelaxerStepperTest
+{
+   private static Graph makeRelaxedGraph(int size, LevelGeneratorConfiguration c)
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(size, 1);
+
+      ArrayList<StepperController.Status> statuses =
+            GridRelaxerStepperTest.runSteps(new ArrayRelaxerStepper(null, g, c), 10000);
+
+      assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+
+      return g;
+   }
+
+   // the same as EdgeAdjusterStepper does
+   private static void splitEdge(Graph g, DirectedEdge e)
+   {
+      INode c = g.addNode("c", "", "", e.HalfWidth * 2);
+      c.setPos(e.Start.getPos().plus(e.End.getPos()).divide(2));
+
+      g.disconnect(e.Start, e.End);
+      g.connect(e.Start, c, e.MinLength / 2, e.MaxLength, e.HalfWidth);
+      g.connect(c, e.End, e.MinLength / 2, e.MaxLength, e.HalfWidth);
+   }
+
+   private static DirectedEdge middleEdge(Graph g)
+   {
+      Box2 b = new Box2(g);
+
+      DirectedEdge best = null;
+      double best_dist = Double.MAX_VALUE;
+
+      for(DirectedEdge e : g.allGraphEdges())
+      {
+         double d = e.Start.getPos().minus(b.Centre).length();
+
+         if (d < best_dist)
+         {
+            best_dist = d;
+            best = e;
+         }
+      }
+
+      return best;
+   }
+
+   private static class Box2
+   {
+      Box2(Graph g)
+      {
+         XY sum = new XY();
+
+         for(INode n : g.allGraphNodes())
+         {
+            sum = sum.plus(n.getPos());
+         }
+
+         Centre = sum.divide(g.numNodes());
+      }
+
+      final XY Centre;
+   }
+
+   @Test
+   public void testOnlyRelaxesWhatChanged() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      Graph g = makeRelaxedGraph(12, c);
+
+      splitEdge(g, middleEdge(g));
+
+      // and push the new node off to one side, so there is definitely something to do
+      INode added = null;
+
+      for(INode n : g.allGraphNodes())
+      {
+         if (n.getName().equals("c"))
+            added = n;
+      }
+
+      assertNotNull(added);
+      added.setPos(added.getPos().plus(new XY(3, 3)));
+
+      ArrayList<INode> fixed_far_away = new ArrayList<>();
+      ArrayList<XY> fixed_far_away_pos = new ArrayList<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         if (n.getPos().minus(added.getPos()).length() > 200)
+         {
+            fixed_far_away.add(n);
+            fixed_far_away_pos.add(n.getPos());
+         }
+      }
+
+      assertFalse(fixed_far_away.isEmpty());
+
+      LocalRelaxerStepper lrs = new LocalRelaxerStepper(null, g, c);
+
+      StepperController.StatusReportInner ret = lrs.step(StepperController.Status.StepIn);
+
+      // only a small part of the graph is active
+      assertTrue(lrs.numActive() > 0);
+      assertTrue(lrs.numActive() < g.numNodes() / 3);
+
+      for(int i = 0; i < 10000 && ret.Status == StepperController.Status.Iterate; i++)
+      {
+         ret = lrs.step(StepperController.Status.Iterate);
+      }
+
+      assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
+      assertTrue(lrs.numActive() < g.numNodes());
+
+      // distant nodes never moved
+      for(int i = 0; i < fixed_far_away.size(); i++)
+      {
+         assertEquals(fixed_far_away_pos.get(i), fixed_far_away.get(i).getPos());
+      }
+
+      // and the whole graph is relaxed, a new relaxer has nothing to do
+      LocalRelaxerStepper check = new LocalRelaxerStepper(null, g, c);
+
+      ret = check.step(StepperController.Status.StepIn);
+
+      assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
+      assertEquals(0, check.numActive());
+   }
+
+   @Test
+   public void testWholeGraphWhenEverythingNeedsIt() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      // not relaxed at all to start with
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(6, 2);
+
+      LocalRelaxerStepper lrs = new LocalRelaxerStepper(null, g, c);
+
+      ArrayList<StepperController.Status> statuses = GridRelaxerStepperTest.runSteps(lrs, 10000);
+
+      assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+
+      LocalRelaxerStepper check = new LocalRelaxerStepper(null, g, c);
+
+      assertEquals(StepperController.Status.StepOutSuccess, check.step(StepperController.Status.StepIn).Status);
+   }
+
+   @Test
+   public void testCrossingEdgesFail() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("edge1start", "", "", 10.0);
+      INode n2 = g.addNode("edge1end", "", "", 10.0);
+      INode n3 = g.addNode("edge2start", "", "", 10.0);
+      INode n4 = g.addNode("edge2end", "", "", 10.0);
+
+      n1.setPos(new XY(0, -100));
+      n2.setPos(new XY(0, 100));
+      n3.setPos(new XY(-100, 0));
+      n4.setPos(new XY(100, 0));
+
+      g.connect(n1, n2, 100, 100, 10);
+      g.connect(n3, n4, 100, 100, 10);
+
+      LocalRelaxerStepper rs = new LocalRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      StepperController.StatusReportInner ret = rs.step(StepperController.Status.Iterate);
+
+      assertEquals(StepperController.Status.StepOutFailure, ret.Status);
+      assertTrue(ret.Log.contains("crossing edges"));
+   }
+}
@@ -0,0 +1,201 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.DirectedEdge;
+import engine.graph.Graph;
+import engine.graph.GraphUtil;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class MultilevelRelaxerStepperTest
+{
+   // a lattice squeezed up so that it has to spread out a long way
+   private static Graph makeSqueezedGraph(int size, long seed, double squeeze)
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(size, seed);
+
+      for(INode n : g.allGraphNodes())
+      {
+         n.setPos(n.getPos().multiply(squeeze));
+      }
+
+      return g;
+   }
+
+   private static IStepper makeFireRelaxer(IoCContainer ioc, Graph g, LevelGeneratorConfiguration c)
+   {
+      ArrayRelaxerStepper ret = new ArrayRelaxerStepper(ioc, g, c);
+      ret.setIntegrator(new FireIntegrator());
+
+      return ret;
+   }
+
+   @Test
+   public void testCoarsen() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(10, 1);
+
+      MultilevelRelaxerStepper.Level l = MultilevelRelaxerStepper.coarsen(g);
+
+      assertSame(g, l.Fine);
+      assertTrue(l.Coarse.numNodes() < g.numNodes() * 0.8);
+      assertTrue(l.Coarse.numNodes() >= g.numNodes() / 2);
+
+      HashMap<INode, ArrayList<INode>> children = new HashMap<>();
+
+      for(INode n : g.allGraphNodes())
+      {
+         INode parent = l.Parent.get(n);
+
+         assertNotNull(parent);
+         assertTrue(l.Coarse.allGraphNodes().contains(parent));
+
+         children.computeIfAbsent(parent, x -> new ArrayList<>()).add(n);
+      }
+
+      for(INode c : l.Coarse.allGraphNodes())
+      {
+         ArrayList<INode> cs = children.get(c);
+
+         assertTrue(cs.size() == 1 || cs.size() == 2);
+
+         // merged nodes are only ever neighbours, and keep their area
+         if (cs.size() == 2)
+         {
+            assertTrue(cs.get(0).connects(cs.get(1)));
+            assertSame(cs.get(1), l.Partner.get(cs.get(0)));
+
+            double area = cs.get(0).getRad() * cs.get(0).getRad() + cs.get(1).getRad() * cs.get(1).getRad();
+            assertEquals(area, c.getRad() * c.getRad(), 1e-6);
+         }
+         else
+         {
+            assertNull(l.Partner.get(cs.get(0)));
+         }
+      }
+
+      // every edge is still represented, unless it was merged away
+      for(DirectedEdge e : g.allGraphEdges())
+      {
+         INode from = l.Parent.get(e.Start);
+         INode to = l.Parent.get(e.End);
+
+         if (from != to)
+         {
+            assertTrue(from.connects(to));
+         }
+      }
+
+      assertFalse(GraphUtil.hasCrossingEdges(l.Coarse.allGraphEdges()));
+   }
+
+   @Test
+   public void testProlongDoesNotCross() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(10, 2);
+
+      MultilevelRelaxerStepper.Level l = MultilevelRelaxerStepper.coarsen(g);
+
+      // spread the coarse graph out a bit, as relaxing it would
+      for(INode c : l.Coarse.allGraphNodes())
+      {
+         c.setPos(c.getPos().multiply(1.5));
+      }
+
+      assertTrue(MultilevelRelaxerStepper.prolong(l));
+      assertFalse(GraphUtil.hasCrossingEdges(g.allGraphEdges()));
+
+      // merged pairs end up either side of where their parent is
+      for(INode n : l.Partner.keySet())
+      {
+         XY mid = n.getPos().plus(l.Partner.get(n).getPos()).divide(2);
+         INode parent = l.Parent.get(n);
+
+         assertTrue(mid.minus(parent.getPos()).length() < l.Reach.get(n) + l.Reach.get(l.Partner.get(n)));
+      }
+   }
+
+   @Test
+   public void testRelaxesLargeGraph() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      Graph g = makeSqueezedGraph(15, 1, 0.4);
+
+      MultilevelRelaxerStepper mrs = new MultilevelRelaxerStepper(null, g, c,
+            MultilevelRelaxerStepperTest::makeFireRelaxer);
+
+      ArrayList<StepperController.Status> statuses = GridRelaxerStepperTest.runSteps(mrs, 20000);
+
+      assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+      assertTrue(mrs.numLevels() > 1);
+
+      assertFalse(GraphUtil.hasCrossingEdges(g.allGraphEdges()));
+
+      // and a plain relaxer has next to nothing left to do
+      statuses = GridRelaxerStepperTest.runSteps(new ArrayRelaxerStepper(null, g, c), 20000);
+
+      assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+      assertTrue(statuses.size() < 100);
+   }
+
+   @Test
+   public void testSmallGraphIsRelaxedDirectly() throws Exception
+   {
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(4, 1);
+
+      MultilevelRelaxerStepper mrs = new MultilevelRelaxerStepper(null, g, c);
+
+      ArrayList<StepperController.Status> statuses = GridRelaxerStepperTest.runSteps(mrs, 20000);
+
+      assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+      assertEquals(0, mrs.numLevels());
+   }
+
+   @Test
+   public void testCrossingEdgesFail() throws Exception
+   {
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("edge1start", "", "", 10.0);
+      INode n2 = g.addNode("edge1end", "", "", 10.0);
+      INode n3 = g.addNode("edge2start", "", "", 10.0);
+      INode n4 = g.addNode("edge2end", "", "", 10.0);
+
+      n1.setPos(new XY(0, -100));
+      n2.setPos(new XY(0, 100));
+      n3.setPos(new XY(-100, 0));
+      n4.setPos(new XY(100, 0));
+
+      g.connect(n1, n2, 100, 100, 10);
+      g.connect(n3, n4, 100, 100, 10);
+
+      MultilevelRelaxerStepper mrs = new MultilevelRelaxerStepper(null, g, new LevelGeneratorConfiguration(1));
+
+      ArrayList<StepperController.Status> statuses = GridRelaxerStepperTest.runSteps(mrs, 100);
+
+      assertEquals(StepperController.Status.StepOutFailure, statuses.get(statuses.size() - 1));
+   }
+
+   @Test
+   public void testFinalRelaxerFactory() throws Exception
+   {
+      IoCContainer ioc = new IoCContainer(null, null, null, null, null);
+
+      // the old behaviour, unless asked for something else
+      assertTrue(ioc.FinalRelaxerFactory.makeRelaxer(ioc, new Graph(), new LevelGeneratorConfiguration(1))
+            instanceof RelaxerStepper);
+
+      ioc = new IoCContainer(null, null, null, null, null, MultilevelRelaxerStepper::new);
+
+      assertTrue(ioc.FinalRelaxerFactory.makeRelaxer(ioc, new Graph(), new LevelGeneratorConfiguration(1))
+            instanceof MultilevelRelaxerStepper);
+   }
+}
@@ -0,0 +1,92 @@
+package engine.level;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NodeGridTest
+{
+   @Test
+   public void testQueryFindsEverythingInRange() throws Exception
+   {
+      Random r = new Random(1);
+
+      int count = 200;
+      double[] xs = new double[count];
+      double[] ys = new double[count];
+
+      for(int i = 0; i < count; i++)
+      {
+         xs[i] = r.nextDouble() * 1000 - 500;
+         ys[i] = r.nextDouble() * 1000 - 500;
+      }
+
+      NodeGrid grid = new NodeGrid(30);
+      grid.build(xs, ys, count);
+
+      for(int q = 0; q < 50; q++)
+      {
+         double cx = r.nextDouble() * 1200 - 600;
+         double cy = r.nextDouble() * 1200 - 600;
+         double range = r.nextDouble() * 100;
+         int below = r.nextInt(count + 1);
+
+         int found = grid.query(cx - range, cy - range, cx + range, cy + range, below);
+
+         // results come back sorted and bounded by "below"
+         for(int i = 1; i < found; i++)
+         {
+            assertTrue(grid.result(i - 1) < grid.result(i));
+         }
+
+         for(int i = 0; i < found; i++)
+         {
+            assertTrue(grid.result(i) < below);
+         }
+
+         // and nothing in the box is missed
+         for(int i = 0; i < below; i++)
+         {
+            if (Math.abs(xs[i] - cx) <= range && Math.abs(ys[i] - cy) <= range)
+            {
+               boolean seen = false;
+
+               for(int j = 0; j < found; j++)
+               {
+                  seen |= grid.result(j) == i;
+               }
+
+               assertTrue(seen);
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testOutlierDoesNotExplodeGrid() throws Exception
+   {
+      double[] xs = new double[] { 0, 1, 2, 1e9 };
+      double[] ys = new double[] { 0, 1, 2, -1e9 };
+
+      NodeGrid grid = new NodeGrid(1);
+      grid.build(xs, ys, 4);
+
+      // cells have been grown to keep the grid small
+      assertTrue(grid.cellSize() > 1e6);
+
+      // the outlier is nowhere near this box, but everything else is
+      assertEquals(3, grid.query(-1, -1, 3, 3, 4));
+      assertEquals(4, grid.query(-1, -1e9 - 1, 1e9 + 1, 3, 4));
+   }
+
+   @Test
+   public void testEmpty() throws Exception
+   {
+      NodeGrid grid = new NodeGrid(1);
+      grid.build(new double[0], new double[0], 0);
+
+      assertEquals(0, grid.query(-1, -1, 1, 1, 10));
+   }
+}
@@ -0,0 +1,103 @@
+package engine.level;
+
+import engine.XY;
+import engine.graph.Graph;
+import engine.graph.INode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelArrayRelaxerStepperTest
+{
+   @Test
+   public void testSameLayoutWhateverTheThreadCount() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(16, 1);
+
+      // make sure we're big enough to get split up
+      assertTrue(ParallelArrayRelaxerStepper.numChunks(g.allGraphNodes().size() + g.allGraphEdges().size()) > 4);
+
+      LevelGeneratorConfiguration c = new LevelGeneratorConfiguration(1);
+
+      HashMap<INode, XY> start_positions = GridRelaxerStepperTest.positions(g);
+
+      ArrayList<StepperController.Status> first_statuses = null;
+      HashMap<INode, XY> first_positions = null;
+
+      for(int threads : new int[] { 1, 3, 8 })
+      {
+         ForkJoinPool pool = new ForkJoinPool(threads);
+
+         try
+         {
+            for(INode n : g.allGraphNodes())
+            {
+               n.setPos(start_positions.get(n));
+            }
+
+            ArrayList<StepperController.Status> statuses =
+                  GridRelaxerStepperTest.runSteps(new ParallelArrayRelaxerStepper(null, g, c, pool), 5000);
+            HashMap<INode, XY> positions = GridRelaxerStepperTest.positions(g);
+
+            assertEquals(StepperController.Status.StepOutSuccess, statuses.get(statuses.size() - 1));
+
+            if (first_statuses == null)
+            {
+               first_statuses = statuses;
+               first_positions = positions;
+            }
+            else
+            {
+               assertEquals(first_statuses, statuses);
+
+               for(INode n : g.allGraphNodes())
+               {
+                  assertEquals(first_positions.get(n), positions.get(n));
+               }
+            }
+         }
+         finally
+         {
+            pool.shutdown();
+         }
+      }
+   }
+
+   @Test
+   public void testSmallGraphIsOneChunk() throws Exception
+   {
+      assertEquals(1, ParallelArrayRelaxerStepper.numChunks(0));
+      assertEquals(1, ParallelArrayRelaxerStepper.numChunks(100));
+      assertEquals(64, ParallelArrayRelaxerStepper.numChunks(1000000));
+   }
+
+   @Test
+   public void testCrossingEdgesFail() throws Exception
+   {
+      Graph g = GridRelaxerStepperTest.makeLatticeGraph(16, 2);
+
+      // stretch one node right across the lattice
+      INode n = g.allGraphNodes().get(0);
+      n.setPos(n.getPos().plus(new XY(1000, 1000)));
+
+      ForkJoinPool pool = new ForkJoinPool(4);
+
+      try
+      {
+         StepperController.StatusReportInner ret =
+               new ParallelArrayRelaxerStepper(null, g, new LevelGeneratorConfiguration(1), pool)
+                     .step(StepperController.Status.Iterate);
+
+         assertEquals(StepperController.Status.StepOutFailure, ret.Status);
+         assertTrue(ret.Log.contains("crossing edges"));
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   }
+}
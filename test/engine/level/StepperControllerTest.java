@@ -2,7 +2,9 @@ package engine.level;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
 
 public class StepperControllerTest
 {
@@ -27,4 +29,91 @@ public class StepperControllerTest
          assertEquals(false, sr.Complete);
       }
    }
+
+   // iterates a few times, then steps into one child which does the same, then succeeds
+   private static class CountingStepper implements IStepper
+   {
+      CountingStepper(int depth)
+      {
+         m_depth = depth;
+      }
+
+      @Override
+      public StepperController.StatusReportInner step(StepperController.Status status)
+      {
+         if (status == StepperController.Status.StepOutSuccess)
+            return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess, null, "done");
+
+         if (m_iterations < 3)
+         {
+            m_iterations++;
+
+            return m_report;
+         }
+
+         if (m_depth > 0)
+            return new StepperController.StatusReportInner(StepperController.Status.StepIn,
+                  new CountingStepper(m_depth - 1), "in");
+
+         return new StepperController.StatusReportInner(StepperController.Status.StepOutSuccess, null, "done");
+      }
+
+      private final int m_depth;
+      private int m_iterations = 0;
+
+      private final StepperController.StatusReportInner m_report =
+            new StepperController.StatusReportInner(StepperController.Status.Iterate, new RelaxationMetrics());
+   }
+
+   @Test
+   public void testCountsAndListener() throws Exception
+   {
+      StepperController sc = new StepperController(null, new CountingStepper(1));
+
+      ArrayList<StepperController.Status> heard = new ArrayList<>();
+      ArrayList<Integer> depths = new ArrayList<>();
+
+      sc.setListener((report, depth) ->
+      {
+         heard.add(report.Status);
+         depths.add(depth);
+      });
+
+      StepperController.StatusReport sr;
+
+      do
+      {
+         sr = sc.Step();
+      }
+      while(!sr.Complete);
+
+      assertEquals(6, sc.count(StepperController.Status.Iterate));
+      assertEquals(1, sc.count(StepperController.Status.StepIn));
+      assertEquals(2, sc.count(StepperController.Status.StepOutSuccess));
+      assertEquals(0, sc.count(StepperController.Status.StepOutFailure));
+      assertEquals(9, sc.steps());
+
+      assertEquals(9, heard.size());
+      assertEquals(StepperController.Status.StepIn, heard.get(3));
+      assertEquals(2, (int)depths.get(3));
+      assertEquals(0, (int)depths.get(8));
+   }
+
+   @Test
+   public void testLogFromMetrics() throws Exception
+   {
+      RelaxationMetrics m = new RelaxationMetrics();
+      m.MaxForce = 1.5;
+
+      StepperController.StatusReport sr = new StepperController.StatusReport(
+            new StepperController.StatusReportInner(StepperController.Status.Iterate, m), false);
+
+      assertNull(sr.Log);
+      assertSame(m, sr.Metrics);
+      assertTrue(sr.log().contains("force:1.5"));
+
+      sr = new StepperController.StatusReport(StepperController.Status.Iterate, "bob", false);
+
+      assertEquals("bob", sr.log());
+   }
 }
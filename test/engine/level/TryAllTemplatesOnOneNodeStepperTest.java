@@ -1,17 +1,23 @@
 package engine.level;
 
+import engine.XY;
 import engine.graph.Graph;
 import engine.graph.INode;
 import engine.graph.Template;
+import engine.graph.TemplateBuilder;
 import engine.graph.TemplateStore;
 import engine.level.IoCContainer;
 import engine.level.LevelGeneratorConfiguration;
 import engine.level.StepperController;
 import engine.level.TryAllTemplatesOnOneNodeStepper;
+import game.DoorPostExpand;
 import game.TemplateStore1;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -107,4 +113,179 @@ public class TryAllTemplatesOnOneNodeStepperTest
 
       assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
    }
+
+   @Test
+   public void testKnownFailuresLast() throws Exception
+   {
+      IoCContainer ioc_container = new IoCContainer(
+            null,
+            null,
+            null,
+            (x, a, b, c, d) -> new FailStepperLoggingTemplates(c),
+            null);
+
+      Graph g = new Graph();
+
+      INode n1 = g.addNode("", "", "", 0);
+
+      TemplateStore ts = new TemplateStore1();
+
+      LevelGeneratorConfiguration lgc = new LevelGeneratorConfiguration(1);
+      lgc.FailureCache = new ExpansionFailureCache(100);
+
+      String sig = ExpansionFailureCache.signature(n1);
+      Template known_bad = ts.FindByName("Extend");
+
+      lgc.FailureCache.recordFailure(sig, known_bad);
+
+      StepperController e = new StepperController(g,
+            new TryAllTemplatesOnOneNodeStepper(ioc_container,
+                  g, n1, ts.GetTemplatesCopy(), lgc));
+
+      StepperController.StatusReport ret;
+
+      m_templates.clear();
+
+      do
+      {
+         ret = e.Step();
+      }
+      while(!ret.Complete);
+
+      assertEquals(StepperController.Status.StepOutFailure, ret.Status);
+
+      assertEquals(ts.NumTemplates(), m_templates.size());
+      assertEquals(known_bad, m_templates.get(m_templates.size() - 1));
+
+      // and now they're all known to fail
+      for(Template t : ts.GetTemplatesCopy())
+      {
+         assertTrue(lgc.FailureCache.isKnownFailure(sig, t));
+      }
+   }
+
+   // expands, then takes long enough over succeeding that any other trials which were going to start have
+   class SlowExpandStepper implements IStepper
+   {
+      SlowExpandStepper(Graph g, INode n, Template t, LevelGeneratorConfiguration c)
+      {
+         m_g = g;
+         m_n = n;
+         m_t = t;
+         m_c = c;
+      }
+
+      @Override
+      public StepperController.StatusReportInner step(StepperController.Status status)
+      {
+         boolean expanded = m_t.Expand(m_g, m_n, m_c.Rand);
+
+         try
+         {
+            Thread.sleep(50);
+         }
+         catch (InterruptedException e)
+         {
+            throw new RuntimeException(e);
+         }
+
+         return new StepperController.StatusReportInner(expanded ? StepperController.Status.StepOutSuccess
+               : StepperController.Status.StepOutFailure, null, "");
+      }
+
+      final Graph m_g;
+      final INode m_n;
+      final Template m_t;
+      final LevelGeneratorConfiguration m_c;
+   }
+
+   private ArrayList<String> speculativeDoorNames(int threads)
+   {
+      IoCContainer ioc_container = new IoCContainer(
+            null,
+            null,
+            null,
+            (x, a, b, c, d) -> new SlowExpandStepper(a, b, c, d),
+            null);
+
+      Graph g = new Graph();
+
+      INode i = g.addNode("i", "", "", 10);
+      INode n = g.addNode("n", "", "", 10);
+      INode o = g.addNode("o", "", "", 10);
+
+      o.setPos(new XY(100, 0));
+      n.setPos(new XY(50, 0));
+
+      g.connect(i, n, 50, 50, 10);
+      g.connect(n, o, 50, 50, 10);
+
+      // all sharing one post-expand, so any expansion anywhere moves its count on
+      DoorPostExpand dh = new DoorPostExpand();
+
+      ArrayList<Template> templates = new ArrayList<>();
+
+      for(int t = 0; t < 8; t++)
+      {
+         TemplateBuilder tb = new TemplateBuilder("Door" + t, "", dh);
+         tb.AddNode(Template.NodeType.In, "i");
+         tb.AddNode(Template.NodeType.Out, "o");
+         tb.AddNode(Template.NodeType.Internal, "door", true, "<target>", null, null, "", 10f);
+
+         tb.Connect("i", "door", 50, 50, 10);
+         tb.Connect("door", "o", 50, 50, 10);
+
+         templates.add(tb.Build());
+      }
+
+      LevelGeneratorConfiguration lgc = new LevelGeneratorConfiguration(3);
+      lgc.SpeculativeTemplateTrials = 8;
+
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+      try
+      {
+         StepperController e = new StepperController(g,
+               new TryAllTemplatesOnOneNodeStepper(ioc_container, g, n, templates, lgc, pool));
+
+         StepperController.StatusReport ret;
+
+         do
+         {
+            ret = e.Step();
+         }
+         while(!ret.Complete);
+
+         assertEquals(StepperController.Status.StepOutSuccess, ret.Status);
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+
+      ArrayList<String> names = new ArrayList<>();
+
+      for(INode gn : g.allGraphNodes())
+      {
+         names.add(gn.getName());
+      }
+
+      // and the next expansion carries on from ours
+      names.add(Long.toString(dh.GetState()));
+
+      Collections.sort(names);
+
+      return names;
+   }
+
+   @Test
+   public void testSpeculativePostExpandIndependentOfPoolSize() throws Exception
+   {
+      ArrayList<String> one_thread = speculativeDoorNames(1);
+
+      assertTrue(one_thread.contains("Door: 1"));
+      assertTrue(one_thread.contains("2"));
+
+      assertEquals(one_thread, speculativeDoorNames(8));
+   }
 }